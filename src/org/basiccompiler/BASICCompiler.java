@@ -66,10 +66,20 @@ public class BASICCompiler {
 			+ CR //
 			+ "Usage:   java BASICCompiler <BASIC source filename> <Java class filename> [<options>]" + CR //
 			+ "Options: -formatted=<filename> | Writes a formatted BASIC source file" + CR //
-			+ "         -optimize             | Applies compiler optimizations";
+			+ "         -optimize             | Applies compiler optimizations" + CR //
+			+ "         -split                | Splits the program into JIT-compilable methods" + CR //
+			+ "         -runtime              | Calls the library methods in the shared class" + CR //
+			+ "                               | org.basiccompiler.runtime.BASICRuntime instead of" + CR //
+			+ "                               | generating them, BASICCompiler.jar must be on the" + CR //
+			+ "                               | classpath to run the program" + CR //
+			+ "         -classversion=<n>     | Writes class file version <n> (45..52, default 45)," + CR //
+			+ "                               | 50 and above with StackMapTables";
 
-	private final static String OPT_FORMATTED_OUTPUT = "-formatted=";
-	private final static String OPT_OPTIMIZE = "-optimize";
+	public final static String OPT_FORMATTED_OUTPUT = "-formatted=";
+	public final static String OPT_OPTIMIZE = "-optimize";
+	public final static String OPT_SPLIT_METHODS = "-split";
+	public final static String OPT_SHARED_RUNTIME = "-runtime";
+	public final static String OPT_CLASS_VERSION = "-classversion=";
 
 	public static void main(String[] args) {
 		if (args.length < 2) {
@@ -141,6 +151,36 @@ public class BASICCompiler {
 					return null;
 				}
 			}
+
+			if (propertyArg.equals(OPT_SPLIT_METHODS)) {
+				if (properties.containsKey(OPT_SPLIT_METHODS) == false) {
+					properties.setProperty(OPT_SPLIT_METHODS, "");
+					argList.remove(propertyArg);
+				} else {
+					System.out.println("ERROR: Option \"" + OPT_SPLIT_METHODS + "\" used twice.");
+					return null;
+				}
+			}
+
+			if (propertyArg.equals(OPT_SHARED_RUNTIME)) {
+				if (properties.containsKey(OPT_SHARED_RUNTIME) == false) {
+					properties.setProperty(OPT_SHARED_RUNTIME, "");
+					argList.remove(propertyArg);
+				} else {
+					System.out.println("ERROR: Option \"" + OPT_SHARED_RUNTIME + "\" used twice.");
+					return null;
+				}
+			}
+
+			if (propertyArg.startsWith(OPT_CLASS_VERSION)) {
+				if (properties.containsKey(OPT_CLASS_VERSION) == false) {
+					properties.setProperty(OPT_CLASS_VERSION, propertyArg.substring(OPT_CLASS_VERSION.length()));
+					argList.remove(propertyArg);
+				} else {
+					System.out.println("ERROR: Option \"" + OPT_CLASS_VERSION + "\" used twice.");
+					return null;
+				}
+			}
 		}
 
 		if (argList.isEmpty() == false) {
@@ -150,6 +190,14 @@ public class BASICCompiler {
 		return properties;
 	}
 
+	private static int getClassVersion(String classVersion) {
+		try {
+			return Integer.parseInt(classVersion);
+		} catch (NumberFormatException e) {
+			throw new CompileException("Class file version \"" + classVersion + "\" is not a number.");
+		}
+	}
+
 	private static String getClassName(String fullFilePath) {
 		String className = fullFilePath;
 		int lastIndexOf = className.lastIndexOf(File.separatorChar);
@@ -170,6 +218,11 @@ public class BASICCompiler {
 		List<Statement> statements = new ArrayList<Statement>();
 		try {
 			Compiler compiler = new Compiler(className);
+			compiler.setSplitMethods(properties.containsKey(OPT_SPLIT_METHODS));
+			compiler.setSharedRuntime(properties.containsKey(OPT_SHARED_RUNTIME));
+			if (properties.containsKey(OPT_CLASS_VERSION)) {
+				compiler.setClassVersion(getClassVersion(properties.getProperty(OPT_CLASS_VERSION)));
+			}
 			Parser parser = new Parser();
 
 			Map<Integer /* lineNumber */, List<Statement> /* statements of line */> sortedLinesOfStatements = new TreeMap<Integer, List<Statement>>();
@@ -204,9 +257,7 @@ public class BASICCompiler {
 				new CodeOptimizer().optimize(statements);
 			}
 
-			for (Statement statement : statements) {
-				compiler.compile(statement);
-			}
+			compiler.compile(statements);
 
 			compiler.flush();
 			compiler.getClassModel().write(outStream);
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2015, Lorenz Wiest
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.basiccompiler;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.basiccompiler.compiler.Compiler;
+
+/**
+ * Compiles BASIC programs into classes of the running JVM and runs them,
+ * without writing class files or starting a new JVM.
+ *
+ * Compiled classes are cached by a hash of the BASIC source and the compiler
+ * options. Each class is defined by a class loader of its own.
+ */
+public class BASICRunner {
+	private static final String CLASS_NAME = "BASICProgram";
+	private static final int MAX_CACHED_CLASSES = 256;
+
+	private static final Map<String /* hash */, Class<?>> classCache = new LinkedHashMap<String, Class<?>>(16, 0.75f, true /* access order */) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Class<?>> eldest) {
+			return size() > MAX_CACHED_CLASSES;
+		}
+	};
+
+	private static class ProgramClassLoader extends ClassLoader {
+		public ProgramClassLoader() {
+			super(BASICRunner.class.getClassLoader());
+		}
+
+		public Class<?> defineClass(String className, byte[] classBytes) {
+			return defineClass(className, classBytes, 0, classBytes.length);
+		}
+	}
+
+	public static Class<?> compile(String source) {
+		return compile(source, new Properties());
+	}
+
+	public static Class<?> compile(String source, Properties properties) {
+		String hash = getHash(source, properties);
+		synchronized (classCache) {
+			Class<?> programClass = classCache.get(hash);
+			if (programClass != null) {
+				return programClass;
+			}
+		}
+
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		try {
+			BASICCompiler.exec(new BufferedReader(new StringReader(source)), outStream, CLASS_NAME, properties);
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // never happens, reading and writing in memory
+		}
+		Class<?> programClass = new ProgramClassLoader().defineClass(CLASS_NAME, outStream.toByteArray());
+
+		synchronized (classCache) {
+			classCache.put(hash, programClass);
+		}
+		return programClass;
+	}
+
+	public static void run(String source, InputStream in, PrintStream out) {
+		run(compile(source), in, out);
+	}
+
+	public static void run(String source, Properties properties, InputStream in, PrintStream out) {
+		run(compile(source, properties), in, out);
+	}
+
+	public static void run(Class<?> programClass, InputStream in, PrintStream out) {
+		synchronized (programClass) { // a program keeps its state in static fields
+			try {
+				programClass.getField(Compiler.FIELD_IN).set(null, in);
+				programClass.getField(Compiler.FIELD_OUT).set(null, out);
+				Method mainMethod = programClass.getMethod("main", String[].class);
+				mainMethod.invoke(null, (Object) new String[0]);
+			} catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IllegalStateException(cause);
+			} catch (NoSuchFieldException e) {
+				throw new IllegalArgumentException("Class " + programClass.getName() + " is not a compiled BASIC program.", e);
+			} catch (NoSuchMethodException e) {
+				throw new IllegalArgumentException("Class " + programClass.getName() + " is not a compiled BASIC program.", e);
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e); // never happens, fields and methods are public
+			} finally {
+				out.flush();
+				resetStreams(programClass);
+			}
+		}
+	}
+
+	private static void resetStreams(Class<?> programClass) {
+		try {
+			programClass.getField(Compiler.FIELD_IN).set(null, null);
+			programClass.getField(Compiler.FIELD_OUT).set(null, null);
+		} catch (Exception e) {
+			// ignore
+		}
+	}
+
+	private static String getHash(String source, Properties properties) {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<Object, Object> e : new TreeMap<Object, Object>(properties).entrySet()) {
+			sb.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+		}
+		sb.append('\n');
+		sb.append(source);
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hashBytes = digest.digest(sb.toString().getBytes("UTF-8"));
+			StringBuilder hash = new StringBuilder();
+			for (byte b : hashBytes) {
+				hash.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+			}
+			return hash.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // never happens, every JVM supports SHA-256
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // never happens, every JVM supports UTF-8
+		}
+	}
+}
@@ -39,19 +39,40 @@ import java.util.Set;
 
 import org.basiccompiler.compiler.Compiler;
 import org.basiccompiler.parser.nodes.INode;
+import org.basiccompiler.parser.nodes.NodeType;
+import org.basiccompiler.parser.nodes.impl.BinaryNode;
+import org.basiccompiler.parser.nodes.impl.FnFunctionNode;
+import org.basiccompiler.parser.nodes.impl.FunctionNode;
+import org.basiccompiler.parser.nodes.impl.NumNode;
 import org.basiccompiler.parser.nodes.impl.StrNode;
 import org.basiccompiler.parser.nodes.impl.TokenNode;
+import org.basiccompiler.parser.nodes.impl.UnaryNode;
+import org.basiccompiler.parser.nodes.impl.VariableNode;
 import org.basiccompiler.parser.statements.Statement;
+import org.basiccompiler.parser.statements.impl.DefFnStatement;
+import org.basiccompiler.parser.statements.impl.DimStatement;
+import org.basiccompiler.parser.statements.impl.ForStatement;
 import org.basiccompiler.parser.statements.impl.GosubStatement;
 import org.basiccompiler.parser.statements.impl.GotoStatement;
 import org.basiccompiler.parser.statements.impl.IfStatement;
+import org.basiccompiler.parser.statements.impl.InputStatement;
+import org.basiccompiler.parser.statements.impl.LetStatement;
 import org.basiccompiler.parser.statements.impl.LineNumberStatement;
 import org.basiccompiler.parser.statements.impl.OnGosubStatement;
 import org.basiccompiler.parser.statements.impl.OnGotoStatement;
 import org.basiccompiler.parser.statements.impl.PrintStatement;
+import org.basiccompiler.parser.statements.impl.ReadStatement;
+import org.basiccompiler.parser.statements.impl.SwapStatement;
+import org.basiccompiler.parser.statements.impl.WhileStatement;
+import org.basiccompiler.parser.tokens.FunctionToken;
 import org.basiccompiler.parser.tokens.Token;
 
 public class CodeOptimizer {
+	private final static int MAX_STRING_LENGTH = 255;
+	private final static int MIN_INT_ARGUMENT = -32768;
+	private final static int MAX_INT_ARGUMENT = 32767;
+	private final static int MAX_CHR_ARGUMENT = 127;
+
 	private List<Statement> statements;
 	private Set<String> lineNumbersBranchedTo;
 
@@ -59,9 +80,309 @@ public class CodeOptimizer {
 		this.statements = statements;
 		this.lineNumbersBranchedTo = createLineNumberBranchedToSet();
 
+		foldConstantExpressions(statements);
 		foldPrintStatements(statements);
 	}
 
+	// Constant folding
+	//
+	// Every fold below mirrors the float semantics of the emitted bytecode and library methods exactly.
+	// Expressions which would raise a runtime error or print a message (e.g. "Division by zero")
+	// are left untouched, as are functions whose result depends on the runtime environment
+	// (RND, POS, TAB, SPC) or on the JVM's Math implementation (ATN, COS, EXP, LOG, SIN, TAN).
+	// Results of -0 are never folded, as a NUM constant of 0 is always emitted as fconst_0.
+
+	private void foldConstantExpressions(List<Statement> statements) {
+		for (int i = 0; i < statements.size(); i++) {
+			statements.set(i, foldStatement(statements.get(i)));
+		}
+	}
+
+	private Statement[] foldStatements(Statement[] statements) {
+		Statement[] foldedStatements = new Statement[statements.length];
+		for (int i = 0; i < statements.length; i++) {
+			foldedStatements[i] = foldStatement(statements[i]);
+		}
+		return foldedStatements;
+	}
+
+	private Statement foldStatement(Statement statement) {
+		if (statement instanceof LetStatement) {
+			LetStatement s = (LetStatement) statement;
+			return new LetStatement(foldVariable(s.getVariable()), foldExpr(s.getExpression()), s.isImplicit());
+		} else if (statement instanceof PrintStatement) {
+			PrintStatement s = (PrintStatement) statement;
+			return new PrintStatement(foldExprs(s.getExpressions()));
+		} else if (statement instanceof IfStatement) {
+			IfStatement s = (IfStatement) statement;
+			return new IfStatement(foldExpr(s.getExpression()), foldStatements(s.getThenStatements()), foldStatements(s.getElseStatements()));
+		} else if (statement instanceof ForStatement) {
+			ForStatement s = (ForStatement) statement;
+			return new ForStatement(s.getLoopVariable(), foldExpr(s.getStartExpression()), foldExpr(s.getEndExpression()), foldExpr(s.getStepExpression()));
+		} else if (statement instanceof WhileStatement) {
+			WhileStatement s = (WhileStatement) statement;
+			return new WhileStatement(foldExpr(s.getExpression()));
+		} else if (statement instanceof OnGotoStatement) {
+			OnGotoStatement s = (OnGotoStatement) statement;
+			return new OnGotoStatement(foldExpr(s.getExpression()), s.getLineNumbers());
+		} else if (statement instanceof OnGosubStatement) {
+			OnGosubStatement s = (OnGosubStatement) statement;
+			return new OnGosubStatement(foldExpr(s.getExpression()), s.getLineNumbers());
+		} else if (statement instanceof DimStatement) {
+			DimStatement s = (DimStatement) statement;
+			return new DimStatement(foldVariables(s.getVariables()));
+		} else if (statement instanceof DefFnStatement) {
+			DefFnStatement s = (DefFnStatement) statement;
+			return new DefFnStatement(s.getFuncName(), s.getFuncVars(), foldExpr(s.getFuncExpr()));
+		} else if (statement instanceof InputStatement) {
+			InputStatement s = (InputStatement) statement;
+			return new InputStatement(s.getPrompt(), s.getSeparator(), foldVariables(s.getVariables()));
+		} else if (statement instanceof ReadStatement) {
+			ReadStatement s = (ReadStatement) statement;
+			return new ReadStatement(foldVariables(s.getVariables()));
+		} else if (statement instanceof SwapStatement) {
+			SwapStatement s = (SwapStatement) statement;
+			return new SwapStatement((VariableNode) foldVariable(s.getVariable1()), (VariableNode) foldVariable(s.getVariable2()));
+		}
+		return statement;
+	}
+
+	private VariableNode[] foldVariables(VariableNode[] variables) {
+		VariableNode[] foldedVariables = new VariableNode[variables.length];
+		for (int i = 0; i < variables.length; i++) {
+			foldedVariables[i] = (VariableNode) foldVariable(variables[i]);
+		}
+		return foldedVariables;
+	}
+
+	private INode foldVariable(INode node) {
+		if (node instanceof VariableNode) {
+			VariableNode variable = (VariableNode) node;
+			INode[] dimExprs = variable.getDimExpressions();
+			if (dimExprs.length > 0) {
+				return VariableNode.createVariableNode(variable.getVariableName(), variable.getType(), foldExprs(dimExprs));
+			}
+		}
+		return node;
+	}
+
+	private INode[] foldExprs(INode[] exprs) {
+		INode[] foldedExprs = new INode[exprs.length];
+		for (int i = 0; i < exprs.length; i++) {
+			foldedExprs[i] = foldExpr(exprs[i]);
+		}
+		return foldedExprs;
+	}
+
+	private INode foldExpr(INode expr) {
+		if (expr instanceof BinaryNode) {
+			BinaryNode binaryNode = (BinaryNode) expr;
+			return foldBinaryExpr(binaryNode.getOp(), foldExpr(binaryNode.getLeftNode()), foldExpr(binaryNode.getRightNode()));
+		} else if (expr instanceof UnaryNode) {
+			UnaryNode unaryNode = (UnaryNode) expr;
+			return foldUnaryExpr(unaryNode.getOp(), foldExpr(unaryNode.getArgNode()));
+		} else if (expr instanceof FunctionNode) {
+			FunctionNode functionNode = (FunctionNode) expr;
+			return foldFunctionExpr(functionNode.getFunctionToken(), foldExprs(functionNode.getArgNodes()));
+		} else if (expr instanceof FnFunctionNode) {
+			FnFunctionNode fnFunctionNode = (FnFunctionNode) expr;
+			return FnFunctionNode.createFnFunctionNode(fnFunctionNode.getFuncName(), fnFunctionNode.getType(), foldExprs(fnFunctionNode.getFuncArgExprs()));
+		} else if (expr instanceof VariableNode) {
+			return foldVariable(expr);
+		}
+		return expr;
+	}
+
+	private INode foldBinaryExpr(Token op, INode leftNode, INode rightNode) {
+		if ((leftNode instanceof NumNode) && (rightNode instanceof NumNode)) {
+			INode foldedNode = foldNumBinaryExpr(op, ((NumNode) leftNode).getValue(), ((NumNode) rightNode).getValue());
+			if (foldedNode != null) {
+				return foldedNode;
+			}
+		} else if ((leftNode instanceof StrNode) && (rightNode instanceof StrNode)) {
+			INode foldedNode = foldStrBinaryExpr(op, ((StrNode) leftNode).getValue(), ((StrNode) rightNode).getValue());
+			if (foldedNode != null) {
+				return foldedNode;
+			}
+		}
+
+		// algebraic identities which hold for all floats, including NaN, infinities and -0
+		// (X + 0 is not among them, as -0 + 0 = 0)
+		if (((op == Token.MULTIPLY) || (op == Token.DIVIDE) || (op == Token.POWER)) && isNumConst(rightNode, 1.0f)) {
+			return leftNode;
+		}
+		if ((op == Token.MULTIPLY) && isNumConst(leftNode, 1.0f)) {
+			return rightNode;
+		}
+		if ((op == Token.SUBTRACT) && isNumConst(rightNode, 0.0f)) {
+			return leftNode;
+		}
+		return BinaryNode.createBinaryNode(op, leftNode, rightNode);
+	}
+
+	private INode foldNumBinaryExpr(Token op, float left, float right) {
+		if (op == Token.ADD) {
+			return createNumNode(left + right);
+		} else if (op == Token.SUBTRACT) {
+			return createNumNode(left - right);
+		} else if (op == Token.MULTIPLY) {
+			return createNumNode(left * right);
+		} else if (op == Token.DIVIDE) {
+			if (fcmpg(right, 0.0f) != 0) { // Division prints "Division by zero" otherwise
+				return createNumNode(left / right);
+			}
+		} else if ((op == Token.INT_DIVIDE) || (op == Token.MOD)) {
+			int intLeft = roundToInt(left);
+			int intRight = roundToInt(right);
+			if (isIntArgument(intLeft) && isIntArgument(intRight) && (intRight != 0)) {
+				return createNumNode((op == Token.INT_DIVIDE) ? (intLeft / intRight) : (intLeft % intRight));
+			}
+		} else if ((op == Token.AND) || (op == Token.OR) || (op == Token.XOR)) {
+			int intLeft = (int) left;
+			int intRight = (int) right;
+			if (isIntArgument(intLeft) && isIntArgument(intRight)) {
+				if (op == Token.AND) {
+					return createNumNode(intLeft & intRight);
+				} else if (op == Token.OR) {
+					return createNumNode(intLeft | intRight);
+				}
+				return createNumNode(intLeft ^ intRight);
+			}
+		} else if (op == Token.LESS) {
+			return createBooleanNode(fcmpg(left, right) < 0);
+		} else if (op == Token.LESS_OR_EQUAL) {
+			return createBooleanNode(fcmpg(left, right) <= 0);
+		} else if (op == Token.EQUAL) {
+			return createBooleanNode(fcmpg(left, right) == 0);
+		} else if (op == Token.GREATER_OR_EQUAL) {
+			return createBooleanNode(fcmpg(left, right) >= 0);
+		} else if (op == Token.GREATER) {
+			return createBooleanNode(fcmpg(left, right) > 0);
+		} else if (op == Token.NOT_EQUAL) {
+			return createBooleanNode(fcmpg(left, right) != 0);
+		}
+		return null;
+	}
+
+	private INode foldStrBinaryExpr(Token op, String left, String right) {
+		if (op == Token.STRING_ADD) {
+			if ((left.length() + right.length()) <= MAX_STRING_LENGTH) {
+				return StrNode.createStringNode(left + right);
+			}
+		} else if (op == Token.STRING_LESS) {
+			return createBooleanNode(left.compareTo(right) < 0);
+		} else if (op == Token.STRING_LESS_OR_EQUAL) {
+			return createBooleanNode(left.compareTo(right) <= 0);
+		} else if (op == Token.STRING_EQUAL) {
+			return createBooleanNode(left.equals(right));
+		} else if (op == Token.STRING_GREATER_OR_EQUAL) {
+			return createBooleanNode(left.compareTo(right) >= 0);
+		} else if (op == Token.STRING_GREATER) {
+			return createBooleanNode(left.compareTo(right) > 0);
+		} else if (op == Token.STRING_NOT_EQUAL) {
+			return createBooleanNode(left.equals(right) == false);
+		}
+		return null;
+	}
+
+	private INode foldUnaryExpr(Token op, INode argNode) {
+		if (op == Token.OPEN) {
+			return argNode;
+		} else if (op == Token.UNARY_MINUS) {
+			if (argNode instanceof NumNode) {
+				INode foldedNode = createNumNode(-((NumNode) argNode).getValue());
+				if (foldedNode != null) {
+					return foldedNode;
+				}
+			} else if ((argNode instanceof UnaryNode) && (((UnaryNode) argNode).getOp() == Token.UNARY_MINUS)) {
+				return ((UnaryNode) argNode).getArgNode();
+			}
+		} else if (op == Token.NOT) {
+			if (argNode instanceof NumNode) {
+				int intArg = (int) ((NumNode) argNode).getValue();
+				if (isIntArgument(intArg)) {
+					return createNumNode(-(intArg + 1));
+				}
+			}
+		}
+		return UnaryNode.createUnaryNode(op, argNode);
+	}
+
+	private INode foldFunctionExpr(FunctionToken functionToken, INode[] argNodes) {
+		INode foldedNode = null;
+		if ((argNodes.length == 1) && (argNodes[0] instanceof NumNode)) {
+			float arg = ((NumNode) argNodes[0]).getValue();
+			if (functionToken == FunctionToken.ABS) {
+				foldedNode = createNumNode((fcmpg(arg, 0.0f) >= 0) ? arg : -arg);
+			} else if (functionToken == FunctionToken.SGN) {
+				int cmp = fcmpg(arg, 0.0f);
+				foldedNode = createNumNode((cmp == 0) ? 0.0f : ((cmp > 0) ? 1.0f : -1.0f));
+			} else if (functionToken == FunctionToken.INT) {
+				foldedNode = createNumNode((float) Math.floor(arg));
+			} else if (functionToken == FunctionToken.FIX) {
+				float result = (float) ((fcmpg(arg, 0.0f) >= 0) ? Math.floor(arg) : Math.ceil(arg));
+				foldedNode = createNumNode((fcmpg(result, 0.0f) == 0) ? 0.0f : result);
+			} else if (functionToken == FunctionToken.SQR) {
+				if (fcmpg(arg, 0.0f) >= 0) { // square root is exactly rounded, unlike the other transcendental functions
+					foldedNode = createNumNode((float) Math.sqrt(arg));
+				}
+			} else if (functionToken == FunctionToken.CHR) {
+				int intArg = roundToInt(arg);
+				if ((intArg >= 0) && (intArg <= MAX_CHR_ARGUMENT)) {
+					foldedNode = StrNode.createStringNode(String.valueOf((char) intArg));
+				}
+			}
+		} else if ((argNodes.length == 1) && (argNodes[0] instanceof StrNode)) {
+			String arg = ((StrNode) argNodes[0]).getValue();
+			if (functionToken == FunctionToken.LEN) {
+				foldedNode = createNumNode(arg.length());
+			} else if (functionToken == FunctionToken.ASC) {
+				if (arg.length() > 0) {
+					foldedNode = createNumNode(arg.charAt(0));
+				}
+			}
+		}
+		if (foldedNode != null) {
+			return foldedNode;
+		}
+		return FunctionNode.createFunctionNode(functionToken, argNodes);
+	}
+
+	private NumNode createNumNode(float value) {
+		if (Float.floatToIntBits(value) == Float.floatToIntBits(-0.0f)) {
+			return null;
+		}
+		return NumNode.createNumberNode(Float.toString(value));
+	}
+
+	private NumNode createBooleanNode(boolean value) {
+		return createNumNode(value ? -1.0f : 0.0f);
+	}
+
+	private boolean isNumConst(INode node, float value) {
+		return (node instanceof NumNode) && (Float.floatToIntBits(((NumNode) node).getValue()) == Float.floatToIntBits(value));
+	}
+
+	private boolean isIntArgument(int value) {
+		return (value >= MIN_INT_ARGUMENT) && (value <= MAX_INT_ARGUMENT);
+	}
+
+	private static int fcmpg(float value1, float value2) { // same as JVM instruction, i.e. NaN compares greater
+		if (value1 < value2) {
+			return -1;
+		} else if (value1 == value2) {
+			return 0;
+		}
+		return 1;
+	}
+
+	private static int roundToInt(float value) { // same as library method RoundToInt
+		if (fcmpg(value, 0.0f) < 0) {
+			return (int) -((-value) + 0.5f);
+		}
+		return (int) (value + 0.5f);
+	}
+
 	private void foldPrintStatements(List<Statement> statements) {
 		List<INode> printExprs = new ArrayList<INode>();
 		int startPos = -1;
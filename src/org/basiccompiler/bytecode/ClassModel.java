@@ -34,6 +34,7 @@ package org.basiccompiler.bytecode;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -51,14 +52,24 @@ import org.basiccompiler.bytecode.info.ExceptionTableInfo;
 import org.basiccompiler.bytecode.info.FieldInfo;
 import org.basiccompiler.bytecode.info.InterfaceInfo;
 import org.basiccompiler.bytecode.info.MethodInfo;
+import org.basiccompiler.bytecode.info.StackMapTableAttributeInfo;
 import org.basiccompiler.compiler.etc.ByteOutStream;
+import org.basiccompiler.compiler.etc.CompileException;
 
 public class ClassModel {
 	public static final int ACC_PUBLIC = 0x0001;
 	public static final int ACC_STATIC = 0x0008;
+	public static final int ACC_FINAL = 0x0010;
 	public static final int ACC_SUPER = 0x0020;
 
 	public static final int MAX_METHOD_LENGTH = 65536;
+	public static final int MAX_JIT_METHOD_LENGTH = 8000; // HotSpot does not JIT-compile larger methods
+
+	public static final int MIN_MAJOR_VERSION = 45; // JDK 1.0.2
+	public static final int MAX_MAJOR_VERSION = 52; // Java 8
+	private static final int STACK_MAP_TABLE_MAJOR_VERSION = 50; // Java 6, type-checking verifier
+
+	private static final char NAME_ESCAPE_CHAR = '_'; // never part of a BASIC name
 
 	private final static String SUPER_CLASS_NAME = "java/lang/Object";
 
@@ -72,9 +83,12 @@ public class ClassModel {
 	private final ConstantPool constantPool = new ConstantPool();
 	private final List<InterfaceInfo> interfaces = new ArrayList<InterfaceInfo>();
 	private final List<FieldInfo> fields = new ArrayList<FieldInfo>();
+	private final Map<String /* descriptor */, List<String> /* field names */> fieldNamesMap = new HashMap<String, List<String>>();
 	private final List<MethodInfo> methods = new ArrayList<MethodInfo>();
 	private final List<AttributeInfo> attributes = new ArrayList<AttributeInfo>();
 
+	private int majorVersion = MIN_MAJOR_VERSION;
+
 	public ClassModel(String className) {
 		this.className = className;
 		addConstructorMethod();
@@ -84,6 +98,13 @@ public class ClassModel {
 		return this.className;
 	}
 
+	public void setMajorVersion(int majorVersion) {
+		if ((majorVersion < MIN_MAJOR_VERSION) || (majorVersion > MAX_MAJOR_VERSION)) {
+			throw new CompileException("Class file version " + majorVersion + " is not supported, use " + MIN_MAJOR_VERSION + " to " + MAX_MAJOR_VERSION + ".");
+		}
+		this.majorVersion = majorVersion;
+	}
+
 	public void addMainMethod(int numLocals, byte[] bytecode, ExceptionTableInfo[] exceptionTable) {
 		addMethod(MAIN_METHOD_NAME, MAIN_METHOD_DESCRIPTOR, numLocals + 1 /* String args[] */, bytecode, exceptionTable);
 	}
@@ -92,7 +113,8 @@ public class ClassModel {
 		addMethod(methodName, descriptor, numLocals, bytecode, new ExceptionTableInfo[0]);
 	}
 
-	public void addMethod(String methodName, String descriptor, int numLocals, byte[] bytecode, ExceptionTableInfo[] exceptionTable) {
+	public void addMethod(String basicMethodName, String descriptor, int numLocals, byte[] bytecode, ExceptionTableInfo[] exceptionTable) {
+		String methodName = getUnqualifiedName(basicMethodName);
 		int methodRefIndex = ConstantPoolInfo_MethodRef.addAndGetIndex(this.constantPool, this.className, methodName, descriptor);
 
 		ConstantPoolInfo_MethodRef methodRef = (ConstantPoolInfo_MethodRef) this.constantPool.get(methodRefIndex);
@@ -101,46 +123,113 @@ public class ClassModel {
 		int nameIndex = nameAndTypeRef.getNameIndex();
 		int descriptorIndex = nameAndTypeRef.getDescriptorIndex();
 		int maxLocals = numLocals + 0; // NOTE: static methods have no "this" field => offset 0!
-		CodeAttributeInfo codeAttributeInfo = new CodeAttributeInfo(this.constantPool, maxLocals, bytecode, exceptionTable);
+		CodeAttributeInfo codeAttributeInfo = createCodeAttributeInfo(methodName, descriptor, true, maxLocals, bytecode, exceptionTable);
 		MethodInfo methodInfo = new MethodInfo(nameIndex, descriptorIndex, ACC_PUBLIC | ACC_STATIC, codeAttributeInfo);
 		this.methods.add(methodInfo);
 	}
 
+	private CodeAttributeInfo createCodeAttributeInfo(String methodName, String descriptor, boolean isStatic, int maxLocals, byte[] bytecode, ExceptionTableInfo[] exceptionTable) {
+		CodeAnalyzer codeAnalyzer = new CodeAnalyzer(this.constantPool, this.className, methodName, descriptor, isStatic, maxLocals, bytecode, exceptionTable);
+		codeAnalyzer.analyze();
+
+		StackMapTableAttributeInfo stackMapTable = null;
+		if (this.majorVersion >= STACK_MAP_TABLE_MAJOR_VERSION) {
+			codeAnalyzer.replaceUnreachableCode();
+			stackMapTable = codeAnalyzer.getStackMapTable();
+		}
+		return new CodeAttributeInfo(this.constantPool, codeAnalyzer.getMaxStack(), codeAnalyzer.getMaxLocals(), codeAnalyzer.getCode(), exceptionTable, stackMapTable);
+	}
+
 	public void addField(String fieldName, String descriptor) {
-		FieldInfo fieldInfo = createFieldInfo(fieldName, descriptor);
+		addField(fieldName, descriptor, ACC_PUBLIC | ACC_STATIC);
+	}
+
+	private void addField(String fieldName, String descriptor, int accessFlags) {
+		FieldInfo fieldInfo = createFieldInfo(fieldName, descriptor, accessFlags);
 		this.fields.add(fieldInfo);
+
+		if (this.fieldNamesMap.containsKey(descriptor) == false) {
+			this.fieldNamesMap.put(descriptor, new ArrayList<String>());
+		}
+		this.fieldNamesMap.get(descriptor).add(fieldName);
 	}
 
-	private FieldInfo createFieldInfo(String fieldName, String descriptor) {
-		int fieldRefIndex = ConstantPoolInfo_FieldRef.addAndGetIndex(this.constantPool, this.className, fieldName, descriptor);
+	public List<String> getFieldNames(String descriptor) {
+		if (this.fieldNamesMap.containsKey(descriptor) == false) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(this.fieldNamesMap.get(descriptor));
+	}
+
+	private FieldInfo createFieldInfo(String fieldName, String descriptor, int accessFlags) {
+		int fieldRefIndex = ConstantPoolInfo_FieldRef.addAndGetIndex(this.constantPool, this.className, getUnqualifiedName(fieldName), descriptor);
 
 		ConstantPoolInfo_FieldRef fieldRef = (ConstantPoolInfo_FieldRef) this.constantPool.get(fieldRefIndex);
 		ConstantPoolInfo_NameAndType nameAndTypeRef = (ConstantPoolInfo_NameAndType) this.constantPool.get(fieldRef.getNameAndTypeIndex());
 
 		int nameIndex = nameAndTypeRef.getNameIndex();
 		int descriptorIndex = nameAndTypeRef.getDescriptorIndex();
-		FieldInfo fieldInfo = new FieldInfo(nameIndex, descriptorIndex, ACC_PUBLIC | ACC_STATIC);
+		FieldInfo fieldInfo = new FieldInfo(nameIndex, descriptorIndex, accessFlags);
 		return fieldInfo;
 	}
 
 	public int addFieldAndGetFieldRefIndex(String fieldName, String descriptor) {
-		FieldInfo fieldInfo = createFieldInfo(fieldName, descriptor);
+		return addFieldAndGetFieldRefIndex(fieldName, descriptor, ACC_PUBLIC | ACC_STATIC);
+	}
+
+	// a final field is assigned once by main(), which class file versions up to 52 allow
+	public int addFinalFieldAndGetFieldRefIndex(String fieldName, String descriptor) {
+		return addFieldAndGetFieldRefIndex(fieldName, descriptor, ACC_PUBLIC | ACC_STATIC | ACC_FINAL);
+	}
+
+	private int addFieldAndGetFieldRefIndex(String fieldName, String descriptor, int accessFlags) {
+		FieldInfo fieldInfo = createFieldInfo(fieldName, descriptor, accessFlags);
 		if (this.fields.contains(fieldInfo) == false) {
-			addField(fieldName, descriptor);
+			addField(fieldName, descriptor, accessFlags);
 		}
 		return getFieldRefIndex(fieldName, descriptor);
 	}
 
 	public int getFieldRefIndex(String fieldName, String descriptor) {
-		int fieldRefIndex = ConstantPoolInfo_FieldRef.addAndGetIndex(this.constantPool, this.className, fieldName, descriptor);
+		int fieldRefIndex = ConstantPoolInfo_FieldRef.addAndGetIndex(this.constantPool, this.className, getUnqualifiedName(fieldName), descriptor);
 		return fieldRefIndex + 1; // NOTE: serialized constant pool indexes are 1-based
 	}
 
 	public int getMethodRefIndex(String methodName, String descriptor) {
-		int methodRefIndex = ConstantPoolInfo_MethodRef.addAndGetIndex(this.constantPool, this.className, methodName, descriptor);
+		return getMethodRefIndex(this.className, getUnqualifiedName(methodName), descriptor);
+	}
+
+	public int getMethodRefIndex(String className, String methodName, String descriptor) {
+		int methodRefIndex = ConstantPoolInfo_MethodRef.addAndGetIndex(this.constantPool, className, methodName, descriptor);
 		return methodRefIndex + 1; // NOTE: serialized constant pool indexes are 1-based
 	}
 
+	// Field and method names are mostly BASIC names like "A.B", "A%" or "A(" of an array. Every char which is
+	// not allowed in a Java identifier gets escaped with its hex code, e.g. "A(" -> "A_28", so the names are legal
+	// for all class file versions, also when a class loader other than the system class loader checks them.
+	private static String getUnqualifiedName(String name) {
+		StringBuilder sb = null;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (isJavaIdentifierChar(c)) {
+				if (sb != null) {
+					sb.append(c);
+				}
+			} else {
+				if (sb == null) {
+					sb = new StringBuilder(name.substring(0, i));
+				}
+				sb.append(NAME_ESCAPE_CHAR);
+				sb.append(Integer.toHexString(c));
+			}
+		}
+		return (sb == null) ? name : sb.toString();
+	}
+
+	private static boolean isJavaIdentifierChar(char c) {
+		return ((c >= 'A') && (c <= 'Z')) || ((c >= 'a') && (c <= 'z')) || ((c >= '0') && (c <= '9')) || (c == '_') || (c == '$');
+	}
+
 	public int getStringIndex(String string) {
 		int stringConstIndex = ConstantPoolInfo_String.addAndGetIndex(this.constantPool, string);
 		return stringConstIndex + 1; // NOTE: serialized constant pool indexes are 1-based
@@ -161,7 +250,7 @@ public class ClassModel {
 	}
 
 	public void write(OutputStream outStream) throws IOException {
-		new ClassModelWriter(this.className, SUPER_CLASS_NAME, this.constantPool, this.interfaces, this.fields, this.methods, this.attributes).write(outStream);
+		new ClassModelWriter(this.majorVersion, this.className, SUPER_CLASS_NAME, this.constantPool, this.interfaces, this.fields, this.methods, this.attributes).write(outStream);
 	}
 
 	private void addConstructorMethod() {
@@ -176,7 +265,7 @@ public class ClassModel {
 		o.flushAndCloseGracefully();
 		byte[] constructorByteCode = o.toByteArray();
 
-		CodeAttributeInfo codeAttributeInfo = new CodeAttributeInfo(this.constantPool, 1, constructorByteCode, new ExceptionTableInfo[0]);
+		CodeAttributeInfo codeAttributeInfo = createCodeAttributeInfo(CONSTRUCTOR_METHOD_NAME, CONSTRUCTOR_METHOD_DESCRIPTOR, false, 1, constructorByteCode, new ExceptionTableInfo[0]);
 		int nameIndex = ConstantPoolInfo_Utf8.addAndGetIndex(this.constantPool, CONSTRUCTOR_METHOD_NAME);
 		int descriptorIndex = ConstantPoolInfo_Utf8.addAndGetIndex(this.constantPool, CONSTRUCTOR_METHOD_DESCRIPTOR);
 		MethodInfo methodInfo = new MethodInfo(nameIndex, descriptorIndex, ACC_PUBLIC, codeAttributeInfo);
@@ -186,7 +275,8 @@ public class ClassModel {
 	//////////////////////////////////////////////////////////////////////////////
 
 	public enum JavaClass {
-		RUNTIME_EXCEPTION("java/lang/RuntimeException");
+		RUNTIME_EXCEPTION("java/lang/RuntimeException"),
+		STRING("java/lang/String");
 
 		private String fullClassName;
 
@@ -255,8 +345,11 @@ public class ClassModel {
 
 	public enum JavaMethod {
 		STRING_TO_CHAR_ARRAY("java/lang/String", "toCharArray", "()[C"),
+		STRING_INIT("java/lang/String", "<init>", "([CII)V"),
+		SYSTEM_ARRAYCOPY("java/lang/System", "arraycopy", "(Ljava/lang/Object;ILjava/lang/Object;II)V"),
+		FLOAT_INT_BITS_TO_FLOAT("java/lang/Float", "intBitsToFloat", "(I)F"),
 
-		PRINT_STREAM_PRINT("java/io/PrintStream", "print", "(C)V"),
+		PRINT_STREAM_PRINT("java/io/PrintStream", "print", "(Ljava/lang/String;)V"),
 		INPUT_STREAM_READ("java/io/InputStream", "read", "([B)I"),
 
 		MATH_ATAN("java/lang/Math", "atan", "(D)D"),
@@ -42,12 +42,13 @@ import org.basiccompiler.bytecode.info.FieldInfo;
 import org.basiccompiler.bytecode.info.InterfaceInfo;
 import org.basiccompiler.bytecode.info.MethodInfo;
 import org.basiccompiler.compiler.etc.ByteOutStream;
+import org.basiccompiler.compiler.etc.CompileException;
 
 public class ClassModelWriter {
 	private final static int MAGIC_NUMBER = 0xCAFEBABE;
-	private final static int MAJOR_VERSION = 45; // equivalent to JDK 1.0.2
-	private final static int MINOR_VERSION = 3;
+	private final static int MINOR_VERSION_JDK_1_0_2 = 3;
 
+	private final int majorVersion;
 	private final String className;
 	private final String superClassName;
 	private final ConstantPool constantPool;
@@ -56,7 +57,8 @@ public class ClassModelWriter {
 	private final List<MethodInfo> methods;
 	private final List<AttributeInfo> attributes;
 
-	public ClassModelWriter(String className, String superClassName, ConstantPool constantPool, List<InterfaceInfo> interfaces, List<FieldInfo> fields, List<MethodInfo> methods, List<AttributeInfo> attributes) {
+	public ClassModelWriter(int majorVersion, String className, String superClassName, ConstantPool constantPool, List<InterfaceInfo> interfaces, List<FieldInfo> fields, List<MethodInfo> methods, List<AttributeInfo> attributes) {
+		this.majorVersion = majorVersion;
 		this.className = className;
 		this.superClassName = superClassName;
 		this.constantPool = constantPool;
@@ -67,11 +69,14 @@ public class ClassModelWriter {
 	}
 
 	public void write(OutputStream outStream) throws IOException {
-		ByteOutStream o = new ByteOutStream();
+		// the length of every section is known up front, so the class file is written
+		// into a single buffer of exactly its size, which is then passed on in one piece
+		int length = getLength();
+		ByteOutStream o = new ByteOutStream(length, length);
 
 		writeMagicNumber(o, MAGIC_NUMBER);
-		writeMinorVersion(o, MINOR_VERSION);
-		writeMajorVersion(o, MAJOR_VERSION);
+		writeMinorVersion(o, (this.majorVersion == ClassModel.MIN_MAJOR_VERSION) ? MINOR_VERSION_JDK_1_0_2 : 0);
+		writeMajorVersion(o, this.majorVersion);
 		writeConstantPoolCount(o, this.constantPool);
 		writeConstantPool(o, this.constantPool);
 		writeAccessFlags(o, ClassModel.ACC_PUBLIC | ClassModel.ACC_SUPER);
@@ -87,7 +92,30 @@ public class ClassModelWriter {
 		writeAttributes(o, this.attributes);
 
 		o.flushAndCloseGracefully();
-		outStream.write(o.toByteArray());
+		if (o.pos() != length) {
+			throw new CompileException("Class file shorter than its computed length.");
+		}
+		o.writeTo(outStream);
+	}
+
+	private int getLength() {
+		int length = 4 + 2 + 2; // magic number, minor version, major version
+		length += 2;
+		for (ConstantPoolInfo constantPoolInfo : this.constantPool.getConstantPoolInfos()) {
+			length += constantPoolInfo.getLength();
+		}
+		length += 2 + 2 + 2; // access flags, this class, super class
+		length += 2; // interfaces not implemented
+		length += 2;
+		for (FieldInfo info : this.fields) {
+			length += info.getLength();
+		}
+		length += 2;
+		for (MethodInfo info : this.methods) {
+			length += info.getLength();
+		}
+		length += 2; // attributes not implemented
+		return length;
 	}
 
 	private void writeMagicNumber(ByteOutStream o, int magicNumber) {
@@ -0,0 +1,996 @@
+/*
+ * Copyright (c) 2015, Lorenz Wiest
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.basiccompiler.bytecode;
+
+import static org.basiccompiler.bytecode.info.StackMapTableAttributeInfo.DOUBLE;
+import static org.basiccompiler.bytecode.info.StackMapTableAttributeInfo.FLOAT;
+import static org.basiccompiler.bytecode.info.StackMapTableAttributeInfo.INTEGER;
+import static org.basiccompiler.bytecode.info.StackMapTableAttributeInfo.LONG;
+import static org.basiccompiler.bytecode.info.StackMapTableAttributeInfo.NULL;
+import static org.basiccompiler.bytecode.info.StackMapTableAttributeInfo.TOP;
+import static org.basiccompiler.bytecode.info.StackMapTableAttributeInfo.UNINITIALIZED_PREFIX;
+import static org.basiccompiler.bytecode.info.StackMapTableAttributeInfo.UNINITIALIZED_THIS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.basiccompiler.bytecode.constantpoolinfo.ConstantPoolInfo;
+import org.basiccompiler.bytecode.constantpoolinfo.impl.ConstantPoolInfo_Class;
+import org.basiccompiler.bytecode.constantpoolinfo.impl.ConstantPoolInfo_FieldRef;
+import org.basiccompiler.bytecode.constantpoolinfo.impl.ConstantPoolInfo_Float;
+import org.basiccompiler.bytecode.constantpoolinfo.impl.ConstantPoolInfo_MethodRef;
+import org.basiccompiler.bytecode.constantpoolinfo.impl.ConstantPoolInfo_NameAndType;
+import org.basiccompiler.bytecode.constantpoolinfo.impl.ConstantPoolInfo_String;
+import org.basiccompiler.bytecode.constantpoolinfo.impl.ConstantPoolInfo_Utf8;
+import org.basiccompiler.bytecode.info.ExceptionTableInfo;
+import org.basiccompiler.bytecode.info.StackMapTableAttributeInfo;
+import org.basiccompiler.compiler.etc.CompileException;
+
+/**
+ * Simulates the types of the local variables and the operand stack of a method's byte code, the same way the JVM's type-checking
+ * verifier does. The resulting frames at branch targets, exception handlers and after unconditional jumps make up the method's
+ * StackMapTable. Unreachable code gets replaced by nops and an athrow, as the verifier type-checks it, too.
+ */
+public class CodeAnalyzer {
+	private static final String OBJECT = "Ljava/lang/Object;";
+	private static final String STRING = "Ljava/lang/String;";
+	private static final String THROWABLE = "Ljava/lang/Throwable;";
+
+	private static final String CONSTRUCTOR_METHOD_NAME = "<init>";
+
+	private final ConstantPool constantPool;
+	private final String className;
+	private final String methodName;
+	private final String descriptor;
+	private final boolean isStatic;
+	private final int maxLocals;
+	private final byte[] code;
+	private final ExceptionTableInfo[] exceptionTable;
+
+	private final TreeSet<Integer> framePositions = new TreeSet<Integer>();
+	private final Map<Integer /* pos */, Frame> frames = new TreeMap<Integer, Frame>();
+	private final LinkedList<Integer> workList = new LinkedList<Integer>();
+	private boolean[] isInstructionStart;
+	private boolean[] isReached;
+	private int maxStack;
+	private int maxLocalIndex = -1;
+
+	private static class Frame {
+		private final String[] locals;
+		private final List<String> stack;
+
+		public Frame(String[] locals, List<String> stack) {
+			this.locals = locals;
+			this.stack = stack;
+		}
+
+		public Frame copy() {
+			return new Frame(this.locals.clone(), new ArrayList<String>(this.stack));
+		}
+
+		public String[] getLocals() {
+			return this.locals;
+		}
+
+		public List<String> getStack() {
+			return this.stack;
+		}
+
+		public boolean merge(Frame frame, int pos) {
+			if (this.stack.size() != frame.stack.size()) {
+				throw new CompileException("Inconsistent operand stack height at pos " + pos + ".");
+			}
+			boolean isChanged = false;
+			for (int i = 0; i < this.locals.length; i++) {
+				String mergedType = mergeTypes(this.locals[i], frame.locals[i]);
+				if (mergedType == null) {
+					mergedType = TOP;
+				}
+				if (mergedType.equals(this.locals[i]) == false) {
+					this.locals[i] = mergedType;
+					isChanged = true;
+				}
+			}
+			for (int i = 0; i < this.stack.size(); i++) {
+				String mergedType = mergeTypes(this.stack.get(i), frame.stack.get(i));
+				if (mergedType == null) {
+					throw new CompileException("Inconsistent operand stack types at pos " + pos + ".");
+				}
+				if (mergedType.equals(this.stack.get(i)) == false) {
+					this.stack.set(i, mergedType);
+					isChanged = true;
+				}
+			}
+			return isChanged;
+		}
+
+		private static String mergeTypes(String type1, String type2) {
+			if (type1.equals(type2)) {
+				return type1;
+			}
+			if (isReferenceType(type1) && isReferenceType(type2)) {
+				if (type1.equals(NULL)) {
+					return type2;
+				}
+				if (type2.equals(NULL)) {
+					return type1;
+				}
+				return OBJECT;
+			}
+			return null;
+		}
+	}
+
+	public CodeAnalyzer(ConstantPool constantPool, String className, String methodName, String descriptor, boolean isStatic, int maxLocals, byte[] code, ExceptionTableInfo[] exceptionTable) {
+		this.constantPool = constantPool;
+		this.className = className;
+		this.methodName = methodName;
+		this.descriptor = descriptor;
+		this.isStatic = isStatic;
+		this.maxLocals = maxLocals;
+		this.code = code.clone();
+		this.exceptionTable = exceptionTable;
+	}
+
+	public void analyze() {
+		findFramePositions();
+		analyzeFrom(getInitialFrame());
+	}
+
+	// the type-checking verifier checks unreachable code, too, so it must be replaced by code which is valid for any frame
+	public void replaceUnreachableCode() {
+		List<int[]> unreachableRanges = getUnreachableRanges();
+		if (unreachableRanges.isEmpty()) {
+			return;
+		}
+
+		for (int[] range : unreachableRanges) {
+			Arrays.fill(this.code, range[0], range[1] - 1, (byte) 0x00); // nop
+			this.code[range[1] - 1] = (byte) 0xbf; // athrow
+		}
+
+		this.frames.clear();
+		this.framePositions.clear();
+		findFramePositions();
+		for (int[] range : unreachableRanges) {
+			this.framePositions.add(range[0]);
+			List<String> stack = new ArrayList<String>();
+			stack.add(THROWABLE);
+			mergeFrame(range[0], new Frame(getInitialFrame().getLocals(), stack));
+		}
+		analyzeFrom(getInitialFrame());
+	}
+
+	public byte[] getCode() {
+		return this.code;
+	}
+
+	public int getMaxStack() {
+		return this.maxStack;
+	}
+
+	public int getMaxLocals() {
+		return Math.max(getArgumentsSize(), this.maxLocalIndex + 1);
+	}
+
+	private int getArgumentsSize() {
+		int size = this.isStatic ? 0 : 1;
+		for (String argType : getArgumentTypes(this.descriptor)) {
+			size += getSize(toVerificationType(argType));
+		}
+		return size;
+	}
+
+	public StackMapTableAttributeInfo getStackMapTable() {
+		List<String> initialLocals = getVerificationTypes(getInitialFrame().getLocals(), true);
+		StackMapTableAttributeInfo stackMapTable = new StackMapTableAttributeInfo(this.constantPool, initialLocals);
+		for (Entry<Integer, Frame> entry : this.frames.entrySet()) {
+			int pos = entry.getKey();
+			if (this.framePositions.contains(pos)) {
+				Frame frame = entry.getValue();
+				stackMapTable.addFrame(pos, getVerificationTypes(frame.getLocals(), true), getVerificationTypes(frame.getStack(), false));
+			}
+		}
+		return stackMapTable;
+	}
+
+	private List<String> getVerificationTypes(List<String> types, boolean isLocals) {
+		return getVerificationTypes(types.toArray(new String[types.size()]), isLocals);
+	}
+
+	private List<String> getVerificationTypes(String[] types, boolean isLocals) {
+		int length = types.length;
+		if (isLocals) {
+			while ((length > 0) && types[length - 1].equals(TOP)) {
+				length--;
+			}
+		}
+		List<String> verificationTypes = new ArrayList<String>();
+		for (int i = 0; i < length; i++) {
+			String type = types[i];
+			verificationTypes.add(type);
+			if (type.equals(DOUBLE) || type.equals(LONG)) {
+				i++; // the second slot of a category 2 type is implicit
+			}
+		}
+		return verificationTypes;
+	}
+
+	// Data Flow Analysis ////////////////////////////////////////////////////////
+
+	private Frame getInitialFrame() {
+		String[] locals = new String[this.maxLocals];
+		Arrays.fill(locals, TOP);
+
+		int localIndex = 0;
+		if (this.isStatic == false) {
+			locals[localIndex++] = this.methodName.equals(CONSTRUCTOR_METHOD_NAME) ? UNINITIALIZED_THIS : toDescriptor(this.className);
+		}
+		for (String argType : getArgumentTypes(this.descriptor)) {
+			String type = toVerificationType(argType);
+			locals[localIndex++] = type;
+			if (isCategory2Type(type)) {
+				locals[localIndex++] = TOP;
+			}
+		}
+		return new Frame(locals, new ArrayList<String>());
+	}
+
+	private void findFramePositions() {
+		this.isInstructionStart = new boolean[this.code.length];
+		this.isReached = new boolean[this.code.length];
+
+		int pos = 0;
+		while (pos < this.code.length) {
+			this.isInstructionStart[pos] = true;
+			int opcode = getOpcode(pos);
+			int nextPos = pos + getInstructionLength(pos);
+			this.framePositions.addAll(getBranchTargets(pos));
+			if (isUnconditionalJump(opcode) && (nextPos < this.code.length)) {
+				this.framePositions.add(nextPos);
+			}
+			pos = nextPos;
+		}
+		for (ExceptionTableInfo info : this.exceptionTable) {
+			this.framePositions.add(info.getHandlerPc());
+		}
+		for (int framePos : this.framePositions) {
+			if ((framePos >= this.code.length) || (this.isInstructionStart[framePos] == false)) {
+				throw new CompileException("Branch target " + framePos + " is not the start of an instruction.");
+			}
+		}
+	}
+
+	private void analyzeFrom(Frame initialFrame) {
+		mergeFrame(0, initialFrame);
+
+		while (this.workList.isEmpty() == false) {
+			int pos = this.workList.removeFirst();
+			Frame frame = this.frames.get(pos).copy();
+
+			while (true) {
+				this.isReached[pos] = true;
+				int opcode = getOpcode(pos);
+				int nextPos = pos + getInstructionLength(pos);
+
+				mergeExceptionHandlerFrames(pos, frame);
+				execute(pos, frame);
+				mergeExceptionHandlerFrames(pos, frame);
+
+				for (int targetPos : getBranchTargets(pos)) {
+					mergeFrame(targetPos, frame);
+				}
+				if (isUnconditionalJump(opcode) || (nextPos >= this.code.length)) {
+					break;
+				}
+				if (this.framePositions.contains(nextPos)) {
+					mergeFrame(nextPos, frame);
+					break;
+				}
+				pos = nextPos;
+			}
+		}
+	}
+
+	private void mergeFrame(int pos, Frame frame) {
+		Frame existingFrame = this.frames.get(pos);
+		if (existingFrame == null) {
+			this.frames.put(pos, frame.copy());
+		} else if (existingFrame.merge(frame, pos) == false) {
+			return;
+		}
+		if (this.workList.contains(pos) == false) {
+			this.workList.add(pos);
+		}
+	}
+
+	private void mergeExceptionHandlerFrames(int pos, Frame frame) {
+		for (ExceptionTableInfo info : this.exceptionTable) {
+			if ((pos >= info.getStartPc()) && (pos < info.getEndPc())) {
+				List<String> stack = new ArrayList<String>();
+				stack.add(info.getCatchType() == 0 ? THROWABLE : toDescriptor(getClassName(info.getCatchType())));
+				mergeFrame(info.getHandlerPc(), new Frame(frame.getLocals().clone(), stack));
+			}
+		}
+	}
+
+	private List<int[]> getUnreachableRanges() {
+		List<int[]> ranges = new ArrayList<int[]>();
+		int pos = 0;
+		while (pos < this.code.length) {
+			int nextPos = pos + getInstructionLength(pos);
+			if (this.isReached[pos] == false) {
+				int[] lastRange = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+				if ((lastRange != null) && (lastRange[1] == pos)) {
+					lastRange[1] = nextPos;
+				} else {
+					ranges.add(new int[] { pos, nextPos });
+				}
+			}
+			pos = nextPos;
+		}
+		return ranges;
+	}
+
+	// Instructions //////////////////////////////////////////////////////////////
+
+	private int getOpcode(int pos) {
+		return this.code[pos] & 0xff;
+	}
+
+	private int read_u1(int pos) {
+		return this.code[pos] & 0xff;
+	}
+
+	private int read_u2(int pos) {
+		return (read_u1(pos) << 8) | read_u1(pos + 1);
+	}
+
+	private int read_s2(int pos) {
+		return (short) read_u2(pos);
+	}
+
+	private int read_s4(int pos) {
+		return (read_u2(pos) << 16) | read_u2(pos + 2);
+	}
+
+	private static int getSwitchPadding(int pos) {
+		return 3 - (pos % 4);
+	}
+
+	private static boolean isUnconditionalJump(int opcode) {
+		switch (opcode) {
+		case 0xa7: // goto
+		case 0xc8: // goto_w
+		case 0xaa: // tableswitch
+		case 0xab: // lookupswitch
+		case 0xac: // ireturn
+		case 0xad: // lreturn
+		case 0xae: // freturn
+		case 0xaf: // dreturn
+		case 0xb0: // areturn
+		case 0xb1: // return
+		case 0xbf: // athrow
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private int getInstructionLength(int pos) {
+		int opcode = getOpcode(pos);
+		switch (opcode) {
+		case 0x10: // bipush
+		case 0x12: // ldc
+		case 0x15: // iload
+		case 0x16: // lload
+		case 0x17: // fload
+		case 0x18: // dload
+		case 0x19: // aload
+		case 0x36: // istore
+		case 0x37: // lstore
+		case 0x38: // fstore
+		case 0x39: // dstore
+		case 0x3a: // astore
+		case 0xbc: // newarray
+			return 2;
+		case 0x11: // sipush
+		case 0x13: // ldc_w
+		case 0x14: // ldc2_w
+		case 0x84: // iinc
+		case 0xb2: // getstatic
+		case 0xb3: // putstatic
+		case 0xb6: // invokevirtual
+		case 0xb7: // invokespecial
+		case 0xb8: // invokestatic
+		case 0xbb: // new
+		case 0xbd: // anewarray
+		case 0xc0: // checkcast
+		case 0xc1: // instanceof
+			return 3;
+		case 0xc5: // multianewarray
+			return 4;
+		case 0xc8: // goto_w
+			return 5;
+		case 0xaa: { // tableswitch
+			int tablePos = pos + 1 + getSwitchPadding(pos);
+			int low = read_s4(tablePos + 4);
+			int high = read_s4(tablePos + 8);
+			return (tablePos - pos) + 12 + ((high - low + 1) * 4);
+		}
+		case 0xab: { // lookupswitch
+			int tablePos = pos + 1 + getSwitchPadding(pos);
+			int numPairs = read_s4(tablePos + 4);
+			return (tablePos - pos) + 8 + (numPairs * 8);
+		}
+		default:
+			if (((opcode >= 0x99) && (opcode <= 0xa7)) || (opcode == 0xc6) || (opcode == 0xc7)) {
+				return 3; // if<cond>, if_icmp<cond>, if_acmp<cond>, goto, ifnull, ifnonnull
+			}
+			if ((opcode <= 0x0f) || ((opcode >= 0x1a) && (opcode <= 0x35)) || ((opcode >= 0x3b) && (opcode <= 0x83)) || ((opcode >= 0x85) && (opcode <= 0x98)) || ((opcode >= 0xac) && (opcode <= 0xb1)) || (opcode == 0xbe) || (opcode == 0xbf)) {
+				return 1;
+			}
+			throw new CompileException("Unsupported opcode 0x" + Integer.toHexString(opcode) + " at pos " + pos + ".");
+		}
+	}
+
+	private List<Integer> getBranchTargets(int pos) {
+		List<Integer> targets = new ArrayList<Integer>();
+		int opcode = getOpcode(pos);
+		if (((opcode >= 0x99) && (opcode <= 0xa7)) || (opcode == 0xc6) || (opcode == 0xc7)) {
+			targets.add(pos + read_s2(pos + 1));
+		} else if (opcode == 0xc8) { // goto_w
+			targets.add(pos + read_s4(pos + 1));
+		} else if (opcode == 0xaa) { // tableswitch
+			int tablePos = pos + 1 + getSwitchPadding(pos);
+			targets.add(pos + read_s4(tablePos));
+			int low = read_s4(tablePos + 4);
+			int high = read_s4(tablePos + 8);
+			for (int i = 0; i < (high - low + 1); i++) {
+				targets.add(pos + read_s4(tablePos + 12 + (i * 4)));
+			}
+		} else if (opcode == 0xab) { // lookupswitch
+			int tablePos = pos + 1 + getSwitchPadding(pos);
+			targets.add(pos + read_s4(tablePos));
+			int numPairs = read_s4(tablePos + 4);
+			for (int i = 0; i < numPairs; i++) {
+				targets.add(pos + read_s4(tablePos + 8 + (i * 8) + 4));
+			}
+		}
+		return targets;
+	}
+
+	private void execute(int pos, Frame frame) {
+		String[] locals = frame.getLocals();
+		List<String> stack = frame.getStack();
+		int opcode = getOpcode(pos);
+
+		switch (opcode) {
+		case 0x00: // nop
+			break;
+		case 0x01: // aconst_null
+			push(stack, NULL);
+			break;
+		case 0x02: // iconst_m1
+		case 0x03: // iconst_0
+		case 0x04: // iconst_1
+		case 0x05: // iconst_2
+		case 0x06: // iconst_3
+		case 0x07: // iconst_4
+		case 0x08: // iconst_5
+		case 0x10: // bipush
+		case 0x11: // sipush
+			push(stack, INTEGER);
+			break;
+		case 0x0b: // fconst_0
+		case 0x0c: // fconst_1
+		case 0x0d: // fconst_2
+			push(stack, FLOAT);
+			break;
+		case 0x12: // ldc
+			push(stack, getConstantType(read_u1(pos + 1)));
+			break;
+		case 0x13: // ldc_w
+			push(stack, getConstantType(read_u2(pos + 1)));
+			break;
+		case 0x15: // iload
+		case 0x17: // fload
+		case 0x19: // aload
+			push(stack, load(locals, read_u1(pos + 1), pos));
+			break;
+		case 0x1a: // iload_0
+		case 0x1b: // iload_1
+		case 0x1c: // iload_2
+		case 0x1d: // iload_3
+			push(stack, load(locals, opcode - 0x1a, pos));
+			break;
+		case 0x22: // fload_0
+		case 0x23: // fload_1
+		case 0x24: // fload_2
+		case 0x25: // fload_3
+			push(stack, load(locals, opcode - 0x22, pos));
+			break;
+		case 0x2a: // aload_0
+		case 0x2b: // aload_1
+		case 0x2c: // aload_2
+		case 0x2d: // aload_3
+			push(stack, load(locals, opcode - 0x2a, pos));
+			break;
+		case 0x2e: // iaload
+		case 0x33: // baload
+		case 0x34: // caload
+		case 0x35: // saload
+			pop(stack, 2, pos);
+			push(stack, INTEGER);
+			break;
+		case 0x30: // faload
+			pop(stack, 2, pos);
+			push(stack, FLOAT);
+			break;
+		case 0x32: { // aaload
+			pop(stack, 1, pos);
+			String arrayType = pop(stack, 1, pos);
+			push(stack, arrayType.equals(NULL) ? NULL : arrayType.substring(1));
+			break;
+		}
+		case 0x36: // istore
+		case 0x38: // fstore
+		case 0x3a: // astore
+			store(locals, read_u1(pos + 1), pop(stack, 1, pos), pos);
+			break;
+		case 0x3b: // istore_0
+		case 0x3c: // istore_1
+		case 0x3d: // istore_2
+		case 0x3e: // istore_3
+			store(locals, opcode - 0x3b, pop(stack, 1, pos), pos);
+			break;
+		case 0x43: // fstore_0
+		case 0x44: // fstore_1
+		case 0x45: // fstore_2
+		case 0x46: // fstore_3
+			store(locals, opcode - 0x43, pop(stack, 1, pos), pos);
+			break;
+		case 0x4b: // astore_0
+		case 0x4c: // astore_1
+		case 0x4d: // astore_2
+		case 0x4e: // astore_3
+			store(locals, opcode - 0x4b, pop(stack, 1, pos), pos);
+			break;
+		case 0x4f: // iastore
+		case 0x51: // fastore
+		case 0x53: // aastore
+		case 0x54: // bastore
+		case 0x55: // castore
+		case 0x56: // sastore
+			pop(stack, 3, pos);
+			break;
+		case 0x57: // pop
+			pop(stack, 1, pos);
+			break;
+		case 0x58: // pop2
+			pop(stack, 2, pos);
+			break;
+		case 0x59: { // dup
+			String type = pop(stack, 1, pos);
+			push(stack, type);
+			push(stack, type);
+			break;
+		}
+		case 0x5a: { // dup_x1
+			String type1 = pop(stack, 1, pos);
+			String type2 = pop(stack, 1, pos);
+			push(stack, type1);
+			push(stack, type2);
+			push(stack, type1);
+			break;
+		}
+		case 0x5b: { // dup_x2
+			String type1 = pop(stack, 1, pos);
+			String type2 = pop(stack, 1, pos);
+			String type3 = pop(stack, 1, pos);
+			push(stack, type1);
+			push(stack, type3);
+			push(stack, type2);
+			push(stack, type1);
+			break;
+		}
+		case 0x5c: { // dup2
+			String type1 = pop(stack, 1, pos);
+			String type2 = pop(stack, 1, pos);
+			push(stack, type2);
+			push(stack, type1);
+			push(stack, type2);
+			push(stack, type1);
+			break;
+		}
+		case 0x5d: { // dup2_x1
+			String type1 = pop(stack, 1, pos);
+			String type2 = pop(stack, 1, pos);
+			String type3 = pop(stack, 1, pos);
+			push(stack, type2);
+			push(stack, type1);
+			push(stack, type3);
+			push(stack, type2);
+			push(stack, type1);
+			break;
+		}
+		case 0x5f: { // swap
+			String type1 = pop(stack, 1, pos);
+			String type2 = pop(stack, 1, pos);
+			push(stack, type1);
+			push(stack, type2);
+			break;
+		}
+		case 0x60: // iadd
+		case 0x64: // isub
+		case 0x68: // imul
+		case 0x6c: // idiv
+		case 0x70: // irem
+		case 0x78: // ishl
+		case 0x7a: // ishr
+		case 0x7c: // iushr
+		case 0x7e: // iand
+		case 0x80: // ior
+		case 0x82: // ixor
+		case 0x95: // fcmpl
+		case 0x96: // fcmpg
+			pop(stack, 2, pos);
+			push(stack, INTEGER);
+			break;
+		case 0x62: // fadd
+		case 0x66: // fsub
+		case 0x6a: // fmul
+		case 0x6e: // fdiv
+		case 0x72: // frem
+			pop(stack, 2, pos);
+			push(stack, FLOAT);
+			break;
+		case 0x63: // dadd
+		case 0x67: // dsub
+		case 0x6b: // dmul
+		case 0x6f: // ddiv
+		case 0x73: // drem
+			pop(stack, 4, pos);
+			push(stack, DOUBLE);
+			break;
+		case 0x74: // ineg
+		case 0x76: // fneg
+		case 0x91: // i2b
+		case 0x92: // i2c
+		case 0x93: // i2s
+			break;
+		case 0x77: // dneg
+			break;
+		case 0x84: // iinc
+			load(locals, read_u1(pos + 1), pos);
+			break;
+		case 0x86: // i2f
+			pop(stack, 1, pos);
+			push(stack, FLOAT);
+			break;
+		case 0x87: // i2d
+		case 0x8d: // f2d
+			pop(stack, 1, pos);
+			push(stack, DOUBLE);
+			break;
+		case 0x8b: // f2i
+			pop(stack, 1, pos);
+			push(stack, INTEGER);
+			break;
+		case 0x8e: // d2i
+			pop(stack, 2, pos);
+			push(stack, INTEGER);
+			break;
+		case 0x90: // d2f
+			pop(stack, 2, pos);
+			push(stack, FLOAT);
+			break;
+		case 0x97: // dcmpl
+		case 0x98: // dcmpg
+			pop(stack, 4, pos);
+			push(stack, INTEGER);
+			break;
+		case 0x99: // ifeq
+		case 0x9a: // ifne
+		case 0x9b: // iflt
+		case 0x9c: // ifge
+		case 0x9d: // ifgt
+		case 0x9e: // ifle
+		case 0xc6: // ifnull
+		case 0xc7: // ifnonnull
+		case 0xaa: // tableswitch
+		case 0xab: // lookupswitch
+		case 0xac: // ireturn
+		case 0xae: // freturn
+		case 0xb0: // areturn
+		case 0xbf: // athrow
+			pop(stack, 1, pos);
+			break;
+		case 0x9f: // if_icmpeq
+		case 0xa0: // if_icmpne
+		case 0xa1: // if_icmplt
+		case 0xa2: // if_icmpge
+		case 0xa3: // if_icmpgt
+		case 0xa4: // if_icmple
+		case 0xa5: // if_acmpeq
+		case 0xa6: // if_acmpne
+		case 0xaf: // dreturn
+			pop(stack, 2, pos);
+			break;
+		case 0xa7: // goto
+		case 0xc8: // goto_w
+		case 0xb1: // return
+			break;
+		case 0xb2: // getstatic
+			push(stack, toVerificationType(getMemberDescriptor(read_u2(pos + 1))));
+			break;
+		case 0xb3: // putstatic
+			pop(stack, getSize(toVerificationType(getMemberDescriptor(read_u2(pos + 1)))), pos);
+			break;
+		case 0xb6: // invokevirtual
+		case 0xb7: // invokespecial
+		case 0xb8: // invokestatic
+			invoke(pos, opcode, frame);
+			break;
+		case 0xbb: // new
+			push(stack, UNINITIALIZED_PREFIX + pos);
+			break;
+		case 0xbc: // newarray
+			pop(stack, 1, pos);
+			push(stack, "[" + getPrimitiveArrayComponentType(read_u1(pos + 1)));
+			break;
+		case 0xbd: // anewarray
+			pop(stack, 1, pos);
+			push(stack, "[" + toDescriptor(getClassName(read_u2(pos + 1))));
+			break;
+		case 0xbe: // arraylength
+		case 0xc1: // instanceof
+			pop(stack, 1, pos);
+			push(stack, INTEGER);
+			break;
+		case 0xc0: // checkcast
+			pop(stack, 1, pos);
+			push(stack, toDescriptor(getClassName(read_u2(pos + 1))));
+			break;
+		case 0xc5: // multianewarray
+			pop(stack, read_u1(pos + 3), pos);
+			push(stack, toDescriptor(getClassName(read_u2(pos + 1))));
+			break;
+		default:
+			throw new CompileException("Unsupported opcode 0x" + Integer.toHexString(opcode) + " at pos " + pos + ".");
+		}
+
+		this.maxStack = Math.max(this.maxStack, stack.size());
+	}
+
+	private void invoke(int pos, int opcode, Frame frame) {
+		List<String> stack = frame.getStack();
+		int methodRefIndex = read_u2(pos + 1);
+		String methodDescriptor = getMemberDescriptor(methodRefIndex);
+
+		List<String> argTypes = getArgumentTypes(methodDescriptor);
+		for (int i = argTypes.size() - 1; i >= 0; i--) {
+			pop(stack, getSize(toVerificationType(argTypes.get(i))), pos);
+		}
+		if (opcode != 0xb8) { // not invokestatic
+			String objectType = pop(stack, 1, pos);
+			if (opcode == 0xb7) { // invokespecial
+				String methodName = getMemberName(methodRefIndex);
+				if (methodName.equals(CONSTRUCTOR_METHOD_NAME)) {
+					String initializedType = objectType.equals(UNINITIALIZED_THIS) ? toDescriptor(this.className) : toDescriptor(getClassName(getMemberClassIndex(methodRefIndex)));
+					replaceType(frame, objectType, initializedType);
+				}
+			}
+		}
+
+		String returnType = methodDescriptor.substring(methodDescriptor.indexOf(')') + 1);
+		if (returnType.equals("V") == false) {
+			push(stack, toVerificationType(returnType));
+		}
+	}
+
+	private static void replaceType(Frame frame, String oldType, String newType) {
+		String[] locals = frame.getLocals();
+		for (int i = 0; i < locals.length; i++) {
+			if (locals[i].equals(oldType)) {
+				locals[i] = newType;
+			}
+		}
+		List<String> stack = frame.getStack();
+		for (int i = 0; i < stack.size(); i++) {
+			if (stack.get(i).equals(oldType)) {
+				stack.set(i, newType);
+			}
+		}
+	}
+
+	private static void push(List<String> stack, String type) {
+		stack.add(type);
+		if (isCategory2Type(type)) {
+			stack.add(TOP);
+		}
+	}
+
+	// pops the given number of stack slots and returns the type of the deepest one
+	private static String pop(List<String> stack, int numSlots, int pos) {
+		if (stack.size() < numSlots) {
+			throw new CompileException("Operand stack underflow at pos " + pos + ".");
+		}
+		String type = null;
+		for (int i = 0; i < numSlots; i++) {
+			type = stack.remove(stack.size() - 1);
+		}
+		return type;
+	}
+
+	private String load(String[] locals, int localIndex, int pos) {
+		if ((localIndex >= locals.length) || locals[localIndex].equals(TOP)) {
+			throw new CompileException("Local variable " + localIndex + " used before assignment at pos " + pos + ".");
+		}
+		this.maxLocalIndex = Math.max(this.maxLocalIndex, localIndex);
+		return locals[localIndex];
+	}
+
+	private void store(String[] locals, int localIndex, String type, int pos) {
+		if (localIndex >= locals.length) {
+			throw new CompileException("Local variable " + localIndex + " exceeds max locals at pos " + pos + ".");
+		}
+		this.maxLocalIndex = Math.max(this.maxLocalIndex, localIndex);
+		locals[localIndex] = type;
+	}
+
+	// Types /////////////////////////////////////////////////////////////////////
+
+	private static boolean isReferenceType(String type) {
+		return type.startsWith("L") || type.startsWith("[") || type.equals(NULL);
+	}
+
+	private static boolean isCategory2Type(String type) {
+		return type.equals(DOUBLE) || type.equals(LONG);
+	}
+
+	private static int getSize(String type) {
+		return isCategory2Type(type) ? 2 : 1;
+	}
+
+	private static String toVerificationType(String fieldDescriptor) {
+		char c = fieldDescriptor.charAt(0);
+		if ((c == 'Z') || (c == 'B') || (c == 'C') || (c == 'S') || (c == 'I')) {
+			return INTEGER;
+		}
+		return fieldDescriptor; // F, D, J, L...; and [...
+	}
+
+	private static String toDescriptor(String className) {
+		if (className.startsWith("[")) {
+			return className; // array class names are descriptors already
+		}
+		return "L" + className + ";";
+	}
+
+	private static List<String> getArgumentTypes(String methodDescriptor) {
+		List<String> argTypes = new ArrayList<String>();
+		int pos = 1; // skip '('
+		while (methodDescriptor.charAt(pos) != ')') {
+			int beginPos = pos;
+			while (methodDescriptor.charAt(pos) == '[') {
+				pos++;
+			}
+			if (methodDescriptor.charAt(pos) == 'L') {
+				pos = methodDescriptor.indexOf(';', pos);
+			}
+			pos++;
+			argTypes.add(methodDescriptor.substring(beginPos, pos));
+		}
+		return argTypes;
+	}
+
+	private static String getPrimitiveArrayComponentType(int arrayType) {
+		switch (arrayType) {
+		case 4:
+			return "Z";
+		case 5:
+			return "C";
+		case 6:
+			return "F";
+		case 7:
+			return "D";
+		case 8:
+			return "B";
+		case 9:
+			return "S";
+		case 10:
+			return "I";
+		case 11:
+			return "J";
+		default:
+			throw new CompileException("Unknown array type " + arrayType + ".");
+		}
+	}
+
+	// Constant Pool /////////////////////////////////////////////////////////////
+
+	// NOTE: serialized constant pool indexes are 1-based
+	private ConstantPoolInfo getConstantPoolInfo(int cpIndex) {
+		return this.constantPool.get(cpIndex - 1);
+	}
+
+	private String getUtf8(int index) {
+		return ((ConstantPoolInfo_Utf8) this.constantPool.get(index)).getString();
+	}
+
+	private String getConstantType(int cpIndex) {
+		ConstantPoolInfo info = getConstantPoolInfo(cpIndex);
+		if (info instanceof ConstantPoolInfo_Float) {
+			return FLOAT;
+		}
+		if (info instanceof ConstantPoolInfo_String) {
+			return STRING;
+		}
+		throw new CompileException("Unsupported constant at constant pool index " + cpIndex + ".");
+	}
+
+	private String getClassName(int cpIndex) {
+		ConstantPoolInfo_Class info = (ConstantPoolInfo_Class) getConstantPoolInfo(cpIndex);
+		return getUtf8(info.getNameIndex());
+	}
+
+	private ConstantPoolInfo_NameAndType getMemberNameAndType(int cpIndex) {
+		ConstantPoolInfo info = getConstantPoolInfo(cpIndex);
+		if (info instanceof ConstantPoolInfo_FieldRef) {
+			return (ConstantPoolInfo_NameAndType) this.constantPool.get(((ConstantPoolInfo_FieldRef) info).getNameAndTypeIndex());
+		}
+		return (ConstantPoolInfo_NameAndType) this.constantPool.get(((ConstantPoolInfo_MethodRef) info).getNameAndTypeIndex());
+	}
+
+	private int getMemberClassIndex(int cpIndex) {
+		ConstantPoolInfo info = getConstantPoolInfo(cpIndex);
+		if (info instanceof ConstantPoolInfo_FieldRef) {
+			return ((ConstantPoolInfo_FieldRef) info).getClassIndex() + 1;
+		}
+		return ((ConstantPoolInfo_MethodRef) info).getClassIndex() + 1;
+	}
+
+	private String getMemberName(int cpIndex) {
+		return getUtf8(getMemberNameAndType(cpIndex).getNameIndex());
+	}
+
+	private String getMemberDescriptor(int cpIndex) {
+		return getUtf8(getMemberNameAndType(cpIndex).getDescriptorIndex());
+	}
+}
@@ -48,6 +48,10 @@ public class ConstantPoolInfo {
 		this.tag = tag;
 	}
 
+	public int getLength() {
+		return 1;
+	}
+
 	public void write(ByteOutStream o) {
 		o.write_u1(this.tag);
 	}
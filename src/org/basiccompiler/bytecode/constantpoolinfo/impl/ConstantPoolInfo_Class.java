@@ -47,6 +47,11 @@ public class ConstantPoolInfo_Class extends ConstantPoolInfo {
 		return this.nameIndex;
 	}
 
+	@Override
+	public int getLength() {
+		return super.getLength() + 2;
+	}
+
 	@Override
 	public void write(ByteOutStream o) {
 		super.write(o);
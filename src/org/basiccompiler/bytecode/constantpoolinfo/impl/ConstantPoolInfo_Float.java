@@ -47,6 +47,11 @@ public class ConstantPoolInfo_Float extends ConstantPoolInfo {
 		return this.aFloat;
 	}
 
+	@Override
+	public int getLength() {
+		return super.getLength() + 4;
+	}
+
 	@Override
 	public void write(ByteOutStream o) {
 		super.write(o);
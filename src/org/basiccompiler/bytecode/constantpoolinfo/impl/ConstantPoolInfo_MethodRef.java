@@ -53,6 +53,11 @@ public class ConstantPoolInfo_MethodRef extends ConstantPoolInfo {
 		return this.nameAndTypeIndex;
 	}
 
+	@Override
+	public int getLength() {
+		return super.getLength() + 4;
+	}
+
 	@Override
 	public void write(ByteOutStream o) {
 		super.write(o);
@@ -47,6 +47,11 @@ public class ConstantPoolInfo_String extends ConstantPoolInfo {
 		return this.stringIndex;
 	}
 
+	@Override
+	public int getLength() {
+		return super.getLength() + 2;
+	}
+
 	@Override
 	public void write(ByteOutStream o) {
 		super.write(o);
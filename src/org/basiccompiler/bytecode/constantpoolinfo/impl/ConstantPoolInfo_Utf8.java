@@ -31,60 +31,65 @@
 
 package org.basiccompiler.bytecode.constantpoolinfo.impl;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-
 import org.basiccompiler.bytecode.ConstantPool;
 import org.basiccompiler.bytecode.constantpoolinfo.ConstantPoolInfo;
 import org.basiccompiler.compiler.etc.ByteOutStream;
 
 public class ConstantPoolInfo_Utf8 extends ConstantPoolInfo {
 	private final String string;
+	private final byte[] modUtf8; // u1[]
 
 	public ConstantPoolInfo_Utf8(String string) {
 		super(TAG_UTF8);
 		this.string = string;
+		this.modUtf8 = toModifiedUtf8(string);
 	}
 
 	public String getString() {
 		return this.string;
 	}
 
+	@Override
+	public int getLength() {
+		return super.getLength() + 2 + this.modUtf8.length;
+	}
+
 	@Override
 	public void write(ByteOutStream o) {
 		super.write(o);
-
-		byte[] modUtf8 = toModifiedUtf8(this.string);
-		o.write_u2(modUtf8.length);
-		for (byte b : modUtf8) {
-			o.write_u1(b);
-		}
+		o.write_u2(this.modUtf8.length);
+		o.write_bytes(this.modUtf8);
 	}
 
-	private byte[] toModifiedUtf8(String string) {
-		ByteArrayOutputStream b = new ByteArrayOutputStream();
-
+	private static byte[] toModifiedUtf8(String string) {
+		int length = 0;
 		for (int i = 0; i < string.length(); i++) {
 			char c = string.charAt(i);
 			if ((c >= 0x0001) && (c <= 0x007F)) {
-				b.write(0x0000 | (c & 0x007F));
+				length += 1;
 			} else if ((c == 0x0000) || ((c >= 0x0080) && (c <= 0x07FF))) {
-				b.write(0x00C0 | ((c >> 6) & 0x001F));
-				b.write(0x0080 | (c & 0x003F));
-			} else if ((c >= 0x0800) && (c <= 0xFFFF)) {
-				b.write(0x00E0 | ((c >> 12) & 0x000F));
-				b.write(0x0080 | ((c >> 6) & 0x003F));
-				b.write(0x0080 | (c & 0x003F));
+				length += 2;
+			} else {
+				length += 3;
 			}
 		}
 
-		try {
-			b.flush();
-			b.close();
-		} catch (IOException e) {
-			// ignore
+		byte[] b = new byte[length];
+		int pos = 0;
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if ((c >= 0x0001) && (c <= 0x007F)) {
+				b[pos++] = (byte) (0x0000 | (c & 0x007F));
+			} else if ((c == 0x0000) || ((c >= 0x0080) && (c <= 0x07FF))) {
+				b[pos++] = (byte) (0x00C0 | ((c >> 6) & 0x001F));
+				b[pos++] = (byte) (0x0080 | (c & 0x003F));
+			} else {
+				b[pos++] = (byte) (0x00E0 | ((c >> 12) & 0x000F));
+				b[pos++] = (byte) (0x0080 | ((c >> 6) & 0x003F));
+				b[pos++] = (byte) (0x0080 | (c & 0x003F));
+			}
 		}
-		return b.toByteArray();
+		return b;
 	}
 
 	public static int addAndGetIndex(ConstantPool constantPool, String string) {
@@ -62,37 +62,46 @@ public class CodeAttributeInfo {
 	// private int exceptionTableLength;               // u2
 	private final ExceptionTableInfo[] exceptionTable; // exception_table[]
 	// private int attributesCount;                    // u2
-	private final Object[] attributeInfos;             // attribute_info[]
+	private final StackMapTableAttributeInfo stackMapTable; // attribute_info[], optional
 
-	public CodeAttributeInfo(ConstantPool constantPool, int maxLocals, byte[] code, ExceptionTableInfo[] exceptionTable) {
+	public CodeAttributeInfo(ConstantPool constantPool, int maxStack, int maxLocals, byte[] code, ExceptionTableInfo[] exceptionTable, StackMapTableAttributeInfo stackMapTable) {
 		this.attributeNameIndex = ConstantPoolInfo_Utf8.addAndGetIndex(constantPool, CODE_ID);
 		// this.attributeLength calculated implicitly in write()
-		this.maxStack = 100; // TODO: variable max operand stack size
+		this.maxStack = maxStack;
 		this.maxLocals = maxLocals;
 		// this.codeLength calculated implicitly in write()
 		this.code = code;
 		// this.exceptionTableLength calculated implicitly in write()
 		this.exceptionTable = exceptionTable;
 		// this.attributesCount calculated implicitly in write()
-		this.attributeInfos = new Object[0];
+		this.stackMapTable = ((stackMapTable != null) && (stackMapTable.isEmpty() == false)) ? stackMapTable : null;
+	}
+
+	public int getLength() {
+		return 6 + getAttributeLength();
+	}
+
+	private int getAttributeLength() {
+		int attributesLength = (this.stackMapTable != null) ? this.stackMapTable.getLength() : 0;
+		return 12 + this.code.length + (this.exceptionTable.length * 2 * 4) + attributesLength;
 	}
 
 	public void write(ByteOutStream o) {
 		o.write_u2(this.attributeNameIndex + 1); // NOTE: serialized constant pool indexes are 1-based
-		o.write_u4(12 + this.code.length + (this.exceptionTable.length * 2 * 4));
+		o.write_u4(getAttributeLength());
 		o.write_u2(this.maxStack);
 		o.write_u2(this.maxLocals);
 		o.write_u4(this.code.length);
-		for (int i = 0; i < this.code.length; i++) {
-			o.write_u1(this.code[i]);
-		}
+		o.write_bytes(this.code);
 		o.write_u2(this.exceptionTable.length);
 		for (int i = 0; i < this.exceptionTable.length; i++) {
 			this.exceptionTable[i].write(o);
 		}
-		o.write_u2(this.attributeInfos.length);
-		for (int i = 0; i < this.attributeInfos.length; i++) {
-			// not implemented, not needed yet
+		if (this.stackMapTable != null) {
+			o.write_u2(1);
+			this.stackMapTable.write(o);
+		} else {
+			o.write_u2(0);
 		}
 	}
 }
\ No newline at end of file
@@ -51,6 +51,22 @@ public class ExceptionTableInfo {
 		this.catch_type = catch_type;
 	}
 
+	public int getStartPc() {
+		return this.start_pc;
+	}
+
+	public int getEndPc() {
+		return this.end_pc;
+	}
+
+	public int getHandlerPc() {
+		return this.handler_pc;
+	}
+
+	public int getCatchType() {
+		return this.catch_type;
+	}
+
 	public void write(ByteOutStream o) {
 		o.write_u2(this.start_pc);
 		o.write_u2(this.end_pc);
@@ -54,6 +54,10 @@ public class FieldInfo {
 		this.attributes = new Object[0];
 	}
 
+	public int getLength() {
+		return 8; // no attributes
+	}
+
 	public void write(ByteOutStream o) {
 		o.write_u2(this.accessFlags);
 		o.write_u2(this.nameIndex + 1); // NOTE: serialized constant pool indexes are 1-based
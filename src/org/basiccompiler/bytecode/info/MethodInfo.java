@@ -54,6 +54,10 @@ public class MethodInfo {
 		this.attributes = codeAttributeInfo;
 	}
 
+	public int getLength() {
+		return 8 + this.attributes.getLength();
+	}
+
 	public void write(ByteOutStream o) {
 		o.write_u2(this.accessFlags);
 		o.write_u2(this.nameIndex + 1); // NOTE: serialized constant pool indexes are 1-based
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2015, Lorenz Wiest
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.basiccompiler.bytecode.info;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.basiccompiler.bytecode.ConstantPool;
+import org.basiccompiler.bytecode.constantpoolinfo.impl.ConstantPoolInfo_Class;
+import org.basiccompiler.bytecode.constantpoolinfo.impl.ConstantPoolInfo_Utf8;
+import org.basiccompiler.compiler.etc.ByteOutStream;
+
+public class StackMapTableAttributeInfo {
+	// u2 attribute_name_index;
+	// u4 attribute_length;
+	// u2 number_of_entries;
+	// stack_map_frame entries[number_of_entries];
+
+	private static final String STACK_MAP_TABLE_ID = "StackMapTable";
+
+	// verification types, reference types are given by their field descriptors
+	public static final String TOP = "Top";
+	public static final String INTEGER = "I";
+	public static final String FLOAT = "F";
+	public static final String DOUBLE = "D";
+	public static final String LONG = "J";
+	public static final String NULL = "Null";
+	public static final String UNINITIALIZED_THIS = "UninitializedThis";
+	public static final String UNINITIALIZED_PREFIX = "Uninitialized@";
+
+	private static final int SAME_FRAME_MAX = 63;
+	private static final int SAME_LOCALS_1_STACK_ITEM_FRAME = 64;
+	private static final int SAME_LOCALS_1_STACK_ITEM_FRAME_MAX = 127;
+	private static final int SAME_LOCALS_1_STACK_ITEM_FRAME_EXTENDED = 247;
+	private static final int SAME_FRAME_EXTENDED = 251;
+	private static final int FULL_FRAME = 255;
+
+	private final ConstantPool constantPool;
+	private final int attributeNameIndex;   // u2
+	// private int attributeLength;         // u4
+	private int numberOfEntries;            // u2
+	private final ByteOutStream entries = new ByteOutStream(); // stack_map_frame[]
+
+	private int lastPos = -1;
+	private List<String> lastLocals;
+
+	public StackMapTableAttributeInfo(ConstantPool constantPool, List<String> initialLocals) {
+		this.constantPool = constantPool;
+		this.attributeNameIndex = ConstantPoolInfo_Utf8.addAndGetIndex(constantPool, STACK_MAP_TABLE_ID);
+		this.lastLocals = new ArrayList<String>(initialLocals);
+	}
+
+	public boolean isEmpty() {
+		return this.numberOfEntries == 0;
+	}
+
+	public void addFrame(int pos, List<String> locals, List<String> stack) {
+		int offsetDelta = pos - this.lastPos - 1;
+		boolean isSameLocals = locals.equals(this.lastLocals);
+
+		if (isSameLocals && stack.isEmpty()) {
+			if (offsetDelta <= SAME_FRAME_MAX) {
+				this.entries.write_u1(offsetDelta);
+			} else {
+				this.entries.write_u1(SAME_FRAME_EXTENDED);
+				this.entries.write_u2(offsetDelta);
+			}
+		} else if (isSameLocals && (stack.size() == 1)) {
+			if (offsetDelta <= (SAME_LOCALS_1_STACK_ITEM_FRAME_MAX - SAME_LOCALS_1_STACK_ITEM_FRAME)) {
+				this.entries.write_u1(SAME_LOCALS_1_STACK_ITEM_FRAME + offsetDelta);
+			} else {
+				this.entries.write_u1(SAME_LOCALS_1_STACK_ITEM_FRAME_EXTENDED);
+				this.entries.write_u2(offsetDelta);
+			}
+			writeVerificationType(stack.get(0));
+		} else {
+			this.entries.write_u1(FULL_FRAME);
+			this.entries.write_u2(offsetDelta);
+			this.entries.write_u2(locals.size());
+			for (String type : locals) {
+				writeVerificationType(type);
+			}
+			this.entries.write_u2(stack.size());
+			for (String type : stack) {
+				writeVerificationType(type);
+			}
+		}
+
+		this.numberOfEntries++;
+		this.lastPos = pos;
+		this.lastLocals = new ArrayList<String>(locals);
+	}
+
+	private void writeVerificationType(String type) {
+		if (type.equals(TOP)) {
+			this.entries.write_u1(0);
+		} else if (type.equals(INTEGER)) {
+			this.entries.write_u1(1);
+		} else if (type.equals(FLOAT)) {
+			this.entries.write_u1(2);
+		} else if (type.equals(DOUBLE)) {
+			this.entries.write_u1(3);
+		} else if (type.equals(LONG)) {
+			this.entries.write_u1(4);
+		} else if (type.equals(NULL)) {
+			this.entries.write_u1(5);
+		} else if (type.equals(UNINITIALIZED_THIS)) {
+			this.entries.write_u1(6);
+		} else if (type.startsWith(UNINITIALIZED_PREFIX)) {
+			this.entries.write_u1(8);
+			this.entries.write_u2(Integer.parseInt(type.substring(UNINITIALIZED_PREFIX.length())));
+		} else {
+			String className = type.startsWith("L") ? type.substring(1, type.length() - 1) : type;
+			this.entries.write_u1(7);
+			this.entries.write_u2(ConstantPoolInfo_Class.addAndGetIndex(this.constantPool, className) + 1); // NOTE: serialized constant pool indexes are 1-based
+		}
+	}
+
+	public int getLength() {
+		return 6 + 2 + this.entries.size();
+	}
+
+	public void write(ByteOutStream o) {
+		o.write_u2(this.attributeNameIndex + 1); // NOTE: serialized constant pool indexes are 1-based
+		o.write_u4(2 + this.entries.size());
+		o.write_u2(this.numberOfEntries);
+		o.write_bytes(this.entries);
+	}
+}
@@ -32,6 +32,8 @@
 package org.basiccompiler.compiler;
 
 import static org.basiccompiler.bytecode.ClassModel.JavaClass.RUNTIME_EXCEPTION;
+import static org.basiccompiler.bytecode.ClassModel.JavaField.SYSTEM_IN;
+import static org.basiccompiler.bytecode.ClassModel.JavaField.SYSTEM_OUT;
 import static org.basiccompiler.bytecode.ClassModel.JavaMethod.EXCEPTION_GET_MESSAGE;
 
 import java.util.ArrayList;
@@ -50,9 +52,15 @@ import org.basiccompiler.bytecode.ClassModel;
 import org.basiccompiler.bytecode.info.ExceptionTableInfo;
 import org.basiccompiler.compiler.etc.ByteOutStream;
 import org.basiccompiler.compiler.etc.CompileException;
+import org.basiccompiler.compiler.etc.EntryPointTable;
+import org.basiccompiler.compiler.etc.EntryPointTable.EntryPoint;
+import org.basiccompiler.compiler.etc.IntegerVariableAnalyzer;
+import org.basiccompiler.compiler.etc.IntegerVariableAnalyzer.Range;
 import org.basiccompiler.compiler.etc.LineNumberTable;
 import org.basiccompiler.compiler.etc.LocalVariableTable;
 import org.basiccompiler.compiler.etc.ReturnTable;
+import org.basiccompiler.compiler.etc.SubroutineAnalyzer;
+import org.basiccompiler.compiler.etc.SubroutineAnalyzer.Subroutine;
 import org.basiccompiler.compiler.library.LibraryManager;
 import org.basiccompiler.compiler.library.LibraryManager.MethodEnum;
 import org.basiccompiler.parser.Parser;
@@ -70,6 +78,7 @@ import org.basiccompiler.parser.nodes.impl.VariableNode;
 import org.basiccompiler.parser.statements.Statement;
 import org.basiccompiler.parser.statements.impl.DataStatement;
 import org.basiccompiler.parser.statements.impl.DefFnStatement;
+import org.basiccompiler.parser.statements.impl.DefIntStatement;
 import org.basiccompiler.parser.statements.impl.DimStatement;
 import org.basiccompiler.parser.statements.impl.EndStatement;
 import org.basiccompiler.parser.statements.impl.ForStatement;
@@ -91,6 +100,7 @@ import org.basiccompiler.parser.statements.impl.StopStatement;
 import org.basiccompiler.parser.statements.impl.SwapStatement;
 import org.basiccompiler.parser.statements.impl.WendStatement;
 import org.basiccompiler.parser.statements.impl.WhileStatement;
+import org.basiccompiler.runtime.BASICRuntime;
 import org.basiccompiler.parser.tokens.FunctionToken;
 import org.basiccompiler.parser.tokens.Token;
 
@@ -98,45 +108,93 @@ public class Compiler {
 	private static final String TAB = "\t";
 	public static final String CR = System.getProperty("line.separator");
 
+	public static final String FIELD_IN = "_in";
+	public static final String FIELD_OUT = "_out";
+
 	public static final String FIELD_CURSOR_POS = "_cursorPos";
 
+	public static final String FIELD_OUT_BUFFER = "_outBuffer";
+	public static final String FIELD_OUT_BUFFER_LEN = "_outBufferLen";
+	public static final int OUT_BUFFER_SIZE = 8192; // holds this many chars before they are printed
+
 	public static final String FIELD_LAST_RND = "_lastRnd";
 
+	public static final String FIELD_FLOAT_TO_CHARS_BUFFER = "_floatToCharsBuffer";
+	public static final String FIELD_POW10_TABLE = "_pow10Table";
+
 	public static final String FIELD_GOSUB_STACK = "_gosubStack";
 	public static final String FIELD_GOSUB_STACK_INDEX = "_gosubStackIndex";
 	public static final int GOSUB_STACK_SIZE = 256; // holds this many nested GOSUB calls
 	public static final int GOSUB_STACK_FRAME_SIZE = 1; // holds 1 int per GOSUB stack frame
 
+	private static final int MAX_LOCAL_INDEX = 0xFF; // local variables are accessed without the wide prefix
+
 	private static final String FOR_POSTFIX_END_VAR = "_end";
 	private static final String FOR_POSTFIX_STEP_VAR = "_step";
 
+	private static final String ARRAY_POSTFIX_STRIDE = "_stride"; // row length of a 2D array, which is held in a 1D array
+	private static final int ARRAY_DEFAULT_STRIDE = 11; // an undimensioned array has the max index 10
+
+	private static final String FIELD_STR_CONST_PREFIX = "_strConst";
+
 	public static final String FIELD_DATA = "_data";
 	public static final String FIELD_DATA_INFO = "_dataInfo";
 	public static final String FIELD_DATA_INDEX = "_dataIndex";
+	public static final String FIELD_NUM_DATA = "_numData";
 
 	private final static String IS_DEF_PREFIX = "_isdef_";
 
 	private static final String LABEL_END = "END";
 
+	private static final String RESET_FIELDS_METHOD_NAME = "_resetFields";
+	private static final String RESET_FIELDS_METHOD_DESCRIPTOR = "()V";
+
+	public static final String FIELD_ENTRY_POINT_METHODS = "_entryPointMethods";
+
+	private static final String SPLIT_METHOD_PREFIX = "_lines";
+	private static final String SPLIT_METHOD_DESCRIPTOR = "(I)I"; // entry point id -> next entry point id
+	private static final int SPLIT_METHOD_LENGTH = ClassModel.MAX_JIT_METHOD_LENGTH / 2; // leaves room for the line which exceeds it
+
+	private static final String SUBROUTINE_METHOD_PREFIX = "_gosub";
+	private static final String SUBROUTINE_METHOD_DESCRIPTOR = "()V";
+
 	private final ClassModel classModel;
 	private ByteOutStream o;
 	private final LibraryManager libraryManager;
-	private final LineNumberTable lineNumberTable;
+	private LineNumberTable lineNumberTable;
 	private final ReturnTable returnTable;
-	private final Stack<WhileInfo> whileCompiletimeStack;
-	private final Stack<ForInfo> forCompiletimeStack;
+	private Stack<WhileInfo> whileCompiletimeStack;
+	private Stack<ForInfo> forCompiletimeStack;
 	private final TreeMap<String /* line number */, List<String> /* constants */> dataMap;
 	private final TreeMap<String /* line number */, List<RestoreInfo>> restoreMap;
 
 	private final Set<String /* varName */> strVariables;
+	private final Map<String /* string */, String /* field name */> strConstants;
 
 	private final Map<String /* varName */, Integer /* var position */> localFnVariables;
 
 	private final List<DefFnStatement> defFns;
 
 	private final LocalVariableTable localVariables;
+	private final Set<String /* varName */> fieldVariables; // scalar variables which cannot be held in locals of main()
+	private final IntegerVariableAnalyzer integerVariableAnalyzer;
+	private final SubroutineAnalyzer subroutineAnalyzer;
 
 	private Map<String /* arrName */, String /* field descriptor*/> arrVariables;
+	private Statement currentStatement; // null while compiling the DEF FN functions
+	private final Set<String /* arrName */> arr2DVariables;
+
+	private boolean isGosubUsed;
+	private boolean isReadNumUsed;
+
+	private int labelCounter; // per compilation, so several programs can be compiled concurrently
+
+	private boolean isSplitMethods;
+	private final List<ByteOutStream> splitMethods;
+	private final EntryPointTable entryPointTable;
+
+	private boolean isSubroutineMethod; // compiling a GOSUB subroutine into a method of its own
+	private final Map<String /* method name */, ByteOutStream> subroutineMethods;
 
 	public Compiler(String className) {
 		this.classModel = new ClassModel(className);
@@ -149,21 +207,89 @@ public class Compiler {
 		this.dataMap = new TreeMap<String, List<String>>();
 		this.restoreMap = new TreeMap<String, List<RestoreInfo>>();
 		this.strVariables = new HashSet<String>();
+		this.strConstants = new LinkedHashMap<String, String>();
 		this.defFns = new ArrayList<DefFnStatement>();
 		this.localFnVariables = new HashMap<String, Integer>();
 		this.localVariables = new LocalVariableTable();
+		this.fieldVariables = new HashSet<String>();
+		this.integerVariableAnalyzer = new IntegerVariableAnalyzer(this.fieldVariables);
+		this.subroutineAnalyzer = new SubroutineAnalyzer();
 		this.arrVariables = new HashMap<String, String>();
+		this.arr2DVariables = new HashSet<String>();
+		this.splitMethods = new ArrayList<ByteOutStream>();
+		this.entryPointTable = new EntryPointTable();
+		this.subroutineMethods = new LinkedHashMap<String, ByteOutStream>();
 	}
 
 	public ClassModel getClassModel() {
 		return this.classModel;
 	}
 
+	public void setSplitMethods(boolean isSplitMethods) {
+		this.isSplitMethods = isSplitMethods;
+	}
+
+	public void setSharedRuntime(boolean isSharedRuntime) {
+		this.libraryManager.setSharedRuntime(isSharedRuntime);
+	}
+
+	public void setClassVersion(int majorVersion) {
+		this.classModel.setMajorVersion(majorVersion);
+	}
+
+	public void compile(List<Statement> statements) {
+		collectFieldVariables(statements);
+		if (this.isSplitMethods == false) {
+			this.subroutineAnalyzer.analyze(statements);
+			collectSubroutineVariables(statements);
+			this.integerVariableAnalyzer.analyze(statements);
+		}
+		for (int i = 0; i < statements.size(); i++) {
+			Subroutine subroutine = this.subroutineAnalyzer.getSubroutine(i);
+			if (subroutine != null) {
+				compileSubroutine(subroutine, statements);
+				i = subroutine.getLastStatementIndex();
+			} else {
+				compile(statements.get(i));
+			}
+		}
+	}
+
+	// The subroutine gets its own line numbers and loops, since control flow never leaves it but by RETURN.
+	private void compileSubroutine(Subroutine subroutine, List<Statement> statements) {
+		ByteOutStream saveStream = this.o;
+		LineNumberTable saveLineNumberTable = this.lineNumberTable;
+		Stack<WhileInfo> saveWhileCompiletimeStack = this.whileCompiletimeStack;
+		Stack<ForInfo> saveForCompiletimeStack = this.forCompiletimeStack;
+
+		this.o = new ByteOutStream(ClassModel.MAX_METHOD_LENGTH);
+		this.lineNumberTable = new LineNumberTable();
+		this.whileCompiletimeStack = new Stack<WhileInfo>();
+		this.forCompiletimeStack = new Stack<ForInfo>();
+		this.isSubroutineMethod = true;
+
+		for (int i = subroutine.getFirstStatementIndex(); i <= subroutine.getLastStatementIndex(); i++) {
+			compile(statements.get(i));
+		}
+		this.lineNumberTable.flush(this.o);
+		this.o.flush();
+		this.subroutineMethods.put(SUBROUTINE_METHOD_PREFIX + subroutine.getLineNumber(), this.o); // RESTORE patches it later
+
+		this.isSubroutineMethod = false;
+		this.o = saveStream;
+		this.lineNumberTable = saveLineNumberTable;
+		this.whileCompiletimeStack = saveWhileCompiletimeStack;
+		this.forCompiletimeStack = saveForCompiletimeStack;
+	}
+
 	public void compile(Statement statement) {
+		this.currentStatement = statement;
 		if (statement instanceof DataStatement) {
 			emitData((DataStatement) statement);
 		} else if (statement instanceof DefFnStatement) {
 			emitDefFn((DefFnStatement) statement);
+		} else if (statement instanceof DefIntStatement) {
+			// ignore, the parser already added the % suffix
 		} else if (statement instanceof DimStatement) {
 			emitDim((DimStatement) statement);
 		} else if (statement instanceof EndStatement) {
@@ -212,18 +338,28 @@ public class Compiler {
 	}
 
 	public void flush() {
-		this.o.label(LABEL_END);
-		this.o.return_();
-
-		flushData();
-		flushForNext();
-		flushRestore();
-		flushWhileWend();
-		this.lineNumberTable.flush(this.o);
-		this.returnTable.flush(this.o);
+		if (this.isSplitMethods) {
+			flushSplitMethods();
+			this.o = new ByteOutStream(ClassModel.MAX_METHOD_LENGTH);
+			flushDispatcher();
+		} else {
+			this.o.label(LABEL_END);
+			this.libraryManager.getMethod(MethodEnum.FLUSH_OUTPUT).emitCall(this.o);
+			this.o.return_();
+
+			flushData();
+			flushForNext();
+			flushRestore();
+			flushWhileWend();
+			this.lineNumberTable.flush(this.o);
+			this.returnTable.flush(this.o);
+			flushSubroutineMethods();
+		}
 
 		int posExceptionHandler = this.o.pos();
 		flushExceptionHandler();
+		int posAnyExceptionHandler = this.o.pos();
+		flushAnyExceptionHandler();
 
 		this.o.flush();
 		byte[] bodyByteCode = this.o.toByteArray();
@@ -233,17 +369,173 @@ public class Compiler {
 		byte[] initByteCode = getInitializationByteCode();
 
 		byte[] byteCode = combineByteCodeParts(initByteCode, bodyByteCode);
-		ExceptionTableInfo[] exceptionTable = getExceptionTable(initByteCode.length + posExceptionHandler);
+		ExceptionTableInfo[] exceptionTable = getExceptionTable(initByteCode.length + posExceptionHandler, initByteCode.length + posAnyExceptionHandler);
 
-		int numLocals = this.localVariables.size();
+		int numLocals = this.localVariables.size() + (this.isSplitMethods ? 1 /* entry point id */ : 0);
 		this.classModel.addMainMethod(numLocals, byteCode, exceptionTable);
 
 		this.libraryManager.flush();
 
+		flushResetFields(); // after flushing all methods, they may add fields!
+
 		this.o.closeGracefully();
 	}
 
+	private void flushResetFields() {
+		ByteOutStream o = new ByteOutStream();
+
+		// reset all number fields to their initial values, so main() can be run more than once
+		for (String fieldName : this.classModel.getFieldNames("I")) {
+			o.iconst_0();
+			o.putstatic(this.classModel.getFieldRefIndex(fieldName, "I"));
+		}
+		for (String fieldName : this.classModel.getFieldNames("F")) {
+			o.fconst_0();
+			o.putstatic(this.classModel.getFieldRefIndex(fieldName, "F"));
+		}
+		o.return_();
+
+		o.flushAndCloseGracefully();
+		this.classModel.addMethod(RESET_FIELDS_METHOD_NAME, RESET_FIELDS_METHOD_DESCRIPTOR, 0, o.toByteArray());
+	}
+
+	private void flushSubroutineMethods() {
+		for (Entry<String /* method name */, ByteOutStream> e : this.subroutineMethods.entrySet()) {
+			ByteOutStream o = e.getValue();
+			this.classModel.addMethod(e.getKey(), SUBROUTINE_METHOD_DESCRIPTOR, 0, o.toByteArray());
+			o.closeGracefully();
+		}
+	}
+
+	private void closeSplitMethod() {
+		this.o.label(LABEL_END);
+		this.o.iconst_m1();
+		this.o.ireturn();
+
+		flushForNext();
+		flushWhileWend();
+
+		// branches to lines of other methods return the line's entry point id to the dispatcher
+		for (String lineNumber : this.lineNumberTable.getUnresolvedLineNumbers()) {
+			this.lineNumberTable.add(this.o.pos(), lineNumber);
+			this.o.iconst(this.entryPointTable.getLineNumberId(lineNumber));
+			this.o.ireturn();
+		}
+		this.lineNumberTable.flush(this.o);
+		this.o.flush();
+
+		this.splitMethods.add(this.o);
+	}
+
+	private boolean isSplitMethodFull() {
+		if (this.forCompiletimeStack.isEmpty() && this.whileCompiletimeStack.isEmpty()) {
+			return this.o.pos() >= SPLIT_METHOD_LENGTH;
+		}
+		return false; // FOR-NEXT and WHILE-WEND loops cannot span methods
+	}
+
+	private void flushSplitMethods() {
+		closeSplitMethod();
+
+		flushData();
+		flushRestore();
+
+		Map<Integer /* id */, EntryPoint> entryPoints = this.entryPointTable.resolve();
+
+		for (int i = 0; i < this.splitMethods.size(); i++) {
+			ByteOutStream o = this.splitMethods.get(i);
+			byte[] entryByteCode = getSplitMethodEntryByteCode(i, entryPoints);
+			byte[] byteCode = combineByteCodeParts(entryByteCode, o.toByteArray());
+			this.classModel.addMethod(SPLIT_METHOD_PREFIX + i, SPLIT_METHOD_DESCRIPTOR, 1, byteCode);
+			o.closeGracefully();
+		}
+
+		StringBuffer strEntryPointMethods = new StringBuffer();
+		for (EntryPoint entryPoint : entryPoints.values()) { // sorted by id
+			strEntryPointMethods.append((char) entryPoint.getMethodIndex());
+		}
+
+		boolean hasEntryPoints = strEntryPointMethods.length() > 0;
+		this.strEntryPointMethodsIndex = hasEntryPoints ? this.classModel.getStringIndex(strEntryPointMethods.toString()) : 0;
+	}
+
+	private byte[] getSplitMethodEntryByteCode(int methodIndex, Map<Integer /* id */, EntryPoint> entryPoints) {
+		Map<Integer /* id */, Integer /* pos */> methodEntryPoints = new TreeMap<Integer, Integer>();
+		for (Entry<Integer, EntryPoint> e : entryPoints.entrySet()) {
+			EntryPoint entryPoint = e.getValue();
+			if (entryPoint.getMethodIndex() == methodIndex) {
+				methodEntryPoints.put(e.getKey(), entryPoint.getPos());
+			}
+		}
+
+		ByteOutStream o = new ByteOutStream();
+
+		// local 0: I entry point id, unknown ids start at the first line of the method
+
+		o.iload_0();
+		o.lookupswitch();
+		int posAfterLookupSwitch = o.pos();
+
+		o.pad4ByteBoundary();
+
+		int posBody = o.pos() + 8 + (8 * methodEntryPoints.size()); // a multiple of 4, as needed by tableswitch in body code
+		o.write_u4(branchOffset(posAfterLookupSwitch, posBody));
+		o.write_u4(methodEntryPoints.size());
+		for (Entry<Integer, Integer> e : methodEntryPoints.entrySet()) {
+			o.write_u4(e.getKey());
+			o.write_u4(branchOffset(posAfterLookupSwitch, posBody + e.getValue()));
+		}
+
+		o.flushAndCloseGracefully();
+		return o.toByteArray();
+	}
+
+	private void flushDispatcher() {
+		int numMethods = this.splitMethods.size();
+		int entryPointLocalIndex = this.localVariables.size() + 1;
+
+		this.o.iconst_m1(); // no entry point id, start at the first line
+		this.o.invokestatic(this.classModel.getMethodRefIndex(SPLIT_METHOD_PREFIX + 0, SPLIT_METHOD_DESCRIPTOR));
+
+		this.o.label("dispatch");
+		this.o.dup();
+		this.o.istore_opt(entryPointLocalIndex);
+		this.o.iflt(LABEL_END);
+
+		this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(FIELD_ENTRY_POINT_METHODS, "[C"));
+		this.o.iload_opt(entryPointLocalIndex);
+		this.o.caload();
+
+		this.o.tableswitch();
+		int posAfterTableSwitch = this.o.pos();
+
+		this.o.pad4ByteBoundary();
+
+		int posDefaultSwitch = this.o.pos();
+		this.o.write_u4(0x00000000); // ...will be patched
+		this.o.write_u4(0);
+		this.o.write_u4(numMethods - 1);
+
+		int posJumpTable = this.o.pos();
+		for (int i = 0; i < numMethods; i++) {
+			this.o.write_u4(0x00000000); // ...will be patched
+		}
+
+		for (int i = 0; i < numMethods; i++) {
+			this.o.patch_u4(posJumpTable + (4 * i), branchOffset(posAfterTableSwitch, this.o.pos()));
+			this.o.iload_opt(entryPointLocalIndex);
+			this.o.invokestatic(this.classModel.getMethodRefIndex(SPLIT_METHOD_PREFIX + i, SPLIT_METHOD_DESCRIPTOR));
+			this.o.goto_("dispatch");
+		}
+
+		this.o.patch_u4(posDefaultSwitch, branchOffset(posAfterTableSwitch, this.o.pos()));
+		this.o.label(LABEL_END);
+		this.libraryManager.getMethod(MethodEnum.FLUSH_OUTPUT).emitCall(this.o);
+		this.o.return_();
+	}
+
 	private void flushDefFns() {
+		this.currentStatement = null; // the functions run wherever they are called
 		for (DefFnStatement defFn : this.defFns) {
 
 			String funcName = defFn.getFuncName();
@@ -275,6 +567,16 @@ public class Compiler {
 
 			o.label("isDefinedAtRuntime");
 
+			// integer function variables are passed as floats, but hold rounded values
+			for (int i = 0; i < numLocals; i++) {
+				if (defFn.getFuncVars()[i].isIntegerVariable()) {
+					o.fload_opt(i);
+					this.libraryManager.getMethod(MethodEnum.FLOAT_TO_INTEGER).emitCall(o);
+					o.i2f();
+					o.fstore_opt(i);
+				}
+			}
+
 			INode funcExpr = defFn.getFuncExpr();
 			if (funcType == NodeType.NUM) {
 				emitNumExpressionToStack(funcExpr);
@@ -299,14 +601,26 @@ public class Compiler {
 		this.o.goto_(LABEL_END);
 	}
 
+	// errors like StackOverflowError are not BASIC runtime errors, but the output printed so far must not get lost
+	private void flushAnyExceptionHandler() {
+		this.libraryManager.getMethod(MethodEnum.FLUSH_OUTPUT).emitCall(this.o);
+		this.o.athrow();
+	}
+
 	private byte[] getInitializationByteCode() {
 		ByteOutStream o = new ByteOutStream();
 
+		o.invokestatic(this.classModel.getMethodRefIndex(RESET_FIELDS_METHOD_NAME, RESET_FIELDS_METHOD_DESCRIPTOR));
+
+		initStreams(o);
+		initOutBuffer(o);
+		initStrConstants(o);
 		initStrVars(o);
 		initArrVars(o);
 		initLocalVars(o);
 		initData(o);
 		initGosubStack(o);
+		initEntryPointMethods(o);
 
 		o.pad4ByteBoundary(); // padding for tableswitch in body code
 		
@@ -314,6 +628,47 @@ public class Compiler {
 		return o.toByteArray();
 	}
 
+	private void initStreams(ByteOutStream o) {
+		int inFieldRef = this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_IN, "Ljava/io/InputStream;");
+		o.getstatic(inFieldRef);
+		o.ifnonnull("skipInitIn");
+		o.getstatic(this.classModel.getJavaFieldRefIndex(SYSTEM_IN));
+		o.putstatic(inFieldRef);
+		o.label("skipInitIn");
+
+		int outFieldRef = this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_OUT, "Ljava/io/PrintStream;");
+		o.getstatic(outFieldRef);
+		o.ifnonnull("skipInitOut");
+		o.getstatic(this.classModel.getJavaFieldRefIndex(SYSTEM_OUT));
+		o.putstatic(outFieldRef);
+		o.label("skipInitOut");
+	}
+
+	private void initOutBuffer(ByteOutStream o) {
+		o.iconst(OUT_BUFFER_SIZE);
+		o.newarray_char();
+		o.putstatic(this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_OUT_BUFFER, "[C"));
+
+		o.iconst_0();
+		o.putstatic(this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_OUT_BUFFER_LEN, "I"));
+	}
+
+	// String literals are shared char arrays, since no library method changes the chars of its arguments.
+	// They are created by the first run of main() only, as they are final fields.
+	private void initStrConstants(ByteOutStream o) {
+		if (this.strConstants.size() > 0) {
+			String label = generateLabel();
+			o.getstatic(this.classModel.addFinalFieldAndGetFieldRefIndex(this.strConstants.values().iterator().next(), "[C"));
+			o.ifnonnull(label);
+			for (Entry<String, String> strConstant : this.strConstants.entrySet()) {
+				o.ldc(this.classModel.getStringIndex(strConstant.getKey()));
+				this.libraryManager.getMethod(MethodEnum.STRING_TO_CHARS).emitCall(o);
+				o.putstatic(this.classModel.addFinalFieldAndGetFieldRefIndex(strConstant.getValue(), "[C"));
+			}
+			o.label(label);
+		}
+	}
+
 	private void initStrVars(ByteOutStream o) {
 		if (this.strVariables.size() > 0) {
 			o.iconst_0();
@@ -337,11 +692,46 @@ public class Compiler {
 			o.iconst_1();
 			o.anewarray(this.classModel.getClassIndex(arrVarFieldDescriptor.substring(1)));
 			o.putstatic(this.classModel.addFieldAndGetFieldRefIndex(arrVarName, arrVarFieldDescriptor));
+			if (this.integerVariableAnalyzer.isImplicitlyDimensioned(arrVarName)) {
+				initImplicitlyDimensionedArrVar(o, arrVarName, arrVarFieldDescriptor);
+			}
+		}
+		for (String arrVarName : this.arr2DVariables) {
+			o.iconst(ARRAY_DEFAULT_STRIDE);
+			o.putstatic(this.classModel.addFieldAndGetFieldRefIndex(arrVarName + ARRAY_POSTFIX_STRIDE, "I"));
+		}
+	}
+
+	// an array without DIM statement gets its implicit DIM at program start instead of at its first access
+	private void initImplicitlyDimensionedArrVar(ByteOutStream o, String arrVarName, String arrVarFieldDescriptor) {
+		o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(arrVarName, arrVarFieldDescriptor));
+		o.iconst(IntegerVariableAnalyzer.IMPLICIT_DIM_MAX_INDEX);
+		o.i2f();
+		if (this.arr2DVariables.contains(arrVarName)) {
+			o.iconst(IntegerVariableAnalyzer.IMPLICIT_DIM_MAX_INDEX);
+			o.i2f();
+			if (arrVarFieldDescriptor.equals("[[I")) {
+				this.libraryManager.getMethod(MethodEnum.DIM_2D_INT_ARRAY).emitCall(o);
+			} else if (arrVarFieldDescriptor.equals("[[F")) {
+				this.libraryManager.getMethod(MethodEnum.DIM_2D_FLOAT_ARRAY).emitCall(o);
+			} else {
+				this.libraryManager.getMethod(MethodEnum.DIM_2D_STRING_ARRAY).emitCall(o);
+			}
+			o.pop(); // the stride, which is initialized like for the lazy DIM
+		} else {
+			if (arrVarFieldDescriptor.equals("[[I")) {
+				this.libraryManager.getMethod(MethodEnum.DIM_1D_INT_ARRAY).emitCall(o);
+			} else if (arrVarFieldDescriptor.equals("[[F")) {
+				this.libraryManager.getMethod(MethodEnum.DIM_1D_FLOAT_ARRAY).emitCall(o);
+			} else {
+				this.libraryManager.getMethod(MethodEnum.DIM_1D_STRING_ARRAY).emitCall(o);
+			}
 		}
 	}
 
 	private void initLocalVars(ByteOutStream o) {
 		List<LocalVariableNode> numLocVars = new ArrayList<LocalVariableNode>();
+		List<LocalVariableNode> intLocVars = new ArrayList<LocalVariableNode>();
 		List<LocalVariableNode> strLocVars = new ArrayList<LocalVariableNode>();
 
 		LocalVariableNode[] sortedLocVars = this.localVariables.sortByLocalIndex();
@@ -349,6 +739,8 @@ public class Compiler {
 			LocalVariableNode locVarNode = sortedLocVars[i];
 			if (locVarNode.getType() == NodeType.NUM) {
 				numLocVars.add(locVarNode);
+			} else if (locVarNode.getType() == NodeType.INT) {
+				intLocVars.add(locVarNode);
 			} else if (locVarNode.getType() == NodeType.STR) {
 				strLocVars.add(locVarNode);
 			}
@@ -362,6 +754,11 @@ public class Compiler {
 			}
 		}
 
+		for (LocalVariableNode intLocVar : intLocVars) {
+			o.iconst_0();
+			o.istore(intLocVar.getLocalIndex());
+		}
+
 		int strLocVarsCount = strLocVars.size();
 		if (strLocVarsCount > 0) {
 			o.iconst_0();
@@ -379,7 +776,7 @@ public class Compiler {
 	}
 
 	private void initGosubStack(ByteOutStream o) {
-		if (this.returnTable.isUsed()) {
+		if (this.isGosubUsed) {
 			this.classModel.addField(Compiler.FIELD_GOSUB_STACK, "[I");
 
 			o.iconst_0();
@@ -401,6 +798,23 @@ public class Compiler {
 
 			o.iconst_0();
 			o.putstatic(this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_DATA_INDEX, "I"));
+
+			if (this.isReadNumUsed) {
+				o.ldc(this.strNumDataIndex);
+				this.libraryManager.getMethod(MethodEnum.STRING_TO_CHARS).emitCall(o);
+				this.libraryManager.getMethod(MethodEnum.CHARS_TO_FLOAT_ARRAY).emitCall(o);
+				o.putstatic(this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_NUM_DATA, "[F"));
+			}
+		}
+	}
+
+	private int strEntryPointMethodsIndex;
+
+	private void initEntryPointMethods(ByteOutStream o) {
+		if (this.strEntryPointMethodsIndex > 0) {
+			o.ldc(this.strEntryPointMethodsIndex);
+			this.libraryManager.getMethod(MethodEnum.STRING_TO_CHARS).emitCall(o);
+			o.putstatic(this.classModel.addFieldAndGetFieldRefIndex(FIELD_ENTRY_POINT_METHODS, "[C"));
 		}
 	}
 
@@ -413,11 +827,12 @@ public class Compiler {
 		return byteCode;
 	}
 
-	private ExceptionTableInfo[] getExceptionTable(int posCatch) {
+	private ExceptionTableInfo[] getExceptionTable(int posCatch, int posCatchAny) {
 		int posTryBegin = 0;
 		int posTryEnd = posCatch;
 		return new ExceptionTableInfo[] { //
 			new ExceptionTableInfo(posTryBegin, posTryEnd, posCatch, this.classModel.getJavaClassRefIndex(RUNTIME_EXCEPTION)), //
+			new ExceptionTableInfo(posTryBegin, posCatchAny, posCatchAny, 0 /* any */), //
 		};
 	}
 
@@ -439,10 +854,12 @@ public class Compiler {
 
 	private int strDataIndex;
 	private int strDataInfoIndex;
+	private int strNumDataIndex;
 
 	private void flushData() {
 		StringBuffer strData = new StringBuffer();
 		StringBuffer strDataInfo = new StringBuffer();
+		StringBuffer strNumData = new StringBuffer(); // VAL() of every data element, as float bits in 2 chars
 
 		for (List<String> dataElements : this.dataMap.values()) { // sorted by line number. DEFAULT_LABEL is first.
 			for (String dataElement : dataElements) {
@@ -452,12 +869,17 @@ public class Compiler {
 				strData.append(dataElement);
 				strDataInfo.append((char) index);
 				strDataInfo.append((char) length);
+
+				int floatBits = Float.floatToRawIntBits(BASICRuntime.Val(dataElement.toCharArray()));
+				strNumData.append((char) (floatBits >>> 16));
+				strNumData.append((char) floatBits);
 			}
 		}
 
 		boolean hasData = strData.length() > 0;
 		this.strDataIndex = hasData ? this.classModel.getStringIndex(strData.toString()) : 0;
 		this.strDataInfoIndex = hasData ? this.classModel.getStringIndex(strDataInfo.toString()) : 0;
+		this.strNumDataIndex = (hasData && this.isReadNumUsed) ? this.classModel.getStringIndex(strNumData.toString()) : 0;
 	}
 
 	private void emitDefFn(DefFnStatement defFnStatement) {
@@ -474,7 +896,12 @@ public class Compiler {
 			String varName = var.getVariableName();
 			int numDims = var.getDimExpressions().length;
 			if (numDims == 1) {
-				if (var.getType() == NodeType.NUM) {
+				if ((var.getType() == NodeType.NUM) && var.isIntegerVariable()) {
+					this.arrVariables.put(varName, "[[I");
+					this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[I"));
+					emitNumExpressionToStack(var.getDimExpressions()[0]);
+					this.libraryManager.getMethod(MethodEnum.DIM_1D_INT_ARRAY).emitCall(this.o);
+				} else if (var.getType() == NodeType.NUM) {
 					this.arrVariables.put(varName, "[[F");
 					this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[F"));
 					emitNumExpressionToStack(var.getDimExpressions()[0]);
@@ -486,18 +913,27 @@ public class Compiler {
 					this.libraryManager.getMethod(MethodEnum.DIM_1D_STRING_ARRAY).emitCall(this.o);
 				}
 			} else if (numDims == 2) {
-				if (var.getType() == NodeType.NUM) {
-					this.arrVariables.put(varName, "[[[F");
-					this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[[F"));
+				if ((var.getType() == NodeType.NUM) && var.isIntegerVariable()) {
+					this.arrVariables.put(varName, "[[I");
+					this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[I"));
+					emitNumExpressionToStack(var.getDimExpressions()[0]);
+					emitNumExpressionToStack(var.getDimExpressions()[1]);
+					this.libraryManager.getMethod(MethodEnum.DIM_2D_INT_ARRAY).emitCall(this.o);
+					this.o.putstatic(getStrideFieldRefIndex(varName));
+				} else if (var.getType() == NodeType.NUM) {
+					this.arrVariables.put(varName, "[[F");
+					this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[F"));
 					emitNumExpressionToStack(var.getDimExpressions()[0]);
 					emitNumExpressionToStack(var.getDimExpressions()[1]);
 					this.libraryManager.getMethod(MethodEnum.DIM_2D_FLOAT_ARRAY).emitCall(this.o);
+					this.o.putstatic(getStrideFieldRefIndex(varName));
 				} else if (var.getType() == NodeType.STR) {
-					this.arrVariables.put(varName, "[[[[C");
-					this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[[[C"));
+					this.arrVariables.put(varName, "[[[C");
+					this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[[C"));
 					emitNumExpressionToStack(var.getDimExpressions()[0]);
 					emitNumExpressionToStack(var.getDimExpressions()[1]);
 					this.libraryManager.getMethod(MethodEnum.DIM_2D_STRING_ARRAY).emitCall(this.o);
+					this.o.putstatic(getStrideFieldRefIndex(varName));
 				}
 			}
 		}
@@ -511,11 +947,17 @@ public class Compiler {
 		private final String forLabel;
 		private final VariableNode loopVar;
 		private final int patchPosToSkipForNextLoop;
+		private final Float constStep; // null if the step is not a constant
+		private final boolean isIntLoop; // the loop variable is an int local
+		private final Range bodyRange; // values of the loop variable in the loop body, null if not known
 
-		public ForInfo(String forLabel, VariableNode loopVar, int patchPosToSkipForNextLoop) {
+		public ForInfo(String forLabel, VariableNode loopVar, int patchPosToSkipForNextLoop, Float constStep, boolean isIntLoop, Range bodyRange) {
 			this.forLabel = forLabel;
 			this.loopVar = loopVar;
 			this.patchPosToSkipForNextLoop = patchPosToSkipForNextLoop;
+			this.constStep = constStep;
+			this.isIntLoop = isIntLoop;
+			this.bodyRange = bodyRange;
 		}
 
 		public String getForLabel() {
@@ -529,6 +971,18 @@ public class Compiler {
 		public int getPatchPosToSkipForNextLoop() {
 			return this.patchPosToSkipForNextLoop;
 		}
+
+		public Float getConstStep() {
+			return this.constStep;
+		}
+
+		public boolean isIntLoop() {
+			return this.isIntLoop;
+		}
+
+		public Range getBodyRange() {
+			return this.bodyRange;
+		}
 	}
 
 	private void emitFor(ForStatement forStatement) {
@@ -539,10 +993,18 @@ public class Compiler {
 
 		String loopVarName = loopVar.getVariableName();
 
-		LocalVariableNode stepVar = this.localVariables.addAndGetLocalVariableNode(loopVarName + FOR_POSTFIX_STEP_VAR, NodeType.NUM);
-		LocalVariableNode endVar = this.localVariables.addAndGetLocalVariableNode(loopVarName + FOR_POSTFIX_END_VAR, NodeType.NUM);
+		Float constStep = this.integerVariableAnalyzer.getFloatConstant(stepExpr);
+		if ((constStep != null) && (constStep.floatValue() != 0.0f) && this.integerVariableAnalyzer.isSimpleForLoop(forStatement)) {
+			if (isIntLocalVariable(loopVar) && isIntForLoopPossible(loopVar, endExpr, constStep.floatValue())) {
+				emitIntFor(loopVar, startExpr, endExpr, constStep.intValue(), this.integerVariableAnalyzer.getForBodyRange(forStatement));
+			} else {
+				emitConstStepFor(loopVar, startExpr, endExpr, constStep.floatValue());
+			}
+			return;
+		}
 
-		int loopVarFieldRefIndex = this.classModel.addFieldAndGetFieldRefIndex(loopVar.getVariableName(), "F");
+		VariableNode stepVar = getForVariable(loopVarName + FOR_POSTFIX_STEP_VAR, NodeType.NUM);
+		VariableNode endVar = getForVariable(loopVarName + FOR_POSTFIX_END_VAR, NodeType.NUM);
 
 		emitNumExpressionToStack(startExpr);
 		emitFloatFromStackToNumVariable(loopVar);
@@ -553,20 +1015,20 @@ public class Compiler {
 		emitNumExpressionToStack(endExpr);
 		emitFloatFromStackToNumVariable(endVar);
 
-		String forLabel = "_for" + ByteOutStream.generateLabel();
+		String forLabel = "_for" + generateLabel();
 		this.o.label(forLabel);
 
 		// skip FOR-NEXT if <loopVar> * SGN(<stepExpr>) > <endExpr> * SGN(<stepExpr>)
 
-		this.o.fload_opt(stepVar.getLocalIndex());
+		emitFloatFromNumVariableToStack(stepVar);
 
 		this.libraryManager.getMethod(MethodEnum.SGN).emitCall(this.o);
 		this.o.dup();
-		this.o.getstatic(loopVarFieldRefIndex);
+		emitFloatFromNumVariableToStack(loopVar);
 		this.o.fmul();
 		this.o.swap();
 
-		this.o.fload_opt(endVar.getLocalIndex());
+		emitFloatFromNumVariableToStack(endVar);
 		this.o.fmul();
 		this.o.fcmpg();
 
@@ -574,7 +1036,134 @@ public class Compiler {
 		int patchPosToSkipForNextLoop = this.o.pos();
 		this.o.write_u2(0x0000); // ...will be patched
 
-		this.forCompiletimeStack.push(new ForInfo(forLabel, loopVar, patchPosToSkipForNextLoop));
+		this.forCompiletimeStack.push(new ForInfo(forLabel, loopVar, patchPosToSkipForNextLoop, null, false, null));
+	}
+
+	// FOR with a constant step: the sign of the step is known, so the loop test needs no SGN() call
+
+	private void emitConstStepFor(VariableNode loopVar, INode startExpr, INode endExpr, float step) {
+		VariableNode endVar = getForVariable(loopVar.getVariableName() + FOR_POSTFIX_END_VAR, NodeType.NUM);
+
+		emitNumExpressionToStack(startExpr);
+		emitFloatFromStackToNumVariable(loopVar);
+
+		emitNumExpressionToStack(endExpr);
+		emitFloatFromStackToNumVariable(endVar);
+
+		String forLabel = "_for" + generateLabel();
+		this.o.label(forLabel);
+
+		// skip FOR-NEXT if <loopVar> > <endExpr> (positive step) or -<loopVar> > -<endExpr> (negative step)
+
+		emitFloatFromNumVariableToStack(loopVar);
+		if (step < 0) {
+			this.o.fneg();
+		}
+		emitFloatFromNumVariableToStack(endVar);
+		if (step < 0) {
+			this.o.fneg();
+		}
+		this.o.fcmpg();
+
+		this.o.ifgt(); // ifgt(...)
+		int patchPosToSkipForNextLoop = this.o.pos();
+		this.o.write_u2(0x0000); // ...will be patched
+
+		this.forCompiletimeStack.push(new ForInfo(forLabel, loopVar, patchPosToSkipForNextLoop, Float.valueOf(step), false, null));
+	}
+
+	// FOR over an int local: the analyzer proved that all values of the loop variable are integers,
+	// or the loop variable is an integer variable. The loop test of an integer variable uses an end
+	// value clamped to -32768..32767, so NEXT can leave the integer range only when the loop ends.
+
+	private boolean isIntForLoopPossible(VariableNode loopVar, INode endExpr, float step) {
+		if (isIntegerVariable(loopVar) && (step != (int) step)) {
+			return false;
+		}
+		return (this.integerVariableAnalyzer.getIntConstant(endExpr) != null) || (isLocalVariableTableFull(loopVar.getVariableName() + FOR_POSTFIX_END_VAR) == false);
+	}
+
+	private void emitIntFor(VariableNode loopVar, INode startExpr, INode endExpr, int step, Range bodyRange) {
+		LocalVariableNode loopLocVar = (LocalVariableNode) promoteToLocalVariable(loopVar);
+		boolean isIntegerLoopVar = isIntegerVariable(loopVar);
+
+		if (isIntegerLoopVar) {
+			emitIntegerValueToStack(startExpr);
+		} else {
+			emitIntExpressionToStack(startExpr);
+		}
+		this.o.istore_opt(loopLocVar.getLocalIndex());
+
+		// <loopVar> > <endExpr> equals <loopVar> > INT(<endExpr>) for integers, resp. <loopVar> < -INT(-<endExpr>)
+
+		Integer constEnd = this.integerVariableAnalyzer.getIntConstant(endExpr);
+		if ((constEnd != null) && isIntegerLoopVar) {
+			constEnd = Integer.valueOf((step > 0) ? Math.min(constEnd.intValue(), Short.MAX_VALUE) : Math.max(constEnd.intValue(), Short.MIN_VALUE));
+		}
+		LocalVariableNode endLocVar = null;
+		if (constEnd == null) {
+			endLocVar = (LocalVariableNode) getForVariable(loopVar.getVariableName() + FOR_POSTFIX_END_VAR, NodeType.INT);
+			if (isIntExpression(endExpr)) {
+				emitIntExpressionToStack(endExpr);
+			} else {
+				emitNumExpressionToStack(endExpr);
+				if (step < 0) {
+					this.o.fneg();
+				}
+				this.libraryManager.getMethod(LibraryManager.MethodEnum.INT).emitCall(this.o);
+				if (step < 0) {
+					this.o.fneg();
+				}
+				this.o.f2i();
+			}
+			if (isIntegerLoopVar && (this.integerVariableAnalyzer.isWithinIntegerRange(endExpr) == false)) {
+				emitClampIntegerLoopEnd(step);
+			}
+			this.o.istore_opt(endLocVar.getLocalIndex());
+		}
+
+		String forLabel = "_for" + generateLabel();
+		this.o.label(forLabel);
+
+		this.o.iload_opt(loopLocVar.getLocalIndex());
+		if (constEnd != null) {
+			emitIntConstToStack(constEnd.intValue());
+		} else {
+			this.o.iload_opt(endLocVar.getLocalIndex());
+		}
+
+		if (step > 0) {
+			this.o.if_icmpgt(); // if_icmpgt(...)
+		} else {
+			this.o.if_icmplt(); // if_icmplt(...)
+		}
+		int patchPosToSkipForNextLoop = this.o.pos();
+		this.o.write_u2(0x0000); // ...will be patched
+
+		this.forCompiletimeStack.push(new ForInfo(forLabel, loopLocVar, patchPosToSkipForNextLoop, Float.valueOf(step), true, bodyRange));
+	}
+
+	private void emitClampIntegerLoopEnd(int step) {
+		String label = generateLabel();
+		int bound = (step > 0) ? Short.MAX_VALUE : Short.MIN_VALUE;
+		this.o.dup();
+		this.o.iconst(bound);
+		if (step > 0) {
+			this.o.if_icmple(label);
+		} else {
+			this.o.if_icmpge(label);
+		}
+		this.o.pop();
+		this.o.iconst(bound);
+		this.o.label(label);
+	}
+
+	private VariableNode getForVariable(String varName, NodeType type) {
+		if (this.isSplitMethods || this.isSubroutineMethod || isLocalVariableTableFull(varName)) {
+			// local variables do not survive a return to the dispatcher, and subroutine methods cannot access them
+			return VariableNode.createVariableNode(varName, type);
+		}
+		return this.localVariables.addAndGetLocalVariableNode(varName, type);
 	}
 
 	private void emitNext(NextStatement nextStatement) {
@@ -605,18 +1194,41 @@ public class Compiler {
 			}
 		}
 
-		emitFloatFromNumVariableToStack(forLoopVar);
-
-		String stepVarName = forLoopVar.getVariableName() + FOR_POSTFIX_STEP_VAR;
-		this.o.fload_opt(this.localVariables.get(stepVarName).getLocalIndex());
-
-		this.o.fadd();
-		emitFloatFromStackToNumVariable(forLoopVar);
+		Float constStep = forInfo.getConstStep();
+		if (forInfo.isIntLoop()) {
+			int localIndex = ((LocalVariableNode) forLoopVar).getLocalIndex();
+			int step = constStep.intValue();
+			if ((step >= Byte.MIN_VALUE) && (step <= Byte.MAX_VALUE)) {
+				this.o.iinc(localIndex, step);
+			} else {
+				this.o.iload_opt(localIndex);
+				emitIntConstToStack(step);
+				this.o.iadd();
+				this.o.istore_opt(localIndex);
+			}
+		} else {
+			emitFloatFromNumVariableToStack(forLoopVar);
+			if (constStep != null) {
+				emitFloatConstToStack(constStep.floatValue());
+			} else {
+				String stepVarName = forLoopVar.getVariableName() + FOR_POSTFIX_STEP_VAR;
+				emitFloatFromNumVariableToStack(getForVariable(stepVarName, NodeType.NUM));
+			}
+			this.o.fadd();
+			emitFloatFromStackToNumVariable(forLoopVar);
+		}
 
 		this.o.goto_(forLabel);
 
 		int branchOffset = branchOffset(patchPosToSkipForNextLoop, this.o.pos());
 		this.o.patch_u2(patchPosToSkipForNextLoop, branchOffset);
+
+		if (forInfo.isIntLoop() && isIntegerVariable(forLoopVar)) {
+			// "Overflow" if the last NEXT left the integer range
+			this.o.iload_opt(((LocalVariableNode) forLoopVar).getLocalIndex());
+			this.libraryManager.getMethod(LibraryManager.MethodEnum.CHECK_INTEGER_RANGE).emitCall(this.o);
+			this.o.pop();
+		}
 	}
 
 	private void flushForNext() {
@@ -664,29 +1276,64 @@ public class Compiler {
 
 	private void emitGosub(GosubStatement gosubStatement) {
 		String lineNumber = gosubStatement.getLineNumber();
-		int gosubId = this.returnTable.nextIndex();
-		this.o.iconst(gosubId);
-		this.libraryManager.getMethod(MethodEnum.GOSUB_STACK_PUSH).emitCall(this.o);
-		emitGoto(new GotoStatement(lineNumber));
-		this.returnTable.addReturnPos(gosubId, this.o.pos());
+		if (this.subroutineAnalyzer.isSubroutine(lineNumber)) {
+			this.o.invokestatic(this.classModel.getMethodRefIndex(SUBROUTINE_METHOD_PREFIX + lineNumber, SUBROUTINE_METHOD_DESCRIPTOR));
+		} else {
+			int gosubId = nextGosubId();
+			this.o.iconst(gosubId);
+			this.libraryManager.getMethod(MethodEnum.GOSUB_STACK_PUSH).emitCall(this.o);
+			emitGoto(new GotoStatement(lineNumber));
+			addGosubReturnPos(gosubId);
+		}
 	}
 
 	private void emitOnGosub(OnGosubStatement onGosubStatement) {
 		INode numExpr = onGosubStatement.getExpression();
 		String[] lineNumbers = onGosubStatement.getLineNumbers();
-		int gosubId = this.returnTable.nextIndex();
+		int gosubId = nextGosubId();
 		this.o.iconst(gosubId);
 		this.libraryManager.getMethod(MethodEnum.GOSUB_STACK_PUSH).emitCall(this.o);
 		emitOnGoto(new OnGotoStatement(numExpr, lineNumbers));
-		this.returnTable.addReturnPos(gosubId, this.o.pos());
+		addGosubReturnPos(gosubId);
+	}
+
+	private String generateLabel() {
+		return "_label" + this.labelCounter++;
+	}
+
+	private int nextGosubId() {
+		this.isGosubUsed = true;
+		if (this.isSplitMethods) {
+			return this.entryPointTable.createReturnId(); // returned to the dispatcher by RETURN
+		}
+		return this.returnTable.nextIndex();
+	}
+
+	private void addGosubReturnPos(int gosubId) {
+		if (this.isSplitMethods) {
+			this.entryPointTable.addReturnPos(gosubId, this.splitMethods.size(), this.o.pos());
+		} else {
+			this.returnTable.addReturnPos(gosubId, this.o.pos());
+		}
 	}
 
 	private void emitReturn() {
+		if (this.isSubroutineMethod) {
+			this.o.return_();
+			return;
+		}
+
+		this.isGosubUsed = true;
+
 		// pop gosubId
 		this.libraryManager.getMethod(MethodEnum.GOSUB_STACK_POP).emitCall(this.o);
-		this.o.goto_(); // goto <tableswitch>
-		this.returnTable.patchToTableSwitch(this.o.pos());
-		this.o.write_u2(0x0000); // ...will be patched
+		if (this.isSplitMethods) {
+			this.o.ireturn(); // return to the dispatcher
+		} else {
+			this.o.goto_(); // goto <tableswitch>
+			this.returnTable.patchToTableSwitch(this.o.pos());
+			this.o.write_u2(0x0000); // ...will be patched
+		}
 	}
 
 	private void emitIf(IfStatement ifStatement) {
@@ -698,7 +1345,7 @@ public class Compiler {
 			this.o.fconst_0();
 			this.o.fcmpg();
 
-			String ifId = ByteOutStream.generateLabel();
+			String ifId = generateLabel();
 			String afterThenId = "_afterThen" + ifId;
 			String afterElseId = "_afterElse" + ifId;
 
@@ -737,7 +1384,7 @@ public class Compiler {
 
 		this.o.fcmpg();
 
-		String ifId = ByteOutStream.generateLabel();
+		String ifId = generateLabel();
 		String afterThenId = "_afterThen" + ifId;
 		String afterElseId = "_afterElse" + ifId;
 
@@ -853,7 +1500,13 @@ public class Compiler {
 
 	private void emitLet(LetStatement letStatement) {
 		VariableNode var = (VariableNode) letStatement.getVariable();
-		if (var.getType() == NodeType.NUM) {
+		if ((var.getType() == NodeType.NUM) && isIntegerVariable(var)) {
+			emitIntegerValueToStack(letStatement.getExpression());
+			emitIntFromStackToIntegerVariable(var);
+		} else if ((var.getType() == NodeType.NUM) && isIntLocalVariable(var)) {
+			emitIntExpressionToStack(letStatement.getExpression());
+			this.o.istore_opt(((LocalVariableNode) promoteToLocalVariable(var)).getLocalIndex());
+		} else if (var.getType() == NodeType.NUM) {
 			emitNumExpressionToStack(letStatement.getExpression());
 			emitFloatFromStackToNumVariable(var);
 		} else if (var.getType() == NodeType.STR) {
@@ -864,6 +1517,18 @@ public class Compiler {
 
 	private void emitLineNumber(LineNumberStatement lineNumberStatement) {
 		String lineNumber = lineNumberStatement.getLineNumber();
+		if (this.isSplitMethods) {
+			if (isSplitMethodFull()) {
+				// fall through to the next method
+				this.o.iconst(this.entryPointTable.getLineNumberId(lineNumber));
+				this.o.ireturn();
+				closeSplitMethod();
+
+				this.o = new ByteOutStream(ClassModel.MAX_METHOD_LENGTH);
+				this.lineNumberTable = new LineNumberTable();
+			}
+			this.entryPointTable.addLineNumber(this.splitMethods.size(), this.o.pos(), lineNumber);
+		}
 		this.lineNumberTable.add(this.o.pos(), lineNumber);
 	}
 
@@ -936,16 +1601,23 @@ public class Compiler {
 	}
 
 	private void emitReadNumFromDataToStack() {
+		this.isReadNumUsed = true;
 		this.libraryManager.getMethod(LibraryManager.MethodEnum.READ_NUM_FROM_DATA_TO_STACK).emitCall(this.o);
 	}
 
 	private static class RestoreInfo {
+		private final ByteOutStream o;
 		private final int patchPos;
 
-		public RestoreInfo(int patchPos) {
+		public RestoreInfo(ByteOutStream o, int patchPos) {
+			this.o = o;
 			this.patchPos = patchPos;
 		}
 
+		public ByteOutStream getByteOutStream() {
+			return this.o;
+		}
+
 		public int getPatchPos() {
 			return this.patchPos;
 		}
@@ -958,7 +1630,7 @@ public class Compiler {
 			this.restoreMap.put(lineNumber, new ArrayList<RestoreInfo>());
 		}
 		List<RestoreInfo> restoreInfos = this.restoreMap.get(lineNumber);
-		restoreInfos.add(new RestoreInfo(this.o.pos() + 1));
+		restoreInfos.add(new RestoreInfo(this.o, this.o.pos() + 1));
 
 		// _dataElementIndex := <patched index>
 		int dataIndexFieldRef = this.classModel.getFieldRefIndex(Compiler.FIELD_DATA_INDEX, "I");
@@ -991,7 +1663,7 @@ public class Compiler {
 			for (RestoreInfo restoreInfo : restoreInfos) {
 				int patchPos = restoreInfo.getPatchPos();
 				dataInfoIndex = dataInfoIndexMap.get(lineNumber);
-				this.o.patch_u2(patchPos, dataInfoIndex);
+				restoreInfo.getByteOutStream().patch_u2(patchPos, dataInfoIndex);
 			}
 		}
 	}
@@ -1003,7 +1675,12 @@ public class Compiler {
 	private void emitSwap(SwapStatement swapStatement) {
 		VariableNode var1 = swapStatement.getVariable1();
 		VariableNode var2 = swapStatement.getVariable2();
-		if (var1.getType() == NodeType.NUM) {
+		if ((var1.getType() == NodeType.NUM) && isIntegerVariable(var1) && isIntegerVariable(var2)) {
+			emitIntFromIntegerVariableToStack(var1);
+			emitIntFromIntegerVariableToStack(var2);
+			emitIntFromStackToIntegerVariable(var1);
+			emitIntFromStackToIntegerVariable(var2);
+		} else if (var1.getType() == NodeType.NUM) {
 			emitNumExpressionToStack(var1);
 			emitNumExpressionToStack(var2);
 			emitFloatFromStackToNumVariable(var1);
@@ -1036,7 +1713,7 @@ public class Compiler {
 
 	private void emitWhile(WhileStatement whileStatement) {
 		INode numExpr = whileStatement.getExpression();
-		String whileLabel = "_while" + ByteOutStream.generateLabel();
+		String whileLabel = "_while" + generateLabel();
 		this.o.label(whileLabel);
 		emitNumExpressionToStack(numExpr);
 		this.o.fconst_0();
@@ -1070,8 +1747,493 @@ public class Compiler {
 		}
 	}
 
+	/// LOCAL VARIABLES ///////////////////////////////////////////////////////////
+
+	// Scalar variables are held in locals of main(), so the JIT can keep them in registers.
+	// Variables which are read by DEF FN functions must remain static fields, as well as
+	// all variables of split methods, because locals do not survive a return to the dispatcher,
+	// and all variables of GOSUB subroutines which are compiled into methods of their own.
+
+	private void collectFieldVariables(List<Statement> statements) {
+		for (Statement statement : statements) {
+			collectFieldVariables(statement);
+		}
+	}
+
+	private void collectFieldVariables(Statement statement) {
+		if (statement instanceof DefFnStatement) {
+			DefFnStatement defFnStatement = (DefFnStatement) statement;
+			Set<String> funcVarNames = new HashSet<String>();
+			for (VariableNode funcVar : defFnStatement.getFuncVars()) {
+				funcVarNames.add(funcVar.getVariableName());
+			}
+			Set<String> varNames = new HashSet<String>();
+			collectVariableNames(defFnStatement.getFuncExpr(), varNames);
+			varNames.removeAll(funcVarNames);
+			this.fieldVariables.addAll(varNames);
+		} else if (statement instanceof IfStatement) {
+			IfStatement ifStatement = (IfStatement) statement;
+			collectFieldVariables(Arrays.asList(ifStatement.getThenStatements()));
+			collectFieldVariables(Arrays.asList(ifStatement.getElseStatements()));
+		}
+	}
+
+	private void collectSubroutineVariables(List<Statement> statements) {
+		for (int i = 0; i < statements.size(); i++) {
+			Subroutine subroutine = this.subroutineAnalyzer.getSubroutine(i);
+			if (subroutine != null) {
+				for (Statement statement : statements.subList(i, subroutine.getLastStatementIndex() + 1)) {
+					collectVariableNames(statement, this.fieldVariables);
+				}
+			}
+		}
+	}
+
+	private void collectVariableNames(Statement statement, Set<String> varNames) {
+		if (statement instanceof ForStatement) {
+			ForStatement forStatement = (ForStatement) statement;
+			collectVariableNames(forStatement.getLoopVariable(), varNames);
+			collectVariableNames(forStatement.getStartExpression(), varNames);
+			collectVariableNames(forStatement.getEndExpression(), varNames);
+			collectVariableNames(forStatement.getStepExpression(), varNames);
+		} else if (statement instanceof IfStatement) {
+			IfStatement ifStatement = (IfStatement) statement;
+			collectVariableNames(ifStatement.getExpression(), varNames);
+			for (Statement thenStatement : ifStatement.getThenStatements()) {
+				collectVariableNames(thenStatement, varNames);
+			}
+			for (Statement elseStatement : ifStatement.getElseStatements()) {
+				collectVariableNames(elseStatement, varNames);
+			}
+		} else if (statement instanceof LetStatement) {
+			collectVariableNames(((LetStatement) statement).getVariable(), varNames);
+			collectVariableNames(((LetStatement) statement).getExpression(), varNames);
+		} else if (statement instanceof OnGotoStatement) {
+			collectVariableNames(((OnGotoStatement) statement).getExpression(), varNames);
+		} else if (statement instanceof PrintStatement) {
+			for (INode expr : ((PrintStatement) statement).getExpressions()) {
+				collectVariableNames(expr, varNames);
+			}
+		} else if (statement instanceof SwapStatement) {
+			collectVariableNames(((SwapStatement) statement).getVariable1(), varNames);
+			collectVariableNames(((SwapStatement) statement).getVariable2(), varNames);
+		} else if (statement instanceof WhileStatement) {
+			collectVariableNames(((WhileStatement) statement).getExpression(), varNames);
+		} else {
+			for (VariableNode var : getStatementVariables(statement)) {
+				collectVariableNames(var, varNames);
+			}
+		}
+	}
+
+	private static VariableNode[] getStatementVariables(Statement statement) {
+		if (statement instanceof DimStatement) {
+			return ((DimStatement) statement).getVariables();
+		} else if (statement instanceof InputStatement) {
+			return ((InputStatement) statement).getVariables();
+		} else if (statement instanceof NextStatement) {
+			return ((NextStatement) statement).getLoopVariables();
+		} else if (statement instanceof ReadStatement) {
+			return ((ReadStatement) statement).getVariables();
+		}
+		return new VariableNode[0];
+	}
+
+	private void collectVariableNames(INode expr, Set<String> varNames) {
+		if (expr instanceof BinaryNode) {
+			collectVariableNames(((BinaryNode) expr).getLeftNode(), varNames);
+			collectVariableNames(((BinaryNode) expr).getRightNode(), varNames);
+		} else if (expr instanceof UnaryNode) {
+			collectVariableNames(((UnaryNode) expr).getArgNode(), varNames);
+		} else if (expr instanceof FunctionNode) {
+			for (INode argNode : ((FunctionNode) expr).getArgNodes()) {
+				collectVariableNames(argNode, varNames);
+			}
+		} else if (expr instanceof FnFunctionNode) {
+			for (INode argNode : ((FnFunctionNode) expr).getFuncArgExprs()) {
+				collectVariableNames(argNode, varNames);
+			}
+		} else if (expr instanceof VariableNode) {
+			VariableNode var = (VariableNode) expr;
+			if (var.getDimExpressions().length == 0) {
+				varNames.add(var.getVariableName());
+			}
+			for (INode dimExpr : var.getDimExpressions()) {
+				collectVariableNames(dimExpr, varNames);
+			}
+		}
+	}
+
+	private VariableNode promoteToLocalVariable(VariableNode var) {
+		String varName = var.getVariableName();
+		if ((var instanceof LocalVariableNode) || (var.getDimExpressions().length > 0) || this.fieldVariables.contains(varName)) {
+			return var;
+		}
+		if (this.isSplitMethods || this.isSubroutineMethod || isLocalVariableTableFull(varName)) {
+			this.fieldVariables.add(varName); // keep the decision for all further accesses
+			return var;
+		}
+		NodeType type = (var.isIntegerVariable() || this.integerVariableAnalyzer.isIntVariable(varName)) ? NodeType.INT : var.getType();
+		return this.localVariables.addAndGetLocalVariableNode(varName, type);
+	}
+
+	private boolean isIntLocalVariable(VariableNode var) {
+		if (this.localFnVariables.containsKey(var.getVariableName())) {
+			return false;
+		}
+		VariableNode locVar = promoteToLocalVariable(var);
+		return (locVar instanceof LocalVariableNode) && (locVar.getType() == NodeType.INT);
+	}
+
+	/// INTEGER EXPRESSIONS ///////////////////////////////////////////////////////
+
+	// Expressions which the analyzer proved to be integral are evaluated with int arithmetic
+	// where possible. Parameters of DEF FN functions may shadow variables of the main program,
+	// so function bodies always use float arithmetic.
+
+	private boolean isIntExpression(INode expr) {
+		return this.localFnVariables.isEmpty() && this.integerVariableAnalyzer.isIntExpression(expr);
+	}
+
+	private boolean isIntegerVariable(VariableNode var) {
+		return var.isIntegerVariable() && (this.localFnVariables.containsKey(var.getVariableName()) == false);
+	}
+
+	// Expressions which are evaluated with int instructions even in a float context, e.g. A% + 1,
+	// A% \ 2 or A% AND 255. \, MOD and the logical operators need operands within -32768..32767,
+	// and \ and MOD a constant divisor, otherwise the library methods report the errors.
+	private boolean isNativeIntExpression(INode expr) {
+		if (isIntExpression(expr) == false) {
+			return false;
+		}
+		if (expr instanceof NumNode) {
+			return true;
+		} else if (expr instanceof VariableNode) {
+			return isIntegerVariable((VariableNode) expr) || isIntLocalVariable((VariableNode) expr);
+		} else if (expr instanceof UnaryNode) {
+			UnaryNode unaryNode = (UnaryNode) expr;
+			INode argNode = unaryNode.getArgNode();
+			Token opToken = unaryNode.getOp();
+			if ((opToken == Token.OPEN) || (opToken == Token.UNARY_MINUS)) {
+				return isNativeIntExpression(argNode);
+			} else if (opToken == Token.NOT) {
+				return isNativeIntExpression(argNode) && this.integerVariableAnalyzer.isWithinIntegerRange(argNode);
+			}
+		} else if (expr instanceof BinaryNode) {
+			BinaryNode binNode = (BinaryNode) expr;
+			INode leftNode = binNode.getLeftNode();
+			INode rightNode = binNode.getRightNode();
+			if ((isNativeIntExpression(leftNode) && isNativeIntExpression(rightNode)) == false) {
+				return false;
+			}
+			Token opToken = binNode.getOp();
+			if ((opToken == Token.ADD) || (opToken == Token.SUBTRACT) || (opToken == Token.MULTIPLY)) {
+				return true;
+			} else if ((opToken == Token.INT_DIVIDE) || (opToken == Token.MOD)) {
+				Integer divisor = this.integerVariableAnalyzer.getIntConstant(rightNode);
+				return this.integerVariableAnalyzer.isWithinIntegerRange(leftNode) && this.integerVariableAnalyzer.isWithinIntegerRange(rightNode) && (divisor != null) && (divisor.intValue() != 0);
+			} else if (isLogicalBinaryOpToken(opToken)) {
+				return this.integerVariableAnalyzer.isWithinIntegerRange(leftNode) && this.integerVariableAnalyzer.isWithinIntegerRange(rightNode);
+			}
+		}
+		return false;
+	}
+
+	private void emitIntExpressionToStack(INode expr) {
+		if (expr instanceof NumNode) {
+			emitIntConstToStack((int) ((NumNode) expr).getValue());
+		} else if ((expr instanceof VariableNode) && isIntegerVariable((VariableNode) expr)) {
+			emitIntFromIntegerVariableToStack((VariableNode) expr);
+		} else if ((expr instanceof VariableNode) && isIntLocalVariable((VariableNode) expr)) {
+			this.o.iload_opt(((LocalVariableNode) promoteToLocalVariable((VariableNode) expr)).getLocalIndex());
+		} else if ((expr instanceof UnaryNode) && isIntExpression(((UnaryNode) expr).getArgNode())) {
+			UnaryNode unaryNode = (UnaryNode) expr;
+			Token opToken = unaryNode.getOp();
+			if (opToken == Token.OPEN) {
+				emitIntExpressionToStack(unaryNode.getArgNode());
+			} else if (opToken == Token.UNARY_MINUS) {
+				emitIntExpressionToStack(unaryNode.getArgNode());
+				this.o.ineg();
+			} else if (isNativeIntExpression(expr)) { // NOT
+				emitIntExpressionToStack(unaryNode.getArgNode());
+				this.o.iconst_m1();
+				this.o.ixor();
+			} else {
+				emitNumExpressionToStack(expr);
+				this.o.f2i();
+			}
+		} else if ((expr instanceof BinaryNode) && isIntExpression(((BinaryNode) expr).getLeftNode()) && isIntExpression(((BinaryNode) expr).getRightNode())) {
+			BinaryNode binNode = (BinaryNode) expr;
+			Token opToken = binNode.getOp();
+			if ((opToken == Token.ADD) || (opToken == Token.SUBTRACT) || (opToken == Token.MULTIPLY)) {
+				// exact, since the analyzer proved that the result fits into the integer range of a float
+				emitIntExpressionToStack(binNode.getLeftNode());
+				emitIntExpressionToStack(binNode.getRightNode());
+				if (opToken == Token.ADD) {
+					this.o.iadd();
+				} else if (opToken == Token.SUBTRACT) {
+					this.o.isub();
+				} else {
+					this.o.imul();
+				}
+			} else if (isNativeIntExpression(expr)) {
+				emitIntExpressionToStack(binNode.getLeftNode());
+				emitIntExpressionToStack(binNode.getRightNode());
+				if (opToken == Token.INT_DIVIDE) {
+					this.o.idiv();
+				} else if (opToken == Token.MOD) {
+					this.o.irem();
+				} else if (opToken == Token.AND) {
+					this.o.iand();
+				} else if (opToken == Token.OR) {
+					this.o.ior();
+				} else if (opToken == Token.XOR) {
+					this.o.ixor();
+				}
+			} else {
+				emitNumExpressionToStack(expr);
+				this.o.f2i();
+			}
+		} else if (isFunctionExpressionOf(expr, FunctionToken.LEN) && isSubstringExpression(((FunctionNode) expr).getArgNodes()[0])) {
+			emitSubstringRangeToStack((FunctionNode) ((FunctionNode) expr).getArgNodes()[0]);
+			emitLengthOfSubstringRange();
+		} else if ((expr instanceof FunctionNode) && (((FunctionNode) expr).getFunctionToken() == FunctionToken.LEN)) {
+			emitStrExpressionToStack(((FunctionNode) expr).getArgNodes()[0]);
+			this.o.arraylength();
+		} else {
+			emitNumExpressionToStack(expr);
+			this.o.f2i(); // exact, since the value is an integer
+		}
+	}
+
+	// evaluates a value assigned to an integer variable: rounded, "Overflow" outside of -32768..32767
+	private void emitIntegerValueToStack(INode expr) {
+		if (isIntExpression(expr)) {
+			emitIntExpressionToStack(expr);
+			if (this.integerVariableAnalyzer.isWithinIntegerRange(expr) == false) {
+				this.libraryManager.getMethod(LibraryManager.MethodEnum.CHECK_INTEGER_RANGE).emitCall(this.o);
+			}
+		} else {
+			emitNumExpressionToStack(expr);
+			this.libraryManager.getMethod(LibraryManager.MethodEnum.FLOAT_TO_INTEGER).emitCall(this.o);
+		}
+	}
+
+	private void emitIntFromIntegerVariableToStack(VariableNode intVar) {
+		intVar = promoteToLocalVariable(intVar);
+		String varName = intVar.getVariableName();
+
+		if (intVar instanceof LocalVariableNode) {
+			this.o.iload_opt(((LocalVariableNode) intVar).getLocalIndex());
+		} else {
+			int numDims = intVar.getDimExpressions().length;
+			if (numDims == 0) {
+				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "I"));
+			} else if ((numDims == 1) && isIntExpression(intVar.getDimExpressions()[0])) {
+				emitArrayElementFromIntIndexToStack(intVar, "[[I", LibraryManager.MethodEnum.CHECK_1D_INT_ARRAY_ACCESS);
+				this.o.iaload();
+			} else if (numDims == 1) {
+				this.arrVariables.put(varName, "[[I");
+				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[I"));
+				emitNumExpressionToStack(intVar.getDimExpressions()[0]);
+				this.libraryManager.getMethod(LibraryManager.MethodEnum.LOAD_INT_FROM_1D_ARRAY).emitCall(this.o);
+			} else if ((numDims == 2) && isIntExpression(intVar.getDimExpressions()[0]) && isIntExpression(intVar.getDimExpressions()[1])) {
+				emitArrayElementFromIntIndexesToStack(intVar, "[[I", LibraryManager.MethodEnum.CHECK_2D_INT_ARRAY_ACCESS);
+				this.o.iaload();
+			} else if (numDims == 2) {
+				this.arrVariables.put(varName, "[[I");
+				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[I"));
+				this.o.getstatic(getStrideFieldRefIndex(varName));
+				emitNumExpressionToStack(intVar.getDimExpressions()[0]);
+				emitNumExpressionToStack(intVar.getDimExpressions()[1]);
+				this.libraryManager.getMethod(LibraryManager.MethodEnum.LOAD_INT_FROM_2D_ARRAY).emitCall(this.o);
+			}
+		}
+	}
+
+	private void emitIntFromStackToIntegerVariable(VariableNode intVar) {
+		intVar = promoteToLocalVariable(intVar);
+		String varName = intVar.getVariableName();
+
+		if (intVar instanceof LocalVariableNode) {
+			this.o.istore_opt(((LocalVariableNode) intVar).getLocalIndex());
+		} else {
+			int numDims = intVar.getDimExpressions().length;
+			if (numDims == 0) {
+				this.o.putstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "I"));
+			} else if ((numDims == 1) && isIntExpression(intVar.getDimExpressions()[0])) {
+				emitArrayElementFromStackToIntIndex(intVar, "[[I", LibraryManager.MethodEnum.CHECK_1D_INT_ARRAY_ACCESS);
+				this.o.iastore();
+			} else if (numDims == 1) {
+				this.arrVariables.put(varName, "[[I");
+				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[I"));
+				emitNumExpressionToStack(intVar.getDimExpressions()[0]);
+				this.libraryManager.getMethod(LibraryManager.MethodEnum.STORE_INT_IN_1D_ARRAY).emitCall(this.o);
+			} else if ((numDims == 2) && isIntExpression(intVar.getDimExpressions()[0]) && isIntExpression(intVar.getDimExpressions()[1])) {
+				emitArrayElementFromStackToIntIndexes(intVar, "[[I", LibraryManager.MethodEnum.CHECK_2D_INT_ARRAY_ACCESS);
+				this.o.iastore();
+			} else if (numDims == 2) {
+				this.arrVariables.put(varName, "[[I");
+				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[I"));
+				this.o.getstatic(getStrideFieldRefIndex(varName));
+				emitNumExpressionToStack(intVar.getDimExpressions()[0]);
+				emitNumExpressionToStack(intVar.getDimExpressions()[1]);
+				this.libraryManager.getMethod(LibraryManager.MethodEnum.STORE_INT_IN_2D_ARRAY).emitCall(this.o);
+			}
+		}
+	}
+
+	private void emitIntConstToStack(int value) {
+		if ((value >= Short.MIN_VALUE) && (value <= Short.MAX_VALUE)) {
+			this.o.iconst(value);
+		} else {
+			emitFloatConstToStack(value); // there are no integer constants in the constant pool
+			this.o.f2i();
+		}
+	}
+
+	// stack: -> element array, int index (after the lazy DIM and the bounds check)
+	private void emitArrayElementFromIntIndexToStack(VariableNode arrVar, String arrVarFieldDescriptor, MethodEnum checkArrayAccessMethod) {
+		String varName = arrVar.getVariableName();
+		this.arrVariables.put(varName, arrVarFieldDescriptor);
+		if (isArrayAccessWithinBounds(arrVar)) {
+			emitArrayElementToStack(arrVar, arrVarFieldDescriptor, checkArrayAccessMethod);
+			emitIntExpressionToStack(arrVar.getDimExpressions()[0]);
+			return;
+		}
+		this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, arrVarFieldDescriptor));
+		emitIntExpressionToStack(arrVar.getDimExpressions()[0]);
+		this.o.dup2();
+		this.libraryManager.getMethod(checkArrayAccessMethod).emitCall(this.o);
+		this.o.swap();
+		this.o.iconst_0();
+		this.o.aaload();
+		this.o.swap();
+	}
+
+	// stack: value -> element array, int index, value (after the lazy DIM and the bounds check)
+	private void emitArrayElementFromStackToIntIndex(VariableNode arrVar, String arrVarFieldDescriptor, MethodEnum checkArrayAccessMethod) {
+		emitArrayElementFromIntIndexToStack(arrVar, arrVarFieldDescriptor, checkArrayAccessMethod);
+		this.o.dup2_x1();
+		this.o.pop2();
+	}
+
+	// stack: -> element array, int index (row-major index after the lazy DIM and the bounds check)
+	private void emitArrayElementFromIntIndexesToStack(VariableNode arrVar, String arrVarFieldDescriptor, MethodEnum checkArrayAccessMethod) {
+		String varName = arrVar.getVariableName();
+		this.arrVariables.put(varName, arrVarFieldDescriptor);
+		if (isArrayAccessWithinBounds(arrVar)) {
+			emitArrayElementToStack(arrVar, arrVarFieldDescriptor, checkArrayAccessMethod);
+			emitIntExpressionToStack(arrVar.getDimExpressions()[0]);
+			this.o.getstatic(getStrideFieldRefIndex(varName));
+			this.o.imul();
+			emitIntExpressionToStack(arrVar.getDimExpressions()[1]);
+			this.o.iadd();
+			return;
+		}
+		this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, arrVarFieldDescriptor));
+		this.o.dup();
+		this.o.getstatic(getStrideFieldRefIndex(varName));
+		emitIntExpressionToStack(arrVar.getDimExpressions()[0]);
+		emitIntExpressionToStack(arrVar.getDimExpressions()[1]);
+		this.libraryManager.getMethod(checkArrayAccessMethod).emitCall(this.o);
+		this.o.swap();
+		this.o.iconst_0();
+		this.o.aaload();
+		this.o.swap();
+	}
+
+	// stack: value -> element array, int index, value (row-major index after the lazy DIM and the bounds check)
+	private void emitArrayElementFromStackToIntIndexes(VariableNode arrVar, String arrVarFieldDescriptor, MethodEnum checkArrayAccessMethod) {
+		emitArrayElementFromIntIndexesToStack(arrVar, arrVarFieldDescriptor, checkArrayAccessMethod);
+		this.o.dup2_x1();
+		this.o.pop2();
+	}
+
+	// stack: -> element array (after the lazy DIM, which the check with all indexes 0 does)
+	private void emitArrayElementToStack(VariableNode arrVar, String arrVarFieldDescriptor, MethodEnum checkArrayAccessMethod) {
+		String varName = arrVar.getVariableName();
+		int arrVarFieldRefIndex = this.classModel.addFieldAndGetFieldRefIndex(varName, arrVarFieldDescriptor);
+		String label = generateLabel();
+
+		this.o.getstatic(arrVarFieldRefIndex);
+		this.o.iconst_0();
+		this.o.aaload();
+		if (this.integerVariableAnalyzer.isDimensioned(varName, this.currentStatement)) {
+			return;
+		}
+		this.o.dup();
+		this.o.ifnonnull(label);
+		this.o.pop();
+
+		this.o.getstatic(arrVarFieldRefIndex);
+		if (arrVar.getDimExpressions().length == 1) {
+			this.o.iconst_0();
+			this.libraryManager.getMethod(checkArrayAccessMethod).emitCall(this.o);
+		} else {
+			this.o.getstatic(getStrideFieldRefIndex(varName));
+			this.o.iconst_0();
+			this.o.iconst_0();
+			this.libraryManager.getMethod(checkArrayAccessMethod).emitCall(this.o);
+			this.o.pop();
+		}
+		this.o.getstatic(arrVarFieldRefIndex);
+		this.o.iconst_0();
+		this.o.aaload();
+		this.o.label(label);
+	}
+
+	// The indexes are within the smallest array the program can create, so only the lazy DIM is left to do.
+	// Inside a FOR loop the loop variable is bounded by the start and end value of the loop.
+	private boolean isArrayAccessWithinBounds(VariableNode arrVar) {
+		Map<String, Range> forBodyRanges = new HashMap<String, Range>();
+		for (ForInfo forInfo : this.forCompiletimeStack) {
+			if (forInfo.getBodyRange() != null) {
+				forBodyRanges.put(forInfo.getLoopVar().getVariableName(), forInfo.getBodyRange());
+			}
+		}
+
+		INode[] dimExprs = arrVar.getDimExpressions();
+		for (int i = 0; i < dimExprs.length; i++) {
+			int safeMaxIndex = this.integerVariableAnalyzer.getSafeMaxIndex(arrVar, i, this.currentStatement);
+			Range range = this.integerVariableAnalyzer.getRangeInForBodies(dimExprs[i], forBodyRanges);
+			if ((range == null) || (range.isIntegral() == false) || (range.getMin() < 0) || (range.getMax() > safeMaxIndex)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int getStrConstantFieldRefIndex(String string) {
+		if (this.strConstants.containsKey(string) == false) {
+			this.strConstants.put(string, FIELD_STR_CONST_PREFIX + this.strConstants.size());
+		}
+		return this.classModel.addFinalFieldAndGetFieldRefIndex(this.strConstants.get(string), "[C");
+	}
+
+	private int getStrideFieldRefIndex(String arrVarName) {
+		this.arr2DVariables.add(arrVarName);
+		return this.classModel.addFieldAndGetFieldRefIndex(arrVarName + ARRAY_POSTFIX_STRIDE, "I");
+	}
+
+	private boolean isLocalVariableTableFull(String varName) {
+		return (this.localVariables.get(varName) == null) && (this.localVariables.size() >= MAX_LOCAL_INDEX);
+	}
+
 	/// HELPER METHODS ///////////////////////////////////////////////////////////
 
+	private void emitFloatConstToStack(float floatValue) {
+		if (floatValue == 0.0f) {
+			this.o.fconst_0();
+		} else if (floatValue == 1.0f) {
+			this.o.fconst_1();
+		} else if (floatValue == 2.0f) {
+			this.o.fconst_2();
+		} else {
+			this.o.ldc(this.classModel.getFloatIndex(floatValue));
+		}
+	}
+
 	private void emitPrintStringConstFromStack(String string) {
 		if (string.length() == 1) { // Code size optimization: may save inclusion of library methods
 			this.o.iconst(string.charAt(0));
@@ -1083,21 +2245,38 @@ public class Compiler {
 	}
 
 	private void emitFloatFromStackToNumVariable(VariableNode numVar) {
+		numVar = promoteToLocalVariable(numVar);
 		String varName = numVar.getVariableName();
 
-		if (numVar instanceof LocalVariableNode) {
+		if (isIntegerVariable(numVar)) {
+			this.libraryManager.getMethod(LibraryManager.MethodEnum.FLOAT_TO_INTEGER).emitCall(this.o);
+			emitIntFromStackToIntegerVariable(numVar);
+		} else if (isIntLocalVariable(numVar)) {
+			LocalVariableNode numLocVar = (LocalVariableNode) numVar;
+			this.o.f2i(); // exact, since the analyzer proved that all assigned values are integers
+			this.o.istore_opt(numLocVar.getLocalIndex());
+		} else if (numVar instanceof LocalVariableNode) {
 			LocalVariableNode numLocVar = (LocalVariableNode) numVar;
 			this.o.fstore_opt(numLocVar.getLocalIndex());
 		} else {
 			int numDims = numVar.getDimExpressions().length;
 			if (numDims == 0) {
 				this.o.putstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "F"));
+			} else if ((numDims == 1) && isIntExpression(numVar.getDimExpressions()[0])) {
+				emitArrayElementFromStackToIntIndex(numVar, "[[F", LibraryManager.MethodEnum.CHECK_1D_FLOAT_ARRAY_ACCESS);
+				this.o.fastore();
 			} else if (numDims == 1) {
+				this.arrVariables.put(varName, "[[F");
 				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[F"));
 				emitNumExpressionToStack(numVar.getDimExpressions()[0]);
 				this.libraryManager.getMethod(LibraryManager.MethodEnum.STORE_FLOAT_IN_1D_ARRAY).emitCall(this.o);
+			} else if ((numDims == 2) && isIntExpression(numVar.getDimExpressions()[0]) && isIntExpression(numVar.getDimExpressions()[1])) {
+				emitArrayElementFromStackToIntIndexes(numVar, "[[F", LibraryManager.MethodEnum.CHECK_2D_FLOAT_ARRAY_ACCESS);
+				this.o.fastore();
 			} else if (numDims == 2) {
-				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[[F"));
+				this.arrVariables.put(varName, "[[F");
+				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[F"));
+				this.o.getstatic(getStrideFieldRefIndex(varName));
 				emitNumExpressionToStack(numVar.getDimExpressions()[0]);
 				emitNumExpressionToStack(numVar.getDimExpressions()[1]);
 				this.libraryManager.getMethod(LibraryManager.MethodEnum.STORE_FLOAT_IN_2D_ARRAY).emitCall(this.o);
@@ -1106,6 +2285,7 @@ public class Compiler {
 	}
 
 	private void emitCharsFromStackToStrVariable(VariableNode strVar) {
+		strVar = promoteToLocalVariable(strVar);
 		String varName = strVar.getVariableName();
 
 		if (strVar instanceof LocalVariableNode) {
@@ -1115,12 +2295,21 @@ public class Compiler {
 			int numDims = strVar.getDimExpressions().length;
 			if (numDims == 0) {
 				this.o.putstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[C"));
+			} else if ((numDims == 1) && isIntExpression(strVar.getDimExpressions()[0])) {
+				emitArrayElementFromStackToIntIndex(strVar, "[[[C", LibraryManager.MethodEnum.CHECK_1D_STRING_ARRAY_ACCESS);
+				this.o.aastore();
 			} else if (numDims == 1) {
+				this.arrVariables.put(varName, "[[[C");
 				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[[C"));
 				emitNumExpressionToStack(strVar.getDimExpressions()[0]);
 				this.libraryManager.getMethod(LibraryManager.MethodEnum.STORE_STRING_IN_1D_ARRAY).emitCall(this.o);
+			} else if ((numDims == 2) && isIntExpression(strVar.getDimExpressions()[0]) && isIntExpression(strVar.getDimExpressions()[1])) {
+				emitArrayElementFromStackToIntIndexes(strVar, "[[[C", LibraryManager.MethodEnum.CHECK_2D_STRING_ARRAY_ACCESS);
+				this.o.aastore();
 			} else if (numDims == 2) {
-				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[[[C"));
+				this.arrVariables.put(varName, "[[[C");
+				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[[C"));
+				this.o.getstatic(getStrideFieldRefIndex(varName));
 				emitNumExpressionToStack(strVar.getDimExpressions()[0]);
 				emitNumExpressionToStack(strVar.getDimExpressions()[1]);
 				this.libraryManager.getMethod(LibraryManager.MethodEnum.STORE_STRING_IN_2D_ARRAY).emitCall(this.o);
@@ -1129,7 +2318,12 @@ public class Compiler {
 	}
 
 	private void emitNumExpressionToStack(INode expr) {
-		if (expr instanceof BinaryNode) {
+		if (((expr instanceof BinaryNode) || (expr instanceof UnaryNode)) && isNativeIntExpression(expr)) {
+			emitIntExpressionToStack(expr);
+			this.o.i2f();
+		} else if (isSubstringEqualityExpression(expr)) {
+			emitSubstringEqualityToStack((BinaryNode) expr);
+		} else if (expr instanceof BinaryNode) {
 			BinaryNode binNode = (BinaryNode) expr;
 			INode leftNode = binNode.getLeftNode();
 			INode rightNode = binNode.getRightNode();
@@ -1167,8 +2361,8 @@ public class Compiler {
 					this.libraryManager.getMethod(LibraryManager.MethodEnum.XOR).emitCall(this.o);
 				}
 			} else if (isNumRelationalOpToken(opToken)) {
-				String label1 = ByteOutStream.generateLabel();
-				String label2 = ByteOutStream.generateLabel();
+				String label1 = generateLabel();
+				String label2 = generateLabel();
 
 				this.o.fcmpg();
 				if (opToken == Token.LESS) {
@@ -1220,18 +2414,16 @@ public class Compiler {
 			}
 		} else if (expr instanceof NumNode) {
 			NumNode numNode = (NumNode) expr;
-			float floatValue = numNode.getValue();
-			if (floatValue == 0.0f) {
-				this.o.fconst_0();
-			} else if (floatValue == 1.0f) {
-				this.o.fconst_1();
-			} else if (floatValue == 2.0f) {
-				this.o.fconst_2();
-			} else {
-				this.o.ldc(this.classModel.getFloatIndex(floatValue));
-			}
+			emitFloatConstToStack(numNode.getValue());
 		} else if (expr instanceof VariableNode) {
 			emitFloatFromNumVariableToStack((VariableNode) expr);
+		} else if (isFunctionExpressionOf(expr, FunctionToken.ASC) && isSubstringExpression(((FunctionNode) expr).getArgNodes()[0])) {
+			emitSubstringRangeToStack((FunctionNode) ((FunctionNode) expr).getArgNodes()[0]);
+			this.libraryManager.getMethod(LibraryManager.MethodEnum.ASC_RANGE).emitCall(this.o);
+		} else if (isFunctionExpressionOf(expr, FunctionToken.LEN) && isSubstringExpression(((FunctionNode) expr).getArgNodes()[0])) {
+			emitSubstringRangeToStack((FunctionNode) ((FunctionNode) expr).getArgNodes()[0]);
+			emitLengthOfSubstringRange();
+			this.o.i2f();
 		} else if (expr instanceof FunctionNode) {
 			FunctionNode functionNode = (FunctionNode) expr;
 			FunctionToken functionToken = functionNode.getFunctionToken();
@@ -1290,23 +2482,43 @@ public class Compiler {
 	}
 
 	private void emitFloatFromNumVariableToStack(VariableNode numVar) {
+		if (this.localFnVariables.containsKey(numVar.getVariableName()) == false) {
+			numVar = promoteToLocalVariable(numVar);
+		}
 		String varName = numVar.getVariableName();
 
 		if (this.localFnVariables.containsKey(varName)) {
 			int localVarIndex = this.localFnVariables.get(varName).intValue();
 			this.o.fload_opt(localVarIndex);
+		} else if (isIntegerVariable(numVar)) {
+			emitIntFromIntegerVariableToStack(numVar);
+			this.o.i2f();
+		} else if (isIntLocalVariable(numVar)) {
+			LocalVariableNode numLocVar = (LocalVariableNode) numVar;
+			this.o.iload_opt(numLocVar.getLocalIndex());
+			this.o.i2f();
+		} else if (numVar instanceof LocalVariableNode) {
+			LocalVariableNode numLocVar = (LocalVariableNode) numVar;
+			this.o.fload_opt(numLocVar.getLocalIndex());
 		} else {
 			int numDims = numVar.getDimExpressions().length;
 			if (numDims == 0) {
 				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "F"));
+			} else if ((numDims == 1) && isIntExpression(numVar.getDimExpressions()[0])) {
+				emitArrayElementFromIntIndexToStack(numVar, "[[F", LibraryManager.MethodEnum.CHECK_1D_FLOAT_ARRAY_ACCESS);
+				this.o.faload();
 			} else if (numDims == 1) {
 				this.arrVariables.put(varName, "[[F");
 				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[F"));
 				emitNumExpressionToStack(numVar.getDimExpressions()[0]);
 				this.libraryManager.getMethod(LibraryManager.MethodEnum.LOAD_FLOAT_FROM_1D_ARRAY).emitCall(this.o);
+			} else if ((numDims == 2) && isIntExpression(numVar.getDimExpressions()[0]) && isIntExpression(numVar.getDimExpressions()[1])) {
+				emitArrayElementFromIntIndexesToStack(numVar, "[[F", LibraryManager.MethodEnum.CHECK_2D_FLOAT_ARRAY_ACCESS);
+				this.o.faload();
 			} else if (numDims == 2) {
-				this.arrVariables.put(varName, "[[[F");
-				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[[F"));
+				this.arrVariables.put(varName, "[[F");
+				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[F"));
+				this.o.getstatic(getStrideFieldRefIndex(varName));
 				emitNumExpressionToStack(numVar.getDimExpressions()[0]);
 				emitNumExpressionToStack(numVar.getDimExpressions()[1]);
 				this.libraryManager.getMethod(LibraryManager.MethodEnum.LOAD_FLOAT_FROM_2D_ARRAY).emitCall(this.o);
@@ -1314,20 +2526,42 @@ public class Compiler {
 		}
 	}
 
+	private static void collectConcatenatedStrExpressions(INode expr, List<INode> strExprs) {
+		if ((expr instanceof BinaryNode) && (((BinaryNode) expr).getOp() == Token.STRING_ADD)) {
+			collectConcatenatedStrExpressions(((BinaryNode) expr).getLeftNode(), strExprs);
+			collectConcatenatedStrExpressions(((BinaryNode) expr).getRightNode(), strExprs);
+		} else {
+			strExprs.add(expr);
+		}
+	}
+
 	private void emitStrExpressionToStack(INode expr) {
 		if (expr instanceof BinaryNode) {
 			BinaryNode binNode = (BinaryNode) expr;
 			Token opToken = binNode.getOp();
 			if (opToken == Token.STRING_ADD) {
-				emitStrExpressionToStack(binNode.getLeftNode());
-				emitStrExpressionToStack(binNode.getRightNode());
-				this.libraryManager.getMethod(LibraryManager.MethodEnum.STRING_CONCATENATION).emitCall(this.o); // TOOD
+				List<INode> strExprs = new ArrayList<INode>();
+				collectConcatenatedStrExpressions(binNode, strExprs);
+				if (strExprs.size() == 2) {
+					emitStrExpressionToStack(strExprs.get(0));
+					emitStrExpressionToStack(strExprs.get(1));
+					this.libraryManager.getMethod(LibraryManager.MethodEnum.STRING_CONCATENATION).emitCall(this.o);
+				} else {
+					// A$ + B$ + C$ ... sizes the result once and copies each string once
+					this.o.iconst(strExprs.size());
+					this.o.anewarray(this.classModel.getClassIndex("[C"));
+					for (int i = 0; i < strExprs.size(); i++) {
+						this.o.dup();
+						this.o.iconst(i);
+						emitStrExpressionToStack(strExprs.get(i));
+						this.o.aastore();
+					}
+					this.libraryManager.getMethod(LibraryManager.MethodEnum.MULTIPLE_STRING_CONCATENATION).emitCall(this.o);
+				}
 			}
 		} else if (expr instanceof StrNode) {
 			StrNode strNode = (StrNode) expr;
-			String string = strNode.getValue();
-			this.o.ldc(this.classModel.getStringIndex(string));
-			this.libraryManager.getMethod(LibraryManager.MethodEnum.STRING_TO_CHARS).emitCall(this.o);
+			this.o.getstatic(getStrConstantFieldRefIndex(strNode.getValue()));
 		} else if (expr instanceof VariableNode) {
 			emitCharsFromStrVariableToStack((VariableNode) expr);
 		} else if (expr instanceof FunctionNode) {
@@ -1366,24 +2600,37 @@ public class Compiler {
 	}
 
 	private void emitCharsFromStrVariableToStack(VariableNode strVar) {
+		if (this.localFnVariables.containsKey(strVar.getVariableName()) == false) {
+			strVar = promoteToLocalVariable(strVar);
+		}
 		String varName = strVar.getVariableName();
 
 		if (this.localFnVariables.containsKey(varName)) {
 			int localVarIndex = this.localFnVariables.get(varName).intValue();
 			this.o.aload_opt(localVarIndex);
+		} else if (strVar instanceof LocalVariableNode) {
+			LocalVariableNode strLocVar = (LocalVariableNode) strVar;
+			this.o.aload_opt(strLocVar.getLocalIndex());
 		} else {
 			int numDims = strVar.getDimExpressions().length;
 			if (numDims == 0) {
 				this.strVariables.add(varName);
 				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[C"));
+			} else if ((numDims == 1) && isIntExpression(strVar.getDimExpressions()[0])) {
+				emitArrayElementFromIntIndexToStack(strVar, "[[[C", LibraryManager.MethodEnum.CHECK_1D_STRING_ARRAY_ACCESS);
+				this.o.aaload();
 			} else if (numDims == 1) {
 				this.arrVariables.put(varName, "[[[C");
 				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[[C"));
 				emitNumExpressionToStack(strVar.getDimExpressions()[0]);
 				this.libraryManager.getMethod(LibraryManager.MethodEnum.LOAD_STRING_FROM_1D_ARRAY).emitCall(this.o);
+			} else if ((numDims == 2) && isIntExpression(strVar.getDimExpressions()[0]) && isIntExpression(strVar.getDimExpressions()[1])) {
+				emitArrayElementFromIntIndexesToStack(strVar, "[[[C", LibraryManager.MethodEnum.CHECK_2D_STRING_ARRAY_ACCESS);
+				this.o.aaload();
 			} else if (numDims == 2) {
-				this.arrVariables.put(varName, "[[[[C");
-				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[[[C"));
+				this.arrVariables.put(varName, "[[[C");
+				this.o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(varName, "[[[C"));
+				this.o.getstatic(getStrideFieldRefIndex(varName));
 				emitNumExpressionToStack(strVar.getDimExpressions()[0]);
 				emitNumExpressionToStack(strVar.getDimExpressions()[1]);
 				this.libraryManager.getMethod(LibraryManager.MethodEnum.LOAD_STRING_FROM_2D_ARRAY).emitCall(this.o);
@@ -1411,6 +2658,79 @@ public class Compiler {
 		this.o.invokestatic(this.classModel.getMethodRefIndex(methodName, descriptor));
 	}
 
+	// ASC() and LEN() of LEFT$(), MID$() or RIGHT$() only need the range of the substring in its source,
+	// so the substring itself is never created. The range is packed into an int: (start index << 16) | end index
+
+	private boolean isSubstringExpression(INode expr) {
+		return isFunctionExpressionOf(expr, FunctionToken.LEFT) || //
+				isFunctionExpressionOf(expr, FunctionToken.MID) || //
+				isFunctionExpressionOf(expr, FunctionToken.RIGHT);
+	}
+
+	// stack: -> source char[], range
+	private void emitSubstringRangeToStack(FunctionNode functionNode) {
+		INode[] args = functionNode.getArgNodes();
+		emitStrExpressionToStack(args[0]);
+		this.o.dup();
+		for (int i = 1; i < args.length; i++) {
+			emitNumExpressionToStack(args[i]);
+		}
+		FunctionToken functionToken = functionNode.getFunctionToken();
+		if (functionToken == FunctionToken.LEFT) {
+			this.libraryManager.getMethod(LibraryManager.MethodEnum.LEFT_RANGE).emitCall(this.o);
+		} else if (functionToken == FunctionToken.MID) {
+			this.libraryManager.getMethod(LibraryManager.MethodEnum.MID_RANGE).emitCall(this.o);
+		} else if (functionToken == FunctionToken.RIGHT) {
+			this.libraryManager.getMethod(LibraryManager.MethodEnum.RIGHT_RANGE).emitCall(this.o);
+		}
+	}
+
+	// X$ = MID$(Y$, I, 1) and the like, with a LEFT$/MID$/RIGHT$ operand on either side
+	private boolean isSubstringEqualityExpression(INode expr) {
+		if ((expr instanceof BinaryNode) == false) {
+			return false;
+		}
+		BinaryNode binNode = (BinaryNode) expr;
+		Token opToken = binNode.getOp();
+		if ((opToken != Token.STRING_EQUAL) && (opToken != Token.STRING_NOT_EQUAL)) {
+			return false;
+		}
+		return isSubstringExpression(binNode.getLeftNode()) || isSubstringExpression(binNode.getRightNode());
+	}
+
+	// stack: -> -1 if equal else 0, or the other way round for <>. The operands are evaluated from left to right.
+	private void emitSubstringEqualityToStack(BinaryNode binNode) {
+		INode leftNode = binNode.getLeftNode();
+		INode rightNode = binNode.getRightNode();
+		if (isSubstringExpression(leftNode)) {
+			emitSubstringRangeToStack((FunctionNode) leftNode);
+			emitStrExpressionToStack(rightNode);
+			this.o.dup_x2(); // source char[], range, char[] -> char[], source char[], range
+			this.o.pop();
+		} else {
+			emitStrExpressionToStack(leftNode);
+			emitSubstringRangeToStack((FunctionNode) rightNode);
+		}
+		this.libraryManager.getMethod(LibraryManager.MethodEnum.STRING_EQUAL_RANGE).emitCall(this.o);
+		if (binNode.getOp() == Token.STRING_NOT_EQUAL) {
+			this.o.fneg(); // -1 -> 0, 0 -> -1
+			this.o.fconst_1();
+			this.o.fsub();
+		}
+	}
+
+	// stack: source char[], range -> length of range
+	private void emitLengthOfSubstringRange() {
+		this.o.swap();
+		this.o.pop();
+		this.o.dup();
+		this.o.i2c();
+		this.o.swap();
+		this.o.iconst(16);
+		this.o.iushr();
+		this.o.isub();
+	}
+
 	private boolean isArithmeticOpToken(Token opToken) {
 		if ((opToken == Token.ADD) || //
 				(opToken == Token.SUBTRACT) || //
@@ -31,17 +31,29 @@
 
 package org.basiccompiler.compiler.etc;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
-public class ByteOutStream extends ByteArrayOutputStream {
+// Not thread-safe: every stream is filled by one thread only, so unlike ByteArrayOutputStream
+// nothing is synchronized. The buffer doubles when full, up to maxLength.
+public class ByteOutStream {
+	private final static int DEFAULT_INITIAL_SIZE = 256;
+
 	private final int maxLength;
+	private byte[] buf;
+	private int count;
 
 	public ByteOutStream(int maxLength) {
+		this(Math.min(DEFAULT_INITIAL_SIZE, maxLength), maxLength);
+	}
+
+	public ByteOutStream(int initialSize, int maxLength) {
+		this.buf = new byte[initialSize];
 		this.maxLength = maxLength;
 	}
 
@@ -53,23 +65,91 @@ public class ByteOutStream extends ByteArrayOutputStream {
 		return this.count;
 	}
 
-	public void write_u1(int value) {
-		if (this.count >= this.maxLength) {
+	public int size() {
+		return this.count;
+	}
+
+	public byte[] toByteArray() {
+		return Arrays.copyOf(this.buf, this.count);
+	}
+
+	public void writeTo(OutputStream outStream) throws IOException {
+		outStream.write(this.buf, 0, this.count);
+	}
+
+	private void ensureCapacity(int length) {
+		if (this.count > (this.maxLength - length)) {
 			throw new CompileException("Write after end of stream.");
 		}
-		write(value & 0xff);
+		int minCapacity = this.count + length;
+		if (minCapacity > this.buf.length) {
+			int newCapacity = Math.max(this.buf.length << 1, minCapacity);
+			if ((newCapacity < 0) || (newCapacity > this.maxLength)) {
+				newCapacity = this.maxLength;
+			}
+			this.buf = Arrays.copyOf(this.buf, newCapacity);
+		}
+	}
+
+	public void write_u1(int value) {
+		ensureCapacity(1);
+		this.buf[this.count++] = (byte) value;
 	}
 
 	public void write_u2(int value) {
-		write_u1(value >> 8);
-		write_u1(value);
+		ensureCapacity(2);
+		this.buf[this.count] = (byte) (value >> 8);
+		this.buf[this.count + 1] = (byte) value;
+		this.count += 2;
 	}
 
 	public void write_u4(int value) {
-		write_u1(value >> 24);
-		write_u1(value >> 16);
-		write_u1(value >> 8);
-		write_u1(value);
+		ensureCapacity(4);
+		this.buf[this.count] = (byte) (value >> 24);
+		this.buf[this.count + 1] = (byte) (value >> 16);
+		this.buf[this.count + 2] = (byte) (value >> 8);
+		this.buf[this.count + 3] = (byte) value;
+		this.count += 4;
+	}
+
+	// opcode and operand(s) in one step
+
+	private void write_u1_u1(int opcode, int value) {
+		ensureCapacity(2);
+		this.buf[this.count] = (byte) opcode;
+		this.buf[this.count + 1] = (byte) value;
+		this.count += 2;
+	}
+
+	private void write_u1_u2(int opcode, int value) {
+		ensureCapacity(3);
+		this.buf[this.count] = (byte) opcode;
+		this.buf[this.count + 1] = (byte) (value >> 8);
+		this.buf[this.count + 2] = (byte) value;
+		this.count += 3;
+	}
+
+	private void write_branch(int opcode, String label) {
+		ensureCapacity(3);
+		this.buf[this.count] = (byte) opcode;
+		patchHereToLabel(label, this.count + 1);
+		this.buf[this.count + 1] = 0x00;
+		this.buf[this.count + 2] = 0x00;
+		this.count += 3;
+	}
+
+	public void write_bytes(byte[] bytes) {
+		write_bytes(bytes, bytes.length);
+	}
+
+	public void write_bytes(ByteOutStream o) {
+		write_bytes(o.buf, o.count);
+	}
+
+	private void write_bytes(byte[] bytes, int length) {
+		ensureCapacity(length);
+		System.arraycopy(bytes, 0, this.buf, this.count, length);
+		this.count += length;
 	}
 
 	private void patch_u1(int patchPos, int value) {
@@ -119,8 +199,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void aload(int local_index) {
-		write_u1(0x19);
-		write_u1(local_index);
+		write_u1_u1(0x19, local_index);
 	}
 
 	public void aload_opt(int local_index) {
@@ -138,8 +217,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
   public void anewarray(int cp_index) {
-    write_u1(0xbd);
-    write_u2(cp_index);
+    write_u1_u2(0xbd, cp_index);
   }  
   
 	public void areturn() {
@@ -167,8 +245,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void astore(int local_index) {
-		write_u1(0x3a);
-		write_u1(local_index);
+		write_u1_u1(0x3a, local_index);
 	}
 
 	public void astore_opt(int local_index) {
@@ -194,8 +271,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void bipush(int value) {
-		write_u1(0x10);
-		write_u1(value);
+		write_u1_u1(0x10, value);
 	}
 
 	public void caload() {
@@ -218,6 +294,18 @@ public class ByteOutStream extends ByteArrayOutputStream {
 		write_u1(0x59);
 	}
 
+	public void dup_x2() {
+		write_u1(0x5b);
+	}
+
+	public void dup2() {
+		write_u1(0x5c);
+	}
+
+	public void dup2_x1() {
+		write_u1(0x5d);
+	}
+
 	public void f2d() {
 		write_u1(0x8d);
 	}
@@ -289,8 +377,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void fload(int local_index) {
-		write_u1(0x17);
-		write_u1(local_index);
+		write_u1_u1(0x17, local_index);
 	}
 
 	public void fmul() {
@@ -322,8 +409,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void fstore(int local_index) {
-		write_u1(0x38);
-		write_u1(local_index);
+		write_u1_u1(0x38, local_index);
 	}
 
 	public void fstore_opt(int local_index) {
@@ -345,8 +431,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void getstatic(int cp_index) {
-		write_u1(0xb2);
-		write_u2(cp_index);
+		write_u1_u2(0xb2, cp_index);
 	}
 
 	public void goto_() {
@@ -354,9 +439,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void goto_(String label) {
-		write_u1(0xa7);
-		patchHereToLabel(label);
-		write_u2(0x00);
+		write_branch(0xa7, label);
 	}
 
 	public void i2c() {
@@ -398,7 +481,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 			iconst_2();
 		} else if ((value >= -128) && (value < 128)) {
 			bipush(value);
-		} else if ((value >= -65536) && (value < 65536)) {
+		} else if ((value >= -32768) && (value < 32768)) {
 			sipush(value);
 		} else {
 			// TODO: Add support for iconst() with 32-bit integer value
@@ -431,9 +514,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void ifeq(String label) {
-		write_u1(0x99);
-		patchHereToLabel(label);
-		write_u2(0x00);
+		write_branch(0x99, label);
 	}
 
 	public void ifge() {
@@ -441,9 +522,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void ifge(String label) {
-		write_u1(0x9c);
-		patchHereToLabel(label);
-		write_u2(0x00);
+		write_branch(0x9c, label);
 	}
 
 	public void ifgt() {
@@ -451,9 +530,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void ifgt(String label) {
-		write_u1(0x9d);
-		patchHereToLabel(label);
-		write_u2(0x00);
+		write_branch(0x9d, label);
 	}
 
 	public void ifle() {
@@ -461,9 +538,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void ifle(String label) {
-		write_u1(0x9e);
-		patchHereToLabel(label);
-		write_u2(0x00);
+		write_branch(0x9e, label);
 	}
 
 	public void iflt() {
@@ -471,9 +546,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void iflt(String label) {
-		write_u1(0x9b);
-		patchHereToLabel(label);
-		write_u2(0x00);
+		write_branch(0x9b, label);
 	}
 
 	public void ifne() {
@@ -481,63 +554,51 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void ifne(String label) {
-		write_u1(0x9a);
-		patchHereToLabel(label);
-		write_u2(0x00);
+		write_branch(0x9a, label);
 	}
 
 	public void ifnonnull(String label) {
-		write_u1(0xc7);
-		patchHereToLabel(label);
-		write_u2(0x00);
+		write_branch(0xc7, label);
 	}
 
   public void ifnull(String label) {
-    write_u1(0xc6);
-    patchHereToLabel(label);
-    write_u2(0x00);
+    write_branch(0xc6, label);
   }
 
   public void iinc(int local_index, int increment) {
-		write_u1(0x84);
-		write_u1(local_index);
-		write_u1(increment);
+		write_u1_u2(0x84, (local_index << 8) | (increment & 0xff));
 	}
 
 	public void if_icmpeq(String label) {
-		write_u1(0x9f);
-		patchHereToLabel(label);
-		write_u2(0x00);
+		write_branch(0x9f, label);
 	}
 
 	public void if_icmpge(String label) {
-		write_u1(0xa2);
-		patchHereToLabel(label);
-		write_u2(0x00);
+		write_branch(0xa2, label);
 	}
 
-	public void if_icmpgt(String label) {
+	public void if_icmpgt() {
 		write_u1(0xa3);
-		patchHereToLabel(label);
-		write_u2(0x00);
+	}
+
+	public void if_icmpgt(String label) {
+		write_branch(0xa3, label);
 	}
 
 	public void if_icmple(String label) {
-		write_u1(0xa4);
-		patchHereToLabel(label);
-		write_u2(0x00);
+		write_branch(0xa4, label);
 	}
 
-	public void if_icmplt(String label) {
+	public void if_icmplt() {
 		write_u1(0xa1);
-		patchHereToLabel(label);
-		write_u2(0x00);
+	}
+
+	public void if_icmplt(String label) {
+		write_branch(0xa1, label);
 	}
 
 	public void if_icmpne(String label) {
-		write_u1(0xa0);
-		patchHereToLabel(label);
-		write_u2(0x00);
+		write_branch(0xa0, label);
 	}
 
 	public void iload_0() {
@@ -557,8 +618,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void iload(int local_index) {
-		write_u1(0x15);
-		write_u1(local_index);
+		write_u1_u1(0x15, local_index);
 	}
 
 	public void iload_opt(int local_index) {
@@ -584,18 +644,15 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void invokespecial(int cp_index) {
-		write_u1(0xb7);
-		write_u2(cp_index);
+		write_u1_u2(0xb7, cp_index);
 	}
 
 	public void invokestatic(int cp_index) {
-		write_u1(0xb8);
-		write_u2(cp_index);
+		write_u1_u2(0xb8, cp_index);
 	}
 
 	public void invokevirtual(int cp_index) {
-		write_u1(0xb6);
-		write_u2(cp_index);
+		write_u1_u2(0xb6, cp_index);
 	}
 
 	public void ior() {
@@ -635,8 +692,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void istore(int local_index) {
-		write_u1(0x36);
-		write_u1(local_index);
+		write_u1_u1(0x36, local_index);
 	}
 
 	public void istore_opt(int local_index) {
@@ -657,58 +713,61 @@ public class ByteOutStream extends ByteArrayOutputStream {
 		write_u1(0x64);
 	}
 
+	public void iushr() {
+		write_u1(0x7c);
+	}
+
 	public void ixor() {
 		write_u1(0x82);
 	}
 
 	public void ldc(int cp_index) {
 		if (cp_index < 256) {
-			write_u1(0x12);
-			write_u1(cp_index);
+			write_u1_u1(0x12, cp_index);
 		} else {
-			write_u1(0x13);
-			write_u2(cp_index);
+			write_u1_u2(0x13, cp_index);
 		}
 	}
 
+	public void lookupswitch() {
+		write_u1(0xab);
+	}
+
 	public void multianewarray(int arrayClassIndex, int numDims) {
-		write_u1(0xc5);
-		write_u2(arrayClassIndex);
+		write_u1_u2(0xc5, arrayClassIndex);
 		write_u1(numDims);
 	}
 
 	public void new_(int cp_index) {
-		write_u1(0xbb);
-		write_u2(cp_index);
+		write_u1_u2(0xbb, cp_index);
 	}
 
 	public void newarray_byte() {
-		write_u1(0xbc);
-		write_u1(0x08);
+		write_u1_u1(0xbc, 0x08);
 	}
 
 	public void newarray_char() {
-		write_u1(0xbc);
-		write_u1(0x05);
+		write_u1_u1(0xbc, 0x05);
 	}
 
 	public void newarray_float() {
-		write_u1(0xbc);
-		write_u1(0x06);
+		write_u1_u1(0xbc, 0x06);
 	}
 
 	public void newarray_int() {
-		write_u1(0xbc);
-		write_u1(0x0a);
+		write_u1_u1(0xbc, 0x0a);
 	}
 
 	public void pop() {
 		write_u1(0x57);
 	}
 
+	public void pop2() {
+		write_u1(0x58);
+	}
+
 	public void putstatic(int cp_index) {
-		write_u1(0xb3);
-		write_u2(cp_index);
+		write_u1_u2(0xb3, cp_index);
 	}
 
 	public void return_() {
@@ -716,8 +775,7 @@ public class ByteOutStream extends ByteArrayOutputStream {
 	}
 
 	public void sipush(int value) {
-		write_u1(0x11);
-		write_u2(value);
+		write_u1_u2(0x11, value);
 	}
 
 	public void swap() {
@@ -730,14 +788,8 @@ public class ByteOutStream extends ByteArrayOutputStream {
 
 	//////////////////////////////////////////////////////////////////////////////
 
-	private static int labelCounter = 0;
-
 	private final Map<String /* label */, Integer /* label pos */> labelTable = new HashMap<String, Integer>();
 
-	public static String generateLabel() {
-		return "_label" + labelCounter++;
-	}
-
 	public void label(String label) {
 		if (this.labelTable.containsKey(label)) {
 			throw new CompileException("Label \"" + label + "\" already exists.");
@@ -747,32 +799,22 @@ public class ByteOutStream extends ByteArrayOutputStream {
 
 	private final Map<Integer /* patchPos */, String /* toLabel */> patchHereMap = new HashMap<Integer, String>();
 
-	private void patchHereToLabel(String toLabel) {
-		this.patchHereMap.put(this.pos(), toLabel);
+	private void patchHereToLabel(String toLabel, int patchPos) {
+		this.patchHereMap.put(patchPos, toLabel);
 	}
 
 	public void patchThereToLabel(int patchPos, String toLabel) {
 		this.patchHereMap.put(patchPos, toLabel);
 	}
 
-	@Override
 	public void flush() {
 		patch();
-		try {
-			super.flush();
-		} catch (IOException e) {
-			// ignore
-		}
 	}
 
 	public void closeGracefully() {
-		try {
-			this.close();
-		} catch (IOException e) {
-			// ignore
-		}
+		// nothing to close, the buffer is kept for toByteArray() and writeTo()
 	}
-	
+
 	public void flushAndCloseGracefully() {
 		flush();
 		closeGracefully();
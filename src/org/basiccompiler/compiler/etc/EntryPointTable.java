@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015, Lorenz Wiest
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.basiccompiler.compiler.etc;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+public class EntryPointTable {
+	private int numEntryPoints = 0;
+
+	private final Map<String /* line number */, EntryPoint> lineNumberMap = new HashMap<String, EntryPoint>();
+	private final Map<String /* line number */, Integer /* id */> lineNumberIdMap = new HashMap<String, Integer>();
+	private final Map<Integer /* id */, EntryPoint> returnMap = new HashMap<Integer, EntryPoint>();
+
+	public static class EntryPoint {
+		private final int methodIndex;
+		private final int pos;
+
+		public EntryPoint(int methodIndex, int pos) {
+			this.methodIndex = methodIndex;
+			this.pos = pos;
+		}
+
+		public int getMethodIndex() {
+			return this.methodIndex;
+		}
+
+		public int getPos() {
+			return this.pos;
+		}
+	}
+
+	public void addLineNumber(int methodIndex, int pos, String lineNumber) {
+		this.lineNumberMap.put(lineNumber, new EntryPoint(methodIndex, pos));
+	}
+
+	public int getLineNumberId(String lineNumber) {
+		if (this.lineNumberIdMap.containsKey(lineNumber) == false) {
+			this.lineNumberIdMap.put(lineNumber, this.numEntryPoints++);
+		}
+		return this.lineNumberIdMap.get(lineNumber);
+	}
+
+	public int createReturnId() {
+		return this.numEntryPoints++;
+	}
+
+	public void addReturnPos(int id, int methodIndex, int pos) {
+		this.returnMap.put(id, new EntryPoint(methodIndex, pos));
+	}
+
+	public int size() {
+		return this.numEntryPoints;
+	}
+
+	public Map<Integer /* id */, EntryPoint> resolve() {
+		Map<Integer /* id */, EntryPoint> entryPoints = new TreeMap<Integer, EntryPoint>(this.returnMap);
+		for (Entry<String, Integer> e : this.lineNumberIdMap.entrySet()) {
+			String lineNumber = e.getKey();
+			if (this.lineNumberMap.containsKey(lineNumber) == false) {
+				throw new CompileException("Cannot find label \"" + lineNumber + "\".");
+			}
+			entryPoints.put(e.getValue(), this.lineNumberMap.get(lineNumber));
+		}
+		return entryPoints;
+	}
+}
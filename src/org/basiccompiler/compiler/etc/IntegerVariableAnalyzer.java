@@ -0,0 +1,809 @@
+/*
+ * Copyright (c) 2015, Lorenz Wiest
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.basiccompiler.compiler.etc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+import org.basiccompiler.parser.nodes.INode;
+import org.basiccompiler.parser.nodes.NodeType;
+import org.basiccompiler.parser.nodes.impl.BinaryNode;
+import org.basiccompiler.parser.nodes.impl.FunctionNode;
+import org.basiccompiler.parser.nodes.impl.NumNode;
+import org.basiccompiler.parser.nodes.impl.UnaryNode;
+import org.basiccompiler.parser.nodes.impl.VariableNode;
+import org.basiccompiler.parser.statements.Statement;
+import org.basiccompiler.parser.statements.impl.DimStatement;
+import org.basiccompiler.parser.statements.impl.EndStatement;
+import org.basiccompiler.parser.statements.impl.ForStatement;
+import org.basiccompiler.parser.statements.impl.GosubStatement;
+import org.basiccompiler.parser.statements.impl.GotoStatement;
+import org.basiccompiler.parser.statements.impl.IfStatement;
+import org.basiccompiler.parser.statements.impl.InputStatement;
+import org.basiccompiler.parser.statements.impl.LetStatement;
+import org.basiccompiler.parser.statements.impl.LineNumberStatement;
+import org.basiccompiler.parser.statements.impl.NextStatement;
+import org.basiccompiler.parser.statements.impl.OnGosubStatement;
+import org.basiccompiler.parser.statements.impl.OnGotoStatement;
+import org.basiccompiler.parser.statements.impl.ReadStatement;
+import org.basiccompiler.parser.statements.impl.ReturnStatement;
+import org.basiccompiler.parser.statements.impl.StopStatement;
+import org.basiccompiler.parser.statements.impl.SwapStatement;
+import org.basiccompiler.parser.statements.impl.WendStatement;
+import org.basiccompiler.parser.statements.impl.WhileStatement;
+import org.basiccompiler.parser.tokens.FunctionToken;
+import org.basiccompiler.parser.tokens.Token;
+
+/**
+ * Finds scalar number variables which provably hold only integral values within the range in
+ * which float arithmetic on integers is exact. Such variables can be held in int locals without
+ * changing the program's results.
+ *
+ * The analysis is flow-insensitive: the value range of a variable is the hull of the ranges of all
+ * values assigned to it, computed as a fixed point. A FOR loop variable stays bounded since its NEXT
+ * only increments values which passed the loop test, so loops which can be entered other than
+ * through their FOR statement (branches into the loop body, FOR inside IF, nested loops over the
+ * same variable, GOSUB from the loop body to another loop over the same variable) are rejected.
+ *
+ * Integer variables with the % suffix are not analyzed, their values are always within -32768..32767.
+ *
+ * Array indexes whose range lies within the smallest array any DIM or the implicit DIM can create
+ * are provably within bounds, so their accesses need no bounds check. Accesses which a DIM of the
+ * array dominates need no lazy DIM, and the implicit DIM cannot have created their array.
+ */
+public class IntegerVariableAnalyzer {
+	public final static double MAX_EXACT_INT = 16777216; // 2^24, floats represent all integers up to here
+	public final static Range INTEGER_VARIABLE_RANGE = Range.create(-32768, 32767, true);
+	public final static int IMPLICIT_DIM_MAX_INDEX = 10;
+
+	private final static int MAX_ITERATIONS = 32; // variables whose range still grows after this are rejected
+	private final static double RELATIVE_ROUNDING_ERROR = 1e-6; // a generous bound for a float operation
+
+	private final Set<String /* varName */> fieldVariables;
+	private final Map<String /* varName */, List<INode> /* assigned exprs */> assignments = new HashMap<String, List<INode>>();
+	private final Map<String /* varName */, List<ForStatement>> forLoops = new HashMap<String, List<ForStatement>>();
+	private final Set<String /* varName */> rejectedVariables = new HashSet<String>();
+	private final Set<ForStatement> simpleForLoops = new HashSet<ForStatement>();
+	private final Map<String /* arrName */, List<VariableNode> /* dimensioned arrays */> dims = new HashMap<String, List<VariableNode>>();
+	private final Map<Statement, Set<String> /* arrNames */> dimensionedArrays = new HashMap<Statement, Set<String>>();
+	private Map<String /* varName */, Range> ranges = new HashMap<String, Range>();
+	private boolean isAnalyzed;
+
+	public IntegerVariableAnalyzer(Set<String> fieldVariables) {
+		this.fieldVariables = fieldVariables;
+	}
+
+	public void analyze(List<Statement> statements) {
+		List<Statement> flatStatements = new ArrayList<Statement>();
+		List<Boolean> isInIf = new ArrayList<Boolean>();
+		flatten(statements.toArray(new Statement[statements.size()]), false, flatStatements, isInIf);
+
+		collectAssignments(flatStatements);
+		checkForLoops(flatStatements, isInIf);
+		computeRanges();
+		computeDimensionedArrays(statements);
+		this.isAnalyzed = true;
+	}
+
+	public boolean isIntVariable(String varName) {
+		return this.ranges.containsKey(varName);
+	}
+
+	// A simple loop is always entered through its FOR statement, and no other FOR over the same
+	// variable runs before its NEXT, so its NEXT uses the step and end value of its own FOR.
+	public boolean isSimpleForLoop(ForStatement forStatement) {
+		return this.simpleForLoops.contains(forStatement);
+	}
+
+	// The values of the loop variable in the body of a simple loop are between the start and the end value
+	// if nothing but its FOR statement assigns the loop variable. Null if the range is not known.
+	public Range getForBodyRange(ForStatement forStatement) {
+		VariableNode loopVar = forStatement.getLoopVariable();
+		String loopVarName = loopVar.getVariableName();
+		if ((isSimpleForLoop(forStatement) == false) || (isIntVariable(loopVarName) == false) || (this.assignments.get(loopVarName).isEmpty() == false)) {
+			return null;
+		}
+		Range startRange = getRange(forStatement.getStartExpression());
+		Range endRange = getRange(forStatement.getEndExpression());
+		Integer step = getIntConstant(forStatement.getStepExpression());
+		if ((startRange == null) || (endRange == null) || (step == null) || (step.intValue() == 0)) {
+			return null;
+		}
+		if (step.intValue() > 0) {
+			return Range.create(startRange.getMin(), Math.floor(endRange.getMax()), true);
+		}
+		return Range.create(Math.ceil(endRange.getMin()), startRange.getMax(), true);
+	}
+
+	public Range getRange(INode expr) {
+		return getRange(expr, this.ranges);
+	}
+
+	// the range inside the bodies of FOR loops, whose loop variables have the given ranges
+	public Range getRangeInForBodies(INode expr, Map<String /* varName */, Range> forBodyRanges) {
+		if (forBodyRanges.isEmpty()) {
+			return getRange(expr, this.ranges);
+		}
+		Map<String, Range> varRanges = new HashMap<String, Range>(this.ranges);
+		varRanges.putAll(forBodyRanges);
+		return getRange(expr, varRanges);
+	}
+
+	// The array is certainly dimensioned when the statement runs: a DIM of the array dominates the statement,
+	// or the program has no DIM of the array, so it gets its implicit DIM at program start. The statement
+	// is null for code which does not belong to a statement, like the DEF FN functions.
+	public boolean isDimensioned(String arrName, Statement statement) {
+		if (isImplicitlyDimensioned(arrName)) {
+			return true;
+		}
+		Set<String> arrNames = (statement != null) ? this.dimensionedArrays.get(statement) : null;
+		return (arrNames != null) && arrNames.contains(arrName);
+	}
+
+	public boolean isImplicitlyDimensioned(String arrName) {
+		return this.isAnalyzed && (this.dims.containsKey(arrName) == false);
+	}
+
+	// The max index of the given dimension which is valid in every array the program can create for the
+	// array variable, -1 if it is not known. Any array can get the implicit DIM of 10, unless a DIM of the
+	// array dominates the statement, since that DIM fails if the array got the implicit DIM before.
+	public int getSafeMaxIndex(VariableNode arrVar, int dimIndex, Statement statement) {
+		if (this.isAnalyzed == false) {
+			return -1; // the DIM statements are not known
+		}
+		String arrName = arrVar.getVariableName();
+		boolean isExplicitlyDimensioned = (isImplicitlyDimensioned(arrName) == false) && isDimensioned(arrName, statement);
+		int safeMaxIndex = isExplicitlyDimensioned ? Integer.MAX_VALUE : IMPLICIT_DIM_MAX_INDEX;
+		List<VariableNode> dimVars = this.dims.get(arrName);
+		if (dimVars != null) {
+			for (VariableNode dimVar : dimVars) {
+				INode[] dimExprs = dimVar.getDimExpressions();
+				Range range = (dimExprs.length > dimIndex) ? getRange(dimExprs[dimIndex]) : null;
+				if (range == null) {
+					return -1;
+				}
+				safeMaxIndex = Math.min(safeMaxIndex, (int) Math.floor(range.getMin())); // DIM rounds to the nearest integer
+			}
+		}
+		return Math.max(safeMaxIndex, -1);
+	}
+
+	public boolean isIntExpression(INode expr) {
+		Range range = getRange(expr);
+		return (range != null) && range.isIntegral();
+	}
+
+	// all values are integers which can be assigned to an integer variable without an overflow
+	public boolean isWithinIntegerRange(INode expr) {
+		Range range = getRange(expr);
+		return (range != null) && range.isIntegral() && (range.getMin() >= INTEGER_VARIABLE_RANGE.getMin()) && (range.getMax() <= INTEGER_VARIABLE_RANGE.getMax());
+	}
+
+	public Integer getIntConstant(INode expr) {
+		Range range = getRange(expr);
+		if ((range != null) && range.isIntegral() && (range.getMin() == range.getMax())) {
+			return Integer.valueOf((int) range.getMin());
+		}
+		return null;
+	}
+
+	public Float getFloatConstant(INode expr) {
+		if (expr instanceof NumNode) {
+			return Float.valueOf(((NumNode) expr).getValue());
+		} else if (expr instanceof UnaryNode) {
+			UnaryNode unaryNode = (UnaryNode) expr;
+			Float value = getFloatConstant(unaryNode.getArgNode());
+			if ((value != null) && (unaryNode.getOp() == Token.OPEN)) {
+				return value;
+			} else if ((value != null) && (unaryNode.getOp() == Token.UNARY_MINUS)) {
+				return Float.valueOf(-value.floatValue());
+			}
+		}
+		Integer value = getIntConstant(expr); // exact for all operators
+		return (value != null) ? Float.valueOf(value.intValue()) : null;
+	}
+
+	/// STATEMENTS ///////////////////////////////////////////////////////////////
+
+	// flattens the statements in the order the compiler emits them, so FOR and NEXT match like at compile time
+	private void flatten(Statement[] statements, boolean isInIf, List<Statement> flatStatements, List<Boolean> isInIfList) {
+		for (Statement statement : statements) {
+			flatStatements.add(statement);
+			isInIfList.add(Boolean.valueOf(isInIf));
+			if (statement instanceof IfStatement) {
+				IfStatement ifStatement = (IfStatement) statement;
+				flatten(ifStatement.getThenStatements(), true, flatStatements, isInIfList);
+				flatten(ifStatement.getElseStatements(), true, flatStatements, isInIfList);
+			}
+		}
+	}
+
+	private void collectAssignments(List<Statement> flatStatements) {
+		for (int i = 0; i < flatStatements.size(); i++) {
+			Statement statement = flatStatements.get(i);
+			if (statement instanceof LetStatement) {
+				LetStatement s = (LetStatement) statement;
+				addAssignment((VariableNode) s.getVariable(), s.getExpression());
+			} else if (statement instanceof SwapStatement) {
+				SwapStatement s = (SwapStatement) statement;
+				addAssignment(s.getVariable1(), s.getVariable2());
+				addAssignment(s.getVariable2(), s.getVariable1());
+			} else if (statement instanceof InputStatement) {
+				for (VariableNode var : ((InputStatement) statement).getVariables()) {
+					rejectVariable(var);
+				}
+			} else if (statement instanceof ReadStatement) {
+				for (VariableNode var : ((ReadStatement) statement).getVariables()) {
+					rejectVariable(var);
+				}
+			} else if (statement instanceof DimStatement) {
+				for (VariableNode var : ((DimStatement) statement).getVariables()) {
+					addDim(var);
+				}
+			} else if (statement instanceof ForStatement) {
+				ForStatement s = (ForStatement) statement;
+				String varName = s.getLoopVariable().getVariableName();
+				if (this.forLoops.containsKey(varName) == false) {
+					this.forLoops.put(varName, new ArrayList<ForStatement>());
+				}
+				this.forLoops.get(varName).add(s);
+				addAssignment(s.getLoopVariable(), null);
+			}
+		}
+	}
+
+	private void addAssignment(VariableNode var, INode expr) {
+		if (isScalarNumVariable(var)) {
+			String varName = var.getVariableName();
+			if (this.assignments.containsKey(varName) == false) {
+				this.assignments.put(varName, new ArrayList<INode>());
+			}
+			if (expr != null) {
+				this.assignments.get(varName).add(expr);
+			}
+		}
+	}
+
+	private void addDim(VariableNode var) {
+		String arrName = var.getVariableName();
+		if (this.dims.containsKey(arrName) == false) {
+			this.dims.put(arrName, new ArrayList<VariableNode>());
+		}
+		this.dims.get(arrName).add(var);
+	}
+
+	private void rejectVariable(VariableNode var) {
+		if (isScalarNumVariable(var)) {
+			this.rejectedVariables.add(var.getVariableName());
+		}
+	}
+
+	private static boolean isScalarNumVariable(VariableNode var) {
+		return (var.getType() == NodeType.NUM) && (var.getDimExpressions().length == 0) && (var.isIntegerVariable() == false);
+	}
+
+	private void checkForLoops(List<Statement> flatStatements, List<Boolean> isInIf) {
+		Map<String /* line number */, Integer /* index */> lineNumberIndexes = new HashMap<String, Integer>();
+		for (int i = 0; i < flatStatements.size(); i++) {
+			if (flatStatements.get(i) instanceof LineNumberStatement) {
+				lineNumberIndexes.put(((LineNumberStatement) flatStatements.get(i)).getLineNumber(), Integer.valueOf(i));
+			}
+		}
+
+		Stack<Integer /* index of FOR */> forStack = new Stack<Integer>();
+		for (int i = 0; i < flatStatements.size(); i++) {
+			Statement statement = flatStatements.get(i);
+			if (statement instanceof ForStatement) {
+				forStack.push(Integer.valueOf(i));
+			} else if (statement instanceof NextStatement) {
+				int numLoopVars = Math.max(1, ((NextStatement) statement).getLoopVariables().length);
+				for (int j = 0; (j < numLoopVars) && (forStack.isEmpty() == false); j++) {
+					int forIndex = forStack.pop().intValue();
+					if ((isInIf.get(forIndex).booleanValue() == false) && isSimpleForLoop(flatStatements, lineNumberIndexes, forIndex, i)) {
+						this.simpleForLoops.add((ForStatement) flatStatements.get(forIndex));
+					}
+				}
+			}
+		}
+
+		for (List<ForStatement> forStatements : this.forLoops.values()) {
+			for (ForStatement forStatement : forStatements) {
+				if (this.simpleForLoops.contains(forStatement) == false) { // e.g. FOR without NEXT
+					rejectVariable(forStatement.getLoopVariable());
+				}
+			}
+		}
+	}
+
+	private boolean isSimpleForLoop(List<Statement> flatStatements, Map<String, Integer> lineNumberIndexes, int forIndex, int nextIndex) {
+		String loopVarName = ((ForStatement) flatStatements.get(forIndex)).getLoopVariable().getVariableName();
+		boolean hasOtherLoops = this.forLoops.get(loopVarName).size() > 1;
+
+		for (int i = 0; i < flatStatements.size(); i++) {
+			Statement statement = flatStatements.get(i);
+			boolean isInLoop = (i > forIndex) && (i <= nextIndex);
+			if (isInLoop && (statement instanceof ForStatement) && ((ForStatement) statement).getLoopVariable().getVariableName().equals(loopVarName)) {
+				return false;
+			}
+			if (isInLoop && hasOtherLoops && ((statement instanceof GosubStatement) || (statement instanceof OnGosubStatement))) {
+				return false;
+			}
+			if ((isInLoop == false) && (i != forIndex)) {
+				for (String lineNumber : getBranchLineNumbers(statement)) {
+					Integer targetIndex = lineNumberIndexes.get(lineNumber);
+					if ((targetIndex != null) && (targetIndex.intValue() > forIndex) && (targetIndex.intValue() <= nextIndex)) {
+						return false; // branch into the loop body
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	private static String[] getBranchLineNumbers(Statement statement) {
+		if (statement instanceof GotoStatement) {
+			return new String[] { ((GotoStatement) statement).getLineNumber() };
+		} else if (statement instanceof GosubStatement) {
+			return new String[] { ((GosubStatement) statement).getLineNumber() };
+		} else if (statement instanceof OnGotoStatement) {
+			return ((OnGotoStatement) statement).getLineNumbers();
+		} else if (statement instanceof OnGosubStatement) {
+			return ((OnGosubStatement) statement).getLineNumbers();
+		}
+		return new String[0];
+	}
+
+	/// DIM BEFORE USE ///////////////////////////////////////////////////////////
+
+	// The arrays which are certainly dimensioned when a statement runs are computed as a forward dataflow
+	// over the statements in the order the compiler emits them. Arrays are never undimensioned, so a RETURN
+	// continues with at least the arrays which were dimensioned at its GOSUB, and the edge from GOSUB to
+	// the next statement stands for all RETURNs.
+
+	private void computeDimensionedArrays(List<Statement> statements) {
+		List<Statement> flatStatements = new ArrayList<Statement>();
+		List<Integer> nextIndexes = new ArrayList<Integer>();
+		flattenWithNextIndexes(statements.toArray(new Statement[statements.size()]), -1, flatStatements, nextIndexes);
+		List<Set<Integer>> successors = getSuccessors(flatStatements, nextIndexes);
+
+		List<Set<String>> arrNamesList = new ArrayList<Set<String>>(); // null if not reached
+		for (int i = 0; i < flatStatements.size(); i++) {
+			arrNamesList.add(null);
+		}
+		if (flatStatements.isEmpty()) {
+			return;
+		}
+		arrNamesList.set(0, new HashSet<String>());
+
+		Stack<Integer> worklist = new Stack<Integer>();
+		worklist.push(Integer.valueOf(0));
+		while (worklist.isEmpty() == false) {
+			int index = worklist.pop().intValue();
+			Set<String> outArrNames = new HashSet<String>(arrNamesList.get(index));
+			Statement statement = flatStatements.get(index);
+			if (statement instanceof DimStatement) {
+				for (VariableNode var : ((DimStatement) statement).getVariables()) {
+					outArrNames.add(var.getVariableName());
+				}
+			}
+			for (Integer successor : successors.get(index)) {
+				Set<String> inArrNames = arrNamesList.get(successor.intValue());
+				if (inArrNames == null) {
+					arrNamesList.set(successor.intValue(), new HashSet<String>(outArrNames));
+					worklist.push(successor);
+				} else if (inArrNames.retainAll(outArrNames)) {
+					worklist.push(successor);
+				}
+			}
+		}
+
+		for (int i = 0; i < flatStatements.size(); i++) {
+			if (arrNamesList.get(i) != null) {
+				this.dimensionedArrays.put(flatStatements.get(i), arrNamesList.get(i));
+			}
+		}
+	}
+
+	// like flatten(), and records the index of the statement which runs next without a branch, -1 at the end
+	static void flattenWithNextIndexes(Statement[] statements, int nextIndex, List<Statement> flatStatements, List<Integer> nextIndexes) {
+		for (int i = 0; i < statements.length; i++) {
+			Statement statement = statements[i];
+			int index = flatStatements.size();
+			int statementNextIndex = (i < (statements.length - 1)) ? index + getFlatSize(statement) : nextIndex;
+			flatStatements.add(statement);
+			nextIndexes.add(Integer.valueOf(statementNextIndex));
+			if (statement instanceof IfStatement) {
+				IfStatement ifStatement = (IfStatement) statement;
+				flattenWithNextIndexes(ifStatement.getThenStatements(), statementNextIndex, flatStatements, nextIndexes);
+				flattenWithNextIndexes(ifStatement.getElseStatements(), statementNextIndex, flatStatements, nextIndexes);
+			}
+		}
+	}
+
+	static int getFlatSize(Statement statement) {
+		int size = 1;
+		if (statement instanceof IfStatement) {
+			IfStatement ifStatement = (IfStatement) statement;
+			size += getFlatSize(ifStatement.getThenStatements());
+			size += getFlatSize(ifStatement.getElseStatements());
+		}
+		return size;
+	}
+
+	private static int getFlatSize(Statement[] statements) {
+		int size = 0;
+		for (Statement statement : statements) {
+			size += getFlatSize(statement);
+		}
+		return size;
+	}
+
+	static List<Set<Integer>> getSuccessors(List<Statement> flatStatements, List<Integer> nextIndexes) {
+		Map<String /* line number */, Integer /* index */> lineNumberIndexes = new HashMap<String, Integer>();
+		List<Set<Integer>> successors = new ArrayList<Set<Integer>>();
+		for (int i = 0; i < flatStatements.size(); i++) {
+			if (flatStatements.get(i) instanceof LineNumberStatement) {
+				lineNumberIndexes.put(((LineNumberStatement) flatStatements.get(i)).getLineNumber(), Integer.valueOf(i));
+			}
+			successors.add(new HashSet<Integer>());
+		}
+
+		Stack<Integer /* index of FOR */> forStack = new Stack<Integer>();
+		Stack<Integer /* index of WHILE */> whileStack = new Stack<Integer>();
+		for (int i = 0; i < flatStatements.size(); i++) {
+			Statement statement = flatStatements.get(i);
+			int nextIndex = nextIndexes.get(i).intValue();
+			boolean isFallThrough = true;
+
+			if (statement instanceof IfStatement) {
+				IfStatement ifStatement = (IfStatement) statement;
+				int thenSize = getFlatSize(ifStatement.getThenStatements());
+				int elseSize = getFlatSize(ifStatement.getElseStatements());
+				addSuccessor(successors, i, (thenSize > 0) ? i + 1 : nextIndex);
+				addSuccessor(successors, i, (elseSize > 0) ? i + 1 + thenSize : nextIndex);
+				isFallThrough = false;
+			} else if (statement instanceof ForStatement) {
+				forStack.push(Integer.valueOf(i));
+			} else if (statement instanceof NextStatement) {
+				int numLoopVars = Math.max(1, ((NextStatement) statement).getLoopVariables().length);
+				for (int j = 0; (j < numLoopVars) && (forStack.isEmpty() == false); j++) {
+					int forIndex = forStack.pop().intValue();
+					addSuccessor(successors, i, forIndex); // loop
+					addSuccessor(successors, forIndex, i); // leave the loop, the NEXT goes on with the next loop variable or statement
+				}
+			} else if (statement instanceof WhileStatement) {
+				whileStack.push(Integer.valueOf(i));
+			} else if ((statement instanceof WendStatement) && (whileStack.isEmpty() == false)) {
+				int whileIndex = whileStack.pop().intValue();
+				addSuccessor(successors, i, whileIndex); // loop
+				addSuccessor(successors, whileIndex, nextIndex); // leave the loop
+				isFallThrough = false;
+			} else if ((statement instanceof GotoStatement) || (statement instanceof ReturnStatement) || (statement instanceof EndStatement) || (statement instanceof StopStatement)) {
+				isFallThrough = false;
+			}
+
+			for (String lineNumber : getBranchLineNumbers(statement)) {
+				Integer targetIndex = lineNumberIndexes.get(lineNumber);
+				if (targetIndex != null) {
+					addSuccessor(successors, i, targetIndex.intValue());
+				}
+			}
+			if (isFallThrough) {
+				addSuccessor(successors, i, nextIndex);
+			}
+		}
+		return successors; // FOR and WHILE without NEXT and WEND leave their loops to the end of the program
+	}
+
+	private static void addSuccessor(List<Set<Integer>> successors, int index, int successorIndex) {
+		if (successorIndex >= 0) {
+			successors.get(index).add(Integer.valueOf(successorIndex));
+		}
+	}
+
+	/// RANGES ///////////////////////////////////////////////////////////////////
+
+	private void computeRanges() {
+		Map<String, Range> currentRanges = new HashMap<String, Range>();
+		for (String varName : this.assignments.keySet()) {
+			if ((this.rejectedVariables.contains(varName) == false) && (this.fieldVariables.contains(varName) == false)) {
+				currentRanges.put(varName, Range.ZERO);
+			}
+		}
+
+		while (true) {
+			Set<String> changedVarNames = new HashSet<String>();
+			for (int i = 0; i < MAX_ITERATIONS; i++) {
+				changedVarNames.clear();
+				Map<String, Range> nextRanges = new HashMap<String, Range>();
+				for (String varName : currentRanges.keySet()) {
+					Range range = computeRange(varName, currentRanges);
+					if (range != null) {
+						nextRanges.put(varName, range);
+					}
+					if ((range == null) || (range.equals(currentRanges.get(varName)) == false)) {
+						changedVarNames.add(varName);
+					}
+				}
+				currentRanges = nextRanges;
+				if (changedVarNames.isEmpty()) {
+					this.ranges = currentRanges;
+					return;
+				}
+			}
+			for (String varName : changedVarNames) {
+				currentRanges.remove(varName); // still growing, e.g. X = X + 1
+			}
+		}
+	}
+
+	private Range computeRange(String varName, Map<String, Range> currentRanges) {
+		List<Range> assignedRanges = new ArrayList<Range>();
+		for (INode expr : this.assignments.get(varName)) {
+			Range range = getRange(expr, currentRanges);
+			if ((range == null) || (range.isIntegral() == false)) {
+				return null;
+			}
+			assignedRanges.add(range);
+		}
+
+		Range range = Range.ZERO; // initial value
+		for (Range assignedRange : assignedRanges) {
+			range = range.hull(assignedRange);
+		}
+
+		if (this.forLoops.containsKey(varName)) {
+			for (ForStatement forStatement : this.forLoops.get(varName)) {
+				Range startRange = getRange(forStatement.getStartExpression(), currentRanges);
+				Range endRange = getRange(forStatement.getEndExpression(), currentRanges);
+				Integer step = getIntConstant(forStatement.getStepExpression(), currentRanges);
+				if ((startRange == null) || (startRange.isIntegral() == false) || (endRange == null) || (step == null) || (step.intValue() == 0)) {
+					return null;
+				}
+				int intStep = step.intValue();
+				range = range.hull(startRange);
+				if (intStep > 0) {
+					range = range.hull(Range.create(Math.floor(endRange.getMax()) + intStep));
+				} else {
+					range = range.hull(Range.create(Math.ceil(endRange.getMin()) + intStep));
+				}
+				for (Range assignedRange : assignedRanges) { // assigned in the loop body, then incremented by NEXT
+					range = range.hull(assignedRange.add(Range.create(intStep)));
+				}
+			}
+		}
+		return range.isBounded() ? range : null;
+	}
+
+	private Integer getIntConstant(INode expr, Map<String, Range> currentRanges) {
+		Range range = getRange(expr, currentRanges);
+		if ((range != null) && range.isIntegral() && (range.getMin() == range.getMax())) {
+			return Integer.valueOf((int) range.getMin());
+		}
+		return null;
+	}
+
+	private static Range getRange(INode expr, Map<String, Range> varRanges) {
+		Range range = null;
+		if (expr instanceof NumNode) {
+			range = Range.create(((NumNode) expr).getValue());
+		} else if (expr instanceof VariableNode) {
+			VariableNode var = (VariableNode) expr;
+			if ((var.getType() == NodeType.NUM) && var.isIntegerVariable()) {
+				range = INTEGER_VARIABLE_RANGE;
+			} else if (isScalarNumVariable(var)) {
+				range = varRanges.get(var.getVariableName());
+			}
+		} else if (expr instanceof UnaryNode) {
+			range = getUnaryRange((UnaryNode) expr, varRanges);
+		} else if (expr instanceof BinaryNode) {
+			range = getBinaryRange((BinaryNode) expr, varRanges);
+		} else if (expr instanceof FunctionNode) {
+			range = getFunctionRange((FunctionNode) expr, varRanges);
+		}
+		return ((range != null) && range.isBounded()) ? range : null;
+	}
+
+	private static Range getUnaryRange(UnaryNode unaryNode, Map<String, Range> varRanges) {
+		Token op = unaryNode.getOp();
+		if (op == Token.NOT) {
+			return Range.create(-32768, 32767, true);
+		}
+		Range argRange = getRange(unaryNode.getArgNode(), varRanges);
+		if (argRange == null) {
+			return null;
+		} else if (op == Token.OPEN) {
+			return argRange;
+		} else if (op == Token.UNARY_MINUS) {
+			return argRange.negate();
+		}
+		return null;
+	}
+
+	private static Range getBinaryRange(BinaryNode binaryNode, Map<String, Range> varRanges) {
+		Token op = binaryNode.getOp();
+		if ((op == Token.AND) || (op == Token.OR) || (op == Token.XOR)) {
+			return Range.create(-32768, 32767, true);
+		} else if ((op == Token.LESS) || (op == Token.LESS_OR_EQUAL) || (op == Token.EQUAL) || (op == Token.GREATER_OR_EQUAL) || (op == Token.GREATER) || (op == Token.NOT_EQUAL)) {
+			return Range.create(-1, 0, true);
+		} else if ((op == Token.STRING_LESS) || (op == Token.STRING_LESS_OR_EQUAL) || (op == Token.STRING_EQUAL) || (op == Token.STRING_GREATER_OR_EQUAL) || (op == Token.STRING_GREATER) || (op == Token.STRING_NOT_EQUAL)) {
+			return Range.create(-1, 0, true);
+		}
+
+		Range leftRange = getRange(binaryNode.getLeftNode(), varRanges);
+		Range rightRange = getRange(binaryNode.getRightNode(), varRanges);
+		if ((leftRange == null) || (rightRange == null)) {
+			return null;
+		} else if (op == Token.ADD) {
+			return leftRange.add(rightRange);
+		} else if (op == Token.SUBTRACT) {
+			return leftRange.add(rightRange.negate());
+		} else if (op == Token.MULTIPLY) {
+			return leftRange.multiply(rightRange);
+		} else if (op == Token.DIVIDE) {
+			return leftRange.divide(rightRange);
+		} else if ((op == Token.INT_DIVIDE) || (op == Token.MOD)) {
+			if ((rightRange.getMin() >= 0.5) || (rightRange.getMax() <= -0.5)) { // no division by zero after rounding
+				return Range.create(-32768, 32768, true);
+			}
+		}
+		return null;
+	}
+
+	private static Range getFunctionRange(FunctionNode functionNode, Map<String, Range> varRanges) {
+		FunctionToken functionToken = functionNode.getFunctionToken();
+		if ((functionToken == FunctionToken.LEN) || (functionToken == FunctionToken.INSTR)) {
+			return Range.create(0, 255, true);
+		} else if (functionToken == FunctionToken.ASC) {
+			return Range.create(0, Character.MAX_VALUE, true);
+		} else if (functionToken == FunctionToken.SGN) {
+			return Range.create(-1, 1, true);
+		} else if (functionToken == FunctionToken.RND) {
+			return Range.create(0, 1, false);
+		}
+
+		INode[] argNodes = functionNode.getArgNodes();
+		Range argRange = (argNodes.length == 1) ? getRange(argNodes[0], varRanges) : null;
+		if (argRange == null) {
+			return null;
+		} else if (functionToken == FunctionToken.INT) {
+			return Range.create(Math.floor(argRange.getMin()), Math.floor(argRange.getMax()), true);
+		} else if (functionToken == FunctionToken.FIX) {
+			return Range.create(truncate(argRange.getMin()), truncate(argRange.getMax()), true);
+		} else if (functionToken == FunctionToken.ABS) {
+			return argRange.hull(argRange.negate()).hull(Range.ZERO).intersectNonNegative();
+		}
+		return null;
+	}
+
+	private static double truncate(double value) {
+		return (value < 0) ? Math.ceil(value) : Math.floor(value);
+	}
+
+	/// RANGE ////////////////////////////////////////////////////////////////////
+
+	public static class Range {
+		public final static Range ZERO = create(0);
+
+		private final double min;
+		private final double max;
+		private final boolean isIntegral; // all values are integers
+
+		private Range(double min, double max, boolean isIntegral) {
+			this.min = min;
+			this.max = max;
+			this.isIntegral = isIntegral;
+		}
+
+		public static Range create(double value) {
+			return create(value, value, value == Math.rint(value));
+		}
+
+		public static Range create(double min, double max, boolean isIntegral) {
+			if (isIntegral == false) { // leave room for the rounding errors of float operations
+				min -= (Math.abs(min) * RELATIVE_ROUNDING_ERROR) + Float.MIN_VALUE;
+				max += (Math.abs(max) * RELATIVE_ROUNDING_ERROR) + Float.MIN_VALUE;
+			}
+			return new Range(min, max, isIntegral);
+		}
+
+		public double getMin() {
+			return this.min;
+		}
+
+		public double getMax() {
+			return this.max;
+		}
+
+		public boolean isIntegral() {
+			return this.isIntegral;
+		}
+
+		public boolean isBounded() {
+			return (this.min >= -MAX_EXACT_INT) && (this.max <= MAX_EXACT_INT);
+		}
+
+		public Range hull(Range range) {
+			return new Range(Math.min(this.min, range.min), Math.max(this.max, range.max), this.isIntegral && range.isIntegral);
+		}
+
+		public Range negate() {
+			return new Range(-this.max, -this.min, this.isIntegral);
+		}
+
+		public Range add(Range range) {
+			return create(this.min + range.min, this.max + range.max, this.isIntegral && range.isIntegral);
+		}
+
+		public Range multiply(Range range) {
+			double p1 = this.min * range.min;
+			double p2 = this.min * range.max;
+			double p3 = this.max * range.min;
+			double p4 = this.max * range.max;
+			return create(Math.min(Math.min(p1, p2), Math.min(p3, p4)), Math.max(Math.max(p1, p2), Math.max(p3, p4)), this.isIntegral && range.isIntegral);
+		}
+
+		public Range divide(Range range) {
+			if ((range.min <= 0) && (range.max >= 0)) {
+				return null; // "Division by zero" yields infinity
+			}
+			double q1 = this.min / range.min;
+			double q2 = this.min / range.max;
+			double q3 = this.max / range.min;
+			double q4 = this.max / range.max;
+			return create(Math.min(Math.min(q1, q2), Math.min(q3, q4)), Math.max(Math.max(q1, q2), Math.max(q3, q4)), false);
+		}
+
+		private Range intersectNonNegative() {
+			return new Range(Math.max(0, this.min), this.max, this.isIntegral);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if ((obj instanceof Range) == false) {
+				return false;
+			}
+			Range range = (Range) obj;
+			return (this.min == range.min) && (this.max == range.max) && (this.isIntegral == range.isIntegral);
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (Double.doubleToLongBits(this.min) ^ Double.doubleToLongBits(this.max));
+		}
+	}
+}
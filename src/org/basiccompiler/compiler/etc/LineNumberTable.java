@@ -35,6 +35,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeSet;
 
 public class LineNumberTable {
 	private final Map<String /* line number */, Integer /* pos */> lineNumberMap = new HashMap<String, Integer>();
@@ -76,6 +77,21 @@ public class LineNumberTable {
 		this.patchThereMap.put(patchPos, new PatchInfo(fromPos, lineNumberTo));
 	}
 
+	public Set<String> getUnresolvedLineNumbers() {
+		Set<String /* line number */> unresolvedLineNumbers = new TreeSet<String>();
+		for (String toLineNumber : this.patchHereMap.values()) {
+			if (this.lineNumberMap.containsKey(toLineNumber) == false) {
+				unresolvedLineNumbers.add(toLineNumber);
+			}
+		}
+		for (PatchInfo patchInfo : this.patchThereMap.values()) {
+			if (this.lineNumberMap.containsKey(patchInfo.getToLineNumber()) == false) {
+				unresolvedLineNumbers.add(patchInfo.getToLineNumber());
+			}
+		}
+		return unresolvedLineNumbers;
+	}
+
 	public void flush(ByteOutStream o) {
 		Set<Entry<Integer, String>> patchHereEntrySet = this.patchHereMap.entrySet();
 		for (Entry<Integer, String> patchHereEntry : patchHereEntrySet) {
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2015, Lorenz Wiest
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of the FreeBSD Project.
+ */
+
+
+package org.basiccompiler.compiler.etc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.Stack;
+import java.util.TreeMap;
+
+import org.basiccompiler.parser.statements.Statement;
+import org.basiccompiler.parser.statements.impl.EndStatement;
+import org.basiccompiler.parser.statements.impl.ForStatement;
+import org.basiccompiler.parser.statements.impl.GosubStatement;
+import org.basiccompiler.parser.statements.impl.GotoStatement;
+import org.basiccompiler.parser.statements.impl.LineNumberStatement;
+import org.basiccompiler.parser.statements.impl.NextStatement;
+import org.basiccompiler.parser.statements.impl.OnGosubStatement;
+import org.basiccompiler.parser.statements.impl.OnGotoStatement;
+import org.basiccompiler.parser.statements.impl.StopStatement;
+import org.basiccompiler.parser.statements.impl.WendStatement;
+import org.basiccompiler.parser.statements.impl.WhileStatement;
+
+/**
+ * Finds GOSUB subroutines which can be compiled into methods of their own, so GOSUB becomes a
+ * method call and RETURN a return from the method instead of a jump through the return table.
+ *
+ * A subroutine is a range of lines which starts at the target of a GOSUB, which control flow enters
+ * only at its first line, and which it leaves only by RETURN. A GOSUB continues with its next
+ * statement, so it is no branch. Subroutines which contain END, STOP, ON GOSUB, loops without NEXT
+ * or WEND, or the target of another GOSUB are rejected, as well as the targets of ON GOSUB and
+ * subroutines with a FOR loop on a variable which a FOR loop of the main program uses, too.
+ * A subroutine may only call other subroutines, and must not call itself again. All other
+ * GOSUBs keep using the return table.
+ */
+public class SubroutineAnalyzer {
+	private final Set<String /* line number */> lineNumbers = new HashSet<String>();
+	private final Map<Integer /* statement index */, Subroutine> subroutines = new HashMap<Integer, Subroutine>();
+
+	public void analyze(List<Statement> statements) {
+		List<Statement> programStatements = new ArrayList<Statement>(statements);
+		programStatements.add(EndStatement.getInstance()); // running past the last line ends the program
+
+		List<Statement> flatStatements = new ArrayList<Statement>();
+		List<Integer> nextIndexes = new ArrayList<Integer>();
+		IntegerVariableAnalyzer.flattenWithNextIndexes(programStatements.toArray(new Statement[programStatements.size()]), -1, flatStatements, nextIndexes);
+		List<Set<Integer>> successors = IntegerVariableAnalyzer.getSuccessors(flatStatements, nextIndexes);
+		boolean[] isReachable = getReachableIndexes(successors);
+
+		// the index of the statement of the program which contains the flattened statement
+		int[] statementIndexes = new int[flatStatements.size()];
+		int[] lastIndexes = new int[flatStatements.size()];
+		int index = 0;
+		for (int i = 0; i < programStatements.size(); i++) {
+			int flatSize = IntegerVariableAnalyzer.getFlatSize(programStatements.get(i));
+			Arrays.fill(statementIndexes, index, index + flatSize, i);
+			Arrays.fill(lastIndexes, index, index + flatSize, (index + flatSize) - 1);
+			index += flatSize;
+		}
+
+		Map<String /* line number */, Integer /* index */> lineNumberIndexes = new HashMap<String, Integer>();
+		Set<String /* line number */> gosubLineNumbers = new HashSet<String>();
+		Set<String /* line number */> onGosubLineNumbers = new HashSet<String>();
+		for (int i = 0; i < flatStatements.size(); i++) {
+			Statement statement = flatStatements.get(i);
+			if (statement instanceof LineNumberStatement) {
+				String lineNumber = ((LineNumberStatement) statement).getLineNumber();
+				if (lineNumberIndexes.containsKey(lineNumber)) {
+					return; // the compiler reports the duplicate line number
+				}
+				lineNumberIndexes.put(lineNumber, Integer.valueOf(i));
+			} else if (statement instanceof GosubStatement) {
+				gosubLineNumbers.add(((GosubStatement) statement).getLineNumber());
+				Set<Integer> gosubSuccessors = new HashSet<Integer>();
+				gosubSuccessors.add(nextIndexes.get(i)); // the subroutine returns here
+				successors.set(i, gosubSuccessors);
+			} else if (statement instanceof OnGosubStatement) {
+				onGosubLineNumbers.addAll(Arrays.asList(((OnGosubStatement) statement).getLineNumbers()));
+			}
+		}
+		Set<String> targetLineNumbers = new HashSet<String>(gosubLineNumbers);
+		targetLineNumbers.addAll(onGosubLineNumbers);
+		Set<Integer> unmatchedLoopIndexes = getUnmatchedLoopIndexes(flatStatements);
+
+		Map<String /* line number */, int[] /* first and last index */> candidates = new TreeMap<String, int[]>();
+		for (String lineNumber : gosubLineNumbers) {
+			Integer firstIndex = lineNumberIndexes.get(lineNumber);
+			if ((firstIndex == null) || (firstIndex.intValue() == 0) || onGosubLineNumbers.contains(lineNumber)) {
+				continue; // undefined line, or the program starts there
+			}
+			int first = firstIndex.intValue();
+			int last = getLastIndex(first, successors, lastIndexes);
+			if ((last >= 0) && isEnteredAtFirstIndexOnly(first, last, successors, flatStatements, isReachable) && isSupported(first, last, flatStatements, targetLineNumbers, unmatchedLoopIndexes)) {
+				candidates.put(lineNumber, new int[] { first, last });
+			}
+		}
+
+		boolean isChanged = true;
+		while (isChanged) {
+			isChanged = false;
+			Set<String> mainForVariableNames = getMainForVariableNames(candidates, flatStatements);
+			for (Iterator<Entry<String, int[]>> it = candidates.entrySet().iterator(); it.hasNext();) {
+				Entry<String, int[]> e = it.next();
+				if ((candidates.keySet().containsAll(getCalledLineNumbers(e.getValue(), flatStatements)) == false) || isRecursive(e.getKey(), candidates, flatStatements)
+						|| containsForVariable(e.getValue(), mainForVariableNames, flatStatements)) {
+					it.remove();
+					isChanged = true;
+				}
+			}
+		}
+
+		for (Entry<String, int[]> e : candidates.entrySet()) {
+			int firstStatementIndex = statementIndexes[e.getValue()[0]];
+			int lastStatementIndex = statementIndexes[e.getValue()[1]];
+			this.lineNumbers.add(e.getKey());
+			this.subroutines.put(Integer.valueOf(firstStatementIndex), new Subroutine(e.getKey(), firstStatementIndex, lastStatementIndex));
+		}
+	}
+
+	public boolean isSubroutine(String lineNumber) {
+		return this.lineNumbers.contains(lineNumber);
+	}
+
+	// the subroutine which starts with the statement of the program, null if there is none
+	public Subroutine getSubroutine(int statementIndex) {
+		return this.subroutines.get(Integer.valueOf(statementIndex));
+	}
+
+	// The last index of the smallest range of whole statements of the program which starts at the first
+	// index and contains all successors of its statements, -1 if a statement branches back before it.
+	private static int getLastIndex(int first, List<Set<Integer>> successors, int[] lastIndexes) {
+		int last = first;
+		for (int i = first; i <= last; i++) {
+			last = Math.max(last, lastIndexes[i]);
+			for (Integer successor : successors.get(i)) {
+				if (successor.intValue() < first) {
+					return -1;
+				}
+				last = Math.max(last, lastIndexes[successor.intValue()]);
+			}
+		}
+		return last;
+	}
+
+	// Statements which are never run, like DATA or REM lines after a RETURN, may fall through to the first index,
+	// but must not branch to a line, since the subroutine's lines are unknown outside of its method.
+	private static boolean isEnteredAtFirstIndexOnly(int first, int last, List<Set<Integer>> successors, List<Statement> flatStatements, boolean[] isReachable) {
+		for (int i = 0; i < successors.size(); i++) {
+			if ((i >= first) && (i <= last)) {
+				continue;
+			}
+			Statement statement = flatStatements.get(i);
+			boolean isBranchToLine = (statement instanceof GotoStatement) || (statement instanceof OnGotoStatement) || (statement instanceof OnGosubStatement);
+			for (Integer successor : successors.get(i)) {
+				if ((successor.intValue() == first) && (isReachable[i] == false) && (isBranchToLine == false)) {
+					continue;
+				}
+				if ((successor.intValue() >= first) && (successor.intValue() <= last)) {
+					return false; // falls through or branches into the subroutine
+				}
+			}
+		}
+		return true;
+	}
+
+	private static boolean[] getReachableIndexes(List<Set<Integer>> successors) {
+		boolean[] isReachable = new boolean[successors.size()];
+		Stack<Integer> worklist = new Stack<Integer>();
+		worklist.push(Integer.valueOf(0));
+		while (worklist.isEmpty() == false) {
+			int index = worklist.pop().intValue();
+			if (isReachable[index] == false) {
+				isReachable[index] = true;
+				worklist.addAll(successors.get(index));
+			}
+		}
+		return isReachable;
+	}
+
+	private static boolean isSupported(int first, int last, List<Statement> flatStatements, Set<String> targetLineNumbers, Set<Integer> unmatchedLoopIndexes) {
+		for (int i = first; i <= last; i++) {
+			Statement statement = flatStatements.get(i);
+			if ((statement instanceof EndStatement) || (statement instanceof StopStatement) || (statement instanceof OnGosubStatement)) {
+				return false;
+			} else if (unmatchedLoopIndexes.contains(Integer.valueOf(i))) {
+				return false; // leaves the loop to the end of the program
+			} else if ((i > first) && (statement instanceof LineNumberStatement) && targetLineNumbers.contains(((LineNumberStatement) statement).getLineNumber())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// FOR and WHILE statements which are matched by no NEXT and WEND, like in IntegerVariableAnalyzer.getSuccessors()
+	private static Set<Integer> getUnmatchedLoopIndexes(List<Statement> flatStatements) {
+		Stack<Integer /* index of FOR */> forStack = new Stack<Integer>();
+		Stack<Integer /* index of WHILE */> whileStack = new Stack<Integer>();
+		for (int i = 0; i < flatStatements.size(); i++) {
+			Statement statement = flatStatements.get(i);
+			if (statement instanceof ForStatement) {
+				forStack.push(Integer.valueOf(i));
+			} else if (statement instanceof NextStatement) {
+				int numLoopVars = Math.max(1, ((NextStatement) statement).getLoopVariables().length);
+				for (int j = 0; (j < numLoopVars) && (forStack.isEmpty() == false); j++) {
+					forStack.pop();
+				}
+			} else if (statement instanceof WhileStatement) {
+				whileStack.push(Integer.valueOf(i));
+			} else if ((statement instanceof WendStatement) && (whileStack.isEmpty() == false)) {
+				whileStack.pop();
+			}
+		}
+		Set<Integer> unmatchedLoopIndexes = new HashSet<Integer>(forStack);
+		unmatchedLoopIndexes.addAll(whileStack);
+		return unmatchedLoopIndexes;
+	}
+
+	private static Set<String> getCalledLineNumbers(int[] range, List<Statement> flatStatements) {
+		Set<String> calledLineNumbers = new HashSet<String>();
+		for (int i = range[0]; i <= range[1]; i++) {
+			if (flatStatements.get(i) instanceof GosubStatement) {
+				calledLineNumbers.add(((GosubStatement) flatStatements.get(i)).getLineNumber());
+			}
+		}
+		return calledLineNumbers;
+	}
+
+	// The end and step values of FOR loops in subroutine methods are fields, the ones of the main program are
+	// mostly local variables, so a FOR of a subroutine must not share its loop variable with a FOR of the main program.
+	private static Set<String> getMainForVariableNames(Map<String, int[]> candidates, List<Statement> flatStatements) {
+		boolean[] isInSubroutine = new boolean[flatStatements.size()];
+		for (int[] range : candidates.values()) {
+			Arrays.fill(isInSubroutine, range[0], range[1] + 1, true);
+		}
+		Set<String> mainForVariableNames = new HashSet<String>();
+		for (int i = 0; i < flatStatements.size(); i++) {
+			if ((isInSubroutine[i] == false) && (flatStatements.get(i) instanceof ForStatement)) {
+				mainForVariableNames.add(((ForStatement) flatStatements.get(i)).getLoopVariable().getVariableName());
+			}
+		}
+		return mainForVariableNames;
+	}
+
+	private static boolean containsForVariable(int[] range, Set<String> forVariableNames, List<Statement> flatStatements) {
+		for (int i = range[0]; i <= range[1]; i++) {
+			if ((flatStatements.get(i) instanceof ForStatement) && forVariableNames.contains(((ForStatement) flatStatements.get(i)).getLoopVariable().getVariableName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isRecursive(String lineNumber, Map<String, int[]> candidates, List<Statement> flatStatements) {
+		Set<String> visitedLineNumbers = new HashSet<String>();
+		Stack<String> worklist = new Stack<String>();
+		worklist.addAll(getCalledLineNumbers(candidates.get(lineNumber), flatStatements));
+		while (worklist.isEmpty() == false) {
+			String calledLineNumber = worklist.pop();
+			if (calledLineNumber.equals(lineNumber)) {
+				return true;
+			}
+			if (visitedLineNumbers.add(calledLineNumber) && candidates.containsKey(calledLineNumber)) {
+				worklist.addAll(getCalledLineNumbers(candidates.get(calledLineNumber), flatStatements));
+			}
+		}
+		return false;
+	}
+
+	public static class Subroutine {
+		private final String lineNumber;
+		private final int firstStatementIndex;
+		private final int lastStatementIndex;
+
+		public Subroutine(String lineNumber, int firstStatementIndex, int lastStatementIndex) {
+			this.lineNumber = lineNumber;
+			this.firstStatementIndex = firstStatementIndex;
+			this.lastStatementIndex = lastStatementIndex;
+		}
+
+		public String getLineNumber() {
+			return this.lineNumber;
+		}
+
+		public int getFirstStatementIndex() {
+			return this.firstStatementIndex;
+		}
+
+		public int getLastStatementIndex() {
+			return this.lastStatementIndex;
+		}
+	}
+}
@@ -31,6 +31,7 @@
 
 package org.basiccompiler.compiler.library;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
@@ -38,21 +39,29 @@ import java.util.Map;
 import org.basiccompiler.bytecode.ClassModel;
 import org.basiccompiler.compiler.library.methods.Method;
 import org.basiccompiler.compiler.library.methods.arrays.Method_Check1DFloatArrayAccess;
+import org.basiccompiler.compiler.library.methods.arrays.Method_Check1DIntArrayAccess;
 import org.basiccompiler.compiler.library.methods.arrays.Method_Check1DStringArrayAccess;
 import org.basiccompiler.compiler.library.methods.arrays.Method_Check2DFloatArrayAccess;
+import org.basiccompiler.compiler.library.methods.arrays.Method_Check2DIntArrayAccess;
 import org.basiccompiler.compiler.library.methods.arrays.Method_Check2DStringArrayAccess;
 import org.basiccompiler.compiler.library.methods.arrays.Method_Dim1DCheckSize;
 import org.basiccompiler.compiler.library.methods.arrays.Method_Dim1DFloatArray;
+import org.basiccompiler.compiler.library.methods.arrays.Method_Dim1DIntArray;
 import org.basiccompiler.compiler.library.methods.arrays.Method_Dim1DStringArray;
 import org.basiccompiler.compiler.library.methods.arrays.Method_Dim2DCheckSize;
 import org.basiccompiler.compiler.library.methods.arrays.Method_Dim2DFloatArray;
+import org.basiccompiler.compiler.library.methods.arrays.Method_Dim2DIntArray;
 import org.basiccompiler.compiler.library.methods.arrays.Method_Dim2DStringArray;
 import org.basiccompiler.compiler.library.methods.arrays.Method_LoadFloatFrom1DArray;
 import org.basiccompiler.compiler.library.methods.arrays.Method_LoadFloatFrom2DArray;
+import org.basiccompiler.compiler.library.methods.arrays.Method_LoadIntFrom1DArray;
+import org.basiccompiler.compiler.library.methods.arrays.Method_LoadIntFrom2DArray;
 import org.basiccompiler.compiler.library.methods.arrays.Method_LoadStringFrom1DArray;
 import org.basiccompiler.compiler.library.methods.arrays.Method_LoadStringFrom2DArray;
 import org.basiccompiler.compiler.library.methods.arrays.Method_StoreFloatIn1DArray;
 import org.basiccompiler.compiler.library.methods.arrays.Method_StoreFloatIn2DArray;
+import org.basiccompiler.compiler.library.methods.arrays.Method_StoreIntIn1DArray;
+import org.basiccompiler.compiler.library.methods.arrays.Method_StoreIntIn2DArray;
 import org.basiccompiler.compiler.library.methods.arrays.Method_StoreStringIn1DArray;
 import org.basiccompiler.compiler.library.methods.arrays.Method_StoreStringIn2DArray;
 import org.basiccompiler.compiler.library.methods.functions.Method_Abs;
@@ -80,14 +89,22 @@ import org.basiccompiler.compiler.library.methods.functions.Method_Str;
 import org.basiccompiler.compiler.library.methods.functions.Method_Tab;
 import org.basiccompiler.compiler.library.methods.functions.Method_Tan;
 import org.basiccompiler.compiler.library.methods.functions.Method_Val;
+import org.basiccompiler.compiler.library.methods.helper.Method_AscRange;
 import org.basiccompiler.compiler.library.methods.helper.Method_CharsToFloat;
+import org.basiccompiler.compiler.library.methods.helper.Method_CharsToFloatArray;
+import org.basiccompiler.compiler.library.methods.helper.Method_CheckIntegerRange;
 import org.basiccompiler.compiler.library.methods.helper.Method_CheckLogicalOperatorArguments;
 import org.basiccompiler.compiler.library.methods.helper.Method_CheckOnGotoGosubArg;
 import org.basiccompiler.compiler.library.methods.helper.Method_FloatToChars;
+import org.basiccompiler.compiler.library.methods.helper.Method_FloatToInteger;
+import org.basiccompiler.compiler.library.methods.helper.Method_FlushOutput;
 import org.basiccompiler.compiler.library.methods.helper.Method_GosubStackInitialize;
 import org.basiccompiler.compiler.library.methods.helper.Method_GosubStackPop;
 import org.basiccompiler.compiler.library.methods.helper.Method_GosubStackPush;
 import org.basiccompiler.compiler.library.methods.helper.Method_Input;
+import org.basiccompiler.compiler.library.methods.helper.Method_LeftRange;
+import org.basiccompiler.compiler.library.methods.helper.Method_MidRange;
+import org.basiccompiler.compiler.library.methods.helper.Method_Pow10;
 import org.basiccompiler.compiler.library.methods.helper.Method_PrintCharFromStack;
 import org.basiccompiler.compiler.library.methods.helper.Method_PrintCharsFromStack;
 import org.basiccompiler.compiler.library.methods.helper.Method_PrintFloatFromStack;
@@ -95,6 +112,7 @@ import org.basiccompiler.compiler.library.methods.helper.Method_PrintStringFromS
 import org.basiccompiler.compiler.library.methods.helper.Method_ReadCharsToStack;
 import org.basiccompiler.compiler.library.methods.helper.Method_ReadNumFromDataToStack;
 import org.basiccompiler.compiler.library.methods.helper.Method_ReadStringFromDataToStack;
+import org.basiccompiler.compiler.library.methods.helper.Method_RightRange;
 import org.basiccompiler.compiler.library.methods.helper.Method_RoundToInt;
 import org.basiccompiler.compiler.library.methods.helper.Method_StringToChars;
 import org.basiccompiler.compiler.library.methods.helper.Method_Substring;
@@ -104,11 +122,13 @@ import org.basiccompiler.compiler.library.methods.operators.Method_Division;
 import org.basiccompiler.compiler.library.methods.operators.Method_DivisionByZero;
 import org.basiccompiler.compiler.library.methods.operators.Method_IntegerDivision;
 import org.basiccompiler.compiler.library.methods.operators.Method_Mod;
+import org.basiccompiler.compiler.library.methods.operators.Method_MultipleStringConcatenation;
 import org.basiccompiler.compiler.library.methods.operators.Method_Not;
 import org.basiccompiler.compiler.library.methods.operators.Method_Or;
 import org.basiccompiler.compiler.library.methods.operators.Method_Power;
 import org.basiccompiler.compiler.library.methods.operators.Method_StringConcatenation;
 import org.basiccompiler.compiler.library.methods.operators.Method_StringEqual;
+import org.basiccompiler.compiler.library.methods.operators.Method_StringEqualRange;
 import org.basiccompiler.compiler.library.methods.operators.Method_StringGreaterOrEqual;
 import org.basiccompiler.compiler.library.methods.operators.Method_StringGreaterThan;
 import org.basiccompiler.compiler.library.methods.operators.Method_StringLessOrEqual;
@@ -117,35 +137,47 @@ import org.basiccompiler.compiler.library.methods.operators.Method_StringNotEqua
 import org.basiccompiler.compiler.library.methods.operators.Method_Xor;
 
 public class LibraryManager {
+	public final static String RUNTIME_CLASS_NAME = "org/basiccompiler/runtime/BASICRuntime";
+
 	private final ClassModel classModel;
 	private final Map<MethodEnum, Method> methodMap = new HashMap<MethodEnum, Method>();
 	private final LinkedList<MethodEnum> usedMethods = new LinkedList<MethodEnum>();
+	private boolean isSharedRuntime;
 
 	public static enum MethodEnum {
 		ABS,
 		AND,
 		ASC,
+		ASC_RANGE,
 		ATN,
 		CHARS_TO_FLOAT,
+		CHARS_TO_FLOAT_ARRAY,
 		CHECK_1D_FLOAT_ARRAY_ACCESS,
+		CHECK_1D_INT_ARRAY_ACCESS,
 		CHECK_1D_STRING_ARRAY_ACCESS,
 		CHECK_2D_FLOAT_ARRAY_ACCESS,
+		CHECK_2D_INT_ARRAY_ACCESS,
 		CHECK_2D_STRING_ARRAY_ACCESS,
+		CHECK_INTEGER_RANGE,
 		CHECK_LOGICAL_OPERATION_ARGUMENTS,
 		CHECK_ON_GOTO_GOSUB_ARG,
 		CHR,
 		COS,
 		DIM_1D_CHECK_SIZE,
 		DIM_1D_FLOAT_ARRAY,
+		DIM_1D_INT_ARRAY,
 		DIM_1D_STRING_ARRAY,
 		DIM_2D_CHECK_SIZE,
 		DIM_2D_FLOAT_ARRAY,
+		DIM_2D_INT_ARRAY,
 		DIM_2D_STRING_ARRAY,
 		DIVISION,
 		DIVISION_BY_ZERO,
 		EXP,
 		FIX,
 		FLOAT_TO_CHARS,
+		FLOAT_TO_INTEGER,
+		FLUSH_OUTPUT,
 		GOSUB_STACK_INITIALIZE,
 		GOSUB_STACK_POP,
 		GOSUB_STACK_PUSH,
@@ -154,17 +186,23 @@ public class LibraryManager {
 		INTEGER_DIVISION,
 		INPUT,
 		LEFT,
+		LEFT_RANGE,
 		LEN,
 		LOAD_FLOAT_FROM_1D_ARRAY,
 		LOAD_FLOAT_FROM_2D_ARRAY,
+		LOAD_INT_FROM_1D_ARRAY,
+		LOAD_INT_FROM_2D_ARRAY,
 		LOAD_STRING_FROM_1D_ARRAY,
 		LOAD_STRING_FROM_2D_ARRAY,
 		LOG,
 		MID,
+		MID_RANGE,
 		MOD,
+		MULTIPLE_STRING_CONCATENATION,
 		NOT,
 		OR,
 		POS,
+		POW10,
 		POWER,
 		PRINT_CHAR_FROM_STACK,
 		PRINT_CHARS_FROM_STACK,
@@ -174,6 +212,7 @@ public class LibraryManager {
 		READ_NUM_FROM_DATA_TO_STACK,
 		READ_STRING_FROM_DATA_TO_STACK,
 		RIGHT,
+		RIGHT_RANGE,
 		RND,
 		ROUND_TO_INT,
 		SGN,
@@ -183,11 +222,14 @@ public class LibraryManager {
 		SQR,
 		STORE_FLOAT_IN_1D_ARRAY,
 		STORE_FLOAT_IN_2D_ARRAY,
+		STORE_INT_IN_1D_ARRAY,
+		STORE_INT_IN_2D_ARRAY,
 		STORE_STRING_IN_1D_ARRAY,
 		STORE_STRING_IN_2D_ARRAY,
 		STR,
 		STRING_CONCATENATION,
 		STRING_EQUAL,
+		STRING_EQUAL_RANGE,
 		STRING_GREATER_OR_EQUAL,
 		STRING_GREATER_THAN,
 		STRING_LESS_OR_EQUAL,
@@ -202,6 +244,82 @@ public class LibraryManager {
 		XOR;
 	}
 
+	// methods implemented by the shared runtime class, all stateless. The ones which print,
+	// read DATA or INPUT, use the GOSUB stack or call DivisionByZero (it prints) are always generated
+	private final static EnumSet<MethodEnum> RUNTIME_METHODS = EnumSet.of( //
+			MethodEnum.ABS, //
+			MethodEnum.AND, //
+			MethodEnum.ASC, //
+			MethodEnum.ASC_RANGE, //
+			MethodEnum.ATN, //
+			MethodEnum.CHARS_TO_FLOAT, //
+			MethodEnum.CHARS_TO_FLOAT_ARRAY, //
+			MethodEnum.CHECK_1D_FLOAT_ARRAY_ACCESS, //
+			MethodEnum.CHECK_1D_INT_ARRAY_ACCESS, //
+			MethodEnum.CHECK_1D_STRING_ARRAY_ACCESS, //
+			MethodEnum.CHECK_2D_FLOAT_ARRAY_ACCESS, //
+			MethodEnum.CHECK_2D_INT_ARRAY_ACCESS, //
+			MethodEnum.CHECK_2D_STRING_ARRAY_ACCESS, //
+			MethodEnum.CHECK_INTEGER_RANGE, //
+			MethodEnum.CHECK_LOGICAL_OPERATION_ARGUMENTS, //
+			MethodEnum.CHECK_ON_GOTO_GOSUB_ARG, //
+			MethodEnum.CHR, //
+			MethodEnum.COS, //
+			MethodEnum.DIM_1D_CHECK_SIZE, //
+			MethodEnum.DIM_1D_FLOAT_ARRAY, //
+			MethodEnum.DIM_1D_INT_ARRAY, //
+			MethodEnum.DIM_1D_STRING_ARRAY, //
+			MethodEnum.DIM_2D_CHECK_SIZE, //
+			MethodEnum.DIM_2D_FLOAT_ARRAY, //
+			MethodEnum.DIM_2D_INT_ARRAY, //
+			MethodEnum.DIM_2D_STRING_ARRAY, //
+			MethodEnum.FIX, //
+			MethodEnum.FLOAT_TO_INTEGER, //
+			MethodEnum.INSTR, //
+			MethodEnum.INT, //
+			MethodEnum.LEFT, //
+			MethodEnum.LEFT_RANGE, //
+			MethodEnum.LEN, //
+			MethodEnum.LOAD_FLOAT_FROM_1D_ARRAY, //
+			MethodEnum.LOAD_FLOAT_FROM_2D_ARRAY, //
+			MethodEnum.LOAD_INT_FROM_1D_ARRAY, //
+			MethodEnum.LOAD_INT_FROM_2D_ARRAY, //
+			MethodEnum.LOAD_STRING_FROM_1D_ARRAY, //
+			MethodEnum.LOAD_STRING_FROM_2D_ARRAY, //
+			MethodEnum.LOG, //
+			MethodEnum.MID, //
+			MethodEnum.MID_RANGE, //
+			MethodEnum.MULTIPLE_STRING_CONCATENATION, //
+			MethodEnum.NOT, //
+			MethodEnum.OR, //
+			MethodEnum.POW10, //
+			MethodEnum.RIGHT, //
+			MethodEnum.RIGHT_RANGE, //
+			MethodEnum.ROUND_TO_INT, //
+			MethodEnum.SGN, //
+			MethodEnum.SIN, //
+			MethodEnum.SPACE, //
+			MethodEnum.SQR, //
+			MethodEnum.STORE_FLOAT_IN_1D_ARRAY, //
+			MethodEnum.STORE_FLOAT_IN_2D_ARRAY, //
+			MethodEnum.STORE_INT_IN_1D_ARRAY, //
+			MethodEnum.STORE_INT_IN_2D_ARRAY, //
+			MethodEnum.STORE_STRING_IN_1D_ARRAY, //
+			MethodEnum.STORE_STRING_IN_2D_ARRAY, //
+			MethodEnum.STRING_CONCATENATION, //
+			MethodEnum.STRING_EQUAL, //
+			MethodEnum.STRING_EQUAL_RANGE, //
+			MethodEnum.STRING_GREATER_OR_EQUAL, //
+			MethodEnum.STRING_GREATER_THAN, //
+			MethodEnum.STRING_LESS_OR_EQUAL, //
+			MethodEnum.STRING_LESS_THAN, //
+			MethodEnum.STRING_NOT_EQUAL, //
+			MethodEnum.STRING_TO_CHARS, //
+			MethodEnum.SUBSTRING, //
+			MethodEnum.THROW_RUNTIME_EXCEPTION, //
+			MethodEnum.VAL, //
+			MethodEnum.XOR);
+
 	public LibraryManager(ClassModel classModel) {
 		this.classModel = classModel;
 	}
@@ -210,6 +328,10 @@ public class LibraryManager {
 		return this.classModel;
 	}
 
+	public void setSharedRuntime(boolean isSharedRuntime) {
+		this.isSharedRuntime = isSharedRuntime;
+	}
+
 	public Method getMethod(MethodEnum m) {
 		if (this.methodMap.containsKey(m) == false) {
 			Method method = null;
@@ -223,24 +345,39 @@ public class LibraryManager {
 				case ASC:
 					method = new Method_Asc(this);
 					break;
+				case ASC_RANGE:
+					method = new Method_AscRange(this);
+					break;
 				case ATN:
 					method = new Method_Atn(this);
 					break;
 				case CHARS_TO_FLOAT:
 					method = new Method_CharsToFloat(this);
 					break;
+				case CHARS_TO_FLOAT_ARRAY:
+					method = new Method_CharsToFloatArray(this);
+					break;
 				case CHECK_1D_FLOAT_ARRAY_ACCESS:
 					method = new Method_Check1DFloatArrayAccess(this);
 					break;
+				case CHECK_1D_INT_ARRAY_ACCESS:
+					method = new Method_Check1DIntArrayAccess(this);
+					break;
 				case CHECK_1D_STRING_ARRAY_ACCESS:
 					method = new Method_Check1DStringArrayAccess(this);
 					break;
 				case CHECK_2D_FLOAT_ARRAY_ACCESS:
 					method = new Method_Check2DFloatArrayAccess(this);
 					break;
+				case CHECK_2D_INT_ARRAY_ACCESS:
+					method = new Method_Check2DIntArrayAccess(this);
+					break;
 				case CHECK_2D_STRING_ARRAY_ACCESS:
 					method = new Method_Check2DStringArrayAccess(this);
 					break;
+				case CHECK_INTEGER_RANGE:
+					method = new Method_CheckIntegerRange(this);
+					break;
 				case CHECK_LOGICAL_OPERATION_ARGUMENTS:
 					method = new Method_CheckLogicalOperatorArguments(this);
 					break;
@@ -259,6 +396,9 @@ public class LibraryManager {
 				case DIM_1D_FLOAT_ARRAY:
 					method = new Method_Dim1DFloatArray(this);
 					break;
+				case DIM_1D_INT_ARRAY:
+					method = new Method_Dim1DIntArray(this);
+					break;
 				case DIM_1D_STRING_ARRAY:
 					method = new Method_Dim1DStringArray(this);
 					break;
@@ -268,6 +408,9 @@ public class LibraryManager {
 				case DIM_2D_FLOAT_ARRAY:
 					method = new Method_Dim2DFloatArray(this);
 					break;
+				case DIM_2D_INT_ARRAY:
+					method = new Method_Dim2DIntArray(this);
+					break;
 				case DIM_2D_STRING_ARRAY:
 					method = new Method_Dim2DStringArray(this);
 					break;
@@ -286,6 +429,12 @@ public class LibraryManager {
 				case FLOAT_TO_CHARS:
 					method = new Method_FloatToChars(this);
 					break;
+				case FLOAT_TO_INTEGER:
+					method = new Method_FloatToInteger(this);
+					break;
+				case FLUSH_OUTPUT:
+					method = new Method_FlushOutput(this);
+					break;
 				case GOSUB_STACK_INITIALIZE:
 					method = new Method_GosubStackInitialize(this);
 					break;
@@ -310,6 +459,9 @@ public class LibraryManager {
 				case LEFT:
 					method = new Method_Left(this);
 					break;
+				case LEFT_RANGE:
+					method = new Method_LeftRange(this);
+					break;
 				case LEN:
 					method = new Method_Len(this);
 					break;
@@ -319,6 +471,12 @@ public class LibraryManager {
 				case LOAD_FLOAT_FROM_2D_ARRAY:
 					method = new Method_LoadFloatFrom2DArray(this);
 					break;
+				case LOAD_INT_FROM_1D_ARRAY:
+					method = new Method_LoadIntFrom1DArray(this);
+					break;
+				case LOAD_INT_FROM_2D_ARRAY:
+					method = new Method_LoadIntFrom2DArray(this);
+					break;
 				case LOAD_STRING_FROM_1D_ARRAY:
 					method = new Method_LoadStringFrom1DArray(this);
 					break;
@@ -331,9 +489,15 @@ public class LibraryManager {
 				case MID:
 					method = new Method_Mid(this);
 					break;
+				case MID_RANGE:
+					method = new Method_MidRange(this);
+					break;
 				case MOD:
 					method = new Method_Mod(this);
 					break;
+				case MULTIPLE_STRING_CONCATENATION:
+					method = new Method_MultipleStringConcatenation(this);
+					break;
 				case NOT:
 					method = new Method_Not(this);
 					break;
@@ -343,6 +507,9 @@ public class LibraryManager {
 				case POS:
 					method = new Method_Pos(this);
 					break;
+				case POW10:
+					method = new Method_Pow10(this);
+					break;
 				case POWER:
 					method = new Method_Power(this);
 					break;
@@ -370,6 +537,9 @@ public class LibraryManager {
 				case RIGHT:
 					method = new Method_Right(this);
 					break;
+				case RIGHT_RANGE:
+					method = new Method_RightRange(this);
+					break;
 				case RND:
 					method = new Method_Rnd(this);
 					break;
@@ -397,6 +567,12 @@ public class LibraryManager {
 				case STORE_FLOAT_IN_2D_ARRAY:
 					method = new Method_StoreFloatIn2DArray(this);
 					break;
+				case STORE_INT_IN_1D_ARRAY:
+					method = new Method_StoreIntIn1DArray(this);
+					break;
+				case STORE_INT_IN_2D_ARRAY:
+					method = new Method_StoreIntIn2DArray(this);
+					break;
 				case STORE_STRING_IN_1D_ARRAY:
 					method = new Method_StoreStringIn1DArray(this);
 					break;
@@ -412,6 +588,9 @@ public class LibraryManager {
 				case STRING_EQUAL:
 					method = new Method_StringEqual(this);
 					break;
+				case STRING_EQUAL_RANGE:
+					method = new Method_StringEqualRange(this);
+					break;
 				case STRING_GREATER_OR_EQUAL:
 					method = new Method_StringGreaterOrEqual(this);
 					break;
@@ -449,6 +628,9 @@ public class LibraryManager {
 					method = new Method_Xor(this);
 					break;
 			}
+			if (this.isSharedRuntime && RUNTIME_METHODS.contains(m)) {
+				method.linkToRuntime(RUNTIME_CLASS_NAME);
+			}
 			this.methodMap.put(m, method);
 			this.usedMethods.add(m);
 		}
@@ -460,7 +642,10 @@ public class LibraryManager {
 		// otherwise a concurrent modification exception is thrown
 		for (int i = 0; i < this.usedMethods.size(); i++) {
 			MethodEnum m = this.usedMethods.get(i);
-			this.methodMap.get(m).addMethod();
+			Method method = this.methodMap.get(m);
+			if (method.isLinkedToRuntime() == false) {
+				method.addMethod();
+			}
 		}
 	}
 }
@@ -46,6 +46,7 @@ public abstract class Method {
 	private final String methodName;
 	private final String descriptor;
 	private final int numLocals;
+	private String runtimeClassName; // null: the method is generated into the program class
 
 	public Method(LibraryManager libraryManager, String methodName, String descriptor, int numLocals) {
 		this.libraryManager = libraryManager;
@@ -56,7 +57,19 @@ public abstract class Method {
 	}
 
 	public void emitCall(ByteOutStream o) {
-		o.invokestatic(this.classModel.getMethodRefIndex(this.methodName, this.descriptor));
+		if (this.runtimeClassName != null) {
+			o.invokestatic(this.classModel.getMethodRefIndex(this.runtimeClassName, this.methodName, this.descriptor));
+		} else {
+			o.invokestatic(this.classModel.getMethodRefIndex(this.methodName, this.descriptor));
+		}
+	}
+
+	public void linkToRuntime(String runtimeClassName) {
+		this.runtimeClassName = runtimeClassName;
+	}
+
+	public boolean isLinkedToRuntime() {
+		return this.runtimeClassName != null;
 	}
 
 	protected void emitThrowRuntimeException(ByteOutStream o, String message) {
@@ -41,8 +41,8 @@ import org.basiccompiler.compiler.library.methods.Method;
 
 public class Method_Check2DFloatArrayAccess extends Method {
 	private final static String METHOD_NAME = "Check2DFloatArrayAccess";
-	private final static String DESCRIPTOR = "([[[FII)V";
-	private final static int NUM_LOCALS = 3;
+	private final static String DESCRIPTOR = "([[FIII)I";
+	private final static int NUM_LOCALS = 4;
 
 	public Method_Check2DFloatArrayAccess(LibraryManager libraryManager) {
 		super(libraryManager, METHOD_NAME, DESCRIPTOR, NUM_LOCALS);
@@ -51,9 +51,10 @@ public class Method_Check2DFloatArrayAccess extends Method {
 	@Override
 	public void addMethodByteCode(ByteOutStream o, List<ExceptionTableInfo> e) {
 
-		// local 0: [[[F reference to array reference
-		// local 1: F=>I array index 1
-		// local 2: F=>I array index 2
+		// local 0: [[F reference to array reference
+		// local 1: I   stride
+		// local 2: I   array index 1
+		// local 3: I   array index 2
 
 		o.aload_0();
 		o.iconst_0();
@@ -65,44 +66,46 @@ public class Method_Check2DFloatArrayAccess extends Method {
 		o.i2f();
 		o.dup();
 		this.libraryManager.getMethod(MethodEnum.DIM_2D_FLOAT_ARRAY).emitCall(o);
+		o.pop(); // stride 11, the initial value of the stride
 
 		o.label("skipInitialize");
-		o.iload_1();
+		o.iload_2();
 		o.ifge("skipIndex1Underflow");
 
 		emitThrowRuntimeException(o, "First index of 2D number array < 0.");
 
 		o.label("skipIndex1Underflow");
-		o.iload_1();
+		o.iload_2();
 
 		o.aload_0();
 		o.iconst_0();
 		o.aaload();
 		o.arraylength();
+		o.iload_1();
+		o.idiv(); // number of rows
 		o.if_icmplt("skipIndex1Overflow");
 
 		emitThrowRuntimeException(o, "First index of 2D number array out of max bounds.");
 
 		o.label("skipIndex1Overflow");
-		o.iload_2();
+		o.iload_3();
 		o.ifge("skipIndex2Underflow");
 
 		emitThrowRuntimeException(o, "Second index of 2D number array < 0.");
 
 		o.label("skipIndex2Underflow");
-		o.iload_2();
-
-		o.aload_0();
-		o.iconst_0();
-		o.aaload();
-		o.iload_1();  // fetch sub array reference
-		o.aaload();
-		o.arraylength();
+		o.iload_3();
+		o.iload_1();
 		o.if_icmplt("skipIndex2Overflow");
 
 		emitThrowRuntimeException(o, "Second index of 2D number array out of max bounds.");
 
 		o.label("skipIndex2Overflow");
-		o.return_();
+		o.iload_2();
+		o.iload_1();
+		o.imul();
+		o.iload_3();
+		o.iadd();
+		o.ireturn(); // index into the row-major array
 	}
 }
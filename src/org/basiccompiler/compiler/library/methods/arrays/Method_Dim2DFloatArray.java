@@ -41,7 +41,7 @@ import org.basiccompiler.compiler.library.methods.Method;
 
 public class Method_Dim2DFloatArray extends Method {
 	private final static String METHOD_NAME = "Dim2DFloatArray";
-	private final static String DESCRIPTOR = "([[[FFF)V";
+	private final static String DESCRIPTOR = "([[FFF)I";
 	private final static int NUM_LOCALS = 3;
 
 	public Method_Dim2DFloatArray(LibraryManager libraryManager) {
@@ -51,9 +51,9 @@ public class Method_Dim2DFloatArray extends Method {
 	@Override
 	public void addMethodByteCode(ByteOutStream o, List<ExceptionTableInfo> e) {
 
-		// local 0: [[[F reference to array reference
-		// local 1: F=>I dim1 max element index (= size - 1)
-		// local 2: F=>I dim2 max element index (= size - 1)
+		// local 0: [[F  reference to array reference
+		// local 1: F=>I dim1 max element index (= size - 1) => number of rows
+		// local 2: F=>I dim2 max element index (= size - 1) => stride
 
 		o.aload_0();
 		o.iconst_0();
@@ -63,9 +63,6 @@ public class Method_Dim2DFloatArray extends Method {
 		emitThrowRuntimeException(o, "2D number array already dimensioned.");
 
 		o.label("initialize");
-		o.aload_0();
-		o.iconst_0();
-
 		o.fload_1();
 		this.libraryManager.getMethod(MethodEnum.ROUND_TO_INT).emitCall(o);
 		o.istore_1();
@@ -80,11 +77,18 @@ public class Method_Dim2DFloatArray extends Method {
 
 		o.iinc(1, 1);
 		o.iinc(2, 1);
+
+		// one row-major array of rows * stride elements
+
+		o.aload_0();
+		o.iconst_0();
 		o.iload_1();
 		o.iload_2();
-		o.multianewarray(this.classModel.getClassIndex("[[F"), 2);
-
+		o.imul();
+		o.newarray_float();
 		o.aastore();
-		o.return_();
+
+		o.iload_2();
+		o.ireturn();
 	}
 }
@@ -41,8 +41,8 @@ import org.basiccompiler.compiler.library.methods.Method;
 
 public class Method_Dim2DStringArray extends Method {
 	private final static String METHOD_NAME = "Dim2DStringArray";
-	private final static String DESCRIPTOR = "([[[[CFF)V";
-	private final static int NUM_LOCALS = 5;
+	private final static String DESCRIPTOR = "([[[CFF)I";
+	private final static int NUM_LOCALS = 4;
 
 	public Method_Dim2DStringArray(LibraryManager libraryManager) {
 		super(libraryManager, METHOD_NAME, DESCRIPTOR, NUM_LOCALS);
@@ -51,11 +51,10 @@ public class Method_Dim2DStringArray extends Method {
 	@Override
 	public void addMethodByteCode(ByteOutStream o, List<ExceptionTableInfo> e) {
 
-		// local 0: [[[[C reference to array reference
-		// local 1: F=>I  dim1 max element index (= size - 1), outer loop counter
-		// local 2: F=>I  dim2 max element index (= size - 1), inner loop counter
-		// local 3: [[C   array ref "sub array"
-		// local 4: [C    empty char array ref
+		// local 0: [[[C reference to array reference
+		// local 1: F=>I dim1 max element index (= size - 1) => number of rows, loop counter
+		// local 2: F=>I dim2 max element index (= size - 1) => stride
+		// local 3: [C   empty char array reference
 
 		o.aload_0();
 		o.iconst_0();
@@ -65,9 +64,6 @@ public class Method_Dim2DStringArray extends Method {
 		emitThrowRuntimeException(o, "2D string array already dimensioned.");
 
 		o.label("initialize");
-		o.aload_0();
-		o.iconst_0();
-
 		o.fload_1();
 		this.libraryManager.getMethod(MethodEnum.ROUND_TO_INT).emitCall(o);
 		o.istore_1();
@@ -82,56 +78,45 @@ public class Method_Dim2DStringArray extends Method {
 
 		o.iinc(1, 1);
 		o.iinc(2, 1);
+
+		// one row-major array of rows * stride elements
+
 		o.iload_1();
 		o.iload_2();
+		o.imul();
+		o.istore_1();
+
+		o.aload_0();
 		o.iconst_0();
-		o.multianewarray(this.classModel.getClassIndex("[[[C"), 3);
+		o.iload_1();
+		o.anewarray(this.classModel.getClassIndex("[C"));
 		o.aastore();
 
 		// create empty char array
 
 		o.iconst_0();
 		o.newarray_char();
-		o.astore(4);
+		o.astore_3();
 
-		// outer initialization loop
+		// initialization loop
 
-		o.goto_("outerLoopCond");
+		o.goto_("loopCond");
 
-		o.label("outerLoop");
+		o.label("loop");
 		o.iinc(1, -1);
 
 		o.aload_0();
 		o.iconst_0();
 		o.aaload();
 		o.iload_1();
-		o.aaload();
-		o.astore_3();
-
 		o.aload_3();
-		o.arraylength();
-		o.istore_2();
-
-		// inner initialization loop
-
-		o.goto_("innerLoopCond");
-
-		o.label("innerLoop");
-		o.iinc(2, -1);
-
-		o.aload_3();
-		o.iload_2();
-		o.aload(4);
 		o.aastore();
 
-		o.label("innerLoopCond");
-		o.iload_2();
-		o.ifgt("innerLoop");
-
-		o.label("outerLoopCond");
+		o.label("loopCond");
 		o.iload_1();
-		o.ifgt("outerLoop");
+		o.ifgt("loop");
 
-		o.return_();
+		o.iload_2();
+		o.ireturn();
 	}
 }
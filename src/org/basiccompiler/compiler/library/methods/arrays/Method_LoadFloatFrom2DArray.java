@@ -41,8 +41,8 @@ import org.basiccompiler.compiler.library.methods.Method;
 
 public class Method_LoadFloatFrom2DArray extends Method {
 	private final static String METHOD_NAME = "LoadFloatFrom2DArray";
-	private final static String DESCRIPTOR = "([[[FFF)F";
-	private final static int NUM_LOCALS = 3;
+	private final static String DESCRIPTOR = "([[FIFF)F";
+	private final static int NUM_LOCALS = 4;
 
 	public Method_LoadFloatFrom2DArray(LibraryManager libraryManager) {
 		super(libraryManager, METHOD_NAME, DESCRIPTOR, NUM_LOCALS);
@@ -51,28 +51,29 @@ public class Method_LoadFloatFrom2DArray extends Method {
 	@Override
 	public void addMethodByteCode(ByteOutStream o, List<ExceptionTableInfo> e) {
 
-		// local 0: [[[F reference to array reference
-		// local 1: F=>I array index 1
-		// local 2: F=>I array index 2
-
-		o.fload_1();
-		this.libraryManager.getMethod(MethodEnum.ROUND_TO_INT).emitCall(o);
-		o.istore_1();
+		// local 0: [[F  reference to array reference
+		// local 1: I    stride
+		// local 2: F=>I array index 1 => index into the row-major array
+		// local 3: F=>I array index 2
 
 		o.fload_2();
 		this.libraryManager.getMethod(MethodEnum.ROUND_TO_INT).emitCall(o);
 		o.istore_2();
 
+		o.fload_3();
+		this.libraryManager.getMethod(MethodEnum.ROUND_TO_INT).emitCall(o);
+		o.istore_3();
+
 		o.aload_0();
 		o.iload_1();
 		o.iload_2();
+		o.iload_3();
 		this.libraryManager.getMethod(MethodEnum.CHECK_2D_FLOAT_ARRAY_ACCESS).emitCall(o);
+		o.istore_2();
 
 		o.aload_0();
 		o.iconst_0();
 		o.aaload();
-		o.iload_1();
-		o.aaload();
 		o.iload_2();
 		o.faload();
 		o.freturn();
@@ -41,8 +41,8 @@ import org.basiccompiler.compiler.library.methods.Method;
 
 public class Method_StoreFloatIn2DArray extends Method {
 	private final static String METHOD_NAME = "StoreFloatIn2DArray";
-	private final static String DESCRIPTOR = "(F[[[FFF)V";
-	private final static int NUM_LOCALS = 4;
+	private final static String DESCRIPTOR = "(F[[FIFF)V";
+	private final static int NUM_LOCALS = 5;
 
 	public Method_StoreFloatIn2DArray(LibraryManager libraryManager) {
 		super(libraryManager, METHOD_NAME, DESCRIPTOR, NUM_LOCALS);
@@ -52,28 +52,29 @@ public class Method_StoreFloatIn2DArray extends Method {
 	public void addMethodByteCode(ByteOutStream o, List<ExceptionTableInfo> e) {
 
 		// local 0: F    value
-		// local 1: [[[F  reference to array reference
-		// local 2: F=>I array index 1
-		// local 3: F=>I array index 2
-
-		o.fload_2();
-		this.libraryManager.getMethod(MethodEnum.ROUND_TO_INT).emitCall(o);
-		o.istore_2();
+		// local 1: [[F  reference to array reference
+		// local 2: I    stride
+		// local 3: F=>I array index 1 => index into the row-major array
+		// local 4: F=>I array index 2
 
 		o.fload_3();
 		this.libraryManager.getMethod(MethodEnum.ROUND_TO_INT).emitCall(o);
 		o.istore_3();
 
+		o.fload(4);
+		this.libraryManager.getMethod(MethodEnum.ROUND_TO_INT).emitCall(o);
+		o.istore(4);
+
 		o.aload_1();
 		o.iload_2();
 		o.iload_3();
+		o.iload(4);
 		this.libraryManager.getMethod(MethodEnum.CHECK_2D_FLOAT_ARRAY_ACCESS).emitCall(o);
+		o.istore_3();
 
 		o.aload_1();
 		o.iconst_0();
 		o.aaload();
-		o.iload_2();
-		o.aaload();
 		o.iload_3();
 		o.fload_0();
 		o.fastore();
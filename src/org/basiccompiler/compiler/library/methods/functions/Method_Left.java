@@ -55,40 +55,15 @@ public class Method_Left extends Method {
 		// local 0: [C src char[]
 		// local 1: F  length of substring
 
-		o.fload_1();
-		this.libraryManager.getMethod(MethodEnum.ROUND_TO_INT).emitCall(o);
-		o.istore_1();
-
-		o.iload_1();
-		o.ifge("skipIndexUnderflow");
-
-		emitThrowRuntimeException(o, "LEFT$(): Index < 0.");
-
-		o.label("skipIndexUnderflow");
-		o.iload_1();
-		o.iconst(0x0FF);
-		o.if_icmple("skipIndexOverflow");
-
-		emitThrowRuntimeException(o, "LEFT$(): Index > 255.");
-
-		o.label("skipIndexOverflow");
-
 		o.aload_0();
-		o.iconst_0();
-
-		o.iload_1();
-		o.aload_0();
-		o.arraylength();
-		o.if_icmpge("endOfString");
-
-		o.iload_1();
-		o.goto_("substring");
-
-		o.label("endOfString");
 		o.aload_0();
-		o.arraylength();
-
-		o.label("substring");
+		o.fload_1();
+		this.libraryManager.getMethod(MethodEnum.LEFT_RANGE).emitCall(o);
+		o.dup();
+		o.iconst(16);
+		o.iushr();
+		o.swap();
+		o.i2c();
 		this.libraryManager.getMethod(MethodEnum.SUBSTRING).emitCall(o);
 		o.areturn();
 	}
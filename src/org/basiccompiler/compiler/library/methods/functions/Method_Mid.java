@@ -42,7 +42,7 @@ import org.basiccompiler.compiler.library.methods.Method;
 public class Method_Mid extends Method {
 	private final static String METHOD_NAME = "Mid";
 	private final static String DESCRIPTOR = "([CFF)[C";
-	private final static int NUM_LOCALS = 5;
+	private final static int NUM_LOCALS = 3;
 
 	public Method_Mid(LibraryManager libraryManager) {
 		super(libraryManager, METHOD_NAME, DESCRIPTOR, NUM_LOCALS);
@@ -53,81 +53,20 @@ public class Method_Mid extends Method {
 
 		// MID$(X$,I[,J])
 
-		// local 0: [C   src char[]
-		// local 1: F=>I start index (1-based) of substring, later 0-based, inclusive
-		// local 2: F=>I length of substring
-		// local 3: I    end index of substring, exclusive
-		// local 4: I    length of src char[]
-
-		o.fload_1();
-		this.libraryManager.getMethod(MethodEnum.ROUND_TO_INT).emitCall(o);
-		o.istore_1();
-
-		o.iload_1();
-		o.ifgt("skipIndexUnderflow");
-
-		emitThrowRuntimeException(o, "MID$(): Index <= 0.");
-
-		o.label("skipIndexUnderflow");
-		o.iload_1();
-		o.iconst(0xFF);
-		o.if_icmple("skipIndexOverflow");
-
-		emitThrowRuntimeException(o, "MID$(): Index > 255.");
-
-		o.label("skipIndexOverflow");
-		o.fload_2();
-		this.libraryManager.getMethod(MethodEnum.ROUND_TO_INT).emitCall(o);
-		o.istore_2();
-
-		o.iload_2();
-		o.ifgt("skipLenUnderflow");
-
-		emitThrowRuntimeException(o, "MID$(): Length <= 0.");
-
-		o.label("skipLenUnderflow");
-		o.iload_2();
-		o.iconst(0xFF);
-		o.if_icmple("skipLenOverflow");
-
-		emitThrowRuntimeException(o, "MID$(): Length > 255.");
-
-		o.label("skipLenOverflow");
+		// local 0: [C src char[]
+		// local 1: F  start index (1-based) of substring
+		// local 2: F  length of substring
 
 		o.aload_0();
-		o.arraylength();
-		o.istore(4);
-
 		o.aload_0();
-
-		o.iload_1();
-		o.iload(4);
-		o.if_icmpgt("startAtEndOfString");
-
-		o.iinc(1, -1);
-		o.iload_1();
-		o.goto_("calcEndPos");
-
-		o.label("startAtEndOfString");
-		o.iload(4);
-
-		o.label("calcEndPos");
-		o.iload_1();
-		o.iload_2();
-		o.iadd();
-		o.istore_3();
-
-		o.iload_3();
-		o.iload(4);
-		o.if_icmpge("endsAtEndOfString");
-
-		o.iload_3();
-		o.goto_("substring");
-
-		o.label("endsAtEndOfString");
-		o.iload(4);
-
-		o.label("substring");
+		o.fload_1();
+		o.fload_2();
+		this.libraryManager.getMethod(MethodEnum.MID_RANGE).emitCall(o);
+		o.dup();
+		o.iconst(16);
+		o.iushr();
+		o.swap();
+		o.i2c();
 		this.libraryManager.getMethod(MethodEnum.SUBSTRING).emitCall(o);
 		o.areturn();
 	}
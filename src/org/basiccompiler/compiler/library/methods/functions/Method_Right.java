@@ -55,43 +55,15 @@ public class Method_Right extends Method {
 		// local 0: [C src char[]
 		// local 1: F  length of substring
 
-		o.fload_1();
-		this.libraryManager.getMethod(MethodEnum.ROUND_TO_INT).emitCall(o);
-		o.istore_1();
-
-		o.iload_1();
-		o.ifge("skipIndexUnderflow");
-
-		emitThrowRuntimeException(o, "RIGHT$: Index < 0.");
-
-		o.label("skipIndexUnderflow");
-		o.iload_1();
-		o.iconst(0x0FF);
-		o.if_icmple("skipIndexOverflow");
-
-		emitThrowRuntimeException(o, "RIGHT$: Index > 255.");
-
-		o.label("skipIndexOverflow");
-
 		o.aload_0();
-
-		o.iload_1();
-		o.aload_0();
-		o.arraylength();
-		o.if_icmpge("startOfString");
-
 		o.aload_0();
-		o.arraylength();
-		o.iload_1();
-		o.isub();
-		o.goto_("substring");
-
-		o.label("startOfString");
-		o.iconst_0();
-
-		o.label("substring");
-		o.aload_0();
-		o.arraylength();
+		o.fload_1();
+		this.libraryManager.getMethod(MethodEnum.RIGHT_RANGE).emitCall(o);
+		o.dup();
+		o.iconst(16);
+		o.iushr();
+		o.swap();
+		o.i2c();
 		this.libraryManager.getMethod(MethodEnum.SUBSTRING).emitCall(o);
 		o.areturn();
 	}
@@ -31,8 +31,6 @@
 
 package org.basiccompiler.compiler.library.methods.helper;
 
-import static org.basiccompiler.bytecode.ClassModel.JavaMethod.MATH_POW;
-
 import java.util.List;
 
 import org.basiccompiler.bytecode.info.ExceptionTableInfo;
@@ -52,12 +50,18 @@ A valid character array complies to the following regular expression:
 (Optional leading whitespace, optional sign, optional integer, optional 
 fraction, and optional exponent. If the integer part is omitted, the fraction 
 part is mandatory. If the fraction is omitted, the decimal point is optional.)
+
+The first 7 digits of the mantissa are accumulated in an int, the remaining
+digits in a float. Up to 7 digits both are exact, so the result is the same
+as with a float-only accumulation. Powers of ten are looked up with Pow10().
+
+val() does the same conversion at compile time, for the numeric DATA table.
  */
 
 public class Method_CharsToFloat extends Method {
   private final static String METHOD_NAME = "CharsToFloat";
   private final static String DESCRIPTOR = "([C)F";
-  private final static int NUM_LOCALS = 12;
+  private final static int NUM_LOCALS = 13;
 
   public Method_CharsToFloat(LibraryManager libraryManager) {
     super(libraryManager, METHOD_NAME, DESCRIPTOR, NUM_LOCALS);
@@ -71,6 +75,8 @@ public class Method_CharsToFloat extends Method {
     //  SOURCE CODE
     //
     // float charsToFloat(char[] s) {
+    //   final int DIGITS_INT_MANTISSA = 7;
+    //
     //   int pos = 0;
     //
     //    int chr;
@@ -95,6 +101,7 @@ public class Method_CharsToFloat extends Method {
     //      pos++;
     //    }
     //
+    //    int im = 0;
     //    float m = 0f;
     //    int mExp = -1;
     //    int dotExp = 0;
@@ -105,7 +112,14 @@ public class Method_CharsToFloat extends Method {
     //    for (; pos < s.length; pos++) {
     //      chr = s[pos];
     //      if ((chr >= '0') && (chr <= '9')) {
-    //        m = (10 * m) + (chr - '0');
+    //        if (mExp < (DIGITS_INT_MANTISSA - 1)) {
+    //          im = (10 * im) + (chr - '0');
+    //        } else {
+    //          if (mExp == (DIGITS_INT_MANTISSA - 1)) {
+    //            m = im;
+    //          }
+    //          m = (10 * m) + (chr - '0');
+    //        }
     //        mExp++;
     //        seenMantissa = true;
     //      } else if (chr == '.') {
@@ -123,6 +137,10 @@ public class Method_CharsToFloat extends Method {
     //      return Float.NaN;
     //    }
     //
+    //    if (mExp < DIGITS_INT_MANTISSA) {
+    //      m = im;
+    //    }
+    //
     //    boolean isExpNeg = false;
     //    int exp = 0;
     //
@@ -154,13 +172,18 @@ public class Method_CharsToFloat extends Method {
     //    }
     //
     //    int effExp = seenDot ? mExp - dotExp : 0;
-    //    float f = m / (float) Math.pow(10.0f, effExp - exp);
+    //    float f = m;
+    //    if (effExp != exp) {
+    //      f = m / pow10(effExp - exp);
+    //    }
     //    if (isNeg) {
     //      f = -f;
     //    }
     //    return f;
     //  }
 
+    final int DIGITS_INT_MANTISSA = 7; // 9999999 < 2^24, so the int converts exactly to a float
+
     final int S = 0;             // local 0:  [C s
     final int POS = 1;           // local 1:  I  pos
     final int CHR = 2;           // local 2:  I  character of s[pos]
@@ -173,6 +196,7 @@ public class Method_CharsToFloat extends Method {
     final int IS_EXP_NEG = 9;    // local 9:  Z  is exponent negative?
     final int EXP = 10;          // local 10: I  exponent of number
     final int EFF_EXP = 11;      // local 11: I  effective exponent
+    final int IM = 12;           // local 12: I  mantissa of the first DIGITS_INT_MANTISSA digits
 
     // int pos = 0;
 
@@ -272,6 +296,7 @@ public class Method_CharsToFloat extends Method {
 
     o.label("afterMantissaSign");
 
+    //  int im = 0;
     //  float m = 0f;
     //  int mExp = -1;
     //  int dotExp = 0;
@@ -279,6 +304,8 @@ public class Method_CharsToFloat extends Method {
     //  boolean seenMantissa = false;
     //  boolean seenDot = false;
 
+    o.iconst_0();
+    o.istore_opt(IM);
     o.fconst_0();
     o.fstore_opt(M);
     o.iconst_m1();
@@ -293,7 +320,14 @@ public class Method_CharsToFloat extends Method {
     //  for (; pos < s.length; pos++) {
     //    chr = s[pos];
     //    if ((chr >= '0') && (chr <= '9')) {
-    //      m = (10 * m) + (chr - '0');
+    //      if (mExp < (DIGITS_INT_MANTISSA - 1)) {
+    //        im = (10 * im) + (chr - '0');
+    //      } else {
+    //        if (mExp == (DIGITS_INT_MANTISSA - 1)) {
+    //          m = im;
+    //        }
+    //        m = (10 * m) + (chr - '0');
+    //      }
     //      mExp++;
     //      seenMantissa = true;
     //    } else if (chr == '.') {
@@ -323,6 +357,32 @@ public class Method_CharsToFloat extends Method {
     o.iconst('9');
     o.if_icmpgt("elseCheckDot");
 
+    o.iload_opt(M_EXP);
+    o.iconst(DIGITS_INT_MANTISSA - 1);
+    o.if_icmpge("elseFloatMantissa");
+
+    o.iconst(10);
+    o.iload_opt(IM);
+    o.imul();
+
+    o.iload_opt(CHR);
+    o.iconst('0');
+    o.isub();
+
+    o.iadd();
+    o.istore_opt(IM);
+    o.goto_("afterMantissaDigit");
+
+    o.label("elseFloatMantissa");
+    o.iload_opt(M_EXP);
+    o.iconst(DIGITS_INT_MANTISSA - 1);
+    o.if_icmpne("floatMantissa");
+
+    o.iload_opt(IM);
+    o.i2f();
+    o.fstore_opt(M);
+
+    o.label("floatMantissa");
     o.iconst(10);
     o.i2f();
     o.fload_opt(M);
@@ -336,6 +396,7 @@ public class Method_CharsToFloat extends Method {
     o.fadd();
     o.fstore_opt(M);
 
+    o.label("afterMantissaDigit");
     o.iinc(M_EXP, 1);
     o.iconst_1();
     o.istore_opt(SEEN_MANTISSA);
@@ -378,6 +439,20 @@ public class Method_CharsToFloat extends Method {
 
     o.label("afterMantissa");
 
+    //  if (mExp < DIGITS_INT_MANTISSA) {
+    //    m = im;
+    //  }
+
+    o.iload_opt(M_EXP);
+    o.iconst(DIGITS_INT_MANTISSA);
+    o.if_icmpge("afterIntMantissa");
+
+    o.iload_opt(IM);
+    o.i2f();
+    o.fstore_opt(M);
+
+    o.label("afterIntMantissa");
+
     //  boolean isExpNeg = false;
     //  int exp = 0;
 
@@ -523,23 +598,29 @@ public class Method_CharsToFloat extends Method {
     o.label("storeEffectiveExponent");
     o.istore_opt(EFF_EXP);
 
-    //  float f = m / (float) Math.pow(10.0f, effExp - exp);
+    //  float f = m;
+    //  if (effExp != exp) {
+    //    f = m / pow10(effExp - exp);
+    //  }
     //  if (isNeg) {
     //    f = -f;
     //  }
     //  return f;
 
     o.fload_opt(M);
-    o.iconst(10);
-    o.i2d();
+
+    o.iload_opt(EFF_EXP);
+    o.iload_opt(EXP);
+    o.if_icmpeq("afterScaling");
+
     o.iload_opt(EFF_EXP);
     o.iload_opt(EXP);
     o.isub();
-    o.i2d();
-    o.invokestatic(this.classModel.getJavaMethodRefIndex(MATH_POW));
-    o.d2f();
+    this.libraryManager.getMethod(LibraryManager.MethodEnum.POW10).emitCall(o);
     o.fdiv();
 
+    o.label("afterScaling");
+
     o.iload_opt(IS_NEG);
     o.ifeq("skipNegation");
 
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015, Lorenz Wiest
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of the FreeBSD Project.
+ */
+
+
+package org.basiccompiler.compiler.library.methods.helper;
+
+import static org.basiccompiler.bytecode.ClassModel.JavaMethod.FLOAT_INT_BITS_TO_FLOAT;
+
+import java.util.List;
+
+import org.basiccompiler.bytecode.info.ExceptionTableInfo;
+import org.basiccompiler.compiler.etc.ByteOutStream;
+import org.basiccompiler.compiler.library.LibraryManager;
+import org.basiccompiler.compiler.library.methods.Method;
+
+public class Method_CharsToFloatArray extends Method {
+	private final static String METHOD_NAME = "CharsToFloatArray";
+	private final static String DESCRIPTOR = "([C)[F";
+	private final static int NUM_LOCALS = 3;
+
+	public Method_CharsToFloatArray(LibraryManager libraryManager) {
+		super(libraryManager, METHOD_NAME, DESCRIPTOR, NUM_LOCALS);
+	}
+
+	@Override
+	public void addMethodByteCode(ByteOutStream o, List<ExceptionTableInfo> e) {
+
+		// every float is encoded as two chars: high 16 bits, low 16 bits
+
+		// local 0: [C chars
+		// local 1: [F floats
+		// local 2: I  index in floats
+
+		o.aload_0();
+		o.arraylength();
+		o.iconst_1();
+		o.ishr();
+		o.dup();
+		o.istore_2();
+		o.newarray_float();
+		o.astore_1();
+		o.goto_("loopCond");
+
+		o.label("loop");
+		o.aload_1();
+		o.iload_2();
+
+		o.aload_0();
+		o.iload_2();
+		o.iconst_1();
+		o.ishl();
+		o.caload();
+		o.iconst(16);
+		o.ishl();
+
+		o.aload_0();
+		o.iload_2();
+		o.iconst_1();
+		o.ishl();
+		o.iconst_1();
+		o.iadd();
+		o.caload();
+
+		o.ior();
+		o.invokestatic(this.classModel.getJavaMethodRefIndex(FLOAT_INT_BITS_TO_FLOAT));
+		o.fastore();
+
+		o.label("loopCond");
+		o.iinc(2, -1);
+		o.iload_2();
+		o.ifge("loop");
+
+		o.aload_1();
+		o.areturn();
+	}
+}
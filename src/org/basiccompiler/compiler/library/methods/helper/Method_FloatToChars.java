@@ -33,8 +33,12 @@ package org.basiccompiler.compiler.library.methods.helper;
 
 import java.util.List;
 
-import org.basiccompiler.bytecode.ClassModel.JavaMethod;
+import static org.basiccompiler.bytecode.ClassModel.JavaMethod.MATH_FLOOR;
+import static org.basiccompiler.bytecode.ClassModel.JavaMethod.MATH_LOG10;
+import static org.basiccompiler.bytecode.ClassModel.JavaMethod.SYSTEM_ARRAYCOPY;
+
 import org.basiccompiler.bytecode.info.ExceptionTableInfo;
+import org.basiccompiler.compiler.Compiler;
 import org.basiccompiler.compiler.etc.ByteOutStream;
 import org.basiccompiler.compiler.library.LibraryManager;
 import org.basiccompiler.compiler.library.methods.Method;
@@ -63,6 +67,12 @@ If f < 1E-07f or f >= 1E+07f then c has an exponent in the format "E[+-][0-9][0-
 Example: f = 1.23E-08 -> c = " 1.23E-08"
 Example: f = 1.23E+08 -> c = " 1.23E+08"
 
+Integral values with less than 8 digits (the common case) are converted directly,
+without computing the exponent.
+
+Powers of ten are looked up with Pow10(). The working character buffer is a static
+field, which is created by the first call.
+
 If f is not a number then c contains " NaN".
 Example: f = 0/0 -> c = " NaN"  // TODO: Impossible to create NaN in BASIC
 
@@ -104,7 +114,30 @@ public class Method_FloatToChars extends Method {
 		//      return "-Infinity".toCharArray();
 		//    }
 		//
-		//    char buf[] = new char[13]; // enough space for floats like "-1.234567E+00"
+		//    int n = (int) f;
+		//    if ((f > -1E+07f) && (f < 1E+07f) && (n == f)) {
+		//      int len = 2;
+		//      for (int tmp = n; (tmp >= 10) || (tmp <= -10); tmp /= 10) {
+		//        len++;
+		//      }
+		//      char[] result = new char[len];
+		//      if (n >= 0) {
+		//        result[0] = ' ';
+		//      } else {
+		//        result[0] = '-';
+		//        n = -n;
+		//      }
+		//      do {
+		//        result[--len] = (char) ('0' + (n % 10));
+		//        n /= 10;
+		//      } while (n > 0);
+		//      return result;
+		//    }
+		//
+		//    if (FLOAT_TO_CHARS_BUFFER == null) {
+		//      FLOAT_TO_CHARS_BUFFER = new char[13]; // enough space for floats like "-1.234567E+00"
+		//    }
+		//    char buf[] = FLOAT_TO_CHARS_BUFFER;
 		//    int pos = 0;
 		//
 		//    if (f >= 0f) {
@@ -119,9 +152,9 @@ public class Method_FloatToChars extends Method {
 		//
 		//    int m;
 		//    if (exp > ((-MAX_EXPONENT + (DIGITS_PRECISION - 1)) - 1)) {
-		//      m = (int) (f * (float) Math.pow(10, DIGITS_PRECISION - 1 - exp));
+		//      m = (int) (f * pow10(DIGITS_PRECISION - 1 - exp));
 		//    } else {   // handle IEEE 754-1985 denormalization and gradual underflow
-		//      m = (int) (f * (float) Math.pow(10, MAX_EXPONENT) * (float) Math.pow(10, (-MAX_EXPONENT + (DIGITS_PRECISION - 1)) - exp));
+		//      m = (int) (f * pow10(MAX_EXPONENT) * pow10((-MAX_EXPONENT + (DIGITS_PRECISION - 1)) - exp));
 		//    }
 		//
 		//    int tmpExp = exp;
@@ -131,7 +164,7 @@ public class Method_FloatToChars extends Method {
 		//      tmpExp = 0;
 		//    }
 		//
-		//    int pow10 = (int) Math.pow(10, DIGITS_PRECISION - 1);
+		//    int pow10 = (int) pow10(DIGITS_PRECISION - 1);
 		//    int digits = 0;
 		//    while (digits < DIGITS_PRECISION) {
 		//      if ((m <= 0) && (currExp < 0)) {
@@ -170,9 +203,7 @@ public class Method_FloatToChars extends Method {
 		//    }
 		//
 		//    char[] result = new char[pos];
-		//    for (--pos; pos >= 0; pos--) {
-		//      result[pos] = buf[pos];
-		//    }
+		//    System.arraycopy(buf, 0, result, 0, pos);
 		//    return result;
 		//  }
 
@@ -180,7 +211,7 @@ public class Method_FloatToChars extends Method {
 		final int MAX_EXPONENT = 38;
 
 		final int F = 0;             // local 0:  F  float value
-		final int BUF = 1;           // local 1:  [C working character buffer, 13 characters long
+		final int BUF = 1;           // local 1:  [C working character buffer, 13 characters long, shared between calls
 		final int POS = 2;           // local 2:  I  position in character buffer
 		final int EXP = 3;           // local 3:  I  exponent of normalized mantissa
 		final int CURR_EXP = 4;      // local 4:  I  current running exponent
@@ -249,10 +280,133 @@ public class Method_FloatToChars extends Method {
 
 		o.label("afterSpecialValues");
 
-		//  char buf[] = new char[13]; // enough space for floats like "-1.234567E+00"
+		//  int n = (int) f;
+		//  if ((f > -1E+07f) && (f < 1E+07f) && (n == f)) {
+
+		o.fload_opt(F);
+		o.f2i();
+		o.istore_opt(M);
+
+		o.fload_opt(F);
+		o.ldc(this.classModel.getFloatIndex(-1E+07f));
+		o.fcmpg();
+		o.ifle("afterIntegralValue");
+
+		o.fload_opt(F);
+		o.ldc(this.classModel.getFloatIndex(1E+07f));
+		o.fcmpg();
+		o.ifge("afterIntegralValue");
+
+		o.iload_opt(M);
+		o.i2f();
+		o.fload_opt(F);
+		o.fcmpg();
+		o.ifne("afterIntegralValue");
+
+		//  int len = 2;
+		//  for (int tmp = n; (tmp >= 10) || (tmp <= -10); tmp /= 10) {
+		//    len++;
+		//  }
+
+		o.iconst_2();
+		o.istore_opt(POS);
+
+		o.iload_opt(M);
+		o.istore_opt(DIGIT);
+		o.goto_("integralLenCond");
+
+		o.label("integralLenLoop");
+		o.iinc(POS, 1);
+		o.iload_opt(DIGIT);
+		o.iconst(10);
+		o.idiv();
+		o.istore_opt(DIGIT);
+
+		o.label("integralLenCond");
+		o.iload_opt(DIGIT);
+		o.iconst(10);
+		o.if_icmpge("integralLenLoop");
+		o.iload_opt(DIGIT);
+		o.iconst(-10);
+		o.if_icmple("integralLenLoop");
+
+		//  char[] result = new char[len];
+		//  if (n >= 0) {
+		//    result[0] = ' ';
+		//  } else {
+		//    result[0] = '-';
+		//    n = -n;
+		//  }
+
+		o.iload_opt(POS);
+		o.newarray_char();
+		o.astore_opt(RESULT);
+
+		o.aload_opt(RESULT);
+		o.iconst_0();
+
+		o.iload_opt(M);
+		o.iflt("integralNegativeSign");
+
+		o.iconst(' ');
+		o.goto_("integralAfterSign");
+
+		o.label("integralNegativeSign");
+		o.iconst('-');
+
+		o.iload_opt(M);
+		o.ineg();
+		o.istore_opt(M);
+
+		o.label("integralAfterSign");
+		o.castore();
+
+		//  do {
+		//    result[--len] = (char) ('0' + (n % 10));
+		//    n /= 10;
+		//  } while (n > 0);
+		//  return result;
+
+		o.label("integralDigitLoop");
+		o.iinc(POS, -1);
+		o.aload_opt(RESULT);
+		o.iload_opt(POS);
+		o.iconst('0');
+		o.iload_opt(M);
+		o.iconst(10);
+		o.irem();
+		o.iadd();
+		o.castore();
+
+		o.iload_opt(M);
+		o.iconst(10);
+		o.idiv();
+		o.istore_opt(M);
+
+		o.iload_opt(M);
+		o.ifgt("integralDigitLoop");
+
+		o.aload_opt(RESULT);
+		o.areturn();
+
+		o.label("afterIntegralValue");
+
+		//  if (FLOAT_TO_CHARS_BUFFER == null) {
+		//    FLOAT_TO_CHARS_BUFFER = new char[13]; // enough space for floats like "-1.234567E+00"
+		//  }
+		//  char buf[] = FLOAT_TO_CHARS_BUFFER;
+
+		int bufferFieldRef = this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_FLOAT_TO_CHARS_BUFFER, "[C");
+
+		o.getstatic(bufferFieldRef);
+		o.ifnonnull("afterInitBuffer");
 
 		o.iconst(13);
 		o.newarray_char();
+		o.putstatic(bufferFieldRef);
+
+		o.label("afterInitBuffer");
+		o.getstatic(bufferFieldRef);
 		o.astore_opt(BUF);
 
 		//  int pos = 0;
@@ -293,10 +447,10 @@ public class Method_FloatToChars extends Method {
 
 		o.fload_opt(F);
 		o.f2d();
-		o.invokestatic(this.classModel.getJavaMethodRefIndex(JavaMethod.MATH_LOG10));
+		o.invokestatic(this.classModel.getJavaMethodRefIndex(MATH_LOG10));
 		o.d2f();
 		o.f2d();
-		o.invokestatic(this.classModel.getJavaMethodRefIndex(JavaMethod.MATH_FLOOR));
+		o.invokestatic(this.classModel.getJavaMethodRefIndex(MATH_FLOOR));
 		o.d2i();
 		o.istore_opt(EXP);
 
@@ -318,9 +472,9 @@ public class Method_FloatToChars extends Method {
 
 		//    int m;
 		//    if (exp > (-MAX_EXPONENT + (DIGITS_PRECISION - 1) - 1)) {
-		//      m = (int) (f * (float) Math.pow(10, DIGITS_PRECISION - 1 - exp));
+		//      m = (int) (f * pow10(DIGITS_PRECISION - 1 - exp));
 		//    } else {   // handle IEEE 754-1985 denormalization and gradual underflow
-		//      m = (int) (f * (float) Math.pow(10, MAX_EXPONENT) * (float) Math.pow(10, -MAX_EXPONENT + (DIGITS_PRECISION - 1) - exp));
+		//      m = (int) (f * pow10(MAX_EXPONENT) * pow10(-MAX_EXPONENT + (DIGITS_PRECISION - 1) - exp));
 		//    }
 
 		o.fload_opt(F);
@@ -329,35 +483,23 @@ public class Method_FloatToChars extends Method {
 		o.iconst((-MAX_EXPONENT + (DIGITS_PRECISION - 1)) - 1);
 		o.if_icmple("denormalizeOrUnderflow");
 
-		o.iconst(10);
-		o.i2d();
 		o.iconst(DIGITS_PRECISION - 1);
 		o.iload_opt(EXP);
 		o.isub();
-		o.i2d();
-		o.invokestatic(this.classModel.getJavaMethodRefIndex(JavaMethod.MATH_POW));
-		o.d2f();
+		this.libraryManager.getMethod(LibraryManager.MethodEnum.POW10).emitCall(o);
 		o.fmul();
 		o.goto_("storeM");
 
 		o.label("denormalizeOrUnderflow");
 
-		o.iconst(10);
-		o.i2d();
 		o.iconst(MAX_EXPONENT);
-		o.i2d();
-		o.invokestatic(this.classModel.getJavaMethodRefIndex(JavaMethod.MATH_POW));
-		o.d2f();
+		this.libraryManager.getMethod(LibraryManager.MethodEnum.POW10).emitCall(o);
 		o.fmul();
 
-		o.iconst(10);
-		o.i2d();
 		o.iconst(-MAX_EXPONENT + (DIGITS_PRECISION - 1));
 		o.iload_opt(EXP);
 		o.isub();
-		o.i2d();
-		o.invokestatic(this.classModel.getJavaMethodRefIndex(JavaMethod.MATH_POW));
-		o.d2f();
+		this.libraryManager.getMethod(LibraryManager.MethodEnum.POW10).emitCall(o);
 		o.fmul();
 
 		o.label("storeM");
@@ -404,14 +546,11 @@ public class Method_FloatToChars extends Method {
 
 		o.label("afterUseExp");
 
-		//  int pow10 = (int) Math.pow(10, DIGITS_PRECISION - 1);
+		//  int pow10 = (int) pow10(DIGITS_PRECISION - 1);
 
-		o.iconst(10);
-		o.i2d();
 		o.iconst(DIGITS_PRECISION - 1);
-		o.i2d();
-		o.invokestatic(this.classModel.getJavaMethodRefIndex(JavaMethod.MATH_POW));
-		o.d2i();
+		this.libraryManager.getMethod(LibraryManager.MethodEnum.POW10).emitCall(o);
+		o.f2i();
 		o.istore_opt(POW10);
 
 		//  int digits = 0;
@@ -590,32 +729,19 @@ public class Method_FloatToChars extends Method {
 		o.label("afterAddExponent");
 
 		//  char[] result = new char[pos];
-		//  for (--pos; pos >= 0; pos--) {
-		//    result[pos] = buf[pos];
-		//  }
+		//  System.arraycopy(buf, 0, result, 0, pos);
 		//  return result;
 
 		o.iload_opt(POS);
 		o.newarray_char();
 		o.astore_opt(RESULT);
 
-		o.iload_opt(POS);
-		o.goto_("continueCopyLoop");
-
-		o.label("copyLoop");
-		o.aload_opt(RESULT);
-		o.iload_opt(POS);
-
 		o.aload_opt(BUF);
+		o.iconst_0();
+		o.aload_opt(RESULT);
+		o.iconst_0();
 		o.iload_opt(POS);
-		o.caload();
-
-		o.castore();
-
-		o.label("continueCopyLoop");
-		o.iinc(POS, -1);
-		o.iload_opt(POS);
-		o.ifge("copyLoop");
+		o.invokestatic(this.classModel.getJavaMethodRefIndex(SYSTEM_ARRAYCOPY));
 
 		o.aload_opt(RESULT);
 		o.areturn();
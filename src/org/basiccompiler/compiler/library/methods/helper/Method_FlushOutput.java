@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2015, Lorenz Wiest
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.basiccompiler.compiler.library.methods.helper;
+
+import static org.basiccompiler.bytecode.ClassModel.JavaClass.STRING;
+import static org.basiccompiler.bytecode.ClassModel.JavaMethod.PRINT_STREAM_PRINT;
+import static org.basiccompiler.bytecode.ClassModel.JavaMethod.STRING_INIT;
+
+import java.util.List;
+
+import org.basiccompiler.bytecode.info.ExceptionTableInfo;
+import org.basiccompiler.compiler.Compiler;
+import org.basiccompiler.compiler.etc.ByteOutStream;
+import org.basiccompiler.compiler.library.LibraryManager;
+import org.basiccompiler.compiler.library.methods.Method;
+
+public class Method_FlushOutput extends Method {
+	private final static String METHOD_NAME = "FlushOutput";
+	private final static String DESCRIPTOR = "()V";
+	private final static int NUM_LOCALS = 0;
+
+	public Method_FlushOutput(LibraryManager libraryManager) {
+		super(libraryManager, METHOD_NAME, DESCRIPTOR, NUM_LOCALS);
+	}
+
+	@Override
+	public void addMethodByteCode(ByteOutStream o, List<ExceptionTableInfo> e) {
+
+		// PSEUDO SOURCE CODE
+		//
+		//  if (_outBufferLen > 0) {
+		//    _out.print(new String(_outBuffer, 0, _outBufferLen));
+		//    _outBufferLen = 0;
+		//  }
+
+		int bufferFieldRef = this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_OUT_BUFFER, "[C");
+		int lenFieldRef = this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_OUT_BUFFER_LEN, "I");
+		int outFieldRef = this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_OUT, "Ljava/io/PrintStream;");
+
+		o.getstatic(lenFieldRef);
+		o.ifle("skipFlush");
+
+		o.getstatic(outFieldRef);
+		o.new_(this.classModel.getJavaClassRefIndex(STRING));
+		o.dup();
+		o.getstatic(bufferFieldRef);
+		o.iconst_0();
+		o.getstatic(lenFieldRef);
+		o.invokespecial(this.classModel.getJavaMethodRefIndex(STRING_INIT));
+		o.invokevirtual(this.classModel.getJavaMethodRefIndex(PRINT_STREAM_PRINT));
+
+		o.iconst_0();
+		o.putstatic(lenFieldRef);
+
+		o.label("skipFlush");
+		o.return_();
+	}
+}
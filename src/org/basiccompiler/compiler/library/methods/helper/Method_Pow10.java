@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2015, Lorenz Wiest
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of the FreeBSD Project.
+ */
+
+
+package org.basiccompiler.compiler.library.methods.helper;
+
+import static org.basiccompiler.bytecode.ClassModel.JavaMethod.MATH_POW;
+
+import java.util.List;
+
+import org.basiccompiler.bytecode.info.ExceptionTableInfo;
+import org.basiccompiler.compiler.Compiler;
+import org.basiccompiler.compiler.etc.ByteOutStream;
+import org.basiccompiler.compiler.library.LibraryManager;
+import org.basiccompiler.compiler.library.methods.Method;
+
+/**
+This function returns (float) Math.pow(10, exp).
+
+The powers of ten for the exponents -32..38 are looked up in the static table
+POW10_TABLE, which is created by the first call. Other exponents fall back to
+Math.pow().
+ */
+
+public class Method_Pow10 extends Method {
+	private final static String METHOD_NAME = "Pow10";
+	private final static String DESCRIPTOR = "(I)F";
+	private final static int NUM_LOCALS = 1;
+
+	private final static int MIN_TABLE_EXPONENT = -32;
+	private final static int MAX_TABLE_EXPONENT = 38;
+
+	public Method_Pow10(LibraryManager libraryManager) {
+		super(libraryManager, METHOD_NAME, DESCRIPTOR, NUM_LOCALS);
+	}
+
+	@Override
+	public void addMethodByteCode(ByteOutStream o, List<ExceptionTableInfo> e) {
+
+		//  SOURCE CODE
+		//
+		//  private static float pow10(int exp) {
+		//    if (POW10_TABLE == null) {
+		//      POW10_TABLE = new float[] { 1E-32f, 1E-31f, ..., 1E+38f };
+		//    }
+		//    if ((exp >= MIN_TABLE_EXPONENT) && (exp <= MAX_TABLE_EXPONENT)) {
+		//      return POW10_TABLE[exp - MIN_TABLE_EXPONENT];
+		//    }
+		//    return (float) Math.pow(10, exp);
+		//  }
+
+		final int EXP = 0;           // local 0:  I  exponent
+
+		int pow10TableFieldRef = this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_POW10_TABLE, "[F");
+
+		o.getstatic(pow10TableFieldRef);
+		o.ifnonnull("afterInitTable");
+
+		o.iconst((MAX_TABLE_EXPONENT - MIN_TABLE_EXPONENT) + 1);
+		o.newarray_float();
+		for (int exp = MIN_TABLE_EXPONENT; exp <= MAX_TABLE_EXPONENT; exp++) {
+			o.dup();
+			o.iconst(exp - MIN_TABLE_EXPONENT);
+			o.ldc(this.classModel.getFloatIndex((float) Math.pow(10, exp)));
+			o.fastore();
+		}
+		o.putstatic(pow10TableFieldRef);
+
+		o.label("afterInitTable");
+		o.iload_opt(EXP);
+		o.iconst(MIN_TABLE_EXPONENT);
+		o.if_icmplt("outsideTable");
+
+		o.iload_opt(EXP);
+		o.iconst(MAX_TABLE_EXPONENT);
+		o.if_icmpgt("outsideTable");
+
+		o.getstatic(pow10TableFieldRef);
+		o.iload_opt(EXP);
+		o.iconst(MIN_TABLE_EXPONENT);
+		o.isub();
+		o.faload();
+		o.freturn();
+
+		o.label("outsideTable");
+		o.iconst(10);
+		o.i2d();
+		o.iload_opt(EXP);
+		o.i2d();
+		o.invokestatic(this.classModel.getJavaMethodRefIndex(MATH_POW));
+		o.d2f();
+		o.freturn();
+	}
+}
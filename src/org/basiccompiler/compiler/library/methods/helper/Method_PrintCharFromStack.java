@@ -31,15 +31,13 @@
 
 package org.basiccompiler.compiler.library.methods.helper;
 
-import static org.basiccompiler.bytecode.ClassModel.JavaField.SYSTEM_OUT;
-import static org.basiccompiler.bytecode.ClassModel.JavaMethod.PRINT_STREAM_PRINT;
-
 import java.util.List;
 
 import org.basiccompiler.bytecode.info.ExceptionTableInfo;
 import org.basiccompiler.compiler.Compiler;
 import org.basiccompiler.compiler.etc.ByteOutStream;
 import org.basiccompiler.compiler.library.LibraryManager;
+import org.basiccompiler.compiler.library.LibraryManager.MethodEnum;
 import org.basiccompiler.compiler.library.methods.Method;
 
 public class Method_PrintCharFromStack extends Method {
@@ -60,6 +58,8 @@ public class Method_PrintCharFromStack extends Method {
 		// local 2: I for index
 
 		int posFieldRef = this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_CURSOR_POS, "I");
+		int bufferFieldRef = this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_OUT_BUFFER, "[C");
+		int lenFieldRef = this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_OUT_BUFFER_LEN, "I");
 
 		o.iload_0();
 		o.iconst('\t');
@@ -83,14 +83,21 @@ public class Method_PrintCharFromStack extends Method {
 		o.goto_("loopCond");
 
 		o.label("loop");
-		o.getstatic(this.classModel.getJavaFieldRefIndex(SYSTEM_OUT));
+		o.getstatic(lenFieldRef);
+		o.iconst(Compiler.OUT_BUFFER_SIZE);
+		o.if_icmplt("skipLoopFlush");
+		this.libraryManager.getMethod(MethodEnum.FLUSH_OUTPUT).emitCall(o);
+		o.label("skipLoopFlush");
+
+		o.getstatic(bufferFieldRef);
+		o.getstatic(lenFieldRef);
 		o.iconst(' ');
-		o.invokevirtual(this.classModel.getJavaMethodRefIndex(PRINT_STREAM_PRINT));
+		o.castore();
 
-		o.getstatic(posFieldRef);
+		o.getstatic(lenFieldRef);
 		o.iconst_1();
 		o.iadd();
-		o.putstatic(posFieldRef);
+		o.putstatic(lenFieldRef);
 
 		o.iinc(2, 1);
 
@@ -99,6 +106,11 @@ public class Method_PrintCharFromStack extends Method {
 		o.iload_1();
 		o.if_icmplt("loop");
 
+		o.getstatic(posFieldRef);
+		o.iload_1();
+		o.iadd();
+		o.putstatic(posFieldRef);
+
 		o.return_();
 
 		// handle \n
@@ -132,9 +144,22 @@ public class Method_PrintCharFromStack extends Method {
 		o.putstatic(posFieldRef);
 
 		o.label("print");
-		o.getstatic(this.classModel.getJavaFieldRefIndex(SYSTEM_OUT));
+		o.getstatic(lenFieldRef);
+		o.iconst(Compiler.OUT_BUFFER_SIZE);
+		o.if_icmplt("skipFlush");
+		this.libraryManager.getMethod(MethodEnum.FLUSH_OUTPUT).emitCall(o);
+		o.label("skipFlush");
+
+		o.getstatic(bufferFieldRef);
+		o.getstatic(lenFieldRef);
 		o.iload_0();
-		o.invokevirtual(this.classModel.getJavaMethodRefIndex(PRINT_STREAM_PRINT));
+		o.castore();
+
+		o.getstatic(lenFieldRef);
+		o.iconst_1();
+		o.iadd();
+		o.putstatic(lenFieldRef);
+
 		o.return_();
 	}
 }
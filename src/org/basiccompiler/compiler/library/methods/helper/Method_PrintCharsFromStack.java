@@ -31,9 +31,12 @@
 
 package org.basiccompiler.compiler.library.methods.helper;
 
+import static org.basiccompiler.bytecode.ClassModel.JavaMethod.SYSTEM_ARRAYCOPY;
+
 import java.util.List;
 
 import org.basiccompiler.bytecode.info.ExceptionTableInfo;
+import org.basiccompiler.compiler.Compiler;
 import org.basiccompiler.compiler.etc.ByteOutStream;
 import org.basiccompiler.compiler.library.LibraryManager;
 import org.basiccompiler.compiler.library.LibraryManager.MethodEnum;
@@ -42,7 +45,7 @@ import org.basiccompiler.compiler.library.methods.Method;
 public class Method_PrintCharsFromStack extends Method {
 	private final static String METHOD_NAME = "PrintCharsFromStack";
 	private final static String DESCRIPTOR = "([C)V";
-	private final static int NUM_LOCALS = 2;
+	private final static int NUM_LOCALS = 4;
 
 	public Method_PrintCharsFromStack(LibraryManager libraryManager) {
 		super(libraryManager, METHOD_NAME, DESCRIPTOR, NUM_LOCALS);
@@ -51,23 +54,171 @@ public class Method_PrintCharsFromStack extends Method {
 	@Override
 	public void addMethodByteCode(ByteOutStream o, List<ExceptionTableInfo> e) {
 
-		// local 0: [C characters to print
-		// local 1: I  loop index
+		// PSEUDO SOURCE CODE
+		//
+		//  for (int i = 0; i < chars.length; i++) {
+		//    char ch = chars[i];
+		//    if ((ch == '\t') || (ch == '\n') || (ch == '\r')) {
+		//      goto printSingleChars;
+		//    }
+		//  }
+		//
+		//  _cursorPos += chars.length;
+		//
+		//  for (int i = 0; i < chars.length; i += num) {
+		//    if (_outBufferLen == OUT_BUFFER_SIZE) {
+		//      FlushOutput();
+		//    }
+		//    int num = Math.min(chars.length - i, OUT_BUFFER_SIZE - _outBufferLen);
+		//    System.arraycopy(chars, i, _outBuffer, _outBufferLen, num);
+		//    _outBufferLen += num;
+		//  }
+		//  return;
+		//
+		//  printSingleChars:
+		//  for (int i = 0; i < chars.length; i++) {
+		//    PrintCharFromStack(chars[i]);
+		//  }
+
+		final int CHARS = 0; // [C characters to print
+		final int I = 1;     // I  loop index
+		final int NUM = 2;   // I  number of characters to copy
+		final int CH = 3;    // C  current character
+
+		int posFieldRef = this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_CURSOR_POS, "I");
+		int bufferFieldRef = this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_OUT_BUFFER, "[C");
+		int lenFieldRef = this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_OUT_BUFFER_LEN, "I");
+
+		//  for (int i = 0; i < chars.length; i++) {
+		//    char ch = chars[i];
+		//    if ((ch == '\t') || (ch == '\n') || (ch == '\r')) {
+		//      goto printSingleChars;
+		//    }
+		//  }
+
+		o.iconst_0();
+		o.istore_opt(I);
+		o.goto_("scanLoopCond");
+
+		o.label("scanLoop");
+		o.aload_opt(CHARS);
+		o.iload_opt(I);
+		o.caload();
+		o.istore_opt(CH);
+
+		o.iload_opt(CH);
+		o.iconst('\t');
+		o.if_icmpeq("printSingleChars");
+		o.iload_opt(CH);
+		o.iconst('\n');
+		o.if_icmpeq("printSingleChars");
+		o.iload_opt(CH);
+		o.iconst('\r');
+		o.if_icmpeq("printSingleChars");
+
+		o.iinc(I, 1);
+
+		o.label("scanLoopCond");
+		o.iload_opt(I);
+		o.aload_opt(CHARS);
+		o.arraylength();
+		o.if_icmplt("scanLoop");
+
+		//  _cursorPos += chars.length;
+
+		o.getstatic(posFieldRef);
+		o.aload_opt(CHARS);
+		o.arraylength();
+		o.iadd();
+		o.putstatic(posFieldRef);
+
+		//  for (int i = 0; i < chars.length; i += num) {
+
+		o.iconst_0();
+		o.istore_opt(I);
+		o.goto_("copyLoopCond");
+
+		//    if (_outBufferLen == OUT_BUFFER_SIZE) {
+		//      FlushOutput();
+		//    }
+
+		o.label("copyLoop");
+		o.getstatic(lenFieldRef);
+		o.iconst(Compiler.OUT_BUFFER_SIZE);
+		o.if_icmplt("skipFlush");
+		this.libraryManager.getMethod(MethodEnum.FLUSH_OUTPUT).emitCall(o);
+		o.label("skipFlush");
+
+		//    int num = Math.min(chars.length - i, OUT_BUFFER_SIZE - _outBufferLen);
+
+		o.aload_opt(CHARS);
+		o.arraylength();
+		o.iload_opt(I);
+		o.isub();
+		o.istore_opt(NUM);
+
+		o.iload_opt(NUM);
+		o.iconst(Compiler.OUT_BUFFER_SIZE);
+		o.getstatic(lenFieldRef);
+		o.isub();
+		o.if_icmple("skipClip");
+
+		o.iconst(Compiler.OUT_BUFFER_SIZE);
+		o.getstatic(lenFieldRef);
+		o.isub();
+		o.istore_opt(NUM);
+
+		o.label("skipClip");
+
+		//    System.arraycopy(chars, i, _outBuffer, _outBufferLen, num);
+
+		o.aload_opt(CHARS);
+		o.iload_opt(I);
+		o.getstatic(bufferFieldRef);
+		o.getstatic(lenFieldRef);
+		o.iload_opt(NUM);
+		o.invokestatic(this.classModel.getJavaMethodRefIndex(SYSTEM_ARRAYCOPY));
+
+		//    _outBufferLen += num;
+
+		o.getstatic(lenFieldRef);
+		o.iload_opt(NUM);
+		o.iadd();
+		o.putstatic(lenFieldRef);
+
+		o.iload_opt(I);
+		o.iload_opt(NUM);
+		o.iadd();
+		o.istore_opt(I);
+
+		o.label("copyLoopCond");
+		o.iload_opt(I);
+		o.aload_opt(CHARS);
+		o.arraylength();
+		o.if_icmplt("copyLoop");
+
+		o.return_();
+
+		//  printSingleChars:
+		//  for (int i = 0; i < chars.length; i++) {
+		//    PrintCharFromStack(chars[i]);
+		//  }
 
+		o.label("printSingleChars");
 		o.iconst_0();
-		o.istore_1();
+		o.istore_opt(I);
 		o.goto_("loopCond");
 
 		o.label("loop");
-		o.aload_0();
-		o.iload_1();
+		o.aload_opt(CHARS);
+		o.iload_opt(I);
 		o.caload();
 		this.libraryManager.getMethod(MethodEnum.PRINT_CHAR_FROM_STACK).emitCall(o);
-		o.iinc(1, 1);
+		o.iinc(I, 1);
 
 		o.label("loopCond");
-		o.iload_1();
-		o.aload_0();
+		o.iload_opt(I);
+		o.aload_opt(CHARS);
 		o.arraylength();
 		o.if_icmplt("loop");
 
@@ -34,12 +34,12 @@ package org.basiccompiler.compiler.library.methods.helper;
 import java.util.List;
 
 import org.basiccompiler.bytecode.ClassModel.JavaClass;
-import org.basiccompiler.bytecode.ClassModel.JavaField;
 import org.basiccompiler.bytecode.ClassModel.JavaMethod;
 import org.basiccompiler.bytecode.info.ExceptionTableInfo;
 import org.basiccompiler.compiler.Compiler;
 import org.basiccompiler.compiler.etc.ByteOutStream;
 import org.basiccompiler.compiler.library.LibraryManager;
+import org.basiccompiler.compiler.library.LibraryManager.MethodEnum;
 import org.basiccompiler.compiler.library.methods.Method;
 
 public class Method_ReadCharsToStack extends Method {
@@ -56,12 +56,14 @@ public class Method_ReadCharsToStack extends Method {
 
 		// PSEUDO SOURCE CODE
 		//
+		//  FlushOutput();
+		//
 		//  byte[] buffer = new byte[255];
 		//
 		//  int numBytes = -1;
 		//  try {
 		//  readloop:
-		//    numBytes = System.in.read(buffer);
+		//    numBytes = _in.read(buffer);
 		//    // set cursor position to 0
 		//  } catch (IOException e) {
 		//    goto readLoop
@@ -89,6 +91,10 @@ public class Method_ReadCharsToStack extends Method {
 		final int I = 3;         // I  i
 		final int INPUT = 4;     // [C input
 
+		//  FlushOutput();
+
+		this.libraryManager.getMethod(MethodEnum.FLUSH_OUTPUT).emitCall(o);
+
 		//  byte[] buffer = new byte[255];
 
 		o.iconst(255);
@@ -106,9 +112,9 @@ public class Method_ReadCharsToStack extends Method {
 		int posTryBegin = o.pos();
 		o.label("readLoop");
 
-		//    numBytes = System.in.read(buffer);
+		//    numBytes = _in.read(buffer);
 
-		o.getstatic(this.classModel.getJavaFieldRefIndex(JavaField.SYSTEM_IN));
+		o.getstatic(this.classModel.addFieldAndGetFieldRefIndex(Compiler.FIELD_IN, "Ljava/io/InputStream;"));
 		o.aload_opt(BUFFER);
 		o.invokevirtual(this.classModel.getJavaMethodRefIndex(JavaMethod.INPUT_STREAM_READ));
 		o.istore_opt(NUM_BYTES);
@@ -34,9 +34,9 @@ package org.basiccompiler.compiler.library.methods.helper;
 import java.util.List;
 
 import org.basiccompiler.bytecode.info.ExceptionTableInfo;
+import org.basiccompiler.compiler.Compiler;
 import org.basiccompiler.compiler.etc.ByteOutStream;
 import org.basiccompiler.compiler.library.LibraryManager;
-import org.basiccompiler.compiler.library.LibraryManager.MethodEnum;
 import org.basiccompiler.compiler.library.methods.Method;
 
 public class Method_ReadNumFromDataToStack extends Method {
@@ -50,8 +50,36 @@ public class Method_ReadNumFromDataToStack extends Method {
 
 	@Override
 	public void addMethodByteCode(ByteOutStream o, List<ExceptionTableInfo> e) {
-		this.libraryManager.getMethod(MethodEnum.READ_STRING_FROM_DATA_TO_STACK).emitCall(o);
-		this.libraryManager.getMethod(MethodEnum.VAL).emitCall(o);
+
+		// The data elements are converted with VAL() at compile time.
+		//
+		// float readNumFromData() {
+		//   if (dataIndex >= numData.length) {
+		//     throw new RuntimeException("Out of data.");
+		//   }
+		//   return numData[dataIndex++];
+		// }
+
+		int dataIndexFieldRef = this.classModel.getFieldRefIndex(Compiler.FIELD_DATA_INDEX, "I");
+		int numDataFieldRef = this.classModel.getFieldRefIndex(Compiler.FIELD_NUM_DATA, "[F");
+
+		o.getstatic(dataIndexFieldRef);
+		o.getstatic(numDataFieldRef);
+		o.arraylength();
+		o.if_icmplt("notOutOfData");
+
+		emitThrowRuntimeException(o, "Out of data.");
+
+		o.label("notOutOfData");
+		o.getstatic(numDataFieldRef);
+		o.getstatic(dataIndexFieldRef);
+		o.faload();
+
+		o.getstatic(dataIndexFieldRef);
+		o.iconst_1();
+		o.iadd();
+		o.putstatic(dataIndexFieldRef);
+
 		o.freturn();
 	}
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2015, Lorenz Wiest
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of the FreeBSD Project.
+ */
+
+
+package org.basiccompiler.compiler.library.methods.helper;
+
+import java.util.List;
+
+import org.basiccompiler.bytecode.info.ExceptionTableInfo;
+import org.basiccompiler.compiler.etc.ByteOutStream;
+import org.basiccompiler.compiler.library.LibraryManager;
+import org.basiccompiler.compiler.library.LibraryManager.MethodEnum;
+import org.basiccompiler.compiler.library.methods.Method;
+
+public class Method_RightRange extends Method {
+
+	private final static String METHOD_NAME = "RightRange";
+	private final static String DESCRIPTOR = "([CF)I";
+	private final static int NUM_LOCALS = 2;
+
+	public Method_RightRange(LibraryManager libraryManager) {
+		super(libraryManager, METHOD_NAME, DESCRIPTOR, NUM_LOCALS);
+	}
+
+	@Override
+	public void addMethodByteCode(ByteOutStream o, List<ExceptionTableInfo> e) {
+
+		// range of RIGHT$(X$,I) in X$: (start index << 16) | end index
+
+		// local 0: [C src char[]
+		// local 1: F  length of substring
+
+		o.fload_1();
+		this.libraryManager.getMethod(MethodEnum.ROUND_TO_INT).emitCall(o);
+		o.istore_1();
+
+		o.iload_1();
+		o.ifge("skipIndexUnderflow");
+
+		emitThrowRuntimeException(o, "RIGHT$: Index < 0.");
+
+		o.label("skipIndexUnderflow");
+		o.iload_1();
+		o.iconst(0x0FF);
+		o.if_icmple("skipIndexOverflow");
+
+		emitThrowRuntimeException(o, "RIGHT$: Index > 255.");
+
+		o.label("skipIndexOverflow");
+
+		o.iload_1();
+		o.aload_0();
+		o.arraylength();
+		o.if_icmpge("startOfString");
+
+		o.aload_0();
+		o.arraylength();
+		o.iload_1();
+		o.isub();
+		o.goto_("range");
+
+		o.label("startOfString");
+		o.iconst_0();
+
+		o.label("range");
+		o.iconst(16);
+		o.ishl();
+		o.aload_0();
+		o.arraylength();
+		o.ior();
+		o.ireturn();
+	}
+}
@@ -56,6 +56,17 @@ public class Method_Substring extends Method {
 		// local 3: I  temp length substring
 		// local 4: [C substring char[]
 
+		// char[]s are never modified, so the whole source can be shared
+		o.iload_1();
+		o.ifne("copy");
+		o.iload_2();
+		o.aload_0();
+		o.arraylength();
+		o.if_icmplt("copy");
+		o.aload_0();
+		o.areturn();
+
+		o.label("copy");
 		o.iload_2();
 		o.iload_1();
 		o.isub();
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2015, Lorenz Wiest
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of the FreeBSD Project.
+ */
+
+
+package org.basiccompiler.compiler.library.methods.operators;
+
+import static org.basiccompiler.bytecode.ClassModel.JavaMethod.SYSTEM_ARRAYCOPY;
+
+import java.util.List;
+
+import org.basiccompiler.bytecode.info.ExceptionTableInfo;
+import org.basiccompiler.compiler.etc.ByteOutStream;
+import org.basiccompiler.compiler.library.LibraryManager;
+import org.basiccompiler.compiler.library.methods.Method;
+
+public class Method_MultipleStringConcatenation extends Method {
+	private final static String METHOD_NAME = "MultipleStringConcatenation";
+	private final static String DESCRIPTOR = "([[C)[C";
+	private final static int NUM_LOCALS = 4;
+
+	public Method_MultipleStringConcatenation(LibraryManager libraryManager) {
+		super(libraryManager, METHOD_NAME, DESCRIPTOR, NUM_LOCALS);
+	}
+
+	@Override
+	public void addMethodByteCode(ByteOutStream o, List<ExceptionTableInfo> e) {
+
+		// local 0: [[C array of the strings to concatenate
+		// local 1: I   length of the concatenated string, then offset of the current string
+		// local 2: [C  concatenated string
+		// local 3: I   loop counter
+
+		o.iconst_0();
+		o.istore_1();
+
+		o.aload_0();
+		o.arraylength();
+		o.istore_3();
+
+		o.goto_("lengthLoopCond");
+		o.label("lengthLoop");
+		o.iinc(3, -1);
+		o.iload_1();
+		o.aload_0();
+		o.iload_3();
+		o.aaload();
+		o.arraylength();
+		o.iadd();
+		o.istore_1();
+
+		o.label("lengthLoopCond");
+		o.iload_3();
+		o.ifgt("lengthLoop");
+
+		o.iload_1();
+		o.iconst(0xFF);
+		o.if_icmple("skipStringOverflow");
+
+		emitThrowRuntimeException(o, "Concatenated string size > 255.");
+
+		o.label("skipStringOverflow");
+		o.iload_1();
+		o.newarray_char();
+		o.astore_2();
+
+		// copy the strings from the last to the first, each one exactly once
+
+		o.aload_0();
+		o.arraylength();
+		o.istore_3();
+
+		o.goto_("copyLoopCond");
+		o.label("copyLoop");
+		o.iinc(3, -1);
+		o.aload_0();
+		o.iload_3();
+		o.aaload();
+		o.dup();
+		o.arraylength();
+		o.iload_1();
+		o.swap();
+		o.isub();
+		o.istore_1();
+
+		o.iconst_0();
+		o.aload_2();
+		o.iload_1();
+		o.aload_0();
+		o.iload_3();
+		o.aaload();
+		o.arraylength();
+		o.invokestatic(this.classModel.getJavaMethodRefIndex(SYSTEM_ARRAYCOPY));
+
+		o.label("copyLoopCond");
+		o.iload_3();
+		o.ifgt("copyLoop");
+
+		o.aload_2();
+		o.areturn();
+	}
+}
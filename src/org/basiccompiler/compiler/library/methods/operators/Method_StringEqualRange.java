@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015, Lorenz Wiest
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of the FreeBSD Project.
+ */
+
+
+package org.basiccompiler.compiler.library.methods.operators;
+
+import java.util.List;
+
+import org.basiccompiler.bytecode.info.ExceptionTableInfo;
+import org.basiccompiler.compiler.etc.ByteOutStream;
+import org.basiccompiler.compiler.library.LibraryManager;
+import org.basiccompiler.compiler.library.methods.Method;
+
+public class Method_StringEqualRange extends Method {
+	private final static String METHOD_NAME = "StringEqualRange";
+	private final static String DESCRIPTOR = "([C[CI)F";
+	private final static int NUM_LOCALS = 5;
+
+	public Method_StringEqualRange(LibraryManager libraryManager) {
+		super(libraryManager, METHOD_NAME, DESCRIPTOR, NUM_LOCALS);
+	}
+
+	@Override
+	public void addMethodByteCode(ByteOutStream o, List<ExceptionTableInfo> e) {
+
+		// X$ = LEFT$/MID$/RIGHT$ of a range in Y$, without creating the substring
+
+		// local 0: [C char array reference
+		// local 1: [C src char[]
+		// local 2: I  range: (start index << 16) | end index
+		// local 3: I  start index
+		// local 4: I  loop counter
+
+		o.iload_2();
+		o.iconst(16);
+		o.iushr();
+		o.istore_3();
+
+		o.aload_0();
+		o.arraylength();
+		o.iload_2();
+		o.i2c();
+		o.iload_3();
+		o.isub();
+		o.if_icmpne("false");
+
+		o.aload_0();
+		o.arraylength();
+		o.istore(4);
+		o.goto_("loopCond");
+
+		o.label("loop");
+		o.iinc(4, -1);
+
+		o.aload_0();
+		o.iload(4);
+		o.caload();
+		o.aload_1();
+		o.iload_3();
+		o.iload(4);
+		o.iadd();
+		o.caload();
+		o.if_icmpne("false");
+
+		o.label("loopCond");
+		o.iload(4);
+		o.ifgt("loop");
+
+		o.fconst_1();
+		o.fneg();
+		o.freturn();
+
+		o.label("false");
+		o.fconst_0();
+		o.freturn();
+	}
+}
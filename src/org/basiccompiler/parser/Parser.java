@@ -63,6 +63,7 @@ import static org.basiccompiler.parser.tokens.Token.COLON;
 import static org.basiccompiler.parser.tokens.Token.COMMA;
 import static org.basiccompiler.parser.tokens.Token.DATA;
 import static org.basiccompiler.parser.tokens.Token.DEF;
+import static org.basiccompiler.parser.tokens.Token.DEFINT;
 import static org.basiccompiler.parser.tokens.Token.DIM;
 import static org.basiccompiler.parser.tokens.Token.DIVIDE;
 import static org.basiccompiler.parser.tokens.Token.ELSE;
@@ -120,8 +121,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.basiccompiler.compiler.etc.CompileException;
 import org.basiccompiler.parser.nodes.INode;
@@ -137,6 +136,7 @@ import org.basiccompiler.parser.nodes.impl.VariableNode;
 import org.basiccompiler.parser.statements.Statement;
 import org.basiccompiler.parser.statements.impl.DataStatement;
 import org.basiccompiler.parser.statements.impl.DefFnStatement;
+import org.basiccompiler.parser.statements.impl.DefIntStatement;
 import org.basiccompiler.parser.statements.impl.DimStatement;
 import org.basiccompiler.parser.statements.impl.EndStatement;
 import org.basiccompiler.parser.statements.impl.ForStatement;
@@ -173,6 +173,8 @@ public class Parser {
 
 	private final Map<String, FnFunctionNode> fnMap = new HashMap<String, FnFunctionNode>();
 
+	private final boolean[] defIntLetters = new boolean[26]; // number variables starting with these letters are integer variables
+
 	//////////////////////////////////////////////////////////////////////////////
 
 	private class ArrayVariableInfo {
@@ -247,47 +249,50 @@ public class Parser {
 
 	private Statement parseStatement() {
 		Statement result;
-		if (isNextKeyword(DATA)) {
+		Token token = getNextStatementToken();
+		if (token == DATA) {
 			result = parseDATA();
-		} else if (isNextKeyword(DEF)) {
+		} else if (token == DEF) {
 			result = parseDEF();
-		} else if (isNextKeyword(DIM)) {
+		} else if (token == DEFINT) {
+			result = parseDEFINT();
+		} else if (token == DIM) {
 			result = parseDIM();
-		} else if (isNextKeyword(END)) {
+		} else if (token == END) {
 			result = parseEND();
-		} else if (isNextKeyword(FOR)) {
+		} else if (token == FOR) {
 			result = parseFOR();
-		} else if (isNextKeyword(IF)) {
+		} else if (token == IF) {
 			result = parseIF();
-		} else if (isNextKeyword(INPUT)) {
+		} else if (token == INPUT) {
 			result = parseINPUT();
-		} else if (isNextKeyword(GOTO)) {
+		} else if (token == GOTO) {
 			result = parseGOTO();
-		} else if (isNextKeyword(GOSUB)) {
+		} else if (token == GOSUB) {
 			result = parseGOSUB();
-		} else if (isNextKeyword(LET)) {
+		} else if (token == LET) {
 			result = parseLET();
-		} else if (isNextKeyword(NEXT)) {
+		} else if (token == NEXT) {
 			result = parseNEXT();
-		} else if (isNextKeyword(ON)) {
+		} else if (token == ON) {
 			result = parseON();
-		} else if (isNextKeyword(PRINT)) {
+		} else if (token == PRINT) {
 			result = parsePRINT();
-		} else if (isNextKeyword(READ)) {
+		} else if (token == READ) {
 			result = parseREAD();
-		} else if (isNextKeyword(REM)) {
+		} else if (token == REM) {
 			result = parseREM();
-		} else if (isNextKeyword(RESTORE)) {
+		} else if (token == RESTORE) {
 			result = parseRESTORE();
-		} else if (isNextKeyword(RETURN)) {
+		} else if (token == RETURN) {
 			result = parseRETURN();
-		} else if (isNextKeyword(STOP)) {
+		} else if (token == STOP) {
 			result = parseSTOP();
-		} else if (isNextKeyword(SWAP)) {
+		} else if (token == SWAP) {
 			result = parseSWAP();
-		} else if (isNextKeyword(WEND)) {
+		} else if (token == WEND) {
 			result = parseWEND();
-		} else if (isNextKeyword(WHILE)) {
+		} else if (token == WHILE) {
 			result = parseWHILE();
 		} else { // no keyword found
 			result = parseImplicitLET();
@@ -392,6 +397,30 @@ public class Parser {
 		return statement;
 	}
 
+	private Statement parseDEFINT() {
+		// DEFINT <letter>[-<letter>][,<letter>[-<letter>]]*
+
+		StringBuffer letters = new StringBuffer();
+		do {
+			String firstLetter = getLetter();
+			if (firstLetter == null) {
+				throw new CompileException("DEFINT: Missing or invalid letter.");
+			}
+			String lastLetter = firstLetter;
+			if (isNextToken(SUBTRACT)) {
+				lastLetter = getLetter();
+				if (lastLetter == null) {
+					throw new CompileException("DEFINT: Missing or invalid letter after -.");
+				}
+			}
+			for (char ch = firstLetter.charAt(0); ch <= lastLetter.charAt(0); ch++) {
+				this.defIntLetters[ch - 'A'] = true;
+				letters.append(ch);
+			}
+		} while (isNextToken(COMMA));
+		return new DefIntStatement(letters.toString());
+	}
+
 	private Statement parseDIM() {
 		// DIM <arrayVar>[,<arrayVar>]*
 
@@ -1043,6 +1072,9 @@ public class Parser {
 	private VariableNode parseNumArrayVar() {
 		String varName = getNumArrayVariableName();
 		if (varName != null) {
+			if (isDefIntName(varName)) {
+				varName = varName.substring(0, varName.length() - 1) + "%(";
+			}
 			INode dim1Expr = parseNumExpr();
 			if (dim1Expr == null) {
 				throw new CompileException("Missing or invalid expression for first index of number array variable " + varName + ").");
@@ -1084,11 +1116,19 @@ public class Parser {
 	private VariableNode parseNumVar() {
 		String varName = getNumVariableName();
 		if (varName != null) {
+			if (isDefIntName(varName)) {
+				varName = varName + "%";
+			}
 			return VariableNode.createVariableNode(varName, NodeType.NUM);
 		}
 		return null;
 	}
 
+	// a number variable without the % suffix is an integer variable if its first letter was given in a DEFINT statement
+	private boolean isDefIntName(String varName) {
+		return (varName.indexOf('%') < 0) && this.defIntLetters[varName.charAt(0) - 'A'];
+	}
+
 	private NumNode parseNumConst() {
 		String strNumber = getNumConstant();
 		if (strNumber != null) {
@@ -1521,65 +1561,149 @@ public class Parser {
 
 	// ATOMIC MATCHERS ///////////////////////////////////////////////////////////
 
+	// The matchers scan this.stringToParse character by character starting at
+	// this.pos. On a match, they move this.pos behind the match and return the
+	// matched characters. Otherwise, they return null and leave this.pos as is.
+	//
+	// Leading whitespace is skipped before a match. Whitespace is the same set
+	// of characters the former regular expression class \s matched.
+
+	private static boolean isWhitespace(char ch) {
+		return (ch == ' ') || (ch == '\t') || (ch == '\n') || (ch == '\u000B') || (ch == '\f') || (ch == '\r');
+	}
+
+	private static boolean isLetter(char ch) {
+		return (ch >= 'A') && (ch <= 'Z');
+	}
+
+	private static boolean isDigit(char ch) {
+		return (ch >= '0') && (ch <= '9');
+	}
+
+	private static boolean isNameChar(char ch) {
+		return isLetter(ch) || isDigit(ch) || (ch == '.');
+	}
+
+	private boolean isCharAt(int pos, char ch) {
+		return (pos < this.stringToParse.length()) && (this.stringToParse.charAt(pos) == ch);
+	}
+
+	private boolean isLetterAt(int pos) {
+		return (pos < this.stringToParse.length()) && isLetter(this.stringToParse.charAt(pos));
+	}
+
+	private boolean isDigitAt(int pos) {
+		return (pos < this.stringToParse.length()) && isDigit(this.stringToParse.charAt(pos));
+	}
+
+	private int skipWhitespace(int pos) {
+		while ((pos < this.stringToParse.length()) && isWhitespace(this.stringToParse.charAt(pos))) {
+			pos++;
+		}
+		return pos;
+	}
+
+	private int skipDigits(int pos) {
+		while (isDigitAt(pos)) {
+			pos++;
+		}
+		return pos;
+	}
+
+	private int skipNameChars(int pos) {
+		while ((pos < this.stringToParse.length()) && isNameChar(this.stringToParse.charAt(pos))) {
+			pos++;
+		}
+		return pos;
+	}
+
+	private String match(int beginPos, int endPos) {
+		this.pos = endPos;
+		return this.stringToParse.substring(beginPos, endPos);
+	}
+
 	/*
-	 * ^           | Start of string
-	 * \\s*?       | Match any whitespace, consumed lazily
-	 * (           | Start capture group 1 (number)
-	 * [+-]?       | Match one plus or minus, if present
-	 * (?:         | Start unnamed capture group 2 (mantissa)
-	 * [0-9]+      | Option 1: Match one or more digits, consumed lazily
-	 * (?:         |   Start unnamed capture group 3 (fractional part of mantissa)
-	 * \\.         |   Match one single period
-	 * [0-9]*      |   Match any digits, consumed ###
-	 * )           |   End unnamed capture group 3 (fractional part of mantissa)
-	 * ?           |   ...capture group 3 (fractional part of mantissa) is optional
-	 * |           | ...or...
-	 * \\.         | Option2: Match one single period
-	 * [0-9]++     |   Match one or more digits, consumed possessively
-	 * )           |   End unnamed capture group 2 (mantissa)
-	 * (?:         | Start unnamed capture group 3 (exponent)
-	 * [eE]        | Match one 'e' or 'E'
-	 * [+-]?       | Match one plus or minus, if present
-	 * [0-9]++     | Match one or more digits, consumed possessively
-	 * )           | End unnamed capture group 3 (exponent), ...
-	 * ?           | ... capture group 3 (exponent) is optional
-	 * )           | End capture group 1 (number)
+	 * [+-]?                   | One plus or minus, if present
+	 * {<digits>[.<digits>?]   | Mantissa: digits with optional fractional part...
+	 *  |.<digits>}            | ...or a period followed by digits
+	 * [{E|e}[+-]?<digits>]    | Optional exponent
 	 */
-	private static final Pattern NUMBER_PATTERN = Pattern.compile("^\\s*?([-+]?(?:[0-9]+(?:\\.[0-9]*)?|\\.[0-9]++)(?:[eE][-+]?[0-9]++)?)");
-
 	private String getNumConstant() {
-		return findMatch(NUMBER_PATTERN);
+		int beginPos = skipWhitespace(this.pos);
+		int endPos = beginPos;
+		if (isCharAt(endPos, '+') || isCharAt(endPos, '-')) {
+			endPos++;
+		}
+		if (isDigitAt(endPos)) {
+			endPos = skipDigits(endPos);
+			if (isCharAt(endPos, '.')) {
+				endPos = skipDigits(endPos + 1);
+			}
+		} else if (isCharAt(endPos, '.') && isDigitAt(endPos + 1)) {
+			endPos = skipDigits(endPos + 1);
+		} else {
+			return null;
+		}
+		if (isCharAt(endPos, 'E') || isCharAt(endPos, 'e')) {
+			int expPos = endPos + 1;
+			if (isCharAt(expPos, '+') || isCharAt(expPos, '-')) {
+				expPos++;
+			}
+			if (isDigitAt(expPos)) {
+				endPos = skipDigits(expPos);
+			}
+		}
+		return match(beginPos, endPos);
 	}
 
 	/*
-	 * ^           | Start of string
-	 * \\s*?       | Match any whitespace, consumed lazily
-	 * \"          | Match one quote
-	 * (           | Start capture group (content of string)
-	 * [^\"]*?     | Match any character but a quote, consumed lazily
-	 * )           | End capture group
-	 * \"          | Match one quote
+	 * "<any character but a quote>*"
+	 *
+	 * Returns the string between the quotes.
 	 */
-	private static final Pattern STRING_CONST_PATTERN = Pattern.compile("^\\s*?\"([^\"]*?)\"");
-
 	private String getStrConstant() {
-		return findMatch(STRING_CONST_PATTERN);
+		int beginPos = skipWhitespace(this.pos);
+		if (isCharAt(beginPos, '"') == false) {
+			return null;
+		}
+		int endPos = this.stringToParse.indexOf('"', beginPos + 1);
+		if (endPos < 0) {
+			return null;
+		}
+		this.pos = endPos + 1;
+		return this.stringToParse.substring(beginPos + 1, endPos);
 	}
 
 	/*
-	 * ^           | Start of string
-	 * \\s*?       | Match any whitespace, consumed lazily
-	 * (           | Start capture group (keyword)
-	 * [A-Z]       | Match one letter
-	 * [A-Z0-9]*+  | Match any letter or digit, consumed possessively
-	 * )           | End capture group
+	 * [A-Z]
 	 */
-	private static final Pattern KEYWORD_PATTERN = Pattern.compile("^\\s*?([A-Z][A-Z0-9]*+)");
+	private String getLetter() {
+		int beginPos = skipWhitespace(this.pos);
+		if (isLetterAt(beginPos) == false) {
+			return null;
+		}
+		return match(beginPos, beginPos + 1);
+	}
+
+	/*
+	 * [A-Z][A-Z0-9]*
+	 */
+	private String getKeyword() {
+		int beginPos = skipWhitespace(this.pos);
+		if (isLetterAt(beginPos) == false) {
+			return null;
+		}
+		int endPos = beginPos + 1;
+		while (isLetterAt(endPos) || isDigitAt(endPos)) {
+			endPos++;
+		}
+		return match(beginPos, endPos);
+	}
 
 	private boolean isNextKeyword(Token token) {
-		String match = findMatch(KEYWORD_PATTERN);
+		String match = getKeyword();
 		if (match != null) {
-			if (match.trim().equals(token.getChars())) {
+			if (match.equals(token.getChars())) {
 				return true;
 			}
 			match = unmatch(match);
@@ -1587,35 +1711,58 @@ public class Parser {
 		return false;
 	}
 
+	private static final Map<String, Token> STATEMENT_TOKENS = new HashMap<String, Token>();
+
+	static {
+		for (Token token : new Token[] { DATA, DEF, DEFINT, DIM, END, FOR, IF, INPUT, GOTO, GOSUB, LET, NEXT, ON, PRINT, READ, REM, RESTORE, RETURN, STOP, SWAP, WEND, WHILE }) {
+			STATEMENT_TOKENS.put(token.getChars(), token);
+		}
+	}
+
+	private Token getNextStatementToken() {
+		String match = getKeyword();
+		if (match != null) {
+			Token token = STATEMENT_TOKENS.get(match);
+			if (token != null) {
+				return token;
+			}
+			match = unmatch(match);
+		}
+		return null;
+	}
+
 	/*
-	 * ^           | Start of string
-	 * \\s*?       | Match any whitespace, consumed lazily
-	 * (           | Start capture group (constant)
-	 * [^,:]*+     | Match any character but a comma or a colon, consumed possessively
-	 * )           | End capture group
+	 * <any character but a comma or a colon>*
+	 *
+	 * Leading whitespace is part of the match. Never returns null.
 	 */
-	private static final Pattern ANY_CONST_PATTERN = Pattern.compile("^\\s*?([^,:]*+)");
-
 	private String getAnyConstant() {
-		return findMatch(ANY_CONST_PATTERN);
+		int endPos = this.pos;
+		while ((endPos < this.stringToParse.length()) && (this.stringToParse.charAt(endPos) != ',') && (this.stringToParse.charAt(endPos) != ':')) {
+			endPos++;
+		}
+		return match(this.pos, endPos);
 	}
 
 	/*
-	 * ^           | Start of string
-	 * \\s*?       | Match any whitespace, consumed lazily
-	 * (           | Start capture group (line number)
-	 * [0-9]{1,5}  | Match any sequence of digits, 1 to 5 characters long
-	 * )           | End capture group
+	 * [0-9]{1,5}
 	 */
-	private static final Pattern LINE_NUMBER_PATTERN = Pattern.compile("^\\s*?([0-9]{1,5})");
-
 	private String getLineNumber() {
-		return findMatch(LINE_NUMBER_PATTERN);
+		int beginPos = skipWhitespace(this.pos);
+		int endPos = beginPos;
+		while (isDigitAt(endPos) && (endPos - beginPos < 5)) {
+			endPos++;
+		}
+		if (endPos == beginPos) {
+			return null;
+		}
+		return match(beginPos, endPos);
 	}
 
-	private static String statementKeywords[] = new String[] { //
+	private final static String statementKeywords[] = new String[] { //
 		"DATA",
 		"DEF",
+		"DEFINT",
 		"DIM",
 		"ELSE",
 		"END",
@@ -1641,48 +1788,42 @@ public class Parser {
 		"WHILE", //
 	};
 
-	private static Set<String> STATEMENT_KEYWORDS = new HashSet<String>();
-
-	static {
-		STATEMENT_KEYWORDS.addAll(Arrays.asList(statementKeywords));
-	}
+	private static final Set<String> STATEMENT_KEYWORDS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(statementKeywords)));
 
 	/*
-	 * ^              | Start of string
-	 * \\s*?          | Match any whitespace, consumed lazily
-	 * (              | Start capture group (number variable name)
-	 * [A-Z]          | Match one letter
-	 * [A-Z0-9\\.]*+  | Match any letter, digit, or dot, consumed possessively
-	 * )              | End capture group
+	 * [A-Z][A-Z0-9.]*%?, but not a statement keyword
 	 */
-	private static final Pattern NUM_VARIABLENAME_PATTERN = Pattern.compile("^\\s*?([A-Z][A-Z0-9\\.]*+)");
-
 	private String getNumVariableName() {
-		String match = findMatch(NUM_VARIABLENAME_PATTERN);
-		if (match != null) {
-			if (STATEMENT_KEYWORDS.contains(match)) {
-				match = unmatch(match);
-			}
+		int beginPos = skipWhitespace(this.pos);
+		if (isLetterAt(beginPos) == false) {
+			return null;
 		}
-		return match;
+		int endPos = skipNameChars(beginPos + 1);
+		if (STATEMENT_KEYWORDS.contains(this.stringToParse.substring(beginPos, endPos))) {
+			return null;
+		}
+		if (isCharAt(endPos, '%')) {
+			endPos++;
+		}
+		return match(beginPos, endPos);
 	}
 
 	/*
-	 * ^              | Start of string
-	 * \\s*?          | Match any whitespace, consumed lazily
-	 * (              | Start capture group (string variable name)
-	 * [A-Z]          | Match one letter
-	 * [A-Z0-9\\.]*?  | Match any letter, digit, or dot, consumed lazily
-	 * \\$            | Match one dollar sign
-	 * )              | End capture group
+	 * [A-Z][A-Z0-9.]*$
 	 */
-	private static final Pattern STR_VARIABLENAME_PATTERN = Pattern.compile("^\\s*?([A-Z][A-Z0-9\\.]*?\\$)");
-
 	private String getStrVariableName() {
-		return findMatch(STR_VARIABLENAME_PATTERN);
+		int beginPos = skipWhitespace(this.pos);
+		if (isLetterAt(beginPos) == false) {
+			return null;
+		}
+		int endPos = skipNameChars(beginPos + 1);
+		if (isCharAt(endPos, '$') == false) {
+			return null;
+		}
+		return match(beginPos, endPos + 1);
 	}
 
-	private static String numFunctionKeywords[] = new String[] { //
+	private final static String numFunctionKeywords[] = new String[] { //
 		"INT(",
 		"SQR(",
 		"LEN(",
@@ -1702,57 +1843,55 @@ public class Parser {
 		"INSTR(", //
 	};
 
-	private static Set<String> NUM_FUNCTION_KEYWORDS = new HashSet<String>();
-
-	static {
-		NUM_FUNCTION_KEYWORDS.addAll(Arrays.asList(numFunctionKeywords));
-	}
+	private static final Set<String> NUM_FUNCTION_KEYWORDS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(numFunctionKeywords)));
 
 	/*
-	 * ^              | Start of string
-	 * \\s*?          | Match any whitespace, consumed lazily
-	 * (              | Start capture group (number function name)
-	 * FN             | Match "FN"
-	 * [A-Z]          | Match one letter
-	 * [A-Z0-9\\.]*?  | Match any letter, digit, or dot, consumed lazily
-	 * \\(            | Match an opening parenthesis
-	 * )              | End capture group
+	 * FN[A-Z][A-Z0-9.]*(
+	 *
+	 * Returns the position behind the match, or -1 if there is no match.
 	 */
-	private static final Pattern NUM_FUNCTION_NAME_PATTERN = Pattern.compile("^\\s*?(FN[A-Z][A-Z0-9\\.]*?\\()");
+	private int scanNumFunctionName(int beginPos) {
+		if (this.stringToParse.startsWith("FN", beginPos) && isLetterAt(beginPos + 2)) {
+			int endPos = skipNameChars(beginPos + 3);
+			if (isCharAt(endPos, '(')) {
+				return endPos + 1;
+			}
+		}
+		return -1;
+	}
 
 	private String getNumFunctionName() {
-		return findMatch(NUM_FUNCTION_NAME_PATTERN);
+		int beginPos = skipWhitespace(this.pos);
+		int endPos = scanNumFunctionName(beginPos);
+		if (endPos < 0) {
+			return null;
+		}
+		return match(beginPos, endPos);
 	}
 
 	/*
-	 * ^              | Start of string
-	 * \\s*?          | Match any whitespace, consumed lazily
-	 * (?!            | Start negative lookahead. No match if characters ahead...
-	 * FN             | Match FN
-	 * [A-Z]          | Match one letter
-	 * [A-Z0-9\\.]*?  | Match any letter, digit, or dot, consumed lazily
-	 * \\$            | Match one dollar sign
-	 * \\(            | Match an opening parenthesis
-	 * )              | End negative lookahead
-	 * (              | Start capture group (number array variable name)
-	 * [A-Z]          | Match one letter
-	 * [A-Z0-9\\.]*?  | Match any letter, digit, or dot, consumed lazily
-	 * \\(            | Match an opening parenthesis
-	 * )              | End capture group
+	 * [A-Z][A-Z0-9.]*%?(, but not a number function name and not a number function keyword
 	 */
-	private static final Pattern NUM_ARRAY_VARIABLE_NAME_PATTERN = Pattern.compile("^\\s*?(?!FN[A-Z][A-Z0-9\\.]*?\\()([A-Z][A-Z0-9\\.]*?\\()");
-
 	private String getNumArrayVariableName() {
-		String match = findMatch(NUM_ARRAY_VARIABLE_NAME_PATTERN);
-		if (match != null) {
-			if (NUM_FUNCTION_KEYWORDS.contains(match)) {
-				match = unmatch(match);
-			}
+		int beginPos = skipWhitespace(this.pos);
+		if ((scanNumFunctionName(beginPos) >= 0) || (isLetterAt(beginPos) == false)) {
+			return null;
+		}
+		int endPos = skipNameChars(beginPos + 1);
+		if (isCharAt(endPos, '%')) {
+			endPos++;
+		}
+		if (isCharAt(endPos, '(') == false) {
+			return null;
+		}
+		String match = match(beginPos, endPos + 1);
+		if (NUM_FUNCTION_KEYWORDS.contains(match)) {
+			match = unmatch(match);
 		}
 		return match;
 	}
 
-	private static String strFunctionKeywords[] = new String[] { //
+	private final static String strFunctionKeywords[] = new String[] { //
 		"CHR$(",
 		"LEFT$(",
 		"MID$(",
@@ -1761,66 +1900,49 @@ public class Parser {
 		"SPACE$(", //
 	};
 
-	private static Set<String> STR_FUNCTION_KEYWORDS = new HashSet<String>();
-
-	static {
-		STR_FUNCTION_KEYWORDS.addAll(Arrays.asList(strFunctionKeywords));
-	}
+	private static final Set<String> STR_FUNCTION_KEYWORDS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(strFunctionKeywords)));
 
 	/*
-	 * ^              | Start of string
-	 * \\s*?          | Match any whitespace, consumed lazily
-	 * (              | Start capture group (string function name)
-	 * FN             | Match "FN"
-	 * [A-Z]          | Match one letter
-	 * [A-Z0-9\\.]*?  | Match any letter, digit, or dot, consumed lazily
-	 * \\$            | Match one dollar sign
-	 * \\(            | Match an opening parenthesis
-	 * )              | End capture group
+	 * FN[A-Z][A-Z0-9.]*$(
+	 *
+	 * Returns the position behind the match, or -1 if there is no match.
 	 */
-	private static final Pattern STR_FUNCTION_NAME_PATTERN = Pattern.compile("^\\s*?(FN[A-Z][A-Z0-9\\.]*?\\$\\()");
+	private int scanStrFunctionName(int beginPos) {
+		if (this.stringToParse.startsWith("FN", beginPos) && isLetterAt(beginPos + 2)) {
+			int endPos = skipNameChars(beginPos + 3);
+			if (isCharAt(endPos, '$') && isCharAt(endPos + 1, '(')) {
+				return endPos + 2;
+			}
+		}
+		return -1;
+	}
 
 	private String getStrFunctionName() {
-		return findMatch(STR_FUNCTION_NAME_PATTERN);
+		int beginPos = skipWhitespace(this.pos);
+		int endPos = scanStrFunctionName(beginPos);
+		if (endPos < 0) {
+			return null;
+		}
+		return match(beginPos, endPos);
 	}
 
 	/*
-	 * ^              | Start of string
-	 * \\s*?          | Match any whitespace, consumed lazily
-	 * (?!            | Start negative lookahead. No match if characters ahead...
-	 * FN             | Match FN
-	 * [A-Z]          | Match one letter
-	 * [A-Z0-9\\.]*?  | Match any letter, digit, or dot, consumed lazily
-	 * \\$            | Match one dollar sign
-	 * \\(            | Match an opening parenthesis
-	 * )              | End negative lookahead
-	 * (              | Start capture group (string array name)
-	 * [A-Z]          | Match one letter
-	 * [A-Z0-9\\.]*?  | Match any letter, digit, or dot, consumed lazily
-	 * \\$            | Match one dollar sign
-	 * \\(            | Match an opening parenthesis
-	 * )              | End capture group
+	 * [A-Z][A-Z0-9.]*$(, but not a string function name and not a string function keyword
 	 */
-	private static final Pattern STR_ARRAY_VARIABLE_NAME_PATTERN = Pattern.compile("^\\s*?(?!FN[A-Z][A-Z0-9\\.]*?\\$\\()([A-Z][A-Z0-9\\.]*?\\$\\()");
-
 	private String getStrArrayVariableName() {
-		String match = findMatch(STR_ARRAY_VARIABLE_NAME_PATTERN);
-		if (match != null) {
-			if (STR_FUNCTION_KEYWORDS.contains(match)) {
-				match = unmatch(match);
-			}
+		int beginPos = skipWhitespace(this.pos);
+		if ((scanStrFunctionName(beginPos) >= 0) || (isLetterAt(beginPos) == false)) {
+			return null;
 		}
-		return match;
-	}
-
-	private String findMatch(Pattern pattern) {
-		String matched = null;
-		Matcher matcher = pattern.matcher(this.stringToParse.substring(this.pos));
-		if (matcher.find()) {
-			matched = matcher.group(1);
-			this.pos += matcher.end();
+		int endPos = skipNameChars(beginPos + 1);
+		if ((isCharAt(endPos, '$') && isCharAt(endPos + 1, '(')) == false) {
+			return null;
+		}
+		String match = match(beginPos, endPos + 2);
+		if (STR_FUNCTION_KEYWORDS.contains(match)) {
+			match = unmatch(match);
 		}
-		return matched;
+		return match;
 	}
 
 	private String unmatch(String match) {
@@ -34,6 +34,7 @@ package org.basiccompiler.parser.nodes;
 public enum NodeType {
 	STR, //
 	NUM, //
+	INT, //
 	VOID, //
 	UNKNOWN;
 }
\ No newline at end of file
@@ -67,6 +67,11 @@ public class VariableNode implements INode {
 		return this.dimExpressions;
 	}
 
+	// integer variables have the % suffix, e.g. A% or A%(
+	public boolean isIntegerVariable() {
+		return this.varName.endsWith("%") || this.varName.endsWith("%(");
+	}
+
 	// @Override commented for JDK 5 compatibility
 	public NodeType getType() {
 		return this.type;
@@ -73,6 +73,7 @@ public class Token {
 
 	public final static Token DATA = new Token("DATA");
 	public final static Token DEF = new Token("DEF");
+	public final static Token DEFINT = new Token("DEFINT");
 	public final static Token DIM = new Token("DIM");
 	public final static Token ELSE = new Token("ELSE");
 	public final static Token END = new Token("END");
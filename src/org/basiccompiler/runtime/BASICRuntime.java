@@ -0,0 +1,822 @@
+/*
+ * Copyright (c) 2015, Lorenz Wiest
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of the FreeBSD Project.
+ */
+
+package org.basiccompiler.runtime;
+
+/**
+ * The library methods of compiled BASIC programs as plain Java code.
+ * <p>
+ * Programs compiled with the option "-runtime" call these methods instead of carrying
+ * their own bytecode copies of them, so this class must be on the classpath when such a
+ * program runs. Method names, descriptors and runtime error messages are the same as the
+ * ones of the generated methods in org.basiccompiler.compiler.library.methods, so the
+ * compiler can emit either one without further changes.
+ * <p>
+ * Only stateless methods live here. The generated methods that print, read DATA or
+ * INPUT, or use the GOSUB stack work on fields of the program class and stay generated.
+ */
+public final class BASICRuntime {
+	private final static int MIN_POW10_TABLE_EXPONENT = -32;
+	private final static int MAX_POW10_TABLE_EXPONENT = 38;
+	private final static float[] POW10_TABLE = createPow10Table();
+
+	private final static char[] EMPTY_STRING = new char[0];
+
+	private BASICRuntime() {
+		// no instances
+	}
+
+	//////////////////////////////////////////////////////////////////////////////
+	// helper
+
+	public static void ThrowRuntimeException(String message) {
+		throw new RuntimeException(message);
+	}
+
+	public static char[] StringToChars(String s) {
+		return s.toCharArray();
+	}
+
+	public static int RoundToInt(float f) {
+		if (f < 0) {
+			return (int) -(-f + 0.5f);
+		}
+		return (int) (f + 0.5f);
+	}
+
+	public static int CheckIntegerRange(int i) {
+		if (i < -32768) {
+			ThrowRuntimeException("Overflow: Integer value < -32768.");
+		}
+		if (i > 32767) {
+			ThrowRuntimeException("Overflow: Integer value > 32767.");
+		}
+		return i;
+	}
+
+	public static int FloatToInteger(float f) {
+		return CheckIntegerRange(RoundToInt(f));
+	}
+
+	public static void CheckLogicalOperatorAguments(float f1, float f2) {
+		int i1 = (int) f1;
+		if (i1 < -32768) {
+			ThrowRuntimeException("Logical operator: First argument < -32768.");
+		}
+		if (i1 > 32767) {
+			ThrowRuntimeException("Logical operator: First argument > 32767.");
+		}
+		int i2 = (int) f2;
+		if (i2 < -32768) {
+			ThrowRuntimeException("Logical operator: Second argument < -32768.");
+		}
+		if (i2 > 32767) {
+			ThrowRuntimeException("Logical operator: Second argument > 32767.");
+		}
+	}
+
+	public static void CheckOnGotoGosubArg(int index) {
+		if (index < 0) {
+			ThrowRuntimeException("ON GOTO/GOSUB: Index < 0.");
+		}
+		if (index > 255) {
+			ThrowRuntimeException("ON GOTO/GOSUB: Index > 255.");
+		}
+	}
+
+	public static float Pow10(int exp) {
+		if ((exp < MIN_POW10_TABLE_EXPONENT) || (exp > MAX_POW10_TABLE_EXPONENT)) {
+			return (float) Math.pow(10, exp);
+		}
+		return POW10_TABLE[exp - MIN_POW10_TABLE_EXPONENT];
+	}
+
+	private static float[] createPow10Table() {
+		float[] table = new float[(MAX_POW10_TABLE_EXPONENT - MIN_POW10_TABLE_EXPONENT) + 1];
+		for (int exp = MIN_POW10_TABLE_EXPONENT; exp <= MAX_POW10_TABLE_EXPONENT; exp++) {
+			table[exp - MIN_POW10_TABLE_EXPONENT] = (float) Math.pow(10, exp);
+		}
+		return table;
+	}
+
+	// every float is encoded as two chars: high 16 bits, low 16 bits
+	public static float[] CharsToFloatArray(char[] chars) {
+		float[] floats = new float[chars.length >> 1];
+		for (int i = 0; i < floats.length; i++) {
+			floats[i] = Float.intBitsToFloat((chars[i << 1] << 16) | chars[(i << 1) + 1]);
+		}
+		return floats;
+	}
+
+	// char[]s are never modified, so the whole source can be shared
+	public static char[] Substring(char[] src, int start, int end) {
+		if ((start == 0) && (end >= src.length)) {
+			return src;
+		}
+		char[] substring = new char[end - start];
+		for (int i = 0; i < substring.length; i++) {
+			substring[i] = src[start + i];
+		}
+		return substring;
+	}
+
+	// the ranges of LEFT$(), MID$() and RIGHT$() are packed into an int: (start index << 16) | end index
+
+	public static int LeftRange(char[] src, float f) {
+		int n = RoundToInt(f);
+		if (n < 0) {
+			ThrowRuntimeException("LEFT$(): Index < 0.");
+		}
+		if (n > 255) {
+			ThrowRuntimeException("LEFT$(): Index > 255.");
+		}
+		return (n < src.length) ? n : src.length;
+	}
+
+	public static int MidRange(char[] src, float f1, float f2) {
+		int index = RoundToInt(f1);
+		if (index <= 0) {
+			ThrowRuntimeException("MID$(): Index <= 0.");
+		}
+		if (index > 255) {
+			ThrowRuntimeException("MID$(): Index > 255.");
+		}
+		int length = RoundToInt(f2);
+		if (length <= 0) {
+			ThrowRuntimeException("MID$(): Length <= 0.");
+		}
+		if (length > 255) {
+			ThrowRuntimeException("MID$(): Length > 255.");
+		}
+		int start = (index > src.length) ? src.length : index - 1;
+		int end = start + length;
+		if (end > src.length) {
+			end = src.length;
+		}
+		return (start << 16) | end;
+	}
+
+	public static int RightRange(char[] src, float f) {
+		int n = RoundToInt(f);
+		if (n < 0) {
+			ThrowRuntimeException("RIGHT$: Index < 0.");
+		}
+		if (n > 255) {
+			ThrowRuntimeException("RIGHT$: Index > 255.");
+		}
+		int start = (n < src.length) ? src.length - n : 0;
+		return (start << 16) | src.length;
+	}
+
+	public static float AscRange(char[] src, int range) {
+		if ((char) range <= (range >>> 16)) {
+			ThrowRuntimeException("ASC(): Length of string < 1.");
+		}
+		return src[range >>> 16];
+	}
+
+	//////////////////////////////////////////////////////////////////////////////
+	// functions
+
+	public static float Abs(float f) {
+		return (f < 0) ? -f : f;
+	}
+
+	public static float Asc(char[] s) {
+		if (s.length <= 0) {
+			ThrowRuntimeException("ASC(): Length of string < 1.");
+		}
+		return s[0];
+	}
+
+	public static float Atn(float f) {
+		return (float) Math.atan(f);
+	}
+
+	public static char[] Chr(float f) {
+		int i = RoundToInt(f);
+		if (i < 0) {
+			ThrowRuntimeException("CHR$(): Argument < 0.");
+		}
+		if (i > 127) {
+			ThrowRuntimeException("CHR$(): Argument > 127.");
+		}
+		return new char[] { (char) i };
+	}
+
+	public static float Cos(float f) {
+		return (float) Math.cos(f);
+	}
+
+	public static float Fix(float f) {
+		float fix = (float) ((f < 0) ? Math.ceil(f) : Math.floor(f));
+		return (fix == 0) ? 0f : fix; // no -0
+	}
+
+	public static float Instr(float f, char[] x, char[] y) {
+		int index = RoundToInt(f);
+		if (index <= 0) {
+			ThrowRuntimeException("INSTR(): Index < 1.");
+		}
+		if (index > 255) {
+			ThrowRuntimeException("INSTR(): Index > 255.");
+		}
+		if (index > x.length) {
+			return 0;
+		}
+		if (x.length <= 0) {
+			return 0;
+		}
+		if (y.length <= 0) {
+			return index;
+		}
+		int maxLength = x.length - y.length;
+		for (int i = index - 1; i < maxLength; i++) {
+			boolean isMatchFound = true;
+			for (int j = i; j < (i + y.length); j++) {
+				if (x[j] != y[j - i]) {
+					isMatchFound = false;
+					break;
+				}
+			}
+			if (isMatchFound) {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+
+	public static float Int(float f) {
+		return (float) Math.floor(f);
+	}
+
+	public static char[] Left(char[] src, float f) {
+		return Substring(src, 0, LeftRange(src, f));
+	}
+
+	public static float Len(char[] s) {
+		return s.length;
+	}
+
+	public static float Log(float f) {
+		if (f <= 0) {
+			ThrowRuntimeException("LOG(): Argument <= 0.");
+		}
+		return (float) Math.log(f);
+	}
+
+	public static char[] Mid(char[] src, float f1, float f2) {
+		int range = MidRange(src, f1, f2);
+		return Substring(src, range >>> 16, (char) range);
+	}
+
+	public static char[] Right(char[] src, float f) {
+		int range = RightRange(src, f);
+		return Substring(src, range >>> 16, (char) range);
+	}
+
+	public static float Sgn(float f) {
+		if (f < 0) {
+			return -1f;
+		}
+		return (f == 0) ? 0f : 1f;
+	}
+
+	public static float Sin(float f) {
+		return (float) Math.sin(f);
+	}
+
+	public static char[] Space(float f) {
+		int n = RoundToInt(f);
+		if (n < 0) {
+			ThrowRuntimeException("SPACE$(): Argument < 0.");
+		}
+		if (n > 255) {
+			ThrowRuntimeException("SPACE$(): Argument > 255.");
+		}
+		char[] s = new char[n];
+		for (int i = 0; i < n; i++) {
+			s[i] = ' ';
+		}
+		return s;
+	}
+
+	public static float Sqr(float f) {
+		if (f < 0) {
+			ThrowRuntimeException("SQR(): Argument < 0.");
+		}
+		return (float) Math.sqrt(f);
+	}
+
+	public static float Val(char[] s) {
+		float f = CharsToFloat(s);
+		return (f != f) ? 0f : f; // VAL() of NaN is 0
+	}
+
+	//////////////////////////////////////////////////////////////////////////////
+	// numbers
+
+	public static float CharsToFloat(char[] s) {
+		final int DIGITS_INT_MANTISSA = 7;
+
+		int pos = 0;
+		while ((pos < s.length) && ((s[pos] == ' ') || (s[pos] == '\t') || (s[pos] == '\r') || (s[pos] == '\n'))) {
+			pos++;
+		}
+		if (pos >= s.length) {
+			return Float.NaN;
+		}
+
+		boolean isNeg = false;
+		if (s[pos] == '-') {
+			isNeg = true;
+			pos++;
+		} else if (s[pos] == '+') {
+			pos++;
+		}
+
+		int im = 0;
+		float m = 0f;
+		int mExp = -1;
+		int dotExp = 0;
+		boolean seenMantissa = false;
+		boolean seenDot = false;
+
+		for (; pos < s.length; pos++) {
+			char chr = s[pos];
+			if ((chr >= '0') && (chr <= '9')) {
+				if (mExp < (DIGITS_INT_MANTISSA - 1)) {
+					im = (10 * im) + (chr - '0');
+				} else {
+					if (mExp == (DIGITS_INT_MANTISSA - 1)) {
+						m = im;
+					}
+					m = (10 * m) + (chr - '0');
+				}
+				mExp++;
+				seenMantissa = true;
+			} else if ((chr == '.') && (seenDot == false)) {
+				dotExp = mExp;
+				seenDot = true;
+			} else {
+				break;
+			}
+		}
+
+		if (seenMantissa == false) {
+			return Float.NaN;
+		}
+		if (mExp < DIGITS_INT_MANTISSA) {
+			m = im;
+		}
+
+		boolean isExpNeg = false;
+		int exp = 0;
+		if (((pos + 1) < s.length) && ((s[pos] == 'E') || (s[pos] == 'e'))) {
+			pos++;
+			if (s[pos] == '-') {
+				isExpNeg = true;
+				pos++;
+			} else if (s[pos] == '+') {
+				pos++;
+			}
+			for (; (pos < s.length) && (s[pos] >= '0') && (s[pos] <= '9'); pos++) {
+				exp = (10 * exp) + (s[pos] - '0');
+			}
+		}
+		if (isExpNeg) {
+			exp = -exp;
+		}
+
+		int effExp = seenDot ? mExp - dotExp : 0;
+		float f = m;
+		if (effExp != exp) {
+			f = m / Pow10(effExp - exp);
+		}
+		return isNeg ? -f : f;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////
+	// operators
+
+	public static float And(float f1, float f2) {
+		CheckLogicalOperatorAguments(f1, f2);
+		return (int) f1 & (int) f2;
+	}
+
+	public static float Or(float f1, float f2) {
+		CheckLogicalOperatorAguments(f1, f2);
+		return (int) f1 | (int) f2;
+	}
+
+	public static float Xor(float f1, float f2) {
+		CheckLogicalOperatorAguments(f1, f2);
+		return (int) f1 ^ (int) f2;
+	}
+
+	public static float Not(float f) {
+		int i = (int) f;
+		if (i < -32768) {
+			ThrowRuntimeException("NOT operator: Argument < -32768.");
+		}
+		if (i > 32767) {
+			ThrowRuntimeException("NOT operator: Argument > 32767.");
+		}
+		return -(i + 1);
+	}
+
+	public static char[] StringConcatenation(char[] s1, char[] s2) {
+		int length = s1.length + s2.length;
+		if (length > 255) {
+			ThrowRuntimeException("Concatenated string size > 255.");
+		}
+		char[] s = new char[length];
+		System.arraycopy(s1, 0, s, 0, s1.length);
+		System.arraycopy(s2, 0, s, s1.length, s2.length);
+		return s;
+	}
+
+	public static char[] MultipleStringConcatenation(char[][] strings) {
+		int length = 0;
+		for (int i = 0; i < strings.length; i++) {
+			length += strings[i].length;
+		}
+		if (length > 255) {
+			ThrowRuntimeException("Concatenated string size > 255.");
+		}
+		char[] s = new char[length];
+		int offset = 0;
+		for (int i = 0; i < strings.length; i++) {
+			System.arraycopy(strings[i], 0, s, offset, strings[i].length);
+			offset += strings[i].length;
+		}
+		return s;
+	}
+
+	// comparisons return -1 for true and 0 for false, with the same loops as the generated methods
+
+	public static float StringEqual(char[] s1, char[] s2) {
+		if (s1.length != s2.length) {
+			return 0f;
+		}
+		for (int i = 0; i < s1.length; i++) {
+			if (s1[i] != s2[i]) {
+				return 0f;
+			}
+		}
+		return -1f;
+	}
+
+	public static float StringEqualRange(char[] s, char[] src, int range) {
+		int start = range >>> 16;
+		if (s.length != ((char) range - start)) {
+			return 0f;
+		}
+		for (int i = 0; i < s.length; i++) {
+			if (s[i] != src[start + i]) {
+				return 0f;
+			}
+		}
+		return -1f;
+	}
+
+	public static float StringNotEqual(char[] s1, char[] s2) {
+		return (StringEqual(s1, s2) == 0f) ? -1f : 0f;
+	}
+
+	public static float StringGreaterThan(char[] s1, char[] s2) {
+		int min = (s1.length < s2.length) ? s1.length : s2.length;
+		for (int i = 0; i < min; i++) {
+			if (s1[i] > s2[i]) {
+				return -1f;
+			}
+			if (s1[i] < s2[i]) {
+				return 0f;
+			}
+		}
+		return (s1.length > s2.length) ? -1f : 0f;
+	}
+
+	public static float StringGreaterOrEqual(char[] s1, char[] s2) {
+		int min = (s1.length < s2.length) ? s1.length : s2.length;
+		for (int i = 0; i < min; i++) {
+			if (s1[i] < s2[i]) {
+				return 0f;
+			}
+		}
+		return (s1.length >= s2.length) ? -1f : 0f;
+	}
+
+	public static float StringLessThan(char[] s1, char[] s2) {
+		int min = (s1.length < s2.length) ? s1.length : s2.length;
+		for (int i = 0; i < min; i++) {
+			if (s1[i] > s2[i]) {
+				return 0f;
+			}
+			if (s1[i] < s2[i]) {
+				return -1f;
+			}
+		}
+		return (s1.length < s2.length) ? -1f : 0f;
+	}
+
+	public static float StringLessOrEqual(char[] s1, char[] s2) {
+		int min = (s1.length < s2.length) ? s1.length : s2.length;
+		for (int i = 0; i < min; i++) {
+			if (s1[i] > s2[i]) {
+				return 0f;
+			}
+		}
+		return (s1.length <= s2.length) ? -1f : 0f;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////
+	// arrays
+	//
+	// An array variable is a reference to a one-element array holding the array itself,
+	// which is null until the array is dimensioned. 2D arrays are row-major arrays of
+	// rows * stride elements.
+
+	public static void Dim1DCheckSize(int maxIndex) {
+		if (maxIndex < 0) {
+			ThrowRuntimeException("DIM 1D array: Max index < 0.");
+		}
+		if (maxIndex > 32767) {
+			ThrowRuntimeException("DIM 1D array: Max index > 32767.");
+		}
+	}
+
+	public static void Dim2DCheckSize(int maxIndex1, int maxIndex2) {
+		if (maxIndex1 < 0) {
+			ThrowRuntimeException("DIM 2D array: Max first index of array < 0.");
+		}
+		if (maxIndex1 > 32767) {
+			ThrowRuntimeException("DIM 2D array: Max first index of array > 32767.");
+		}
+		if (maxIndex2 < 0) {
+			ThrowRuntimeException("DIM 2D array: Max second index of array < 0.");
+		}
+		if (maxIndex2 > 32767) {
+			ThrowRuntimeException("DIM 2D array: Max second index of array > 32767.");
+		}
+	}
+
+	public static void Dim1DFloatArray(float[][] ref, float f) {
+		if (ref[0] != null) {
+			ThrowRuntimeException("1D number array already dimensioned.");
+		}
+		int maxIndex = RoundToInt(f);
+		Dim1DCheckSize(maxIndex);
+		ref[0] = new float[maxIndex + 1];
+	}
+
+	public static void Dim1DIntArray(int[][] ref, float f) {
+		if (ref[0] != null) {
+			ThrowRuntimeException("1D integer array already dimensioned.");
+		}
+		int maxIndex = RoundToInt(f);
+		Dim1DCheckSize(maxIndex);
+		ref[0] = new int[maxIndex + 1];
+	}
+
+	public static void Dim1DStringArray(char[][][] ref, float f) {
+		if (ref[0] != null) {
+			ThrowRuntimeException("1D string array already dimensioned.");
+		}
+		int maxIndex = RoundToInt(f);
+		Dim1DCheckSize(maxIndex);
+		ref[0] = createStringArray(maxIndex + 1);
+	}
+
+	public static int Dim2DFloatArray(float[][] ref, float f1, float f2) {
+		if (ref[0] != null) {
+			ThrowRuntimeException("2D number array already dimensioned.");
+		}
+		int maxIndex1 = RoundToInt(f1);
+		int maxIndex2 = RoundToInt(f2);
+		Dim2DCheckSize(maxIndex1, maxIndex2);
+		int stride = maxIndex2 + 1;
+		ref[0] = new float[(maxIndex1 + 1) * stride];
+		return stride;
+	}
+
+	public static int Dim2DIntArray(int[][] ref, float f1, float f2) {
+		if (ref[0] != null) {
+			ThrowRuntimeException("2D integer array already dimensioned.");
+		}
+		int maxIndex1 = RoundToInt(f1);
+		int maxIndex2 = RoundToInt(f2);
+		Dim2DCheckSize(maxIndex1, maxIndex2);
+		int stride = maxIndex2 + 1;
+		ref[0] = new int[(maxIndex1 + 1) * stride];
+		return stride;
+	}
+
+	public static int Dim2DStringArray(char[][][] ref, float f1, float f2) {
+		if (ref[0] != null) {
+			ThrowRuntimeException("2D string array already dimensioned.");
+		}
+		int maxIndex1 = RoundToInt(f1);
+		int maxIndex2 = RoundToInt(f2);
+		Dim2DCheckSize(maxIndex1, maxIndex2);
+		int stride = maxIndex2 + 1;
+		ref[0] = createStringArray((maxIndex1 + 1) * stride);
+		return stride;
+	}
+
+	private static char[][] createStringArray(int size) {
+		char[][] array = new char[size][];
+		for (int i = 0; i < size; i++) {
+			array[i] = EMPTY_STRING;
+		}
+		return array;
+	}
+
+	public static void Check1DFloatArrayAccess(float[][] ref, int index) {
+		if (ref[0] == null) {
+			Dim1DFloatArray(ref, 10);
+		}
+		if (index < 0) {
+			ThrowRuntimeException("Index of 1D number array < 0.");
+		}
+		if (index >= ref[0].length) {
+			ThrowRuntimeException("Index of 1D number array out of max bounds.");
+		}
+	}
+
+	public static void Check1DIntArrayAccess(int[][] ref, int index) {
+		if (ref[0] == null) {
+			Dim1DIntArray(ref, 10);
+		}
+		if (index < 0) {
+			ThrowRuntimeException("Index of 1D integer array < 0.");
+		}
+		if (index >= ref[0].length) {
+			ThrowRuntimeException("Index of 1D integer array out of max bounds.");
+		}
+	}
+
+	public static void Check1DStringArrayAccess(char[][][] ref, int index) {
+		if (ref[0] == null) {
+			Dim1DStringArray(ref, 10);
+		}
+		if (index < 0) {
+			ThrowRuntimeException("Index of 1D string array < 0.");
+		}
+		if (index >= ref[0].length) {
+			ThrowRuntimeException("Index of 1D string array out of max bounds.");
+		}
+	}
+
+	// returns the index into the row-major array
+	public static int Check2DFloatArrayAccess(float[][] ref, int stride, int index1, int index2) {
+		if (ref[0] == null) {
+			Dim2DFloatArray(ref, 10, 10); // stride 11, the initial value of the stride
+		}
+		if (index1 < 0) {
+			ThrowRuntimeException("First index of 2D number array < 0.");
+		}
+		if (index1 >= (ref[0].length / stride)) {
+			ThrowRuntimeException("First index of 2D number array out of max bounds.");
+		}
+		if (index2 < 0) {
+			ThrowRuntimeException("Second index of 2D number array < 0.");
+		}
+		if (index2 >= stride) {
+			ThrowRuntimeException("Second index of 2D number array out of max bounds.");
+		}
+		return (index1 * stride) + index2;
+	}
+
+	public static int Check2DIntArrayAccess(int[][] ref, int stride, int index1, int index2) {
+		if (ref[0] == null) {
+			Dim2DIntArray(ref, 10, 10);
+		}
+		if (index1 < 0) {
+			ThrowRuntimeException("First index of 2D integer array < 0.");
+		}
+		if (index1 >= (ref[0].length / stride)) {
+			ThrowRuntimeException("First index of 2D integer array out of max bounds.");
+		}
+		if (index2 < 0) {
+			ThrowRuntimeException("Second index of 2D integer array < 0.");
+		}
+		if (index2 >= stride) {
+			ThrowRuntimeException("Second index of 2D integer array out of max bounds.");
+		}
+		return (index1 * stride) + index2;
+	}
+
+	public static int Check2DStringArrayAccess(char[][][] ref, int stride, int index1, int index2) {
+		if (ref[0] == null) {
+			Dim2DStringArray(ref, 10, 10);
+		}
+		if (index1 < 0) {
+			ThrowRuntimeException("First index of 2D string array < 0.");
+		}
+		if (index1 >= (ref[0].length / stride)) {
+			ThrowRuntimeException("First index of 2D string array out of max bounds.");
+		}
+		if (index2 < 0) {
+			ThrowRuntimeException("Second index of 2D string array < 0.");
+		}
+		if (index2 >= stride) {
+			ThrowRuntimeException("Second index of 2D string array out of max bounds.");
+		}
+		return (index1 * stride) + index2;
+	}
+
+	public static float LoadFloatFrom1DArray(float[][] ref, float f) {
+		int index = RoundToInt(f);
+		Check1DFloatArrayAccess(ref, index);
+		return ref[0][index];
+	}
+
+	public static int LoadIntFrom1DArray(int[][] ref, float f) {
+		int index = RoundToInt(f);
+		Check1DIntArrayAccess(ref, index);
+		return ref[0][index];
+	}
+
+	public static char[] LoadStringFrom1DArray(char[][][] ref, float f) {
+		int index = RoundToInt(f);
+		Check1DStringArrayAccess(ref, index);
+		return ref[0][index];
+	}
+
+	public static float LoadFloatFrom2DArray(float[][] ref, int stride, float f1, float f2) {
+		int index = Check2DFloatArrayAccess(ref, stride, RoundToInt(f1), RoundToInt(f2));
+		return ref[0][index];
+	}
+
+	public static int LoadIntFrom2DArray(int[][] ref, int stride, float f1, float f2) {
+		int index = Check2DIntArrayAccess(ref, stride, RoundToInt(f1), RoundToInt(f2));
+		return ref[0][index];
+	}
+
+	public static char[] LoadStringFrom2DArray(char[][][] ref, int stride, float f1, float f2) {
+		int index = Check2DStringArrayAccess(ref, stride, RoundToInt(f1), RoundToInt(f2));
+		return ref[0][index];
+	}
+
+	public static void StoreFloatIn1DArray(float value, float[][] ref, float f) {
+		int index = RoundToInt(f);
+		Check1DFloatArrayAccess(ref, index);
+		ref[0][index] = value;
+	}
+
+	public static void StoreIntIn1DArray(int value, int[][] ref, float f) {
+		int index = RoundToInt(f);
+		Check1DIntArrayAccess(ref, index);
+		ref[0][index] = value;
+	}
+
+	public static void StoreStringIn1DArray(char[] value, char[][][] ref, float f) {
+		int index = RoundToInt(f);
+		Check1DStringArrayAccess(ref, index);
+		ref[0][index] = value;
+	}
+
+	public static void StoreFloatIn2DArray(float value, float[][] ref, int stride, float f1, float f2) {
+		int index = Check2DFloatArrayAccess(ref, stride, RoundToInt(f1), RoundToInt(f2));
+		ref[0][index] = value;
+	}
+
+	public static void StoreIntIn2DArray(int value, int[][] ref, int stride, float f1, float f2) {
+		int index = Check2DIntArrayAccess(ref, stride, RoundToInt(f1), RoundToInt(f2));
+		ref[0][index] = value;
+	}
+
+	public static void StoreStringIn2DArray(char[] value, char[][][] ref, int stride, float f1, float f2) {
+		int index = Check2DStringArrayAccess(ref, stride, RoundToInt(f1), RoundToInt(f2));
+		ref[0][index] = value;
+	}
+}
@@ -31,38 +31,53 @@
 
 package org.basiccompiler.tests;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.PrintStream;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.basiccompiler.BASICCompiler;
+import org.basiccompiler.BASICRunner;
 import org.basiccompiler.compiler.etc.CompileException;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.junit.runner.RunWith;
 
+@RunWith(ParallelRunner.class)
 public class CompilerTest {
 	private final static String CR = System.getProperty("line.separator");
 
-	private final static String TEST_FOLDER_PATH = "c:\\temp";
 	private final static String TEST_CLASS_NAME = "CompilerTestClass";
-	private final static String TEST_CLASS_FULLFILENAME = TEST_FOLDER_PATH + "\\" + TEST_CLASS_NAME + ".class";
 
-	private static int testCount;
+	private final static String SAMPLES_FOLDER_PATH = "samples";
+
+	private static final AtomicInteger testCount = new AtomicInteger();
 
 	@BeforeClass
 	public static void beforeClass() {
-		testCount = 0;
+		testCount.set(0);
 	}
 
 	@AfterClass
@@ -305,6 +320,8 @@ public class CompilerTest {
 		assertEquals(compileAndRun("10 PRINT 123456"), " 123456 ");
 		assertEquals(compileAndRun("10 PRINT 1234567"), " 1234567 ");
 		assertEquals(compileAndRun("10 PRINT 12345678"), " 1.234567E+07 ");
+		assertEquals(compileAndRun("10 PRINT 9999999; -9999999; -10; 100; -1E+07"), " 9999999 -9999999 -10  100 -1E+07 ");
+		assertEquals(compileAndRun("10 FOR I = -2 TO 2 : PRINT STR$(I * 5); : NEXT I"), "-10-5 0 5 10");
 
 		assertEquals(compileAndRun("10 PRINT 1.2"), " 1.2 ");
 		assertEquals(compileAndRun("10 PRINT 1.23"), " 1.23 ");
@@ -829,6 +846,18 @@ public class CompilerTest {
 		assertEquals(compileAndRun("10 GOSUB 40" + CR + "20 GOSUB 50" + CR + "30 GOTO 60" + CR + "40 GOSUB 50" + CR + "50 RETURN" + CR + "60 PRINT \"X\""), "X");
 		assertEquals(compileAndRun("10 GOSUB 30" + CR + "20 GOTO 60" + CR + "30 GOSUB 50" + CR + "40 RETURN" + CR + "50 RETURN" + CR + "60 PRINT \"END\""), "END");
 
+		// subroutines compiled into methods, and subroutines which fall back to the return table
+		assertEquals(compileAndRun("10 FOR I = 1 TO 3 : X = I : GOSUB 100 : PRINT Y; : NEXT I" + CR + "20 END" + CR + "100 Y = X * 2 : IF Y > 4 THEN GOSUB 200 : RETURN" + CR + "110 RETURN" + CR + "200 Y = Y + 1 : RETURN"), " 2  4  7 ");
+		String sharedForProgram = "10 FOR I = 1 TO 2 : GOSUB 100 : NEXT I : PRINT I" + CR + "20 END" + CR + "100 J = I : FOR I = 5 TO 6 : PRINT I; : NEXT I : I = J : RETURN";
+		Properties splitProperties = new Properties();
+		splitProperties.setProperty(BASICCompiler.OPT_SPLIT_METHODS, "");
+		assertEquals(compileAndRun(sharedForProgram), " 5  6  5  6  5  6  5  6  5  6  5  6  7 ");
+		assertEquals(compileAndRun(sharedForProgram), compileAndRun(sharedForProgram, splitProperties));
+		assertEquals(compileAndRun("10 GOSUB 100 : GOSUB 110 : PRINT N" + CR + "20 END" + CR + "100 N = N + 1 : IF N < 3 THEN GOSUB 100" + CR + "110 N = N * 10 : RETURN"), " 30000 ");
+		assertEquals(compileAndRun("10 GOSUB 100 : PRINT \"B\";" + CR + "20 END" + CR + "100 PRINT \"A\"; : GOTO 300" + CR + "200 RETURN" + CR + "300 GOTO 200"), "AB");
+		assertEquals(compileAndRun("10 GOSUB 100 : READ D : PRINT D" + CR + "20 END" + CR + "30 DATA 1" + CR + "40 DATA 2" + CR + "100 RESTORE 40 : RETURN"), " 2 ");
+		assertRuntimeError(compileAndRun("10 GOSUB 100" + CR + "20 END" + CR + "100 PRINT MID$(\"A\", 0) : RETURN"));
+
 		assertCompileError(compileAndRun("10 GOSUB XXX"));
 		assertRuntimeError(compileAndRun("10 RETURN"));
 		assertRuntimeError(compileAndRun("10 RETURN"));
@@ -1202,6 +1231,22 @@ public class CompilerTest {
 
 		// test: do not confuse number variables with statement keywords
 		assertCompileError(compileAndRun("10 PRINT 1;PRINT"));
+
+		// test: output exceeding the output buffer
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			sb.append("0123456789");
+		}
+		assertEquals(compileAndRun("10 FOR I = 1 TO 1000 : PRINT \"0123456789\"; : NEXT I : PRINT : PRINT POS(0)"), sb.toString() + CR + " 1 ");
+		assertEquals(compileAndRun("10 PRINT \"A\" + CHR$(9) + \"B\";POS(0)"), "A             B 16 ");
+		assertEquals(compileAndRun("10 PRINT \"HELLO\"; : INPUT A$ : PRINT A$", "ABC"), "HELLO?ABC");
+
+		// test: output printed before an error which is no BASIC runtime error
+		String stackOverflowProgram = "10 DEF FNA(X) = FNA(X) + 1" + CR + "20 PRINT \"HI\"" + CR + "30 PRINT FNA(1)";
+		Properties splitProperties = new Properties();
+		splitProperties.setProperty(BASICCompiler.OPT_SPLIT_METHODS, "");
+		assertTrue(compileAndRun(stackOverflowProgram).startsWith("HI" + CR + "java.lang.StackOverflowError"));
+		assertTrue(compileAndRun(stackOverflowProgram, splitProperties).startsWith("HI" + CR + "java.lang.StackOverflowError"));
 	}
 
 	@Test
@@ -1229,6 +1274,10 @@ public class CompilerTest {
 
 		assertRuntimeError(compileAndRun("10 READ A, B, C, D : DATA 1,2,3 : PRINT A;B;C"));
 		assertRuntimeError(compileAndRun("10 READ A, B, C, D : DATA 1,\"ABC\",3 : PRINT A;B;C"));
+
+		assertEquals(compileAndRun("10 READ A, B, C, D, E : DATA +1.5, -.25, 2E2, \" 12 \", 1.5E-3 : PRINT A;B;C;D;E"), " 1.5 -.25  200  12  .0015 ");
+		assertEquals(compileAndRun("10 READ A, B, A$ : DATA ABC, 12X, 34 : PRINT A;B;A$"), " 0  12 34");
+		assertEquals(compileAndRun("10 FOR I = 1 TO 3 : READ A, A$ : PRINT A;A$; : RESTORE : NEXT I : DATA 7, 8"), " 7 8 7 8 7 8");
 	}
 
 	@Test
@@ -1280,6 +1329,13 @@ public class CompilerTest {
 
 		assertCompileError(compileAndRun("10 PRINTHELLO"));
 		assertCompileError(compileAndRun("10 PRINT PRINT"));
+
+		assertEquals(compileAndRun("10 PRINT\"A\""), "A");
+		assertEquals(compileAndRun("10 PRINT 1."), " 1 ");
+		assertEquals(compileAndRun("10 PRINT 1E"), " 1  0 ");
+		assertEquals(compileAndRun("10 PRINT 1.5e1"), " 15 ");
+		assertEquals(compileAndRun("10 PRINT 3 : REM X : PRINT 4"), " 3 ");
+		assertCompileError(compileAndRun("10 PRINT \"A"));
 	}
 
 	@Test
@@ -1445,6 +1501,11 @@ public class CompilerTest {
 		assertEquals(compileAndRun("10 PRINT \"A\" + \"B\""), "AB");
 		assertEquals(compileAndRun("10 PRINT \"A\" + \"\""), "A");
 		assertEquals(compileAndRun("10 PRINT \"A\" + \"B\" + \"C\""), "ABC");
+		assertEquals(compileAndRun("10 A$ = \"AB\" : B$ = \"AB\" : A$ = A$ + \"C\" : PRINT A$; B$; \"AB\""), "ABCABAB");
+		assertEquals(compileAndRun("10 FOR I = 1 TO 3 : A$ = A$ + \"X\" : PRINT A$; \"X\"; : NEXT"), "XXXXXXXXX");
+		assertEquals(compileAndRun("10 A$ = \"A\" : B$ = \"\" : PRINT A$ + B$ + \"C\" + A$ + \"D\" + A$ + LEFT$(A$ + \"XY\" + A$, 3) + A$"), "ACADAAXYA");
+		assertEquals(compileAndRun("10 A$ = SPACE$(100) : B$ = A$ + A$ + LEFT$(A$, 55) : PRINT LEN(B$)"), " 255 ");
+		assertRuntimeError(compileAndRun("10 A$ = SPACE$(100) : B$ = A$ + A$ + LEFT$(A$, 56)"));
 
 		assertCompileError(compileAndRun("10 PRINT \"A\" + "));
 		assertCompileError(compileAndRun("10 PRINT \"A\" - \"B\""));
@@ -1706,6 +1767,10 @@ public class CompilerTest {
 		assertRuntimeError(compileAndRun("10 DIM A(1,1) : A(0,2) = 1"));
 		assertRuntimeError(compileAndRun("10 DIM A(1,1) : A(-1,-1) = 1"));
 		assertRuntimeError(compileAndRun("10 DIM A(1,1) : A(2,2) = 1"));
+		assertRuntimeError(compileAndRun("10 DIM A(1,1) : A(0,2) = 1 : PRINT A(1,0)"));
+
+		assertEquals(compileAndRun("10 DIM A(2,3) : FOR I = 0 TO 2 : FOR J = 0 TO 3 : A(I,J) = I * 10 + J : NEXT J, I : PRINT A(0,3);A(1,0);A(2,3);"), " 3  10  23 ");
+		assertEquals(compileAndRun("10 DIM A(2,3) : X = 1.6 : A(X,0.4) = 5 : PRINT A(2,0);A(1.5,0)"), " 5  5 ");
 
 		// test: do not confuse number arrays with function keywords
 		assertCompileError(compileAndRun("10 DIM SIN(1)"));
@@ -1777,6 +1842,28 @@ public class CompilerTest {
 		assertRuntimeError(compileAndRun("10 A(11,11) = 1 : PRINT A(11,11)"));
 	}
 
+	@Test
+	public void testArrayAccessWithinBounds() {
+		assertEquals(compileAndRun("10 FOR I = 0 TO 10 : A(I) = I : NEXT : PRINT A(0);A(10)"), " 0  10 ");
+		assertEquals(compileAndRun("10 FOR I = 10 TO 0 STEP -2 : A(I) = I : NEXT : PRINT A(10);A(0)"), " 10  0 ");
+		assertEquals(compileAndRun("10 FOR I = 1 TO 9 : A(I - 1) = A(I + 1) + I : NEXT : PRINT A(0);A(8)"), " 1  9 ");
+		assertEquals(compileAndRun("10 DIM A$(3,4) : FOR I = 0 TO 3 : FOR J = 0 TO 4 : A$(I,J) = CHR$(65 + I + J) : NEXT J, I : PRINT A$(3,4);A$(0,0)"), "HA");
+		assertEquals(compileAndRun("10 DIM A(5) : FOR I = 0 TO 6 : A(I) = I : NEXT"), CR + "ERROR: Index of 1D number array out of max bounds.");
+		assertEquals(compileAndRun("10 FOR I = 0 TO 11 : A(I) = I : NEXT"), CR + "ERROR: Index of 1D number array out of max bounds.");
+		assertEquals(compileAndRun("10 FOR I = 0 TO 10 : I = I + 5 : A(I) = 1 : NEXT"), CR + "ERROR: Index of 1D number array out of max bounds.");
+		assertEquals(compileAndRun("10 FOR I = 0 TO 10 : GOSUB 100 : A(I) = 1 : NEXT : END" + CR + "100 I = I + 1 : RETURN"), CR + "ERROR: Index of 1D number array out of max bounds.");
+		assertEquals(compileAndRun("10 FOR I = 1 TO 10 : A(I) = I : NEXT : DIM A(20)"), CR + "ERROR: 1D number array already dimensioned.");
+		assertEquals(compileAndRun("10 DIM A(3,4) : FOR I = 0 TO 4 : PRINT A(I,0); : NEXT"), " 0  0  0  0 " + CR + "ERROR: First index of 2D number array out of max bounds.");
+
+		// test: the DIM runs before the loop on all paths, or the loop may find the implicitly dimensioned array
+		assertEquals(compileAndRun("10 DIM A(50) : FOR I = 0 TO 50 : A(I) = I : NEXT : PRINT A(50)"), " 50 ");
+		assertEquals(compileAndRun("10 GOSUB 100 : FOR I = 0 TO 50 : A(I) = I : NEXT : PRINT A(50) : END" + CR + "100 DIM A(50) : RETURN"), " 50 ");
+		assertEquals(compileAndRun("10 GOTO 30" + CR + "20 DIM A(50)" + CR + "30 FOR I = 0 TO 50 : A(I) = I : NEXT"), CR + "ERROR: Index of 1D number array out of max bounds.");
+		assertEquals(compileAndRun("10 X = 1 : IF X = 0 THEN DIM A(50)" + CR + "20 FOR I = 0 TO 50 : A(I) = I : NEXT"), CR + "ERROR: Index of 1D number array out of max bounds.");
+		assertEquals(compileAndRun("10 FOR K = 1 TO 2 : IF K = 2 THEN 30" + CR + "20 NEXT" + CR + "30 FOR I = 0 TO 20 : A(I) = I : NEXT : DIM A(30)"), CR + "ERROR: Index of 1D number array out of max bounds.");
+		assertEquals(compileAndRun("10 PRINT Z$(3);LEN(Z$(10)) : Z$(2) = \"A\" : PRINT Z$(2) : W(3,4) = 5 : PRINT W(3,4);W(10,10)"), " 0 " + CR + "A" + CR + " 5  0 ");
+	}
+
 	@Test
 	public void testStrArrays() {
 		assertEquals(compileAndRun("10 DIM A$(1) : PRINT A$(0)"), "");
@@ -1943,6 +2030,229 @@ public class CompilerTest {
 		assertCompileError(compileAndRun(sb.toString()));
 	}
 
+	@Test
+	public void testSplitMethods() {
+		Properties properties = new Properties();
+		properties.setProperty(BASICCompiler.OPT_SPLIT_METHODS, "");
+
+		assertEquals(compileAndRun("10 PRINT 1 : GOTO 30" + CR + "20 PRINT 2" + CR + "30 PRINT 3", properties), " 1 " + CR + " 3 ");
+		assertEquals(compileAndRun("10 FOR I = 1 TO 2 : GOSUB 100 : NEXT I : END" + CR + "100 PRINT I : RETURN", properties), " 1 " + CR + " 2 ");
+		assertRuntimeError(compileAndRun("10 RETURN", properties));
+		assertCompileError(compileAndRun("10 GOTO 20", properties));
+
+		StringBuffer sb = new StringBuffer();
+		sb.append("1 GOSUB 5000 : GOTO 4000" + CR);
+		for (int i = 2; i < 5980; i++) {
+			if (i == 20) {
+				sb.append("20 FOR J = 1 TO 2 : GOSUB 5000 : NEXT J : ON 2 GOSUB 10, 5000" + CR);
+			} else if (i == 4000) {
+				sb.append("4000 PRINT \"AT 4000\" : IF X = 0 THEN ON 2 GOTO 10, 20, 30" + CR);
+			} else if (i == 4500) {
+				sb.append("4500 GOTO 5979" + CR);
+			} else if (i == 5000) {
+				sb.append("5000 RESTORE 5100 : READ A : PRINT A : RETURN" + CR);
+			} else if (i == 5100) {
+				sb.append("5100 DATA 42" + CR);
+			} else {
+				sb.append("" + i + " X = X + 1" + CR);
+			}
+		}
+		sb.append("5979 PRINT X" + CR);
+		assertEquals(compileAndRun(sb.toString(), properties), " 42 " + CR + "AT 4000" + CR + " 42 " + CR + " 42 " + CR + " 42 " + CR + "AT 4000" + CR + " 4478 ");
+	}
+
+	@Test
+	public void testClassVersion() {
+		Properties properties = new Properties();
+		properties.setProperty(BASICCompiler.OPT_CLASS_VERSION, "52");
+
+		assertEquals(compileAndRun("10 DIM A(10) : FOR I = 1 TO 10 : A(I) = I * I : NEXT : PRINT A(10)", properties), " 100 ");
+		assertEquals(compileAndRun("10 A$ = \"X\" : IF LEN(A$) = 1 THEN PRINT A$ + \"Y\" ELSE PRINT \"Z\"", properties), "XY");
+		assertEquals(compileAndRun("10 WHILE I < 3 : I = I + 1 : WEND : ON I GOSUB 20, 20, 30 : END" + CR + "20 PRINT 20 : RETURN" + CR + "30 PRINT 30 : RETURN", properties), " 30 ");
+		assertEquals(compileAndRun("10 DEF FNA$(X$) = X$ + X$ : PRINT FNA$(\"AB\")", properties), "ABAB");
+		assertEquals(compileAndRun("10 INPUT A : PRINT A * 2", "21", properties), "? 42 ");
+		assertRuntimeError(compileAndRun("10 RETURN", properties));
+
+		// names with dots
+		assertEquals(compileAndRun("10 A.HELLO = 1 : A.HELLO% = 2 : PRINT A.HELLO + A.HELLO%", properties), " 3 ");
+		assertEquals(compileAndRun("10 DIM A.HELLO(2) : A.HELLO(1) = 3 : PRINT A.HELLO(1)", properties), " 3 ");
+		assertEquals(compileAndRun("10 DIM A.HELLO$(2) : A.HELLO$(1) = \"HELLO\" : PRINT A.HELLO$(1)", properties), "HELLO");
+		assertEquals(compileAndRun("10 DEF FNA.HELLO(X)=X*X : PRINT FNA.HELLO(2)", properties), " 4 ");
+		assertEquals(compileAndRun("10 DEF FNA.HELLO$(A$)=A$+A$ : PRINT FNA.HELLO$(\"HELLO\")", properties), "HELLOHELLO");
+
+		properties.setProperty(BASICCompiler.OPT_SPLIT_METHODS, "");
+		assertEquals(compileAndRun("10 PRINT 1 : GOTO 30" + CR + "20 PRINT 2" + CR + "30 GOSUB 40 : END" + CR + "40 PRINT 3 : RETURN", properties), " 1 " + CR + " 3 ");
+		assertEquals(compileAndRun("10 A.HELLO = 1 : GOSUB 30 : PRINT A.HELLO" + CR + "20 END" + CR + "30 A.HELLO = A.HELLO + 1 : RETURN", properties), " 2 ");
+
+		properties.setProperty(BASICCompiler.OPT_CLASS_VERSION, "53");
+		assertCompileError(compileAndRun("10 PRINT 1", properties));
+		properties.setProperty(BASICCompiler.OPT_CLASS_VERSION, "X");
+		assertCompileError(compileAndRun("10 PRINT 1", properties));
+	}
+
+	@Test
+	public void testBASICRunner() throws Exception {
+		String program = "10 DEF FNA(X) = X * 2" + CR + "20 X = X + 1" + CR + "30 INPUT A$" + CR + "40 PRINT A$; FNA(X)";
+		assertEquals(runWithBASICRunner(program, "ABC"), "?ABC 2 " + CR);
+		// second run uses the cached class and must start from a fresh state
+		assertEquals(runWithBASICRunner(program, "DEF"), "?DEF 2 " + CR);
+		assertTrue(BASICRunner.compile(program) == BASICRunner.compile(program));
+
+		// names which are no Java identifiers, like arrays, must load with the class loader of BASICRunner, too
+		assertEquals(runWithBASICRunner("10 DIM A(3) : A(1) = 2 : PRINT A(1)", ""), " 2 " + CR);
+		assertEquals(runWithBASICRunner("10 DEF FNA.B$(X$) = X$ + X$ : A.B% = 3 : B$(A.B%) = \"X\" : PRINT FNA.B$(B$(3)); A.B%", ""), "XX 3 " + CR);
+	}
+
+	@Test
+	public void testConcurrentCompilation() throws Exception {
+		final List<String> sources = new ArrayList<String>();
+		final List<Properties> propertiesList = new ArrayList<Properties>();
+		for (File file : new File(SAMPLES_FOLDER_PATH).listFiles()) {
+			String source = readFile(file);
+			for (String option : new String[] { null, BASICCompiler.OPT_OPTIMIZE, BASICCompiler.OPT_SPLIT_METHODS }) {
+				Properties properties = new Properties();
+				if (option != null) {
+					properties.setProperty(option, "");
+				}
+				sources.add(source);
+				propertiesList.add(properties);
+			}
+		}
+		assertTrue(sources.size() > 0);
+
+		final List<byte[]> expectedClasses = new ArrayList<byte[]>();
+		for (int i = 0; i < sources.size(); i++) {
+			expectedClasses.add(compileToBytes(sources.get(i), propertiesList.get(i)));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+		try {
+			List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+			for (int round = 0; round < 10; round++) {
+				for (int i = 0; i < sources.size(); i++) {
+					final String source = sources.get(i);
+					final Properties properties = propertiesList.get(i);
+					futures.add(executor.submit(new Callable<byte[]>() {
+						public byte[] call() throws Exception {
+							return compileToBytes(source, properties);
+						}
+					}));
+				}
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				assertArrayEquals(expectedClasses.get(i % sources.size()), futures.get(i).get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testLocalVariables() {
+		assertEquals(compileAndRun("10 DEF FNA(X) = X * 2 + Y : X = 5 : Y = 1 : PRINT FNA(3); X"), " 7  5 ");
+		assertEquals(compileAndRun("10 Y = 1 : GOSUB 30 : PRINT X; Y : END" + CR + "30 X = Y + 1 : Y = X * 2 : RETURN"), " 2  4 ");
+		assertEquals(compileAndRun("10 A$ = \"X\" : B$ = A$ + \"Y\" : SWAP A$, B$ : PRINT A$; B$; C$; D"), "XYX 0 ");
+		assertEquals(compileAndRun("10 FOR I = 1 TO 3 : S = S + I : NEXT : PRINT S; I"), " 6  4 ");
+
+		// more scalars than locals fit into main(), the rest remains in fields
+		StringBuffer program = new StringBuffer();
+		for (int i = 0; i < 300; i++) {
+			program.append((i + 10) + " V" + i + " = " + i + " : S = S + V" + i + CR);
+		}
+		program.append("400 PRINT S; V0; V299");
+		assertEquals(compileAndRun(program.toString()), " 44850  0  299 ");
+
+		Properties properties = new Properties();
+		properties.setProperty(BASICCompiler.OPT_SPLIT_METHODS, "");
+		assertEquals(compileAndRun(program.toString(), properties), " 44850  0  299 ");
+	}
+
+	@Test
+	public void testConstantFolding() throws Exception {
+		String[] programs = new String[] { //
+				"10 PRINT 2 * 3.14159 / 180, LEN(\"ABC\"), CHR$(65); CHR$(66.5), ASC(\"Z\")", //
+				"10 X = 7 : PRINT X * 1 + 0, 1 * X, X / 1, X ^ 1, X - 0, -(-X), (X)", //
+				"10 X = -0 : PRINT 1 / (X + 0), 1 / (X * 1), 1 / -0, 0 * -1", //
+				"10 PRINT 1 / 0, -1 / 0, 1 \\ 0, 1 MOD 0, 0 ^ -1", //
+				"10 PRINT 5 \\ 2, -7 MOD 3, 7.5 \\ 2.5, 5 AND 3, 5 OR 3, 5 XOR 3, NOT 5, NOT -1.5", //
+				"10 PRINT 1 < 2, 2 < 1, 1 = 1, 1 <> 1, \"A\" < \"B\", \"AB\" = \"AB\", \"AB\" >= \"ABC\", \"A\" + \"B\" + \"C\"", //
+				"10 PRINT ABS(-3), SGN(-2), SGN(0), INT(-2.5), INT(-0.5), FIX(-2.5), FIX(-0.5), SQR(16), SQR(2)", //
+				"10 IF 1 < 2 THEN PRINT \"YES\" ELSE PRINT \"NO\"", //
+				"10 FOR I = 1 + 1 TO 2 * 3 STEP 4 / 2 : PRINT I; : NEXT : WHILE 2 > 3 : WEND : ON 1 + 1 GOTO 20, 30" + CR + "20 PRINT 20" + CR + "30 PRINT 30", //
+				"10 DIM A(2 * 5) : A(3 + 4) = 9 : PRINT A(7), A(14 / 2)", //
+				"10 DEF FNA(Z) = Z * 2 + 3 * 4 : PRINT FNA(1)", //
+				"10 PRINT 1E+38 * 10, 1E+38 * 10 - 1E+38 * 10", //
+				"10 PRINT CHR$(128)", //
+				"10 PRINT 40000 AND 1" //
+		};
+
+		Properties properties = new Properties();
+		Properties optimizeProperties = new Properties();
+		optimizeProperties.setProperty(BASICCompiler.OPT_OPTIMIZE, "");
+
+		for (String program : programs) {
+			assertEquals(compileAndRun(program, optimizeProperties), compileAndRun(program, properties));
+		}
+		assertTrue(compileToBytes(programs[0], optimizeProperties).length < compileToBytes(programs[0], properties).length);
+	}
+
+	@Test
+	public void testSharedRuntime() throws Exception {
+		String[] programs = new String[] { //
+				"10 A$ = \"HELLO WORLD\" : PRINT LEFT$(A$, 5); MID$(A$, 7, 3); RIGHT$(A$, 2); LEN(A$); ASC(MID$(A$, 2)); INSTR(A$, \"O\"); INSTR(3, A$, \"\"); LEFT$(A$, 5) = \"HELLO\"; \"LX\" <> RIGHT$(A$, 2)", //
+				"10 PRINT ABS(-3); SGN(-2); INT(-2.5); FIX(-0.5); SQR(2); LOG(10); SIN(1); COS(1); ATN(1); CHR$(65); SPACE$(3); \"|\"", //
+				"10 PRINT VAL(\" -1.5E3\"); VAL(\"X\"); VAL(\"\"); VAL(\"123456789\"); VAL(\".1E-40\")", //
+				"10 PRINT 5 AND 3; 5 OR 3; 5 XOR 3; NOT 5; \"A\" < \"B\"; \"AB\" = \"AB\"; \"AB\" >= \"ABC\"; \"B\" > \"AB\"; \"A\" <= \"A\"; \"A\" <> \"B\"; \"A\" + \"B\" + \"C\"", //
+				"10 DIM A(3), B%(2, 2), C$(1, 2) : A(2) = 1.5 : B%(1, 2) = 7 : C$(1, 1) = \"X\" : D(12 - 2) = 4 : E$(1, 1) = \"Y\"" + CR + "20 PRINT A(2); B%(1, 2); C$(1, 1); D(10); E$(1, 1); A(0); LEN(C$(0, 0))", //
+				"10 READ A, B$ : PRINT A; B$; : ON 2 GOSUB 20, 30 : END" + CR + "20 PRINT 20 : RETURN" + CR + "30 PRINT 30 : RETURN" + CR + "40 DATA 1.25, XY", //
+				"10 DIM A(3) : PRINT A(4)", //
+				"10 PRINT MID$(\"A\", 0)", //
+				"10 PRINT 40000 AND 1", //
+				"10 A% = 40000" //
+		};
+
+		Properties properties = new Properties();
+		Properties runtimeProperties = new Properties();
+		runtimeProperties.setProperty(BASICCompiler.OPT_SHARED_RUNTIME, "");
+
+		for (String program : programs) {
+			assertEquals(compileAndRun(program, runtimeProperties), compileAndRun(program, properties));
+		}
+		assertTrue(compileToBytes(programs[0], runtimeProperties).length < compileToBytes(programs[0], properties).length);
+	}
+
+	@Test
+	public void testIntegerVariables() {
+		assertEquals(compileAndRun("10 FOR I = 1 TO 3 : PRINT I; : NEXT : PRINT I"), " 1  2  3  4 ");
+		assertEquals(compileAndRun("10 FOR I = 10 TO 1.5 STEP -3 : PRINT I; : NEXT : PRINT I"), " 10  7  4  1 ");
+		assertEquals(compileAndRun("10 FOR I = 1 TO 2.5 : PRINT I; : NEXT : FOR I = 0 TO 50000 STEP 25000 : PRINT I; : NEXT"), " 1  2  0  25000  50000 ");
+		assertEquals(compileAndRun("10 N = LEN(\"ABC\") : K = INT(N / 2) : FOR I = N TO K STEP -1 : PRINT I; : NEXT : PRINT K * 3 - N"), " 3  2  1  0 ");
+		assertEquals(compileAndRun("10 FOR I = 1 TO 5 : IF I = 2 THEN I = 2.5" + CR + "20 PRINT I; : NEXT"), " 1  2.5  3.5  4.5 ");
+		assertEquals(compileAndRun("10 FOR X = 0 TO 1 STEP 0.5 : PRINT X; : NEXT : I = 1 : I = I * 3 : PRINT I"), " 0  .5  1  3 ");
+		assertEquals(compileAndRun("10 DEF FNA(I) = I * 2 : FOR I = 1 TO 2 : PRINT FNA(I + 0.5); : NEXT"), " 3  5 ");
+		assertEquals(compileAndRun("10 GOTO 30" + CR + "20 FOR I = 1 TO 3" + CR + "30 PRINT I; : I = I + 1 : IF I > 2 THEN END" + CR + "40 NEXT I"), " 0  1  2 ");
+
+		assertEquals(compileAndRun("10 DIM A(10), A$(10) : FOR I = 0 TO 10 : A(I) = I * I : A$(I) = CHR$(65 + I) : NEXT : PRINT A(3); A(-(-10)); A$(4)"), " 9  100 E");
+		assertRuntimeError(compileAndRun("10 FOR I = 1 TO 11 : B(I) = I : NEXT"));
+		assertRuntimeError(compileAndRun("10 FOR I = 0 TO 1 : PRINT B$(I - 1); : NEXT"));
+	}
+
+	@Test
+	public void testPercentIntegerVariables() {
+		assertEquals(compileAndRun("10 A% = 3.7 : B% = -2.2 : A = 1.5 : PRINT A%; B%; A"), " 4 -2  1.5 ");
+		assertEquals(compileAndRun("10 A% = 7 : PRINT A% \\ 2; A% MOD 3; A% AND 6; A% OR 8; A% XOR 1; NOT A%; A% / 2"), " 3  1  6  15  6 -8  3.5 ");
+		assertEquals(compileAndRun("10 A% = 7 : PRINT A% \\ 0"), "Division by zero" + CR + " Infinity ");
+		assertEquals(compileAndRun("10 DIM X%(5), Y%(2,2) : FOR I% = 0 TO 5 : X%(I%) = I% * I% : Y%(I% MOD 3, 1) = I% : NEXT : PRINT X%(5); X%(2.6); Y%(2, 1); I%"), " 25  9  5  6 ");
+		assertEquals(compileAndRun("10 READ A%, B%(1) : SWAP A%, B%(1) : PRINT A%; B%(1)" + CR + "20 DATA 1.4, 2.6"), " 3  1 ");
+		assertEquals(compileAndRun("10 DEFINT I-K : I = 2.6 : J(1) = 1.5 : PRINT I; I%; J%(1)"), " 3  3  2 ");
+		assertEquals(compileAndRun("10 DEF FNA(X%) = X% * 2 + A% : A% = 1 : PRINT FNA(1.6)"), " 5 ");
+		assertEquals(compileAndRun("10 FOR I% = 32766 TO 40000 : PRINT I%; : NEXT"), " 32766  32767 " + CR + "ERROR: Overflow: Integer value > 32767.");
+
+		assertRuntimeError(compileAndRun("10 A% = 20000 : B% = A% + A%"));
+		assertRuntimeError(compileAndRun("10 A% = -40000"));
+		assertRuntimeError(compileAndRun("10 DIM A%(3) : A%(4) = 1"));
+	}
+
 	@Test
 	public void testABS() {
 		assertEquals(compileAndRun("10 PRINT ABS(1)"), " 1 ");
@@ -2096,6 +2406,9 @@ public class CompilerTest {
 		assertEquals(compileAndRun("10 PRINT LEN(\"A\")"), " 1 ");
 		assertEquals(compileAndRun("10 PRINT LEN(\"ABCD\")"), " 4 ");
 		assertEquals(compileAndRun("10 PRINT LEN(\"ABCD\" + \"EFGH\")"), " 8 ");
+		assertEquals(compileAndRun("10 A$ = \"ABCD\" : PRINT LEN(LEFT$(A$, 2)); LEN(LEFT$(A$, 10)); LEN(RIGHT$(A$, 3)); LEN(RIGHT$(A$, 0))"), " 2  4  3  0 ");
+		assertEquals(compileAndRun("10 A$ = \"ABCD\" : X% = LEN(MID$(A$, 2)) : PRINT LEN(MID$(A$, 2, 2)); LEN(MID$(A$, 3)); LEN(MID$(A$, 5)); X%"), " 2  2  0  3 ");
+		assertRuntimeError(compileAndRun("10 A$ = \"ABCD\" : PRINT LEN(MID$(A$, 0))"));
 
 		assertCompileError(compileAndRun("10 PRINT LEN(1)"));
 	}
@@ -2141,6 +2454,13 @@ public class CompilerTest {
 		assertRuntimeError(compileAndRun("10 PRINT MID$(\"ABCD\", 256)"));
 		assertEquals(compileAndRun("10 PRINT MID$(\"ABCD\", 5)"), "");
 
+		assertEquals(compileAndRun("10 A$ = \"ABCD\" : PRINT ASC(MID$(A$, 2, 1)); ASC(LEFT$(A$, 3)); ASC(RIGHT$(A$, 1))"), " 66  65  68 ");
+		assertRuntimeError(compileAndRun("10 A$ = \"ABCD\" : PRINT ASC(MID$(A$, 5, 1))"));
+
+		assertEquals(compileAndRun("10 A$ = \"ABCBD\" : FOR I = 1 TO 5 : IF MID$(A$, I, 1) = \"B\" THEN PRINT I;" + CR + "20 NEXT"), " 2  4 ");
+		assertEquals(compileAndRun("10 A$ = \"ABCD\" : PRINT LEFT$(A$, 2) = \"AB\"; \"CD\" = RIGHT$(A$, 2); MID$(A$, 2, 2) <> \"BC\"; \"X\" <> MID$(A$, 5); LEFT$(A$, 3) = \"AB\"; LEFT$(A$, 2) = MID$(A$, 1, 2)"), "-1 -1  0 -1  0 -1 ");
+		assertRuntimeError(compileAndRun("10 A$ = \"ABCD\" : PRINT MID$(A$, 0, 1) = \"A\""));
+
 		// code coverage
 		assertCompileError(compileAndRun("10 PRINT MID$( , 1)"));
 		assertCompileError(compileAndRun("10 PRINT MID$(1, 1)"));
@@ -2335,6 +2655,19 @@ public class CompilerTest {
 		assertEquals(compileAndRun("10 PRINT VAL(\"1..2\")"), " 1 ");
 		assertEquals(compileAndRun("10 PRINT VAL(\"..12\")"), " 0 ");
 
+		assertEquals(compileAndRun("10 PRINT VAL(\"+12\")"), " 12 ");
+		assertEquals(compileAndRun("10 PRINT VAL(\".5\")"), " .5 ");
+		assertEquals(compileAndRun("10 PRINT VAL(\"+.25\")"), " .25 ");
+		assertEquals(compileAndRun("10 PRINT VAL(\"-.25E+2\")"), "-25 ");
+		assertEquals(compileAndRun("10 PRINT VAL(\"1E38\")"), " 1E+38 ");
+		assertEquals(compileAndRun("10 PRINT VAL(\"2.5e-3\")"), " .0025 ");
+		assertEquals(compileAndRun("10 PRINT VAL(\"1E-50\")"), " 0 ");
+		assertEquals(compileAndRun("10 PRINT VAL(\"1E50\")"), " Infinity ");
+		assertEquals(compileAndRun("10 PRINT VAL(\"9999999\")"), " 9999999 ");
+		assertEquals(compileAndRun("10 PRINT VAL(\"123456789\")"), " 1.234567E+08 ");
+		assertEquals(compileAndRun("10 PRINT VAL(\"0000000012.5\")"), " 12.5 ");
+		assertEquals(compileAndRun("10 PRINT VAL(\"1234567.89\")"), " 1234567 ");
+
 		assertCompileError(compileAndRun("10 PRINT VAL(1)"));
 	}
 
@@ -2352,80 +2685,145 @@ public class CompilerTest {
 		assertTrue(actual.startsWith("" + CR + "ERROR:"));
 	}
 
+	private static byte[] compileToBytes(String strStatements, Properties properties) throws IOException {
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		BASICCompiler.exec(new BufferedReader(new StringReader(strStatements)), outStream, TEST_CLASS_NAME, properties);
+		return outStream.toByteArray();
+	}
+
+	private static String readFile(File file) throws IOException {
+		StringBuffer sb = new StringBuffer();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				sb.append(line).append(CR);
+			}
+		} finally {
+			reader.close();
+		}
+		return sb.toString();
+	}
+
+	private static String runWithBASICRunner(String strStatements, String lineOfInput) throws Exception {
+		testCount.incrementAndGet();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BASICRunner.run(strStatements, new ByteArrayInputStream((lineOfInput + CR).getBytes()), new PrintStream(out));
+		return out.toString();
+	}
+
 	private static String compileAndRun(String strStatements) {
-		return compileAndRun(strStatements, null);
+		return compileAndRun(strStatements, null, new Properties());
 	}
 
 	private static String compileAndRun(String strStatements, String lineOfInput) {
-		testCount++;
+		return compileAndRun(strStatements, lineOfInput, new Properties());
+	}
+
+	private static String compileAndRun(String strStatements, Properties properties) {
+		return compileAndRun(strStatements, null, properties);
+	}
+
+	private static String compileAndRun(String strStatements, String lineOfInput, Properties properties) {
+		testCount.incrementAndGet();
+
+		try {
+			if (lineOfInput != null) {
+				return runInProcess(strStatements, lineOfInput, properties);
+			}
+			return runInMemory(BASICRunner.compile(strStatements, properties));
+		} catch (CompileException ex) {
+			return ex.getFullMessage();
+		} catch (IOException ex) {
+			ex.printStackTrace();
+			return null;
+		}
+	}
+
+	private static String runInMemory(Class<?> programClass) throws IOException {
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(outStream);
+		try {
+			BASICRunner.run(programClass, new ByteArrayInputStream(new byte[0]), out);
+		} catch (RuntimeException ex) {
+			ex.printStackTrace(out); // a separate JVM would print uncaught exceptions, too
+		} catch (Error ex) {
+			ex.printStackTrace(out);
+		}
+		out.flush();
+		return joinLines(new BufferedReader(new StringReader(outStream.toString())));
+	}
+
+	// runs the program in a separate JVM, as INPUT needs a real stdin
+	private static String runInProcess(String strStatements, String lineOfInput, Properties properties) throws IOException {
+		File testFolder = createTempFolder();
+		File classFile = new File(testFolder, TEST_CLASS_NAME + ".class");
 
 		BufferedReader inReader = null;
 		OutputStream outStream = null;
-
-		String output = null;
 		Process p = null;
 		try {
-			StringBuffer sb = new StringBuffer();
 			inReader = new BufferedReader(new StringReader(strStatements));
-			outStream = new FileOutputStream(TEST_CLASS_FULLFILENAME);
+			outStream = new FileOutputStream(classFile);
 
 			// compile
-			BASICCompiler.exec(inReader, outStream, TEST_CLASS_NAME);
+			BASICCompiler.exec(inReader, outStream, TEST_CLASS_NAME, properties);
+			outStream.close();
 
 			// execute
-			ProcessBuilder pb = new ProcessBuilder("java", TEST_CLASS_NAME);
-			pb.directory(new File(TEST_FOLDER_PATH));
+			String javaPath = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+			ProcessBuilder pb = new ProcessBuilder(javaPath, TEST_CLASS_NAME);
+			pb.directory(testFolder);
 			pb.redirectErrorStream(true);
 			p = pb.start();
 
-			if (lineOfInput != null) {
-				BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(p.getOutputStream()));
-				writer.write(lineOfInput);
-				writer.newLine();
-				writer.flush();
-				writer.close();
-
-				// Hint: Handles single-line responses only
-				BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()));
-				String lineOfOutput = reader.readLine();
-				reader.close();
-				sb.append(lineOfOutput);
-			} else {
-				BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()));
-				boolean isFirstLine = true;
-				while (true) {
-					String lineOfOutput = reader.readLine();
-					if (lineOfOutput == null) {
-						break;
-					}
-					if (isFirstLine) {
-						isFirstLine = false;
-					} else {
-						sb.append(CR);
-					}
-					sb.append(lineOfOutput);
-				}
-				reader.close();
-			}
-			output = sb.toString();
-		} catch (FileNotFoundException ex) {
-			ex.printStackTrace();
-		} catch (IOException ex) {
-			ex.printStackTrace();
-		} catch (CompileException ex) {
-			output = ex.getFullMessage();
+			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(p.getOutputStream()));
+			writer.write(lineOfInput);
+			writer.newLine();
+			writer.flush();
+			writer.close();
+
+			// Hint: Handles single-line responses only
+			BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()));
+			String lineOfOutput = reader.readLine();
+			reader.close();
+			return lineOfOutput;
 		} finally {
 			closeGracefully(outStream);
 			closeGracefully(inReader);
-			File classFile = new File(TEST_CLASS_FULLFILENAME);
-			if (classFile.exists()) {
-				classFile.delete();
-			}
 			if (p != null) {
 				p.destroy();
 			}
+			classFile.delete();
+			testFolder.delete();
+		}
+	}
+
+	private static File createTempFolder() throws IOException {
+		File folder = File.createTempFile(TEST_CLASS_NAME, "");
+		if ((folder.delete() && folder.mkdir()) == false) {
+			throw new IOException("Cannot create temp folder " + folder + ".");
+		}
+		return folder;
+	}
+
+	private static String joinLines(BufferedReader reader) throws IOException {
+		StringBuffer sb = new StringBuffer();
+		boolean isFirstLine = true;
+		while (true) {
+			String lineOfOutput = reader.readLine();
+			if (lineOfOutput == null) {
+				break;
+			}
+			if (isFirstLine) {
+				isFirstLine = false;
+			} else {
+				sb.append(CR);
+			}
+			sb.append(lineOfOutput);
 		}
-		return output;
+		return sb.toString();
 	}
 
 	private static void closeGracefully(Closeable closeable) {